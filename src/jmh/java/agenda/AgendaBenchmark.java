@@ -0,0 +1,100 @@
+package agenda;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Description : the queries of {@link Agenda} on agendas of 1k to 10M events.
+ * <p>
+ * Run with the GC profiler to get the allocation rate per operation :
+ * <pre>
+ * mvn -Pjmh -DskipTests package
+ * java -Xmx8g -jar target/benchmarks.jar AgendaBenchmark -prof gc
+ * java -jar target/benchmarks.jar AgendaBenchmark -p size=1000,100000 -p mix=SIMPLE,MIXED
+ * </pre>
+ * The 10M agendas need a heap of several gigabytes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AgendaBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int size;
+
+    @Param({"SIMPLE", "REPEATING", "TERMINATED", "EXCEPTIONS", "MIXED"})
+    Workloads.Mix mix;
+
+    Agenda agenda;
+
+    /**
+     * The query arguments, drawn anew for every iteration but in the same sequence for every run
+     */
+    @State(Scope.Thread)
+    public static class Queries {
+        private static final int COUNT = 1 << 10;
+
+        final LocalDate[] days = new LocalDate[COUNT];
+        final Event[] candidates = new Event[COUNT];
+        private int next;
+
+        @Setup(Level.Trial)
+        public void draw() {
+            SplittableRandom random = new SplittableRandom(7);
+            for (int i = 0; i < COUNT; i++) {
+                days[i] = Workloads.day(random);
+                candidates[i] = new Event("Candidate", days[i].atTime(random.nextInt(24), random.nextInt(60)),
+                        Duration.ofMinutes(30));
+            }
+        }
+
+        int next() {
+            return next++ & (COUNT - 1);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void load() {
+        agenda = new AgendaLoader(size).addAll(Workloads.events(size, mix, 42)).load();
+    }
+
+    @Benchmark
+    public Object eventsInDay(Queries q) {
+        return agenda.eventsInDay(q.days[q.next()]);
+    }
+
+    @Benchmark
+    public boolean isFreeFor(Queries q) {
+        return agenda.isFreeFor(q.candidates[q.next()]);
+    }
+
+    @Benchmark
+    public long eventsBetweenOneWeek(Queries q) {
+        LocalDateTime from = q.days[q.next()].atStartOfDay();
+        return agenda.eventsBetween(from, from.plusWeeks(1)).count();
+    }
+
+    @Benchmark
+    public Object findByTitle(Queries q) {
+        return agenda.findByTitle("Event " + q.next());
+    }
+}
@@ -0,0 +1,67 @@
+package agenda;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.StreamSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Description : {@link Event#isInDay(LocalDate)} and the expansion of the occurrences of one
+ * event, for every kind of event. Days are drawn up to ten years after the start of the
+ * events, so that far-away days are measured too.
+ * <p>
+ * {@code java -jar target/benchmarks.jar EventBenchmark -prof gc}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventBenchmark {
+
+    private static final int COUNT = 1 << 10;
+
+    @Param({"SIMPLE", "REPEATING", "TERMINATED", "EXCEPTIONS"})
+    Workloads.Mix kind;
+
+    final Event[] events = new Event[COUNT];
+    final LocalDate[] days = new LocalDate[COUNT];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void draw() {
+        SplittableRandom random = new SplittableRandom(11);
+        for (int i = 0; i < COUNT; i++) {
+            events[i] = Workloads.event(random, "Event", kind);
+            days[i] = Workloads.day(random).plusYears(random.nextInt(10));
+        }
+    }
+
+    @Benchmark
+    public boolean isInDay() {
+        int i = next++ & (COUNT - 1);
+        return events[i].isInDay(days[i]);
+    }
+
+    @Benchmark
+    public long occurrencesInOneMonth() {
+        int i = next++ & (COUNT - 1);
+        LocalDateTime from = days[i].atStartOfDay();
+        return StreamSupport.stream(events[i].occurrences(from, from.plusMonths(1)), false).count();
+    }
+}
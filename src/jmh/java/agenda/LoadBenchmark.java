@@ -0,0 +1,57 @@
+package agenda;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Description : the cost of filling an agenda, one event at a time or in bulk.
+ * <p>
+ * Every invocation builds a whole agenda, hence the single shot mode :
+ * {@code java -jar target/benchmarks.jar LoadBenchmark -prof gc}
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoadBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int size;
+
+    @Param({"SIMPLE", "MIXED"})
+    Workloads.Mix mix;
+
+    List<Event> events;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        events = Workloads.events(size, mix, 42);
+    }
+
+    @Benchmark
+    public Agenda addEvent() {
+        Agenda agenda = new Agenda();
+        events.forEach(agenda::addEvent);
+        return agenda;
+    }
+
+    @Benchmark
+    public Agenda addAll() {
+        return new AgendaLoader(size).addAll(events).load();
+    }
+}
@@ -0,0 +1,94 @@
+package agenda;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Description : the linear scans of the agendas, sequential and parallel, to find the size
+ * from which the parallel scan pays off ({@link ParallelScan#DEFAULT_THRESHOLD}).
+ * <pre>
+ * mvn -Pjmh -DskipTests package
+ * java -jar target/benchmarks.jar ParallelScanBenchmark
+ * java -jar target/benchmarks.jar ParallelScanBenchmark -p size=16384,65536 -p threads=1,4
+ * </pre>
+ * {@code threads=1} is the sequential scan ; the other values use a pool of that many threads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelScanBenchmark {
+
+    @Param({"4096", "16384", "65536", "262144", "1048576"})
+    int size;
+
+    @Param({"1", "2", "4", "8"})
+    int threads;
+
+    ColumnarAgenda columnar;
+    Agenda repeating;
+    ForkJoinPool pool;
+
+    private final LocalDate[] days = new LocalDate[1 << 10];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void load() {
+        columnar = new ColumnarAgenda();
+        columnar.addAll(Workloads.events(size, Workloads.Mix.MIXED, 42));
+        repeating = new AgendaLoader(size).addAll(Workloads.events(size, Workloads.Mix.REPEATING, 42)).load();
+        if (threads > 1) {
+            pool = new ForkJoinPool(threads);
+            columnar.setParallelQueries(pool, 0);
+            repeating.setParallelQueries(pool, 0);
+        }
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < days.length; i++) {
+            days[i] = Workloads.day(random);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private LocalDate nextDay() {
+        return days[next++ & (days.length - 1)];
+    }
+
+    @Benchmark
+    public Object columnarEventsInDay() {
+        return columnar.eventsInDay(nextDay());
+    }
+
+    @Benchmark
+    public Object columnarFindByTitle() {
+        return columnar.findByTitle("Event " + (next++ & (days.length - 1)));
+    }
+
+    @Benchmark
+    public Object repeatingEventsInDay() {
+        return repeating.eventsInDay(nextDay());
+    }
+}
@@ -0,0 +1,69 @@
+package agenda;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Description : the two constructors of {@link Termination}, for near and far terminations.
+ * <p>
+ * {@code java -jar target/benchmarks.jar TerminationBenchmark -prof gc}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TerminationBenchmark {
+
+    private static final int COUNT = 1 << 10;
+
+    @Param({"DAYS", "WEEKS", "MONTHS"})
+    ChronoUnit frequency;
+
+    // Écart maximal entre le début et la terminaison, en jours
+    @Param({"30", "36500"})
+    int span;
+
+    final LocalDate[] starts = new LocalDate[COUNT];
+    final LocalDate[] ends = new LocalDate[COUNT];
+    final long[] counts = new long[COUNT];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void draw() {
+        SplittableRandom random = new SplittableRandom(13);
+        for (int i = 0; i < COUNT; i++) {
+            starts[i] = Workloads.day(random);
+            ends[i] = starts[i].plusDays(random.nextInt(span));
+            counts[i] = 1 + frequency.between(starts[i], ends[i]);
+        }
+    }
+
+    @Benchmark
+    public Termination byDate() {
+        int i = next++ & (COUNT - 1);
+        return new Termination(starts[i], frequency, ends[i]);
+    }
+
+    @Benchmark
+    public Termination byNumberOfOccurrences() {
+        int i = next++ & (COUNT - 1);
+        return new Termination(starts[i], frequency, counts[i]);
+    }
+}
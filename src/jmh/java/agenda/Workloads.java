@@ -0,0 +1,92 @@
+package agenda;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Description : reproducible event populations for the benchmarks.
+ * <p>
+ * Events start at random minutes over two years from {@link #ORIGIN}, last from 15 minutes
+ * to 3 hours (a few of them several days), and repeat daily, weekly or monthly according
+ * to the mix.
+ */
+public final class Workloads {
+
+    static final LocalDate ORIGIN = LocalDate.of(2020, 1, 1);
+    static final int DAYS = 730;
+
+    private static final ChronoUnit[] FREQUENCIES = {ChronoUnit.DAYS, ChronoUnit.WEEKS, ChronoUnit.MONTHS};
+
+    /**
+     * The kinds of events in a population
+     */
+    public enum Mix {
+        /** Non repeating events only */
+        SIMPLE,
+        /** Repeating events without termination */
+        REPEATING,
+        /** Repeating events terminated by a date or a number of occurrences */
+        TERMINATED,
+        /** Repeating events with about twenty exceptions each */
+        EXCEPTIONS,
+        /** A quarter of each of the above */
+        MIXED
+    }
+
+    private Workloads() {
+    }
+
+    /**
+     * @param size the number of events
+     * @param mix the kinds of events
+     * @param seed the seed of the generator
+     * @return the events, always the same for the same arguments
+     */
+    static List<Event> events(int size, Mix mix, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Event> events = new ArrayList<>(size);
+        Mix[] kinds = {Mix.SIMPLE, Mix.REPEATING, Mix.TERMINATED, Mix.EXCEPTIONS};
+        for (int i = 0; i < size; i++) {
+            Mix kind = mix == Mix.MIXED ? kinds[i & 3] : mix;
+            events.add(event(random, "Event " + (i % 10_000), kind));
+        }
+        return events;
+    }
+
+    static Event event(SplittableRandom random, String title, Mix kind) {
+        LocalDateTime start = ORIGIN.atStartOfDay().plusMinutes(random.nextLong(DAYS * 24L * 60));
+        Duration duration = random.nextInt(100) == 0 ? Duration.ofDays(1 + random.nextInt(3))
+                : Duration.ofMinutes(15 + random.nextInt(166));
+        Event e = new Event(title, start, duration);
+        if (kind == Mix.SIMPLE) {
+            return e;
+        }
+        ChronoUnit frequency = FREQUENCIES[random.nextInt(FREQUENCIES.length)];
+        e.setRepetition(frequency);
+        if (kind == Mix.TERMINATED) {
+            if (random.nextBoolean()) {
+                e.setTermination(start.toLocalDate().plusDays(random.nextInt(DAYS)));
+            } else {
+                e.setTermination(1 + random.nextInt(100));
+            }
+        } else if (kind == Mix.EXCEPTIONS) {
+            for (int x = 0; x < 20; x++) {
+                e.addException(start.toLocalDate().plus(random.nextInt(200), frequency));
+            }
+        }
+        return e;
+    }
+
+    /**
+     * @param random the generator
+     * @return a random day within the period covered by the events
+     */
+    static LocalDate day(SplittableRandom random) {
+        return ORIGIN.plusDays(random.nextInt(DAYS));
+    }
+}
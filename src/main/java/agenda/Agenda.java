@@ -1,24 +1,285 @@
 package agenda;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Description : An agenda that stores events
+ * <p>
+ * Non repeating events are indexed in an interval tree by their [start, end] instants,
+ * so that day lookups cost O(log n + k). Repeating events are kept in a separate list
+ * that is checked next. An optional cache keeps the results of the days asked most
+ * recently, see {@link #setDayCacheSize(int)}, and the days of a horizon can be compiled
+ * into bitmaps, see {@link #materializeDays(LocalDate, int)}.
+ * <p>
+ * The events notify the agenda when their repetition, exceptions or termination change,
+ * so that only the indexes of the modified event are updated ; events can also be frozen
+ * when they are added, see {@link #setFreezeOnInsert(boolean)}.
  */
 public class Agenda {
-    
+
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    // Au-delà d'un ajout de taille / BULK_RATIO, l'index est reconstruit plutôt que complété
+    private static final int BULK_RATIO = 4;
+
     private final List<Event> events = new ArrayList<>(); // Utilisation de List pour plus de généralité
 
+    // Index des événements non répétitifs, bornes en secondes depuis l'epoch (UTC)
+    private final IntervalTree<Event> oneOffIndex = new IntervalTree<>();
+
+    // Les événements répétitifs, vérifiés un par un
+    private final List<Event> repeatingEvents = new ArrayList<>();
+
+    // Index des événements par titre
+    private final TitleIndex titleIndex = new TitleIndex();
+
+    // Ordre d'insertion, pour rendre les résultats dans l'ordre de l'agenda
+    private final Map<Event, Long> insertionOrder = new IdentityHashMap<>();
+
+    private long nextSequence = 0;
+
+    // Cache optionnel des résultats de eventsInDay, invalidé par les modifications des événements
+    private DayCache dayCache;
+
+    // Journées précompilées en bitmaps (optionnel)
+    private DayMaterialization materialization;
+
+    // Parcours parallèle des événements répétitifs (optionnel)
+    private ParallelScan parallelScan;
+
+    // Compteurs et histogrammes des opérations (optionnels)
+    private AgendaMetrics metrics;
+
+    // Les événements ajoutés sont figés, et l'agenda n'a plus à suivre leurs modifications
+    private boolean freezeOnInsert;
+
+    // Les événements non figés préviennent l'agenda de leurs modifications
+    private final Event.ChangeListener changes = this::eventChanged;
+
+    private final ConflictDetector conflictDetector = new ConflictDetector(this::occurrencesAround,
+            this::oneOffsAround, () -> repeatingEvents,
+            () -> oneOffIndex.size() == 0 ? null : LocalDateTime.ofEpochSecond(oneOffIndex.maxHigh(), 0, ZoneOffset.UTC));
+
     /**
      * Adds an event to this agenda
      *
      * @param e the event to add
+     * @throws IllegalArgumentException if {@code e} is already in this agenda
      */
     public void addEvent(Event e) {
+        if (insertionOrder.containsKey(e)) {
+            throw new IllegalArgumentException("The event is already in the agenda : " + e);
+        }
+        AgendaMetrics m = metrics;
+        if (m == null) {
+            insert(e);
+            return;
+        }
+        long start = System.nanoTime();
+        insert(e);
+        m.record(AgendaMetrics.Operation.ADD_EVENT, start, 0);
+    }
+
+    private void insert(Event e) {
         events.add(e);
+        long sequence = nextSequence++;
+        insertionOrder.put(e, sequence);
+        if (e.getRepetition() == null) {
+            oneOffIndex.insert(startSecond(e), endSecond(e), sequence, e);
+        } else {
+            repeatingEvents.add(e);
+        }
+        titleIndex.add(e);
+        watch(e);
+        if (dayCache != null) {
+            invalidate(e);
+        }
+    }
+
+    /**
+     * Removes an event from this agenda : only the indexes of that event are updated
+     *
+     * @param e the event to remove
+     * @return true if the event was in this agenda
+     */
+    public boolean removeEvent(Event e) {
+        Long sequence = insertionOrder.get(e);
+        if (sequence == null) {
+            return false;
+        }
+        events.remove(position(events, sequence));
+        unindex(e, sequence);
+        insertionOrder.remove(e);
+        e.removeListener(changes);
+        if (dayCache != null) {
+            invalidate(e);
+        }
+        if (materialization != null) {
+            // Les identifiants des événements suivants changent : la compilation est refaite
+            materialization.recompile();
+        }
+        return true;
+    }
+
+    /**
+     * Replaces an event of this agenda by another one, which takes its place in insertion
+     * order : only the indexes of these two events are updated
+     *
+     * @param previous the event to replace
+     * @param replacement the event that replaces it, not in this agenda yet
+     * @return true if {@code previous} was in this agenda and has been replaced
+     * @throws IllegalArgumentException if {@code replacement} is already in this agenda
+     */
+    public boolean replaceEvent(Event previous, Event replacement) {
+        if (insertionOrder.containsKey(replacement)) {
+            throw new IllegalArgumentException("The replacement is already in the agenda : " + replacement);
+        }
+        Long sequence = insertionOrder.get(previous);
+        if (sequence == null) {
+            return false;
+        }
+        int index = position(events, sequence);
+        unindex(previous, sequence);
+        events.set(index, replacement);
+        insertionOrder.remove(previous);
+        previous.removeListener(changes);
+        insertionOrder.put(replacement, sequence);
+        if (replacement.getRepetition() == null) {
+            oneOffIndex.insert(startSecond(replacement), endSecond(replacement), sequence, replacement);
+        } else {
+            repeatingEvents.add(position(repeatingEvents, sequence), replacement);
+        }
+        titleIndex.insert(replacement, insertionOrder::get);
+        watch(replacement);
+        if (dayCache != null) {
+            invalidate(previous);
+            invalidate(replacement);
+        }
+        if (materialization != null) {
+            materialization.changed(index);
+        }
+        return true;
+    }
+
+    /**
+     * @return true if queries update the day cache or the compiled days, and must not run
+     * concurrently
+     */
+    boolean updatesOnQueries() {
+        return dayCache != null || materialization != null;
+    }
+
+    /**
+     * Starts to count the calls of {@link #addEvent}, {@link #eventsInDay},
+     * {@link #findByTitle} and {@link #isFreeFor}, the events they examine and find, and to
+     * record their latencies. Without metrics, the default, these operations pay nothing
+     * but a null check.
+     *
+     * @return the metrics of this agenda, the same ones if they were already enabled
+     * @see AgendaMetrics#registerMBean(String)
+     */
+    public AgendaMetrics enableMetrics() {
+        if (metrics == null) {
+            metrics = new AgendaMetrics();
+        }
+        return metrics;
+    }
+
+    /**
+     * Stops measuring the operations of this agenda, and forgets the metrics
+     */
+    public void disableMetrics() {
+        metrics = null;
+    }
+
+    /**
+     * Freezes the events added from now on : their repetition, exceptions and termination
+     * can no longer be modified (their setters throw an {@link IllegalStateException}), so
+     * that this agenda does not have to watch them. The events added before are not affected.
+     *
+     * @param freeze true to freeze the events added from now on, false to stop (the default)
+     */
+    public void setFreezeOnInsert(boolean freeze) {
+        this.freezeOnInsert = freeze;
+    }
+
+    /**
+     * Adds many events to this agenda at once. The events are appended to the agenda first,
+     * then every index is updated once : when the new events are numerous compared with the
+     * agenda, the interval index is rebuilt by a (parallel) sort instead of n insertions.
+     *
+     * @param added the events to add, in this order
+     * @throws IllegalArgumentException if one of the events is already in this agenda, or
+     * appears twice in {@code added} ; the agenda is then left unchanged
+     * @see AgendaLoader
+     */
+    public void addAll(Collection<Event> added) {
+        Set<Event> distinct = Collections.newSetFromMap(new IdentityHashMap<>(added.size()));
+        for (Event e : added) {
+            if (insertionOrder.containsKey(e) || !distinct.add(e)) {
+                throw new IllegalArgumentException("The event is already in the agenda : " + e);
+            }
+        }
+        if (!FlightEvents.BULK_LOAD.isEnabled()) {
+            insertAll(added);
+            return;
+        }
+        FlightEvents.BulkLoad load = new FlightEvents.BulkLoad();
+        load.begin();
+        insertAll(added);
+        load.end();
+        if (load.shouldCommit()) {
+            load.added = added.size();
+            load.agendaSize = events.size();
+            load.commit();
+        }
+    }
+
+    private void insertAll(Collection<Event> added) {
+        List<Event> oneOffs = new ArrayList<>();
+        long[] sequences = new long[added.size()];
+        for (Event e : added) {
+            events.add(e);
+            long sequence = nextSequence++;
+            insertionOrder.put(e, sequence);
+            if (e.getRepetition() == null) {
+                sequences[oneOffs.size()] = sequence;
+                oneOffs.add(e);
+            } else {
+                repeatingEvents.add(e);
+            }
+        }
+        titleIndex.addAll(added);
+        added.forEach(this::watch);
+        if (dayCache != null) {
+            if (added.size() >= dayCache.maximumSize()) {
+                dayCache.clear();
+            } else {
+                added.forEach(this::invalidate);
+            }
+        }
+        if (oneOffs.size() > oneOffIndex.size() / BULK_RATIO) {
+            long[] lows = new long[oneOffs.size()];
+            long[] highs = new long[oneOffs.size()];
+            for (int i = 0; i < lows.length; i++) {
+                lows[i] = startSecond(oneOffs.get(i));
+                highs[i] = endSecond(oneOffs.get(i));
+            }
+            oneOffIndex.insertAll(lows, highs, sequences, oneOffs);
+        } else {
+            for (int i = 0; i < oneOffs.size(); i++) {
+                Event e = oneOffs.get(i);
+                oneOffIndex.insert(startSecond(e), endSecond(e), sequences[i], e);
+            }
+        }
     }
 
     /**
@@ -28,14 +289,390 @@ public class Agenda {
      * @return a list of events that occur on that day
      */
     public List<Event> eventsInDay(LocalDate day) {
+        AgendaMetrics m = metrics;
+        if (m == null && !FlightEvents.EVENTS_IN_DAY.isEnabled()) {
+            return lookUpEventsInDay(day, null);
+        }
+        // L'événement JFR recueille aussi le nombre d'événements évalués pour les métriques
+        FlightEvents.EventsInDay query = new FlightEvents.EventsInDay();
+        long start = System.nanoTime();
+        query.begin();
+        List<Event> found = lookUpEventsInDay(day, query);
+        query.end();
+        if (m != null) {
+            m.scanned(AgendaMetrics.Operation.EVENTS_IN_DAY, query.evaluated);
+            m.record(AgendaMetrics.Operation.EVENTS_IN_DAY, start, found.size());
+        }
+        if (query.shouldCommit()) {
+            query.agendaSize = events.size();
+            query.day = day.toString();
+            query.results = found.size();
+            query.commit();
+        }
+        return found;
+    }
+
+    private List<Event> lookUpEventsInDay(LocalDate day, FlightEvents.EventsInDay query) {
+        if (dayCache == null) {
+            return computeEventsInDay(day, query);
+        }
+        List<Event> cached = dayCache.get(day.toEpochDay());
+        if (cached == null) {
+            cached = computeEventsInDay(day, query);
+            dayCache.put(day.toEpochDay(), cached);
+        } else if (query != null) {
+            query.source = "cache";
+        }
+        return new ArrayList<>(cached);
+    }
+
+    /**
+     * Keeps the results of {@link #eventsInDay} for the days asked most recently. The cache
+     * is kept up to date when events are added, and when the repetition, the exceptions or
+     * the termination of an event of this agenda change.
+     *
+     * @param maximumDays the number of days kept, 0 to disable the cache (the default)
+     */
+    public void setDayCacheSize(int maximumDays) {
+        if (maximumDays < 0) {
+            throw new IllegalArgumentException("The size of the cache cannot be negative : " + maximumDays);
+        }
+        dayCache = maximumDays == 0 ? null : new DayCache(maximumDays);
+    }
+
+    /**
+     * Compiles the days of the events of this agenda into bitmaps over a horizon, on a
+     * background thread : once the compilation is complete, {@link #eventsInDay} answers the
+     * days of the horizon by a lookup. Results stay exact meanwhile, and when events are
+     * added or changed afterwards.
+     *
+     * @param firstDay the first day of the horizon
+     * @param horizonDays the number of days of the horizon, 0 to drop the compilation
+     * @return a future completed when the compilation is complete ; it is used from the
+     * next query on
+     */
+    public CompletableFuture<Void> materializeDays(LocalDate firstDay, int horizonDays) {
+        if (horizonDays < 0) {
+            throw new IllegalArgumentException("The horizon cannot be negative : " + horizonDays);
+        }
+        if (horizonDays == 0) {
+            materialization = null;
+            return CompletableFuture.completedFuture(null);
+        }
+        if (materialization == null) {
+            materialization = new DayMaterialization(events);
+        }
+        return materialization.compile(firstDay.toEpochDay(), horizonDays);
+    }
+
+    /**
+     * Moves the horizon of the compiled days, keeping its length : when the events did not
+     * change, only the new days are compiled
+     *
+     * @param firstDay the new first day of the horizon, usually today
+     * @return a future completed when the compilation is complete
+     * @throws IllegalStateException if the days are not compiled
+     * @see #materializeDays(LocalDate, int)
+     */
+    public CompletableFuture<Void> advanceMaterializedDays(LocalDate firstDay) {
+        if (materialization == null) {
+            throw new IllegalStateException("The days of this agenda are not materialized");
+        }
+        return materialization.advance(firstDay.toEpochDay());
+    }
+
+    /**
+     * Lets {@link #eventsInDay} test the repeating events on several threads, when they are
+     * more numerous than {@link #setParallelQueries(ForkJoinPool, int) a threshold}. The
+     * events of a day are still returned in insertion order.
+     *
+     * @param pool the threads of the parallel queries, null to query sequentially (the default)
+     */
+    public void setParallelQueries(ForkJoinPool pool) {
+        setParallelQueries(pool, ParallelScan.DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Lets {@link #eventsInDay} test the repeating events on several threads
+     *
+     * @param pool the threads of the parallel queries, null to query sequentially (the default)
+     * @param threshold the number of repeating events below which queries stay sequential
+     */
+    public void setParallelQueries(ForkJoinPool pool, int threshold) {
+        parallelScan = pool == null ? null : new ParallelScan(pool, threshold);
+    }
+
+
+    /**
+     * @return the activity of the day cache since it was enabled, all zeros if it is disabled
+     * @see #setDayCacheSize(int)
+     */
+    public CacheStatistics getDayCacheStatistics() {
+        return dayCache == null ? new CacheStatistics(0, 0, 0, 0, 0) : dayCache.statistics();
+    }
+
+    private void watch(Event e) {
+        if (freezeOnInsert) {
+            e.freeze();
+        } else if (!e.isFrozen()) {
+            e.addListener(changes);
+        }
+    }
+
+    /**
+     * Updates the indexes of an event that has been modified : an event that starts to
+     * repeat moves from the interval index to the repeating events
+     */
+    private void eventChanged(Event e, long fromDay, long toDay) {
+        long sequence = insertionOrder.get(e);
+        if (e.getRepetition() != null && oneOffIndex.remove(startSecond(e), sequence)) {
+            repeatingEvents.add(position(repeatingEvents, sequence), e);
+        }
+        if (dayCache != null) {
+            dayCache.invalidate(fromDay, toDay);
+        }
+        if (materialization != null) {
+            materialization.changed(position(events, sequence));
+        }
+    }
+
+    private void unindex(Event e, long sequence) {
+        if (!oneOffIndex.remove(startSecond(e), sequence)) {
+            repeatingEvents.remove(position(repeatingEvents, sequence));
+        }
+        titleIndex.remove(e);
+    }
+
+    /**
+     * @return the position of the event of a sequence in a list of events in insertion
+     * order, or where it would be inserted
+     */
+    private int position(List<Event> inOrder, long sequence) {
+        int low = 0;
+        int high = inOrder.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (insertionOrder.get(inOrder.get(middle)) < sequence) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Forgets the cached days on which a new event can occur
+     */
+    private void invalidate(Event e) {
+        long startDay = e.getStart().toLocalDate().toEpochDay();
+        long endDay = e.getStart().plus(e.getDuration()).toLocalDate().toEpochDay();
+        if (e.getRepetition() == null) {
+            dayCache.invalidate(startDay, endDay);
+        } else if (e.getTerminationDate() == null) {
+            dayCache.invalidate(startDay, Long.MAX_VALUE);
+        } else {
+            dayCache.invalidate(startDay, e.getTerminationDate().toEpochDay() + endDay - startDay);
+        }
+    }
+
+    /**
+     * @param query receives the number of events evaluated and where they came from, null if not needed
+     */
+    private List<Event> computeEventsInDay(LocalDate day, FlightEvents.EventsInDay query) {
+        if (materialization != null) {
+            List<Event> compiled = materialization.eventsInDay(day.toEpochDay());
+            if (compiled != null) {
+                if (query != null) {
+                    query.source = "bitmaps";
+                    query.evaluated = compiled.size();
+                }
+                return compiled;
+            }
+        }
+        long dayStart = day.toEpochDay() * SECONDS_PER_DAY;
         List<Event> eventsOnDay = new ArrayList<>();
-        for (Event e : events) {
+        // L'index donne des candidats (à la seconde près), isInDay tranche
+        List<Event> candidates = oneOffIndex.query(dayStart, dayStart + SECONDS_PER_DAY - 1);
+        for (Event e : candidates) {
             if (e.isInDay(day)) {
                 eventsOnDay.add(e);
             }
         }
-        return eventsOnDay;
-        // Alternative Stream: return events.stream().filter(event -> event.isInDay(day)).collect(Collectors.toList());
+        if (query != null) {
+            query.source = "index";
+            query.evaluated = candidates.size() + repeatingEvents.size();
+        }
+        if (parallelScan == null) {
+            for (Event e : repeatingEvents) {
+                if (e.isInDay(day)) {
+                    eventsOnDay.add(e);
+                }
+            }
+        } else {
+            for (int i : parallelScan.matching(repeatingEvents.size(), i -> repeatingEvents.get(i).isInDay(day))) {
+                eventsOnDay.add(repeatingEvents.get(i));
+            }
+        }
+        return inInsertionOrder(eventsOnDay);
+    }
+
+    /**
+     * Computes the occurrences of the events of this agenda that overlap a time window.
+     * Repeating events are expanded lazily and only inside the window, honouring their
+     * termination and their exceptions.
+     * <p>
+     * The stream is lazy : the agenda must not be modified while it is consumed.
+     *
+     * @param from the start of the window (inclusive)
+     * @param to the end of the window (exclusive)
+     * @return the occurrences that overlap [from, to[, non repeating events first
+     */
+    public Stream<Occurrence> eventsBetween(LocalDateTime from, LocalDateTime to) {
+        Iterator<Event> candidates = oneOffIndex.overlapping(floorSecond(from), ceilSecond(to));
+        Stream<Occurrence> oneOffs = StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(candidates, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .map(e -> new Occurrence(e, e.getStart(), e.getStart().plus(e.getDuration())))
+                .filter(o -> o.overlaps(from, to));
+        // Un seul flatMap terminal : il reste paresseux même sur une répétition sans fin
+        return Stream.concat(Stream.of(oneOffs), repeatingEvents.stream().map(e -> StreamSupport.stream(e.occurrences(from, to), false)))
+                .flatMap(occurrences -> occurrences);
+    }
+
+    /**
+     * Enumerates the occurrences that overlap a time window in chronological order, merging
+     * the interval index with the expansion of every repeating event
+     *
+     * @param from the start of the window (inclusive)
+     * @param to the end of the window (exclusive)
+     * @return the occurrences that overlap [from, to[, ordered by start then end
+     */
+    Iterator<Occurrence> chronologicalOccurrences(LocalDateTime from, LocalDateTime to) {
+        List<Iterator<Occurrence>> sequences = new ArrayList<>(repeatingEvents.size() + 1);
+        Iterator<Occurrence> oneOffs = StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(oneOffIndex.overlapping(floorSecond(from), ceilSecond(to)),
+                        Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .map(e -> new Occurrence(e, e.getStart(), e.getStart().plus(e.getDuration())))
+                .filter(o -> o.overlaps(from, to))
+                .iterator();
+        sequences.add(SortedOccurrences.sortWithinSeconds(oneOffs));
+        for (Event e : repeatingEvents) {
+            sequences.add(Spliterators.iterator(e.occurrences(from, to)));
+        }
+        return new SortedOccurrences(sequences);
+    }
+
+    /**
+     * Finds every pair of occurrences that take place at the same time inside a time window.
+     * The occurrences are merged in chronological order and swept once, which costs
+     * O(n log n) for n occurrences ; the stream is lazy and only keeps the occurrences that
+     * are running at the same time in memory. The agenda must not be modified while the
+     * stream is consumed.
+     *
+     * @param from the start of the window (inclusive)
+     * @param to the end of the window (exclusive)
+     * @return the overlapping pairs, the occurrence that starts first first, ordered by the
+     * start of the second occurrence
+     */
+    public Stream<Conflict> findAllConflicts(LocalDateTime from, LocalDateTime to) {
+        return ConflictDetector.sweep(chronologicalOccurrences(from, to));
+    }
+
+    /**
+     * Finds the free slots of this agenda inside a time window : the intervals where no
+     * occurrence takes place, repeating events included. They are found in a single sweep
+     * over the occurrences in chronological order, instead of probing {@link #isFreeFor}.
+     *
+     * @param from the start of the window (inclusive)
+     * @param to the end of the window (exclusive)
+     * @param minDuration the minimal length of a slot
+     * @return the free slots of at least {@code minDuration}, in chronological order
+     */
+    public List<TimeSlot> findFreeSlots(LocalDateTime from, LocalDateTime to, Duration minDuration) {
+        return findFreeSlots(from, to, minDuration, null);
+    }
+
+    /**
+     * Finds the free slots of this agenda inside a time window, during working hours only :
+     * a free interval that spans several days gives one slot per day
+     *
+     * @param from the start of the window (inclusive)
+     * @param to the end of the window (exclusive)
+     * @param minDuration the minimal length of a slot
+     * @param hours the hours when a slot can take place, null for any time
+     * @return the free slots of at least {@code minDuration}, in chronological order
+     * @see #findFreeSlots(LocalDateTime, LocalDateTime, Duration)
+     */
+    public List<TimeSlot> findFreeSlots(LocalDateTime from, LocalDateTime to, Duration minDuration, WorkingHours hours) {
+        if (!FlightEvents.FREE_SLOTS.isEnabled()) {
+            return freeSlots(from, to, minDuration, hours).toList();
+        }
+        FlightEvents.FreeSlotSearch search = new FlightEvents.FreeSlotSearch();
+        search.begin();
+        List<TimeSlot> slots = freeSlots(from, to, minDuration, hours).toList();
+        commit(search, from, to, slots.size());
+        return slots;
+    }
+
+    /**
+     * Finds the first free slot of this agenda inside a time window. The sweep stops at that
+     * slot : the occurrences after it are not expanded.
+     *
+     * @param from the start of the window (inclusive)
+     * @param to the end of the window (exclusive)
+     * @param minDuration the minimal length of the slot
+     * @return the earliest free slot of at least {@code minDuration}, if there is one
+     */
+    public Optional<TimeSlot> findEarliestSlot(LocalDateTime from, LocalDateTime to, Duration minDuration) {
+        return findEarliestSlot(from, to, minDuration, null);
+    }
+
+    /**
+     * Finds the first free slot of this agenda inside a time window, during working hours only
+     *
+     * @param from the start of the window (inclusive)
+     * @param to the end of the window (exclusive)
+     * @param minDuration the minimal length of the slot
+     * @param hours the hours when the slot can take place, null for any time
+     * @return the earliest free slot of at least {@code minDuration}, if there is one
+     * @see #findEarliestSlot(LocalDateTime, LocalDateTime, Duration)
+     */
+    public Optional<TimeSlot> findEarliestSlot(LocalDateTime from, LocalDateTime to, Duration minDuration, WorkingHours hours) {
+        if (!FlightEvents.FREE_SLOTS.isEnabled()) {
+            return freeSlots(from, to, minDuration, hours).findFirst();
+        }
+        FlightEvents.FreeSlotSearch search = new FlightEvents.FreeSlotSearch();
+        search.begin();
+        Optional<TimeSlot> slot = freeSlots(from, to, minDuration, hours).findFirst();
+        commit(search, from, to, slot.isPresent() ? 1 : 0);
+        return slot;
+    }
+
+    private void commit(FlightEvents.FreeSlotSearch search, LocalDateTime from, LocalDateTime to, int slots) {
+        search.end();
+        if (search.shouldCommit()) {
+            search.agendaSize = events.size();
+            search.from = from.toString();
+            search.to = to.toString();
+            search.slots = slots;
+            search.commit();
+        }
+    }
+
+    private Stream<TimeSlot> freeSlots(LocalDateTime from, LocalDateTime to, Duration minDuration, WorkingHours hours) {
+        return StreamSupport.stream(new FreeSlots(FreeSlots.busy(chronologicalOccurrences(from, to)), from, to, minDuration, hours), false);
+    }
+
+    /**
+     * Computes the occurrences of the events of this agenda between two days
+     *
+     * @param firstDay the first day of the window (inclusive)
+     * @param lastDay the last day of the window (inclusive)
+     * @return the occurrences that overlap these days
+     * @see #eventsBetween(LocalDateTime, LocalDateTime)
+     */
+    public Stream<Occurrence> eventsBetween(LocalDate firstDay, LocalDate lastDay) {
+        return eventsBetween(firstDay.atStartOfDay(), lastDay.plusDays(1).atStartOfDay());
     }
     
 
@@ -45,37 +682,151 @@ public class Agenda {
      * @return les événements qui ont le même titre
      */
     public List<Event> findByTitle(String title) {
-        return events.stream()
-                .filter(event -> event.getTitle().equals(title))
-                .collect(Collectors.toList());
+        AgendaMetrics m = metrics;
+        if (m == null && !FlightEvents.FIND_BY_TITLE.isEnabled()) {
+            return titleIndex.find(title);
+        }
+        FlightEvents.FindByTitle query = new FlightEvents.FindByTitle();
+        long start = System.nanoTime();
+        query.begin();
+        List<Event> found = titleIndex.find(title);
+        query.end();
+        if (m != null) {
+            m.scanned(AgendaMetrics.Operation.FIND_BY_TITLE, found.size());
+            m.record(AgendaMetrics.Operation.FIND_BY_TITLE, start, found.size());
+        }
+        if (query.shouldCommit()) {
+            query.agendaSize = events.size();
+            query.title = title;
+            query.results = found.size();
+            query.commit();
+        }
+        return found;
+    }
+
+    /**
+     * Finds the events of this agenda with a given title, ignoring case
+     *
+     * @param title the title to search for
+     * @return the events with the same title, in insertion order
+     */
+    public List<Event> findByTitleIgnoreCase(String title) {
+        return titleIndex.findIgnoreCase(title);
+    }
+
+    /**
+     * Finds the events of this agenda whose title starts with a given prefix
+     *
+     * @param prefix the start of the title
+     * @return the matching events, in insertion order
+     */
+    public List<Event> findByTitlePrefix(String prefix) {
+        return inInsertionOrder(titleIndex.findByPrefix(prefix));
+    }
+
+    /**
+     * Finds the events of this agenda whose title starts with a given prefix, ignoring case
+     *
+     * @param prefix the start of the title
+     * @return the matching events, in insertion order
+     */
+    public List<Event> findByTitlePrefixIgnoreCase(String prefix) {
+        return inInsertionOrder(titleIndex.findByPrefixIgnoreCase(prefix));
     }
     
     /**
      * Déterminer s’il y a de la place dans l'agenda pour un événement (aucun autre événement au même moment)
-     * @param e L'événement à tester (on se limitera aux événements sans répétition)
+     * Toutes les occurrences sont prises en compte, celles de l'événement testé comme celles de l'agenda.
+     * @param e L'événement à tester, répétitif ou non
      * @return vrai s’il y a de la place dans l'agenda pour cet événement
      */
     public boolean isFreeFor(Event e) {
-        // Définition de l'intervalle du nouvel événement
-        LocalDateTime newEventStart = e.getStart();
-        LocalDateTime newEventEnd = e.getStart().plus(e.getDuration());
-
-        for (Event existingEvent : events) {
-            
-            LocalDateTime existingStart = existingEvent.getStart();
-            LocalDateTime existingEnd = existingEvent.getStart().plus(existingEvent.getDuration());
-
-            boolean overlap = existingStart.isBefore(newEventEnd) && existingEnd.isAfter(newEventStart);
-
-            if (overlap) {
-                return false;
-            }
+        AgendaMetrics m = metrics;
+        if (m == null && !FlightEvents.IS_FREE_FOR.isEnabled()) {
+            return conflictsWith(e).findAny().isEmpty();
         }
-        
-        return true;
+        FlightEvents.IsFreeFor query = new FlightEvents.IsFreeFor();
+        long start = System.nanoTime();
+        query.begin();
+        boolean free = conflictsWith(e).findAny().isEmpty();
+        query.end();
+        if (m != null) {
+            m.record(AgendaMetrics.Operation.IS_FREE_FOR, start, free ? 0 : 1);
+        }
+        if (query.shouldCommit()) {
+            query.agendaSize = events.size();
+            query.start = e.getStart().toString();
+            query.repeating = e.getRepetition() != null;
+            query.free = free;
+            query.commit();
+        }
+        return free;
+    }
+
+    /**
+     * Finds the occurrences of this agenda that take place at the same time as an occurrence
+     * of a given event. The stream is lazy : the agenda must not be modified while it is consumed.
+     *
+     * @param e the event to test, repeating or not. If it belongs to this agenda, it does not
+     *          conflict with itself
+     * @return the conflicts, the occurrence of {@code e} first, in chronological order of the
+     * occurrences of {@code e}
+     */
+    public Stream<Conflict> conflictsWith(Event e) {
+        return conflictDetector.conflictsWith(e);
     }
     
+    /**
+     * @return a read-only view of the events of this agenda, in insertion order
+     */
     public List<Event> getAllEvents() {
-        return events;
+        return Collections.unmodifiableList(events);
+    }
+
+    /**
+     * @return the occurrences that overlap [from, to[, and possibly a few non repeating
+     * events that end less than a second before
+     */
+    private Stream<Occurrence> occurrencesAround(LocalDateTime from, LocalDateTime to) {
+        Stream<Occurrence> repetitions = repeatingEvents.stream()
+                .flatMap(e -> StreamSupport.stream(e.occurrences(from, to), false));
+        return Stream.concat(oneOffsAround(from, to), scanned(repetitions));
+    }
+
+    /**
+     * @return the non repeating events that overlap [from, to[, and possibly a few that end
+     * less than a second before
+     */
+    private Stream<Occurrence> oneOffsAround(LocalDateTime from, LocalDateTime to) {
+        return scanned(oneOffIndex.query(floorSecond(from), ceilSecond(to)).stream()
+                .map(e -> new Occurrence(e, e.getStart(), e.getStart().plus(e.getDuration()))));
+    }
+
+    private Stream<Occurrence> scanned(Stream<Occurrence> occurrences) {
+        AgendaMetrics m = metrics;
+        return m == null ? occurrences : occurrences.peek(o -> m.scanned(AgendaMetrics.Operation.IS_FREE_FOR, 1));
+    }
+
+    private List<Event> inInsertionOrder(List<Event> found) {
+        found.sort(Comparator.comparingLong(insertionOrder::get));
+        return found;
+    }
+
+    private static long startSecond(Event e) {
+        return floorSecond(e.getStart());
+    }
+
+    private static long endSecond(Event e) {
+        return ceilSecond(e.getStart().plus(e.getDuration()));
+    }
+
+    static long floorSecond(LocalDateTime t) {
+        return t.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    static long ceilSecond(LocalDateTime t) {
+        // Arrondi à la seconde supérieure : l'index ne doit jamais manquer un événement
+        long seconds = t.toEpochSecond(ZoneOffset.UTC);
+        return t.getNano() == 0 ? seconds : seconds + 1;
     }
-} 
\ No newline at end of file
+} 
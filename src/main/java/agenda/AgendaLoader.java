@@ -0,0 +1,60 @@
+package agenda;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Description : loads many events into a new agenda.
+ * <p>
+ * The events are only collected until {@link #load()} is called, then every index of the
+ * agenda is built once, e.g. when an agenda is restored :
+ * <pre>{@code
+ * Agenda agenda = new AgendaLoader()
+ *         .addAll(restoredEvents)
+ *         .add(extraEvent)
+ *         .load();
+ * }</pre>
+ */
+public class AgendaLoader {
+
+    private final List<Event> events;
+
+    public AgendaLoader() {
+        this.events = new ArrayList<>();
+    }
+
+    /**
+     * @param expectedSize the number of events that will be loaded
+     */
+    public AgendaLoader(int expectedSize) {
+        this.events = new ArrayList<>(expectedSize);
+    }
+
+    /**
+     * @param e an event to load
+     * @return this loader
+     */
+    public AgendaLoader add(Event e) {
+        events.add(e);
+        return this;
+    }
+
+    /**
+     * @param added events to load
+     * @return this loader
+     */
+    public AgendaLoader addAll(Collection<Event> added) {
+        events.addAll(added);
+        return this;
+    }
+
+    /**
+     * @return a new agenda that contains the events loaded so far, in the order they were given
+     */
+    public Agenda load() {
+        Agenda agenda = new Agenda();
+        agenda.addAll(events);
+        return agenda;
+    }
+}
@@ -0,0 +1,169 @@
+package agenda;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Description : counters and latency histograms of the operations of an {@link Agenda}.
+ * <p>
+ * Every operation keeps its number of calls, the number of events it examined and found,
+ * and a {@link LatencyHistogram} of its durations. All of them are striped counters : the
+ * threads that query an agenda at the same time, e.g. under the read lock of an
+ * {@link AgendaStore}, do not contend on them. An agenda without metrics, the default,
+ * only pays a null check per operation.
+ *
+ * @see Agenda#enableMetrics()
+ */
+public final class AgendaMetrics implements AgendaMetricsMXBean {
+
+    /**
+     * The operations of an agenda that are measured
+     */
+    public enum Operation {
+        /** {@link Agenda#addEvent(Event)} */
+        ADD_EVENT,
+        /** {@link Agenda#eventsInDay(java.time.LocalDate)} : scans the candidates of the day */
+        EVENTS_IN_DAY,
+        /** {@link Agenda#findByTitle(String)} : scans the events of the title */
+        FIND_BY_TITLE,
+        /**
+         * {@link Agenda#isFreeFor(Event)} : scans the occurrences of the agenda compared with
+         * the tested event, by {@link Agenda#conflictsWith(Event)} too
+         */
+        IS_FREE_FOR
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final LongAdder[] invocations = new LongAdder[OPERATIONS.length];
+    private final LongAdder[] scanned = new LongAdder[OPERATIONS.length];
+    private final LongAdder[] matched = new LongAdder[OPERATIONS.length];
+    private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+
+    AgendaMetrics() {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            invocations[i] = new LongAdder();
+            scanned[i] = new LongAdder();
+            matched[i] = new LongAdder();
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Records a call
+     *
+     * @param operation the operation called
+     * @param startNanos the {@link System#nanoTime()} when the call started
+     * @param found the number of events found
+     */
+    void record(Operation operation, long startNanos, long found) {
+        int i = operation.ordinal();
+        latencies[i].record(System.nanoTime() - startNanos);
+        invocations[i].increment();
+        if (found != 0) {
+            matched[i].add(found);
+        }
+    }
+
+    /**
+     * Records events examined by an operation, possibly in several times per call
+     */
+    void scanned(Operation operation, long count) {
+        scanned[operation.ordinal()].add(count);
+    }
+
+    /**
+     * @param operation an operation
+     * @return the activity of that operation so far
+     */
+    public OperationStatistics statistics(Operation operation) {
+        int i = operation.ordinal();
+        LatencyHistogram.Snapshot latency = latencies[i].snapshot();
+        long count = latency.count();
+        return new OperationStatistics(invocations[i].sum(), scanned[i].sum(), matched[i].sum(),
+                count == 0 ? 0 : latency.total() / count,
+                latency.valueAt(0.5), latency.valueAt(0.9), latency.valueAt(0.99), latency.valueAt(0.999), latency.max());
+    }
+
+    /**
+     * @return the activity of every operation so far
+     */
+    public Map<Operation, OperationStatistics> snapshot() {
+        Map<Operation, OperationStatistics> snapshot = new EnumMap<>(Operation.class);
+        for (Operation operation : OPERATIONS) {
+            snapshot.put(operation, statistics(operation));
+        }
+        return snapshot;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            invocations[i].reset();
+            scanned[i].reset();
+            matched[i].reset();
+            latencies[i].reset();
+        }
+    }
+
+    /**
+     * Registers these metrics in the platform MBean server, as
+     * {@code agenda:type=AgendaMetrics,name=<name>}
+     *
+     * @param name the name of the agenda
+     * @return the name of the MBean, to unregister it
+     * @throws JMException if the name is invalid or already registered
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        ObjectName objectName = ObjectName.getInstance("agenda:type=AgendaMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    @Override
+    public Map<String, Long> getInvocations() {
+        return byOperation(OperationStatistics::invocations);
+    }
+
+    @Override
+    public Map<String, Long> getScanned() {
+        return byOperation(OperationStatistics::scanned);
+    }
+
+    @Override
+    public Map<String, Long> getMatched() {
+        return byOperation(OperationStatistics::matched);
+    }
+
+    @Override
+    public Map<String, Long> getMeanNanos() {
+        return byOperation(OperationStatistics::meanNanos);
+    }
+
+    @Override
+    public Map<String, Long> getP50Nanos() {
+        return byOperation(OperationStatistics::p50Nanos);
+    }
+
+    @Override
+    public Map<String, Long> getP99Nanos() {
+        return byOperation(OperationStatistics::p99Nanos);
+    }
+
+    @Override
+    public Map<String, Long> getMaxNanos() {
+        return byOperation(OperationStatistics::maxNanos);
+    }
+
+    private Map<String, Long> byOperation(ToLongFunction<OperationStatistics> attribute) {
+        Map<String, Long> values = new LinkedHashMap<>();
+        snapshot().forEach((operation, statistics) -> values.put(operation.name(), attribute.applyAsLong(statistics)));
+        return values;
+    }
+}
@@ -0,0 +1,31 @@
+package agenda;
+
+import java.util.Map;
+
+/**
+ * Description : the metrics of an agenda over JMX, every attribute giving one value per
+ * operation, keyed by the name of the operation
+ *
+ * @see AgendaMetrics#registerMBean(String)
+ */
+public interface AgendaMetricsMXBean {
+
+    Map<String, Long> getInvocations();
+
+    Map<String, Long> getScanned();
+
+    Map<String, Long> getMatched();
+
+    Map<String, Long> getMeanNanos();
+
+    Map<String, Long> getP50Nanos();
+
+    Map<String, Long> getP99Nanos();
+
+    Map<String, Long> getMaxNanos();
+
+    /**
+     * Forgets the activity recorded so far
+     */
+    void reset();
+}
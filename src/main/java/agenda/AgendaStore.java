@@ -0,0 +1,507 @@
+package agenda;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Description : an agenda persisted in a directory, as a snapshot and a write-ahead journal.
+ * <p>
+ * Every change ({@link #addEvent}, {@link #addException}, {@link #setTermination}) is
+ * appended to the journal and applied to the agenda, then the call waits until the journal
+ * is on disk. Concurrent changes share their fsync (group commit), so the cost of durability
+ * is paid once per batch rather than once per change.
+ * <p>
+ * When the journal grows beyond a threshold, a background thread compacts it : the state of
+ * the agenda is written to a new snapshot, and the journals that it contains are deleted.
+ * Snapshot and journal files are numbered by generation. The snapshot of generation g
+ * contains every change of the journals before g ; on opening, the latest snapshot is
+ * mapped in memory and loaded in bulk, then the journals from its generation on are
+ * replayed. A journal that ends with a torn or corrupted record (a crash during a write) is
+ * cut after its last valid record : the agenda is restored as it was after the last change
+ * whose call had returned, or later.
+ * <p>
+ * Events are designated by their position in {@link Agenda#getAllEvents()}. The agenda must
+ * only be read through {@link #read}, and only changed through this store.
+ */
+public class AgendaStore implements Closeable {
+
+    private static final long DEFAULT_COMPACTION_THRESHOLD = 64L << 20;
+
+    private static final int SNAPSHOT_MAGIC = 0x41475353; // "AGSS"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int SNAPSHOT_HEADER = 16;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final byte ADD_EVENT = 1;
+    private static final byte ADD_EXCEPTION = 2;
+    private static final byte TERMINATE_ON = 3;
+    private static final byte TERMINATE_AFTER = 4;
+
+    private static final String SNAPSHOT = "snapshot-";
+    private static final String JOURNAL = "journal-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String JOURNAL_SUFFIX = ".log";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final long compactionThreshold;
+    private final Agenda agenda;
+    // Les modifications et la rotation du journal prennent le verrou en écriture, les lectures en lecture
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock compaction = new ReentrantLock();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "agenda-compaction");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile boolean compactionScheduled;
+    private volatile IOException compactionFailure;
+    private Journal journal;
+    private long journalGeneration;
+    private long snapshotGeneration;
+
+    private AgendaStore(Path directory, long compactionThreshold, Agenda agenda,
+                        Journal journal, long journalGeneration, long snapshotGeneration) {
+        this.directory = directory;
+        this.compactionThreshold = compactionThreshold;
+        this.agenda = agenda;
+        this.journal = journal;
+        this.journalGeneration = journalGeneration;
+        this.snapshotGeneration = snapshotGeneration;
+    }
+
+    /**
+     * Opens a store, or creates an empty one
+     *
+     * @param directory the directory of the store, created if it does not exist
+     * @return the store
+     * @throws IOException if the store cannot be read
+     */
+    public static AgendaStore open(Path directory) throws IOException {
+        return open(directory, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * Opens a store, or creates an empty one
+     *
+     * @param directory the directory of the store, created if it does not exist
+     * @param compactionThreshold the size of the journal, in bytes, beyond which it is compacted
+     * @return the store
+     * @throws IOException if the store cannot be read
+     */
+    public static AgendaStore open(Path directory, long compactionThreshold) throws IOException {
+        Files.createDirectories(directory);
+        TreeMap<Long, Path> snapshots = new TreeMap<>();
+        TreeMap<Long, Path> journals = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMPORARY_SUFFIX)) {
+                    // Instantané interrompu par un arrêt brutal
+                    Files.delete(file);
+                } else if (name.startsWith(SNAPSHOT) && name.endsWith(SNAPSHOT_SUFFIX)) {
+                    snapshots.put(generationOf(name, SNAPSHOT, SNAPSHOT_SUFFIX), file);
+                } else if (name.startsWith(JOURNAL) && name.endsWith(JOURNAL_SUFFIX)) {
+                    journals.put(generationOf(name, JOURNAL, JOURNAL_SUFFIX), file);
+                }
+            }
+        }
+
+        long generation = snapshots.isEmpty() ? 0 : snapshots.lastKey();
+        // Restes d'une compaction interrompue après l'écriture de son instantané
+        for (Path obsolete : snapshots.headMap(generation).values()) {
+            Files.delete(obsolete);
+        }
+        for (Path obsolete : journals.headMap(generation).values()) {
+            Files.delete(obsolete);
+        }
+        Agenda agenda = snapshots.isEmpty() ? new Agenda()
+                : new AgendaLoader().addAll(readSnapshot(snapshots.lastEntry().getValue())).load();
+
+        Replay replay = new Replay(agenda);
+        long lastGeneration = generation;
+        long lastLength = 0;
+        boolean complete = true;
+        for (var entry : journals.tailMap(generation, true).entrySet()) {
+            if (!complete) {
+                // Les journaux suivants dépendent de la partie perdue : on ne garde que l'historique continu
+                Files.delete(entry.getValue());
+                continue;
+            }
+            long length = Journal.replay(entry.getValue(), replay);
+            replay.flush();
+            lastGeneration = entry.getKey();
+            lastLength = length;
+            complete = length == Files.size(entry.getValue());
+        }
+        Journal journal = Journal.open(journalFile(directory, lastGeneration), lastLength);
+        return new AgendaStore(directory, compactionThreshold, agenda, journal, lastGeneration, generation);
+    }
+
+    /**
+     * Reads the agenda, while no change is applied to it
+     *
+     * @param query the reading
+     * @return the result of the reading
+     */
+    public <T> T read(Function<Agenda, T> query) {
+        lock.readLock().lock();
+        try {
+            return query.apply(agenda);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds an event. The agenda receives a copy of the event : changing the event afterwards
+     * has no effect, use the methods of this store instead.
+     *
+     * @param e the event to add
+     * @return the position of the event in the agenda
+     * @throws IOException if the change cannot be made durable
+     */
+    public int addEvent(Event e) throws IOException {
+        byte[] event = EventCodec.encode(e);
+        byte[] record = new byte[1 + event.length];
+        record[0] = ADD_EVENT;
+        System.arraycopy(event, 0, record, 1, event.length);
+        Journal target;
+        long position;
+        int index;
+        lock.writeLock().lock();
+        try {
+            target = journal;
+            position = target.append(record);
+            index = agenda.getAllEvents().size();
+            agenda.addEvent(EventCodec.decode(ByteBuffer.wrap(event)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        commit(target, position);
+        return index;
+    }
+
+    /**
+     * Adds an exception to a repeating event, see {@link Event#addException}
+     *
+     * @param event the position of the event in the agenda
+     * @param date the day when the event does not occur
+     * @throws IOException if the change cannot be made durable
+     */
+    public void addException(int event, LocalDate date) throws IOException {
+        change(event, ADD_EXCEPTION, date.toEpochDay());
+    }
+
+    /**
+     * Terminates a repeating event on a given date, see {@link Event#setTermination(LocalDate)}
+     *
+     * @param event the position of the event in the agenda
+     * @param terminationInclusive the date of the last possible occurrence
+     * @throws IOException if the change cannot be made durable
+     */
+    public void setTermination(int event, LocalDate terminationInclusive) throws IOException {
+        change(event, TERMINATE_ON, terminationInclusive.toEpochDay());
+    }
+
+    /**
+     * Terminates a repeating event after a number of occurrences, see {@link Event#setTermination(long)}
+     *
+     * @param event the position of the event in the agenda
+     * @param numberOfOccurrences the number of occurrences
+     * @throws IOException if the change cannot be made durable
+     */
+    public void setTermination(int event, long numberOfOccurrences) throws IOException {
+        change(event, TERMINATE_AFTER, numberOfOccurrences);
+    }
+
+    private void change(int event, byte operation, long value) throws IOException {
+        byte[] record = ByteBuffer.allocate(1 + 4 + 8).put(operation).putInt(event).putLong(value).array();
+        Journal target;
+        long position;
+        lock.writeLock().lock();
+        try {
+            Event e = agenda.getAllEvents().get(event);
+            if (e.getRepetition() == null) {
+                return; // Sans effet sur un événement non répétitif, comme Event
+            }
+            target = journal;
+            position = target.append(record);
+            apply(e, operation, value);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        commit(target, position);
+    }
+
+    private static void apply(Event e, byte operation, long value) {
+        switch (operation) {
+            case ADD_EXCEPTION -> e.addException(LocalDate.ofEpochDay(value));
+            case TERMINATE_ON -> e.setTermination(LocalDate.ofEpochDay(value));
+            case TERMINATE_AFTER -> e.setTermination(value);
+            default -> throw new IllegalArgumentException("Unknown operation " + operation);
+        }
+    }
+
+    private void commit(Journal target, long position) throws IOException {
+        target.sync(position);
+        if (target.size() > compactionThreshold && !compactionScheduled) {
+            compactionScheduled = true;
+            try {
+                compactor.execute(() -> {
+                    try {
+                        compact();
+                    } catch (IOException e) {
+                        compactionFailure = e;
+                    } finally {
+                        compactionScheduled = false;
+                    }
+                });
+            } catch (RejectedExecutionException closed) {
+                compactionScheduled = false;
+            }
+        }
+    }
+
+    /**
+     * Writes the state of the agenda to a new snapshot, and deletes the journals that it
+     * contains. Changes can go on meanwhile : they are written to a new journal.
+     *
+     * @throws IOException if the snapshot cannot be written ; the store remains usable
+     */
+    public void compact() throws IOException {
+        compaction.lock();
+        try {
+            Journal previous;
+            byte[][] events;
+            long next;
+            lock.writeLock().lock();
+            try {
+                // Le journal clos doit être complet sur le disque avant que le suivant reçoive
+                // quoi que ce soit : sinon une reprise pourrait rejouer le suivant sans lui
+                previous = journal;
+                previous.syncAll();
+                next = journalGeneration + 1;
+                journal = Journal.open(journalFile(directory, next), 0);
+                journalGeneration = next;
+                List<Event> all = agenda.getAllEvents();
+                events = new byte[all.size()][];
+                for (int i = 0; i < events.length; i++) {
+                    events[i] = EventCodec.encode(all.get(i));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            previous.close();
+            writeSnapshot(directory, next, events);
+            long obsolete = snapshotGeneration;
+            snapshotGeneration = next;
+            for (long g = obsolete; g < next; g++) {
+                Files.deleteIfExists(snapshotFile(directory, g));
+                Files.deleteIfExists(journalFile(directory, g));
+            }
+        } finally {
+            compaction.unlock();
+        }
+    }
+
+    /**
+     * @return the number of fsync calls of the current journal, for tests
+     */
+    long journalSyncs() {
+        lock.readLock().lock();
+        try {
+            return journal.syncCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the size of the current journal, for tests
+     */
+    long journalSize() {
+        lock.readLock().lock();
+        try {
+            return journal.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Waits for the background compaction, then closes the journal
+     *
+     * @throws IOException if the journal cannot be written, or if a background compaction failed
+     */
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.writeLock().lock();
+        try {
+            journal.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (compactionFailure != null) {
+            throw compactionFailure;
+        }
+    }
+
+    // --- Fichiers ---
+
+    private static Path snapshotFile(Path directory, long generation) {
+        return directory.resolve(SNAPSHOT + "%019d".formatted(generation) + SNAPSHOT_SUFFIX);
+    }
+
+    private static Path journalFile(Path directory, long generation) {
+        return directory.resolve(JOURNAL + "%019d".formatted(generation) + JOURNAL_SUFFIX);
+    }
+
+    private static long generationOf(String name, String prefix, String suffix) throws IOException {
+        try {
+            return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+        } catch (NumberFormatException e) {
+            throw new IOException("Unexpected file " + name, e);
+        }
+    }
+
+    /**
+     * Writes a snapshot to a temporary file, forces it to disk, then renames it : a snapshot
+     * is either complete or absent
+     */
+    private static void writeSnapshot(Path directory, long generation, byte[][] events) throws IOException {
+        Path target = snapshotFile(directory, generation);
+        Path temporary = target.resolveSibling(target.getFileName() + TEMPORARY_SUFFIX);
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putLong(events.length);
+            for (byte[] event : events) {
+                if (buffer.remaining() < EventCodec.FRAME_HEADER + event.length) {
+                    write(out, buffer);
+                }
+                if (buffer.remaining() < EventCodec.FRAME_HEADER + event.length) {
+                    buffer = ByteBuffer.allocate(EventCodec.FRAME_HEADER + event.length);
+                }
+                EventCodec.frame(buffer, event);
+            }
+            write(out, buffer);
+            out.force(true);
+        }
+        try {
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        // Le renommage lui-même doit survivre à un arrêt brutal (sans effet sur certains systèmes)
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException unsupported) {
+            // Répertoires non ouvrables sur ce système
+        }
+    }
+
+    private static void write(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Maps a snapshot in memory and decodes its events
+     */
+    private static List<Event> readSnapshot(Path file) throws IOException {
+        MappedFile mapped = MappedFile.map(file, MappedFile.DEFAULT_CHUNK_BITS);
+        if (mapped.size() < SNAPSHOT_HEADER || mapped.getInt(0) != SNAPSHOT_MAGIC) {
+            throw new IOException("Not an agenda snapshot : " + file);
+        }
+        if (mapped.getInt(4) != SNAPSHOT_VERSION) {
+            throw new IOException("Unsupported snapshot version " + mapped.getInt(4) + " : " + file);
+        }
+        long count = mapped.getLong(8);
+        List<Event> events = new ArrayList<>((int) Math.min(count, Integer.MAX_VALUE - 8));
+        long position = SNAPSHOT_HEADER;
+        for (long i = 0; i < count; i++) {
+            if (position + EventCodec.FRAME_HEADER > mapped.size()) {
+                throw new IOException("Truncated snapshot : " + file);
+            }
+            int length = mapped.getInt(position);
+            int crc = mapped.getInt(position + 4);
+            if (length <= 0 || length > mapped.size() - position - EventCodec.FRAME_HEADER) {
+                throw new IOException("Truncated snapshot : " + file);
+            }
+            byte[] content = mapped.getBytes(position + EventCodec.FRAME_HEADER, length);
+            if (EventCodec.checksum(content, 0, length) != crc) {
+                throw new IOException("Corrupted snapshot : " + file);
+            }
+            try {
+                events.add(EventCodec.decode(ByteBuffer.wrap(content)));
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupted snapshot : " + file, e);
+            }
+            position += EventCodec.FRAME_HEADER + length;
+        }
+        return events;
+    }
+
+    /**
+     * Replays the records of the journals : consecutive additions are inserted in bulk
+     */
+    private static final class Replay implements Consumer<ByteBuffer> {
+        private final Agenda agenda;
+        private final List<Event> added = new ArrayList<>();
+
+        Replay(Agenda agenda) {
+            this.agenda = agenda;
+        }
+
+        @Override
+        public void accept(ByteBuffer record) {
+            byte operation = record.get();
+            if (operation == ADD_EVENT) {
+                added.add(EventCodec.decode(record));
+                return;
+            }
+            int event = record.getInt();
+            long value = record.getLong();
+            flush();
+            Event e = agenda.getAllEvents().get(event);
+            apply(e, operation, value);
+        }
+
+        void flush() {
+            if (!added.isEmpty()) {
+                agenda.addAll(added);
+                added.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package agenda;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Description : an asynchronous facade of an {@link Agenda}, whose queries return
+ * {@link CompletableFuture}s instead of blocking the calling thread.
+ * <p>
+ * Every query runs as a task of its own, on a virtual thread per task when the JDK has them
+ * (Java 21 and later, see {@link VirtualThreads}), and otherwise on a pool of daemon threads
+ * bounded by the number of processors. Queries run concurrently under a read lock,
+ * modifications under the write lock ; an agenda with a day cache or compiled days updates
+ * them while it answers, so its queries take the write lock too. Modifications run one
+ * after the other, in the order they were made.
+ * <p>
+ * Concurrent {@link #eventsInDay} queries for the same day are merged : a query that
+ * arrives while the same day is being evaluated waits for that evaluation instead of
+ * starting another one. A modification through this facade ends the merging with the
+ * evaluations in progress.
+ * <p>
+ * The agenda must only be modified through this facade.
+ */
+public final class AsyncAgenda implements AutoCloseable {
+
+    private final Agenda agenda;
+    private final Executor executor;
+    private final ExecutorService owned;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Évaluations en cours, par jour, que les requêtes identiques rejoignent
+    private final ConcurrentMap<LocalDate, CompletableFuture<List<Event>>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder dayEvaluations = new LongAdder();
+
+    // Dernière modification demandée : la suivante ne commence qu'une fois celle-ci terminée
+    private CompletableFuture<Void> lastWrite = CompletableFuture.completedFuture(null);
+
+    /**
+     * @param agenda the agenda to query, on a virtual thread per task when possible
+     */
+    public AsyncAgenda(Agenda agenda) {
+        this.agenda = agenda;
+        this.owned = VirtualThreads.newExecutor();
+        this.executor = owned;
+    }
+
+    /**
+     * @param agenda the agenda to query
+     * @param executor the threads of the queries, not shut down by {@link #close()}
+     */
+    public AsyncAgenda(Agenda agenda, Executor executor) {
+        this.agenda = agenda;
+        this.executor = executor;
+        this.owned = null;
+    }
+
+    /**
+     * @param day the day to test
+     * @return the events that occur on that day, in insertion order
+     * @see Agenda#eventsInDay(LocalDate)
+     */
+    public CompletableFuture<List<Event>> eventsInDay(LocalDate day) {
+        CompletableFuture<List<Event>> evaluation = inFlight.computeIfAbsent(day, d -> {
+            dayEvaluations.increment();
+            return query(() -> agenda.eventsInDay(d));
+        });
+        // Le calcul est retiré une fois terminé : les requêtes suivantes recalculent
+        evaluation.whenComplete((events, failure) -> inFlight.remove(day, evaluation));
+        // Chaque requête reçoit sa propre liste
+        return evaluation.thenApply(ArrayList::new);
+    }
+
+    /**
+     * @param from the start of the window (inclusive)
+     * @param to the end of the window (exclusive)
+     * @return the occurrences that overlap [from, to[, non repeating events first
+     * @see Agenda#eventsBetween(LocalDateTime, LocalDateTime)
+     */
+    public CompletableFuture<List<Occurrence>> eventsBetween(LocalDateTime from, LocalDateTime to) {
+        // Le flux est consommé sous le verrou : l'agenda ne doit pas changer pendant ce temps
+        return query(() -> agenda.eventsBetween(from, to).toList());
+    }
+
+    /**
+     * @param title the title to search for
+     * @return the events with the same title, in insertion order
+     * @see Agenda#findByTitle(String)
+     */
+    public CompletableFuture<List<Event>> findByTitle(String title) {
+        return query(() -> agenda.findByTitle(title));
+    }
+
+    /**
+     * @param e the event to test, repeating or not
+     * @return true if there is room in the agenda for this event
+     * @see Agenda#isFreeFor(Event)
+     */
+    public CompletableFuture<Boolean> isFreeFor(Event e) {
+        return query(() -> agenda.isFreeFor(e));
+    }
+
+    /**
+     * Adds an event to the agenda, after the modifications made before through this facade
+     * even if they are not complete yet. The queries made once the returned future is
+     * complete see the event.
+     *
+     * @param e the event to add
+     * @return a future completed once the event has been added
+     * @see Agenda#addEvent(Event)
+     */
+    public CompletableFuture<Void> addEvent(Event e) {
+        return write(() -> agenda.addEvent(e));
+    }
+
+    /**
+     * Stops the threads of this facade, once the queries in progress are complete. The
+     * threads of an executor given to the constructor are not stopped.
+     */
+    @Override
+    public void close() {
+        if (owned != null) {
+            owned.shutdown();
+        }
+    }
+
+    /**
+     * @return the number of evaluations of {@link #eventsInDay} so far, merged queries counting once
+     */
+    long dayEvaluations() {
+        return dayEvaluations.sum();
+    }
+
+    /**
+     * @return true if the threads of this facade are virtual threads
+     */
+    static boolean virtualThreadsAvailable() {
+        return VirtualThreads.available();
+    }
+
+    private <T> CompletableFuture<T> query(Supplier<T> query) {
+        return CompletableFuture.supplyAsync(() -> {
+            Lock held = agenda.updatesOnQueries() ? lock.writeLock() : lock.readLock();
+            held.lock();
+            try {
+                return query.get();
+            } finally {
+                held.unlock();
+            }
+        }, executor);
+    }
+
+    private synchronized CompletableFuture<Void> write(Runnable modification) {
+        // L'échec d'une modification n'empêche pas les suivantes
+        lastWrite = lastWrite.exceptionally(failure -> null).thenRunAsync(() -> {
+            lock.writeLock().lock();
+            try {
+                modification.run();
+                inFlight.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }, executor);
+        return lastWrite;
+    }
+}
@@ -0,0 +1,21 @@
+package agenda;
+
+/**
+ * Description : the activity of a cache since it was created
+ *
+ * @param hits the number of lookups answered by the cache
+ * @param misses the number of lookups that had to be computed
+ * @param evictions the number of entries removed to make room for new ones
+ * @param invalidations the number of entries removed because they were no longer valid
+ * @param size the current number of entries
+ */
+public record CacheStatistics(long hits, long misses, long evictions, long invalidations, int size) {
+
+    /**
+     * @return the proportion of lookups answered by the cache, 0 if there was none
+     */
+    public double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+}
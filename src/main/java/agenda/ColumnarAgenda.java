@@ -0,0 +1,427 @@
+package agenda;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Description : an agenda that stores its events in primitive columns.
+ * <p>
+ * Every event is a row : its start (epoch seconds, UTC), its duration (seconds), its
+ * frequency and its termination (epoch day of the last possible occurrence) are kept in
+ * {@code long[]} and {@code byte[]} columns, and its title is an index in a dictionary of
+ * titles. A row costs about 30 bytes, instead of half a dozen objects for an {@link Event}.
+ * The rare exceptions, and the sub-second parts of starts and durations, are kept aside.
+ * <p>
+ * {@link #eventsInDay(LocalDate)} and {@link #isFreeFor(Event)} scan the columns with the
+ * recurrence arithmetic of {@link Recurrences}, and only build {@link Event} objects for the
+ * rows they return. Those events are flyweights : copies rebuilt from the columns, which
+ * share their title with the dictionary. Modifying them, or modifying an event after it
+ * has been added, does not change the agenda.
+ */
+public class ColumnarAgenda {
+
+    private static final long SECONDS_PER_DAY = 86_400;
+    private static final long NANOS_PER_SECOND = 1_000_000_000;
+    private static final long NO_TERMINATION = Long.MAX_VALUE;
+    private static final ChronoUnit[] UNITS = ChronoUnit.values();
+
+    // Colonnes, une case par événement dans [0, size[
+    private long[] startSeconds = new long[16];
+    private long[] durationSeconds = new long[16];
+    private byte[] frequencies = new byte[16];   // 0 : pas de répétition, sinon ordinal de l'unité + 1
+    private long[] terminationDays = new long[16];
+    private int[] titleIds = new int[16];
+    private int size;
+
+    // Dictionnaire des titres
+    private final Map<String, Integer> titleDictionary = new HashMap<>();
+    private final List<String> titles = new ArrayList<>();
+
+    // Données rares, hors colonnes
+    private final Map<Integer, long[]> exceptions = new HashMap<>();
+    private final Map<Integer, int[]> nanos = new HashMap<>(); // {nanos du début, nanos de la durée}
+    private final BitSet subSecond = new BitSet();
+    // Séries terminées après un nombre d'occurrences nul ou négatif : ce nombre
+    private final Map<Integer, Integer> noOccurrence = new HashMap<>();
+    // Séries d'unité horaire (heures, minutes...), que l'arithmétique sur les jours ne traite pas
+    private final BitSet timeBased = new BitSet();
+
+    // Parcours parallèle des colonnes (optionnel)
+    private ParallelScan parallelScan;
+
+    private final ConflictDetector conflictDetector = new ConflictDetector(this::occurrencesAround,
+            this::oneOffsFacing, this::repeatingFacing);
+
+    /**
+     * Adds an event to this agenda : its current state is copied into the columns
+     *
+     * @param e the event to add
+     */
+    public void addEvent(Event e) {
+        ensureCapacity(size + 1);
+        int row = size++;
+        LocalDateTime start = e.getStart();
+        Duration duration = e.getDuration();
+        startSeconds[row] = start.toEpochSecond(ZoneOffset.UTC);
+        durationSeconds[row] = duration.getSeconds();
+        titleIds[row] = titleDictionary.computeIfAbsent(e.getTitle(), t -> {
+            titles.add(t);
+            return titles.size() - 1;
+        });
+        if (start.getNano() != 0 || duration.getNano() != 0) {
+            nanos.put(row, new int[]{start.getNano(), duration.getNano()});
+            subSecond.set(row);
+        }
+
+        Repetition repetition = e.getRepetition();
+        terminationDays[row] = NO_TERMINATION;
+        if (repetition == null) {
+            frequencies[row] = 0;
+            return;
+        }
+        ChronoUnit unit = repetition.getFrequency();
+        frequencies[row] = (byte) (unit.ordinal() + 1);
+        if (!unit.isDateBased()) {
+            timeBased.set(row);
+        }
+        if (repetition.getExceptions().size() > 0) {
+            exceptions.put(row, repetition.exceptionDays());
+        }
+        Termination termination = repetition.getTermination();
+        if (termination != null) {
+            // Les deux formes de terminaison se ramènent au jour de la dernière occurrence possible,
+            // sauf un nombre d'occurrences nul, dont la date de terminaison est le début
+            long terminationDay = termination.getTerminationDateInclusive().toEpochDay();
+            if (termination.getNumberOfOccurrences() <= 0 && terminationDay >= startDay(row)) {
+                noOccurrence.put(row, termination.getNumberOfOccurrences());
+                terminationDay = startDay(row) - 1;
+            }
+            terminationDays[row] = terminationDay;
+        }
+    }
+
+    /**
+     * Adds many events to this agenda, in this order
+     *
+     * @param added the events to add
+     */
+    public void addAll(Collection<Event> added) {
+        ensureCapacity(size + added.size());
+        added.forEach(this::addEvent);
+    }
+
+    /**
+     * @return the number of events in this agenda
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Rebuilds an event from the columns
+     *
+     * @param index the index of the event, in insertion order
+     * @return a new event, equivalent to the event that was added
+     * @throws IndexOutOfBoundsException if there is no such event
+     */
+    public Event getEvent(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        int[] parts = nanos.getOrDefault(index, NO_NANOS);
+        Event e = new Event(titles.get(titleIds[index]),
+                LocalDateTime.ofEpochSecond(startSeconds[index], parts[0], ZoneOffset.UTC),
+                Duration.ofSeconds(durationSeconds[index], parts[1]));
+        if (frequencies[index] == 0) {
+            return e;
+        }
+        ChronoUnit unit = UNITS[frequencies[index] - 1];
+        e.setRepetition(unit);
+        long[] days = exceptions.get(index);
+        if (days != null) {
+            List<LocalDate> dates = new ArrayList<>(days.length);
+            for (long day : days) {
+                dates.add(LocalDate.ofEpochDay(day));
+            }
+            e.getRepetition().addExceptions(dates);
+        }
+        long terminationDay = terminationDays[index];
+        if (terminationDay != NO_TERMINATION) {
+            if (noOccurrence.containsKey(index)) {
+                e.setTermination(noOccurrence.get(index));
+            } else {
+                e.setTermination(LocalDate.ofEpochDay(terminationDay));
+            }
+        }
+        return e;
+    }
+
+    /**
+     * @return a read-only view of the events of this agenda, in insertion order, whose
+     * elements are rebuilt on every access
+     */
+    public List<Event> getAllEvents() {
+        return new EventsView();
+    }
+
+    /**
+     * Computes the events that occur on a given day, with the same rules as
+     * {@link Event#isInDay(LocalDate)}
+     *
+     * @param day the day to test
+     * @return a list of events that occur on that day, in insertion order
+     */
+    public List<Event> eventsInDay(LocalDate day) {
+        long epochDay = day.toEpochDay();
+        if (parallelScan != null) {
+            return rowEvents(parallelScan.matching(size, row -> isInDay(row, epochDay)));
+        }
+        List<Event> found = new ArrayList<>();
+        for (int row = 0; row < size; row++) {
+            if (isInDay(row, epochDay)) {
+                found.add(getEvent(row));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds the events of this agenda with a given title
+     *
+     * @param title the title to search for
+     * @return the events with the same title, in insertion order
+     */
+    public List<Event> findByTitle(String title) {
+        List<Event> found = new ArrayList<>();
+        Integer id = titleDictionary.get(title);
+        if (id == null) {
+            return found;
+        }
+        if (parallelScan != null) {
+            int titleId = id;
+            return rowEvents(parallelScan.matching(size, row -> titleIds[row] == titleId));
+        }
+        for (int row = 0; row < size; row++) {
+            if (titleIds[row] == id) {
+                found.add(getEvent(row));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Lets {@link #eventsInDay} and {@link #findByTitle} scan the columns on several threads,
+     * each one scanning chunks of consecutive rows, when this agenda has more events than
+     * {@link #setParallelQueries(ForkJoinPool, int) a threshold}. Results are still returned
+     * in insertion order.
+     *
+     * @param pool the threads of the parallel queries, null to query sequentially (the default)
+     */
+    public void setParallelQueries(ForkJoinPool pool) {
+        setParallelQueries(pool, ParallelScan.DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Lets {@link #eventsInDay} and {@link #findByTitle} scan the columns on several threads
+     *
+     * @param pool the threads of the parallel queries, null to query sequentially (the default)
+     * @param threshold the number of events below which queries stay sequential
+     */
+    public void setParallelQueries(ForkJoinPool pool, int threshold) {
+        parallelScan = pool == null ? null : new ParallelScan(pool, threshold);
+    }
+
+    private List<Event> rowEvents(int[] rows) {
+        List<Event> found = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            found.add(getEvent(row));
+        }
+        return found;
+    }
+
+    /**
+     * Tests if there is room in this agenda for an event. Unlike {@link Agenda}, this agenda
+     * does not keep its events : if {@code e} has been added, it conflicts with its own copy.
+     *
+     * @param e the event to test, repeating or not
+     * @return true if no occurrence of this agenda overlaps an occurrence of {@code e}
+     * @see Agenda#isFreeFor(Event)
+     */
+    public boolean isFreeFor(Event e) {
+        return conflictsWith(e).findAny().isEmpty();
+    }
+
+    /**
+     * Finds the occurrences of this agenda that take place at the same time as an occurrence
+     * of a given event
+     *
+     * @param e the event to test, repeating or not
+     * @return the conflicts, the occurrence of {@code e} first
+     * @see Agenda#conflictsWith(Event)
+     */
+    public Stream<Conflict> conflictsWith(Event e) {
+        return conflictDetector.conflictsWith(e);
+    }
+
+    // --- Arithmétique sur les colonnes ---
+
+    private static final int[] NO_NANOS = {0, 0};
+
+    private long startDay(int row) {
+        return Math.floorDiv(startSeconds[row], SECONDS_PER_DAY);
+    }
+
+    /**
+     * @return the epoch second of the end of the first occurrence, rounded down
+     */
+    private long endFloorSecond(int row) {
+        long end = startSeconds[row] + durationSeconds[row];
+        if (subSecond.get(row)) {
+            int[] parts = nanos.get(row);
+            end += ((long) parts[0] + parts[1]) / NANOS_PER_SECOND;
+        }
+        return end;
+    }
+
+    /**
+     * @return the epoch second of the end of the first occurrence, rounded up
+     */
+    private long endSecond(int row) {
+        long end = startSeconds[row] + durationSeconds[row];
+        if (subSecond.get(row)) {
+            int[] parts = nanos.get(row);
+            long nano = (long) parts[0] + parts[1];
+            end += nano / NANOS_PER_SECOND + (nano % NANOS_PER_SECOND == 0 ? 0 : 1);
+        }
+        return end;
+    }
+
+    private boolean isException(int row, long day) {
+        long[] days = exceptions.isEmpty() ? null : exceptions.get(row);
+        return days != null && Arrays.binarySearch(days, day) >= 0;
+    }
+
+    private boolean isInDay(int row, long day) {
+        if (timeBased.get(row)) {
+            return getEvent(row).isInDay(LocalDate.ofEpochDay(day));
+        }
+        long startDay = startDay(row);
+        // Même débordement que Event : jusqu'au jour qui contient la fin de l'occurrence
+        long spanDays = Math.floorDiv(endFloorSecond(row), SECONDS_PER_DAY) - startDay;
+        if (frequencies[row] == 0) {
+            return day >= startDay && day <= startDay + spanDays;
+        }
+        return Recurrences.occursOn(startDay, UNITS[frequencies[row] - 1], spanDays, terminationDays[row],
+                d -> isException(row, d), day);
+    }
+
+    /**
+     * Tests, on the columns only, if an occurrence of a row may overlap [from, to[ : the test
+     * is exact for whole seconds, and conservative for fractions of seconds and time based series
+     */
+    private boolean mayOverlap(int row, long from, long to) {
+        if (frequencies[row] == 0) {
+            return startSeconds[row] < to && endSecond(row) > from;
+        }
+        if (timeBased.get(row)) {
+            return true;
+        }
+        return Recurrences.overlaps(startSeconds[row], endSecond(row) - startSeconds[row], UNITS[frequencies[row] - 1],
+                terminationDays[row], d -> isException(row, d), from, to);
+    }
+
+    private Stream<Occurrence> occurrencesAround(LocalDateTime from, LocalDateTime to) {
+        long fromSecond = Agenda.floorSecond(from);
+        long toSecond = Agenda.ceilSecond(to);
+        List<Event> candidates = new ArrayList<>();
+        for (int row = 0; row < size; row++) {
+            if (mayOverlap(row, fromSecond, toSecond)) {
+                candidates.add(getEvent(row));
+            }
+        }
+        return candidates.stream().flatMap(e -> StreamSupport.stream(e.occurrences(from, to), false));
+    }
+
+    /**
+     * Finds, on the columns, the non repeating events that may overlap an occurrence of a
+     * repeating event : only those rows are rebuilt, in chronological order
+     */
+    private Iterator<Occurrence> oneOffsFacing(Event candidate) {
+        Recurrences.Series series = Recurrences.Series.of(candidate);
+        return IntStream.range(0, size)
+                .filter(row -> frequencies[row] == 0
+                        && (series == null || series.overlaps(startSeconds[row], endSecond(row))))
+                .boxed()
+                .sorted(Comparator.comparingLong((Integer row) -> startSeconds[row])
+                        .thenComparingInt(row -> nanos.getOrDefault(row, NO_NANOS)[0]))
+                .map(this::getEvent)
+                .map(e -> new Occurrence(e, e.getStart(), e.getStart().plus(e.getDuration())))
+                .iterator();
+    }
+
+    /**
+     * Finds, on the columns, the repeating events that may overlap an occurrence of a
+     * repeating event : only those rows are rebuilt
+     */
+    private List<Event> repeatingFacing(Event candidate) {
+        Recurrences.Series series = Recurrences.Series.of(candidate);
+        List<Event> facing = new ArrayList<>();
+        for (int row = 0; row < size; row++) {
+            if (frequencies[row] != 0
+                    && (series == null || timeBased.get(row) || Recurrences.overlaps(series, series(row)))) {
+                facing.add(getEvent(row));
+            }
+        }
+        return facing;
+    }
+
+    private Recurrences.Series series(int row) {
+        long[] days = exceptions.isEmpty() ? null : exceptions.get(row);
+        return new Recurrences.Series(startSeconds[row], endSecond(row) - startSeconds[row],
+                UNITS[frequencies[row] - 1], terminationDays[row], d -> isException(row, d),
+                days == null ? Long.MIN_VALUE : days[days.length - 1]);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= startSeconds.length) {
+            return;
+        }
+        int length = Math.max(capacity, startSeconds.length * 2);
+        startSeconds = Arrays.copyOf(startSeconds, length);
+        durationSeconds = Arrays.copyOf(durationSeconds, length);
+        frequencies = Arrays.copyOf(frequencies, length);
+        terminationDays = Arrays.copyOf(terminationDays, length);
+        titleIds = Arrays.copyOf(titleIds, length);
+    }
+
+    private final class EventsView extends AbstractList<Event> implements RandomAccess {
+
+        @Override
+        public Event get(int index) {
+            return getEvent(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
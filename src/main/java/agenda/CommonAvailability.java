@@ -0,0 +1,188 @@
+package agenda;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Description : the slots when every agenda of a group is free, e.g. the agendas of the
+ * members of a team.
+ * <p>
+ * The window is read block by block. For each block, the busy intervals of every agenda
+ * (its occurrences, repeating events included, merged when they overlap) are computed in
+ * parallel, one agenda per task ; they are then merged in chronological order with a heap
+ * of the k sequences, and swept once for the gaps. The queries that only want the first
+ * slots start with a week and double the block each time, so that they stop expanding the
+ * agendas soon after they have found enough slots.
+ * <p>
+ * The agendas must not be modified during a query.
+ */
+public final class CommonAvailability {
+
+    // Premier bloc des recherches limitées, doublé ensuite jusqu'au maximum
+    private static final int FIRST_BLOCK_DAYS = 7;
+    private static final int MAX_BLOCK_DAYS = 1 << 12;
+
+    private final List<Agenda> agendas;
+
+    /**
+     * @param agendas the agendas of the group
+     */
+    public CommonAvailability(Collection<Agenda> agendas) {
+        this.agendas = List.copyOf(agendas);
+    }
+
+    /**
+     * Finds the slots when no agenda of the group has an occurrence
+     *
+     * @param from the start of the window (inclusive)
+     * @param to the end of the window (exclusive)
+     * @param minDuration the minimal length of a slot
+     * @return the common free slots of at least {@code minDuration}, in chronological order
+     * @see Agenda#findFreeSlots(LocalDateTime, LocalDateTime, Duration)
+     */
+    public List<TimeSlot> findFreeSlots(LocalDateTime from, LocalDateTime to, Duration minDuration) {
+        return findFreeSlots(from, to, minDuration, null);
+    }
+
+    /**
+     * Finds the slots when no agenda of the group has an occurrence, during working hours only
+     *
+     * @param from the start of the window (inclusive)
+     * @param to the end of the window (exclusive)
+     * @param minDuration the minimal length of a slot
+     * @param hours the hours when a slot can take place, null for any time
+     * @return the common free slots of at least {@code minDuration}, in chronological order
+     * @see Agenda#findFreeSlots(LocalDateTime, LocalDateTime, Duration, WorkingHours)
+     */
+    public List<TimeSlot> findFreeSlots(LocalDateTime from, LocalDateTime to, Duration minDuration, WorkingHours hours) {
+        return slots(from, to, minDuration, hours, false).toList();
+    }
+
+    /**
+     * Finds the first slots when no agenda of the group has an occurrence : the agendas are
+     * only expanded a little past the last slot returned
+     *
+     * @param from the start of the window (inclusive)
+     * @param to the end of the window (exclusive)
+     * @param minDuration the minimal length of a slot
+     * @param hours the hours when a slot can take place, null for any time
+     * @param count the maximal number of slots
+     * @return the first {@code count} common free slots of at least {@code minDuration}, in
+     * chronological order
+     */
+    public List<TimeSlot> findFirstSlots(LocalDateTime from, LocalDateTime to, Duration minDuration, WorkingHours hours, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("The number of slots cannot be negative : " + count);
+        }
+        return slots(from, to, minDuration, hours, true).limit(count).toList();
+    }
+
+    private Stream<TimeSlot> slots(LocalDateTime from, LocalDateTime to, Duration minDuration, WorkingHours hours, boolean growing) {
+        return StreamSupport.stream(new FreeSlots(new MergedBusy(from, to, growing), from, to, minDuration, hours), false);
+    }
+
+    /**
+     * @return the busy intervals of an agenda inside a block, disjoint and in chronological order
+     */
+    private static List<TimeSlot> busy(Agenda agenda, LocalDateTime from, LocalDateTime to) {
+        List<TimeSlot> merged = new ArrayList<>();
+        Iterator<TimeSlot> occurrences = FreeSlots.busy(agenda.chronologicalOccurrences(from, to));
+        TimeSlot current = null;
+        while (occurrences.hasNext()) {
+            TimeSlot next = occurrences.next();
+            if (current == null) {
+                current = next;
+            } else if (next.start().isAfter(current.end())) {
+                merged.add(current);
+                current = next;
+            } else if (next.end().isAfter(current.end())) {
+                current = new TimeSlot(current.start(), next.end());
+            }
+        }
+        if (current != null) {
+            merged.add(current);
+        }
+        return merged;
+    }
+
+    /**
+     * The busy intervals of all the agendas, block after block, each block merged in
+     * chronological order. The intervals that overlap two blocks come twice, which the sweep
+     * of {@link FreeSlots} tolerates.
+     */
+    private final class MergedBusy implements Iterator<TimeSlot> {
+        private final LocalDateTime to;
+        private final boolean growing;
+        private LocalDateTime blockStart;
+        private long blockDays = FIRST_BLOCK_DAYS;
+        private final PriorityQueue<Sequence> heads = new PriorityQueue<>(
+                Comparator.comparing(Sequence::head, Comparator.comparing(TimeSlot::start)));
+
+        MergedBusy(LocalDateTime from, LocalDateTime to, boolean growing) {
+            this.blockStart = from;
+            this.to = to;
+            this.growing = growing;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (heads.isEmpty() && blockStart.isBefore(to)) {
+                LocalDateTime blockEnd = growing && blockStart.plusDays(blockDays).isBefore(to)
+                        ? blockStart.plusDays(blockDays) : to;
+                LocalDateTime start = blockStart;
+                // Une tâche par agenda : chaque agenda n'est lu que par un fil
+                agendas.parallelStream()
+                        .map(agenda -> busy(agenda, start, blockEnd))
+                        .filter(intervals -> !intervals.isEmpty())
+                        .map(Sequence::new)
+                        .toList()
+                        .forEach(heads::add);
+                blockStart = blockEnd;
+                blockDays = Math.min(2 * blockDays, MAX_BLOCK_DAYS);
+            }
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public TimeSlot next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Sequence first = heads.poll();
+            TimeSlot interval = first.head();
+            if (first.advance()) {
+                heads.add(first);
+            }
+            return interval;
+        }
+    }
+
+    /**
+     * The intervals of one agenda not merged yet
+     */
+    private static final class Sequence {
+        private final List<TimeSlot> intervals;
+        private int next;
+
+        Sequence(List<TimeSlot> intervals) {
+            this.intervals = intervals;
+        }
+
+        TimeSlot head() {
+            return intervals.get(next);
+        }
+
+        boolean advance() {
+            return ++next < intervals.size();
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package agenda;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Description : an agenda that can be shared between threads.
+ * <p>
+ * Events are striped by the month of their start : each stripe is an append-only array
+ * guarded by its own {@link StampedLock}, so writers of different months never contend,
+ * and readers take no lock at all (they read the published array optimistically and only
+ * fall back to a read lock if a writer interfered). A day query only visits the stripes
+ * of the months that can contain an event overlapping that day. Titles are indexed in a
+ * concurrent skip list.
+ * <p>
+ * Every event receives a sequence number on insertion ; results are returned in that order.
+ * Events must not be modified once they have been added.
+ */
+public class ConcurrentAgenda {
+
+    /**
+     * The events that start in a given month, in insertion order
+     */
+    private static final class Stripe {
+        private final StampedLock lock = new StampedLock();
+        private Event[] events = new Event[8];
+        private long[] sequences = new long[8];
+        private int size;
+
+        void add(Event e, long sequence) {
+            long stamp = lock.writeLock();
+            try {
+                if (size == events.length) {
+                    // Nouveaux tableaux : les lecteurs en cours gardent les anciens, qui restent valides
+                    events = Arrays.copyOf(events, size * 2);
+                    sequences = Arrays.copyOf(sequences, size * 2);
+                }
+                events[size] = e;
+                sequences[size] = sequence;
+                size++;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Visits the events of this stripe without locking : the cells below the published
+         * size are never written again.
+         */
+        void forEach(ObjLongConsumer<Event> action) {
+            long stamp = lock.tryOptimisticRead();
+            Event[] e = events;
+            long[] s = sequences;
+            int n = size;
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    e = events;
+                    s = sequences;
+                    n = size;
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                action.accept(e[i], s[i]);
+            }
+        }
+    }
+
+    private record Sequenced(Event event, long sequence) {
+    }
+
+    private final ConcurrentSkipListMap<YearMonth, Stripe> oneOffStripes = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<YearMonth, Stripe> repeatingStripes = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, ConcurrentLinkedQueue<Sequenced>> titles = new ConcurrentSkipListMap<>();
+
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final LongAdder size = new LongAdder();
+    // Nombre maximal de jours sur lesquels s'étend un événement non répétitif
+    private final AtomicLong longestSpanDays = new AtomicLong();
+    // Fin la plus tardive d'un événement non répétitif (secondes depuis l'epoch, UTC)
+    private final AtomicLong latestOneOffEnd = new AtomicLong(Long.MIN_VALUE);
+
+    private final ConflictDetector conflictDetector = new ConflictDetector(this::occurrencesAround,
+            this::oneOffsAround, this::repeatingEvents,
+            () -> latestOneOffEnd.get() == Long.MIN_VALUE ? null
+                    : LocalDateTime.ofEpochSecond(latestOneOffEnd.get(), 0, ZoneOffset.UTC));
+
+    /**
+     * Adds an event to this agenda
+     *
+     * @param e the event to add
+     */
+    public void addEvent(Event e) {
+        long sequence = nextSequence.getAndIncrement();
+        YearMonth month = YearMonth.from(e.getStart());
+        if (e.getRepetition() == null) {
+            LocalDateTime end = e.getStart().plus(e.getDuration());
+            // Publié avant l'événement : un lecteur ne peut pas manquer la bande qui le contient
+            longestSpanDays.accumulateAndGet(end.toLocalDate().toEpochDay() - e.getStart().toLocalDate().toEpochDay(), Math::max);
+            latestOneOffEnd.accumulateAndGet(Agenda.ceilSecond(end), Math::max);
+            oneOffStripes.computeIfAbsent(month, m -> new Stripe()).add(e, sequence);
+        } else {
+            repeatingStripes.computeIfAbsent(month, m -> new Stripe()).add(e, sequence);
+        }
+        // Publié après la bande : un événement trouvé par son titre est aussi trouvé par sa date
+        titles.computeIfAbsent(e.getTitle(), t -> new ConcurrentLinkedQueue<>()).add(new Sequenced(e, sequence));
+        size.increment();
+    }
+
+    /**
+     * @return the number of events in this agenda
+     */
+    public long size() {
+        return size.sum();
+    }
+
+    /**
+     * Computes the events that occur on a given day
+     *
+     * @param day the day to test
+     * @return a list of events that occur on that day, in insertion order
+     */
+    public List<Event> eventsInDay(LocalDate day) {
+        YearMonth last = YearMonth.from(day);
+        YearMonth first = YearMonth.from(day.minusDays(longestSpanDays.get()));
+        List<Sequenced> found = new ArrayList<>();
+        ObjLongConsumer<Event> test = (e, sequence) -> {
+            if (e.isInDay(day)) {
+                found.add(new Sequenced(e, sequence));
+            }
+        };
+        oneOffStripes.subMap(first, true, last, true).values().forEach(stripe -> stripe.forEach(test));
+        repeatingStripes.headMap(last, true).values().forEach(stripe -> stripe.forEach(test));
+        return inInsertionOrder(found);
+    }
+
+    /**
+     * Computes the occurrences of the events of this agenda that overlap a time window
+     *
+     * @param from the start of the window (inclusive)
+     * @param to the end of the window (exclusive)
+     * @return the occurrences that overlap [from, to[, non repeating events first
+     * @see Agenda#eventsBetween(LocalDateTime, LocalDateTime)
+     */
+    public Stream<Occurrence> eventsBetween(LocalDateTime from, LocalDateTime to) {
+        return occurrencesAround(from, to).filter(o -> o.overlaps(from, to));
+    }
+
+    /**
+     * Finds the events of this agenda with a given title
+     *
+     * @param title the title to search for
+     * @return the events with the same title, in insertion order
+     */
+    public List<Event> findByTitle(String title) {
+        Collection<Sequenced> found = titles.get(title);
+        // Les ajouts concurrents arrivent dans la file dans un ordre quelconque
+        return found == null ? new ArrayList<>() : inInsertionOrder(new ArrayList<>(found));
+    }
+
+    /**
+     * Finds the events of this agenda whose title starts with a given prefix
+     *
+     * @param prefix the start of the title
+     * @return the matching events, in insertion order
+     */
+    public List<Event> findByTitlePrefix(String prefix) {
+        List<Sequenced> found = new ArrayList<>();
+        for (Map.Entry<String, ConcurrentLinkedQueue<Sequenced>> entry : titles.tailMap(prefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            found.addAll(entry.getValue());
+        }
+        return inInsertionOrder(found);
+    }
+
+    /**
+     * Tests if there is room in this agenda for an event
+     *
+     * @param e the event to test, repeating or not
+     * @return true if no occurrence of this agenda overlaps an occurrence of {@code e}
+     * @see Agenda#isFreeFor(Event)
+     */
+    public boolean isFreeFor(Event e) {
+        return conflictsWith(e).findAny().isEmpty();
+    }
+
+    /**
+     * Finds the occurrences of this agenda that take place at the same time as an occurrence
+     * of a given event
+     *
+     * @param e the event to test, repeating or not
+     * @return the conflicts, the occurrence of {@code e} first
+     * @see Agenda#conflictsWith(Event)
+     */
+    public Stream<Conflict> conflictsWith(Event e) {
+        return conflictDetector.conflictsWith(e);
+    }
+
+    /**
+     * @return a read-only snapshot of the events of this agenda, in insertion order
+     */
+    public List<Event> getAllEvents() {
+        List<Sequenced> all = new ArrayList<>();
+        oneOffStripes.values().forEach(stripe -> stripe.forEach((e, sequence) -> all.add(new Sequenced(e, sequence))));
+        repeatingStripes.values().forEach(stripe -> stripe.forEach((e, sequence) -> all.add(new Sequenced(e, sequence))));
+        return Collections.unmodifiableList(inInsertionOrder(all));
+    }
+
+    private List<Event> repeatingEvents() {
+        List<Event> all = new ArrayList<>();
+        repeatingStripes.values().forEach(stripe -> stripe.forEach((e, sequence) -> all.add(e)));
+        return all;
+    }
+
+    private Stream<Occurrence> occurrencesAround(LocalDateTime from, LocalDateTime to) {
+        List<Event> repeating = new ArrayList<>();
+        repeatingStripes.headMap(YearMonth.from(to), true).values().forEach(stripe -> stripe.forEach((e, sequence) -> repeating.add(e)));
+        return Stream.concat(oneOffsAround(from, to),
+                repeating.stream().flatMap(e -> StreamSupport.stream(e.occurrences(from, to), false)));
+    }
+
+    private Stream<Occurrence> oneOffsAround(LocalDateTime from, LocalDateTime to) {
+        YearMonth first = YearMonth.from(from.minusDays(longestSpanDays.get() + 1));
+        YearMonth last = YearMonth.from(to);
+        List<Event> oneOffs = new ArrayList<>();
+        oneOffStripes.subMap(first, true, last, true).values().forEach(stripe -> stripe.forEach((e, sequence) -> oneOffs.add(e)));
+        return oneOffs.stream().map(e -> new Occurrence(e, e.getStart(), e.getStart().plus(e.getDuration())));
+    }
+
+    private static List<Event> inInsertionOrder(List<Sequenced> found) {
+        found.sort((a, b) -> Long.compare(a.sequence(), b.sequence()));
+        List<Event> events = new ArrayList<>(found.size());
+        found.forEach(s -> events.add(s.event()));
+        return events;
+    }
+}
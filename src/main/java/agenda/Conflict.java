@@ -0,0 +1,30 @@
+package agenda;
+
+import java.util.Objects;
+
+/**
+ * Description : two occurrences that take place at the same time
+ *
+ * @param first the first occurrence, e.g. the occurrence of the event being tested
+ * @param second the second occurrence, e.g. the occurrence already in the agenda
+ */
+public record Conflict(Occurrence first, Occurrence second) {
+
+    public Conflict {
+        Objects.requireNonNull(first);
+        Objects.requireNonNull(second);
+    }
+
+    /**
+     * Tests if two occurrences take place at the same time. Like in
+     * {@link Agenda#isFreeFor(Event)}, an occurrence that starts exactly when the other one
+     * ends does not overlap it.
+     *
+     * @param a an occurrence
+     * @param b another occurrence
+     * @return true if the two occurrences overlap
+     */
+    public static boolean overlap(Occurrence a, Occurrence b) {
+        return a.start().isBefore(b.end()) && a.end().isAfter(b.start());
+    }
+}
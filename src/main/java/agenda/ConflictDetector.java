@@ -0,0 +1,334 @@
+package agenda;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Description : finds the occurrences of an agenda that overlap the occurrences of an event.
+ * <p>
+ * The occurrence of a non repeating event is checked against the occurrences of the agenda
+ * around it : the agenda looks the non repeating events up in its index, and finds the
+ * overlapping occurrences of every repeating event directly by recurrence arithmetic.
+ * <p>
+ * A repeating event is checked against the non repeating events up to the latest of them,
+ * then against each repeating event of the agenda separately. For each pair, only the
+ * sparser of the two series is expanded, and the occurrences of the denser one that
+ * overlap it are found in O(1). When neither series ends, the pair is only expanded up to
+ * a horizon after which it is periodic : every exception is in the past, both series have
+ * started, and one cycle of the pair has elapsed (see {@link Recurrences#cycle}).
+ * <p>
+ * An agenda that tests its events on primitive values, such as {@link ColumnarAgenda},
+ * selects itself the non repeating and repeating events that may overlap a repeating
+ * event : only those are built and checked.
+ */
+final class ConflictDetector {
+
+    /**
+     * Orders conflicts by the occurrence of the tested event, then by the other occurrence
+     */
+    private static final Comparator<Conflict> BY_CANDIDATE =
+            Comparator.comparing(Conflict::first, SortedOccurrences.CHRONOLOGICAL)
+                    .thenComparing(Conflict::second, SortedOccurrences.CHRONOLOGICAL);
+
+    private final BiFunction<LocalDateTime, LocalDateTime, Stream<Occurrence>> occurrencesAround;
+    private final Function<Event, Iterator<Conflict>> oneOffConflicts;
+    private final Function<Event, ? extends Iterable<Event>> repeatingFacing;
+
+    /**
+     * @param occurrencesAround finds (at least) the occurrences of the agenda that overlap a time window
+     * @param oneOffsAround finds (at least) the non repeating events of the agenda that overlap a time window
+     * @param repeatingEvents the repeating events of the agenda
+     * @param latestOneOffEnd the latest end of the non repeating events of the agenda, null if there is none
+     */
+    ConflictDetector(BiFunction<LocalDateTime, LocalDateTime, Stream<Occurrence>> occurrencesAround,
+                     BiFunction<LocalDateTime, LocalDateTime, Stream<Occurrence>> oneOffsAround,
+                     Supplier<? extends Iterable<Event>> repeatingEvents,
+                     Supplier<LocalDateTime> latestOneOffEnd) {
+        this.occurrencesAround = occurrencesAround;
+        this.oneOffConflicts = candidate -> {
+            LocalDateTime oneOffEnd = latestOneOffEnd.get();
+            if (oneOffEnd == null) {
+                return Collections.emptyIterator();
+            }
+            return StreamSupport.stream(candidate.occurrences(candidate.getStart(), oneOffEnd), false)
+                    .flatMap(occurrence -> conflictsWith(candidate, occurrence, oneOffsAround))
+                    .iterator();
+        };
+        this.repeatingFacing = candidate -> repeatingEvents.get();
+    }
+
+    /**
+     * @param occurrencesAround finds (at least) the occurrences of the agenda that overlap a time window
+     * @param oneOffsFacing finds (at least) the occurrences of the non repeating events of the
+     * agenda that overlap an occurrence of a repeating event, in chronological order
+     * @param repeatingFacing finds (at least) the repeating events of the agenda that overlap
+     * an occurrence of a repeating event
+     */
+    ConflictDetector(BiFunction<LocalDateTime, LocalDateTime, Stream<Occurrence>> occurrencesAround,
+                     Function<Event, Iterator<Occurrence>> oneOffsFacing,
+                     Function<Event, ? extends Iterable<Event>> repeatingFacing) {
+        this.occurrencesAround = occurrencesAround;
+        // Les conflits sont trouvés dans l'ordre des événements non répétitifs, puis remis dans
+        // l'ordre des occurrences du candidat
+        this.oneOffConflicts = candidate -> new ReorderedConflicts(oneOffsFacing.apply(candidate),
+                candidate.getDuration(), occurrence -> probe(candidate, occurrence)
+                        .map(other -> new Conflict(other, occurrence))
+                        .iterator());
+        this.repeatingFacing = repeatingFacing;
+    }
+
+    /**
+     * Lazily finds the conflicts between an event and the events of the agenda.
+     * The event itself, if it is in the agenda, is ignored.
+     *
+     * @param candidate the event to test
+     * @return the conflicts, the occurrence of the candidate first, in chronological order
+     * of the occurrences of the candidate
+     */
+    Stream<Conflict> conflictsWith(Event candidate) {
+        if (candidate.getRepetition() == null) {
+            Occurrence only = new Occurrence(candidate, candidate.getStart(), candidate.getStart().plus(candidate.getDuration()));
+            return conflictsWith(candidate, only, occurrencesAround);
+        }
+        List<Iterator<Conflict>> sources = new ArrayList<>();
+        sources.add(oneOffConflicts.apply(candidate));
+        for (Event e : repeatingFacing.apply(candidate)) {
+            if (e != candidate) {
+                sources.add(pairConflicts(candidate, e));
+            }
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new MergedConflicts(sources),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private static Stream<Conflict> conflictsWith(Event candidate, Occurrence occurrence,
+                                                  BiFunction<LocalDateTime, LocalDateTime, Stream<Occurrence>> around) {
+        return around.apply(occurrence.start(), occurrence.end())
+                .filter(existing -> existing.event() != candidate && Conflict.overlap(occurrence, existing))
+                .map(existing -> new Conflict(occurrence, existing));
+    }
+
+    /**
+     * Finds the conflicts between two repeating events, up to the horizon of the pair. The
+     * sparser series is expanded, and each of its occurrences is probed against the other one.
+     *
+     * @return the conflicts, the occurrence of the candidate first, ordered by {@link #BY_CANDIDATE}
+     */
+    private static Iterator<Conflict> pairConflicts(Event candidate, Event existing) {
+        Duration longest = max(candidate.getDuration(), existing.getDuration());
+        LocalDateTime from = max(candidate.getStart(), existing.getStart()).minus(longest);
+        LocalDateTime to = pairHorizon(candidate, existing, longest);
+        ChronoUnit candidateFrequency = candidate.getRepetition().getFrequency();
+        ChronoUnit existingFrequency = existing.getRepetition().getFrequency();
+        if (candidateFrequency.getDuration().compareTo(existingFrequency.getDuration()) >= 0) {
+            return StreamSupport.stream(candidate.occurrences(from, to), false)
+                    .flatMap(occurrence -> probe(existing, occurrence)
+                            .map(other -> new Conflict(occurrence, other)))
+                    .iterator();
+        }
+        Iterator<Occurrence> sparse = Spliterators.iterator(existing.occurrences(from, to));
+        return new ReorderedConflicts(sparse, candidate.getDuration(),
+                occurrence -> probe(candidate, occurrence)
+                        .map(other -> new Conflict(other, occurrence))
+                        .iterator());
+    }
+
+    /**
+     * @return the occurrences of a repeating event that overlap a given occurrence
+     */
+    private static Stream<Occurrence> probe(Event event, Occurrence occurrence) {
+        return StreamSupport.stream(event.occurrences(occurrence.start(), occurrence.end()), false)
+                .filter(other -> Conflict.overlap(occurrence, other));
+    }
+
+    /**
+     * @return the instant after which no new kind of conflict can appear between two
+     * repeating events
+     */
+    private static LocalDateTime pairHorizon(Event candidate, Event existing, Duration longest) {
+        Repetition a = candidate.getRepetition();
+        Repetition b = existing.getRepetition();
+        if (a.getTermination() != null || b.getTermination() != null) {
+            // La série qui se termine borne la paire
+            LocalDateTime end = LocalDateTime.MAX;
+            if (a.getTermination() != null) {
+                end = lastEnd(candidate);
+            }
+            if (b.getTermination() != null) {
+                end = min(end, lastEnd(existing));
+            }
+            return end;
+        }
+        LocalDateTime periodic = max(latest(candidate.getStart(), a), latest(existing.getStart(), b));
+        return periodic.plusSeconds(Recurrences.cycle(a.getFrequency(), b.getFrequency())).plus(longest).plusDays(1);
+    }
+
+    private static LocalDateTime lastEnd(Event e) {
+        Repetition r = e.getRepetition();
+        LocalDateTime lastStart = e.getStart()
+                .plus(Math.max(0, r.getTermination().getNumberOfOccurrences() - 1L), r.getFrequency());
+        return lastStart.plus(e.getDuration()).plusSeconds(1);
+    }
+
+    /**
+     * Sweep-line over a chronological sequence of occurrences : the occurrences that are still
+     * running are kept in a heap ordered by end, and every new occurrence conflicts with all
+     * of them. Memory use is bounded by the number of occurrences running at the same time.
+     *
+     * @param chronological occurrences in chronological order
+     * @return every pair of overlapping occurrences, the one that starts first first
+     */
+    static Stream<Conflict> sweep(Iterator<Occurrence> chronological) {
+        Iterator<Conflict> conflicts = new Iterator<>() {
+            private final PriorityQueue<Occurrence> running =
+                    new PriorityQueue<>((a, b) -> a.end().compareTo(b.end()));
+            private final Deque<Conflict> pending = new ArrayDeque<>();
+
+            @Override
+            public boolean hasNext() {
+                while (pending.isEmpty() && chronological.hasNext()) {
+                    Occurrence next = chronological.next();
+                    while (!running.isEmpty() && !running.peek().end().isAfter(next.start())) {
+                        running.poll();
+                    }
+                    for (Occurrence other : running) {
+                        if (Conflict.overlap(other, next)) {
+                            pending.add(new Conflict(other, next));
+                        }
+                    }
+                    running.add(next);
+                }
+                return !pending.isEmpty();
+            }
+
+            @Override
+            public Conflict next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return pending.poll();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(conflicts,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private static LocalDateTime latest(LocalDateTime t, Repetition repetition) {
+        LocalDate exception = repetition.lastException();
+        return exception == null ? t : max(t, exception.plusDays(1).atStartOfDay());
+    }
+
+    private static LocalDateTime max(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static LocalDateTime min(LocalDateTime a, LocalDateTime b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    private static Duration max(Duration a, Duration b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    /**
+     * Merges sequences of conflicts ordered by {@link #BY_CANDIDATE} : a heap holds the next
+     * conflict of each sequence
+     */
+    private static final class MergedConflicts implements Iterator<Conflict> {
+
+        private final PriorityQueue<Map.Entry<Conflict, Iterator<Conflict>>> heads =
+                new PriorityQueue<>(Map.Entry.comparingByKey(BY_CANDIDATE));
+
+        MergedConflicts(List<Iterator<Conflict>> sequences) {
+            for (Iterator<Conflict> sequence : sequences) {
+                if (sequence.hasNext()) {
+                    heads.add(new AbstractMap.SimpleEntry<>(sequence.next(), sequence));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public Conflict next() {
+            Map.Entry<Conflict, Iterator<Conflict>> head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            Iterator<Conflict> rest = head.getValue();
+            if (rest.hasNext()) {
+                heads.add(new AbstractMap.SimpleEntry<>(rest.next(), rest));
+            }
+            return head.getKey();
+        }
+    }
+
+    /**
+     * Puts back in the order of the candidate the conflicts found from a chronological sequence
+     * of other occurrences, such as the sparser series of a pair. An occurrence of the
+     * candidate that overlaps another occurrence starts less than the duration of the
+     * candidate before it, so a conflict is released once the next other occurrence is far
+     * enough.
+     */
+    private static final class ReorderedConflicts implements Iterator<Conflict> {
+
+        private final Iterator<Occurrence> sparse;
+        private final Duration candidateDuration;
+        private final Function<Occurrence, Iterator<Conflict>> probe;
+        private final PriorityQueue<Conflict> pending = new PriorityQueue<>(BY_CANDIDATE);
+
+        // Les occurrences du candidat trouvées ensuite commencent toutes après cet instant
+        private LocalDateTime limit = LocalDateTime.MIN;
+
+        ReorderedConflicts(Iterator<Occurrence> sparse, Duration candidateDuration,
+                           Function<Occurrence, Iterator<Conflict>> probe) {
+            this.sparse = sparse;
+            this.candidateDuration = candidateDuration;
+            this.probe = probe;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (pending.isEmpty() || pending.peek().first().start().isAfter(limit)) {
+                if (!sparse.hasNext()) {
+                    return !pending.isEmpty();
+                }
+                Occurrence next = sparse.next();
+                limit = next.start().minus(candidateDuration);
+                probe.apply(next).forEachRemaining(pending::add);
+            }
+            return true;
+        }
+
+        @Override
+        public Conflict next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return pending.poll();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package agenda;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Description : the results of day queries, kept for the days asked most recently.
+ * <p>
+ * Entries are evicted in least recently used order once the cache is full. When events
+ * change, only the entries of the days that they may affect are invalidated : the cache is
+ * small, so an invalidation simply scans it.
+ */
+final class DayCache {
+
+    private final int maximumSize;
+    private final LinkedHashMap<Long, List<Event>> days;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * @param maximumSize the maximum number of days kept, at least 1
+     */
+    DayCache(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("The size of the cache must be positive : " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        // Ordre d'accès : l'entrée la plus ancienne est la moins récemment utilisée
+        this.days = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, List<Event>> eldest) {
+                if (size() > DayCache.this.maximumSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param day an epoch day
+     * @return the events of that day, or null if they are not in the cache
+     */
+    List<Event> get(long day) {
+        List<Event> events = days.get(day);
+        if (events == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return events;
+    }
+
+    /**
+     * @param day an epoch day
+     * @param events the events of that day, never modified afterwards
+     */
+    void put(long day, List<Event> events) {
+        days.put(day, events);
+    }
+
+    /**
+     * Forgets the days of an interval
+     *
+     * @param fromDay the first epoch day (inclusive)
+     * @param toDay the last epoch day (inclusive)
+     */
+    void invalidate(long fromDay, long toDay) {
+        Iterator<Long> cached = days.keySet().iterator();
+        while (cached.hasNext()) {
+            long day = cached.next();
+            if (day >= fromDay && day <= toDay) {
+                cached.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    /**
+     * Forgets every day
+     */
+    void clear() {
+        invalidations += days.size();
+        days.clear();
+    }
+
+    int maximumSize() {
+        return maximumSize;
+    }
+
+    CacheStatistics statistics() {
+        return new CacheStatistics(hits, misses, evictions, invalidations, days.size());
+    }
+}
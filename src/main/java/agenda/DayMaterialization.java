@@ -0,0 +1,199 @@
+package agenda;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Description : keeps the events of an agenda compiled as {@link OccurrenceBitmaps} over a
+ * horizon of days, for {@link Agenda#eventsInDay}.
+ * <p>
+ * Compilations run on a background thread, from a capture of the events taken on the thread
+ * of the agenda ; the latest compilation is installed as soon as it is complete. Until then,
+ * and for the events added or changed since the capture of the installed compilation, day
+ * lookups check those events one by one : results are always exact. When they become too
+ * numerous, a new compilation is started.
+ * <p>
+ * Like the agenda, this class must only be used by one thread at a time.
+ */
+final class DayMaterialization {
+
+    private static final ExecutorService COMPILER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "agenda-materialization");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Seuil de recompilation : proportion des événements ajoutés ou modifiés depuis la capture
+    private static final int STALE_RATIO = 8;
+    private static final int MIN_STALE = 64;
+
+    private final List<Event> events;
+    private long firstDay;
+    private int horizonDays;
+
+    // Compilation installée, et les événements modifiés depuis sa capture
+    private OccurrenceBitmaps installed;
+    private BitSet installedChanges = new BitSet();
+
+    // Dernière compilation demandée, pas encore installée
+    private CompletableFuture<OccurrenceBitmaps> pending;
+    private BitSet pendingChanges;
+
+    // Dernière capture : base des compilations suivantes
+    private CompletableFuture<OccurrenceBitmaps> latest;
+    private List<OccurrenceBitmaps.Series> latestSeries = List.of();
+    private BitSet latestChanges = new BitSet();
+
+    /**
+     * @param events the events of the agenda, in insertion order ; identifiers are positions in this list
+     */
+    DayMaterialization(List<Event> events) {
+        this.events = events;
+    }
+
+    /**
+     * Starts the compilation of a horizon. When no event changed since the previous
+     * compilation, only the days that the horizons do not share are compiled.
+     *
+     * @param firstDay the first epoch day of the horizon
+     * @param days the number of days of the horizon
+     * @return a future completed when the compilation is complete
+     */
+    CompletableFuture<Void> compile(long firstDay, int days) {
+        this.firstDay = firstDay;
+        this.horizonDays = days;
+        boolean unchanged = latest != null && latestChanges.isEmpty() && latestSeries.size() == events.size();
+        List<OccurrenceBitmaps.Series> series = capture();
+        CompletableFuture<OccurrenceBitmaps> base = latest == null || !unchanged
+                ? CompletableFuture.completedFuture(null)
+                : latest.exceptionally(failure -> null);
+        CompletableFuture<OccurrenceBitmaps> next = base.thenApplyAsync(
+                previous -> OccurrenceBitmaps.compile(series, firstDay, firstDay + days, previous), COMPILER);
+        pending = next;
+        pendingChanges = new BitSet();
+        latest = next;
+        return next.thenApply(compiled -> null);
+    }
+
+    /**
+     * Moves the horizon, keeping its length
+     *
+     * @param firstDay the new first epoch day of the horizon
+     * @return a future completed when the compilation is complete
+     */
+    CompletableFuture<Void> advance(long firstDay) {
+        return compile(firstDay, horizonDays);
+    }
+
+    /**
+     * Starts a compilation of the same horizon from scratch, e.g. when events have been
+     * removed and the identifiers of the following ones have changed. The compilations
+     * started before are ignored, and the days are not answered until it is complete.
+     *
+     * @return a future completed when the compilation is complete
+     */
+    CompletableFuture<Void> recompile() {
+        installed = null;
+        installedChanges = new BitSet();
+        latest = null;
+        latestSeries = List.of();
+        latestChanges = new BitSet();
+        return compile(firstDay, horizonDays);
+    }
+
+    /**
+     * Records that an event of the agenda changed
+     *
+     * @param id the position of the event in the agenda
+     */
+    void changed(int id) {
+        install();
+        installedChanges.set(id);
+        if (pendingChanges != null) {
+            pendingChanges.set(id);
+        }
+        latestChanges.set(id);
+    }
+
+    /**
+     * @param day an epoch day
+     * @return the events of that day in insertion order, or null if that day is not compiled
+     */
+    List<Event> eventsInDay(long day) {
+        install();
+        OccurrenceBitmaps compiled = installed;
+        if (compiled == null || !compiled.covers(day)) {
+            return null;
+        }
+        LocalDate date = LocalDate.ofEpochDay(day);
+        List<Event> found = new ArrayList<>(compiled.countEvents(day));
+        if (installedChanges.isEmpty()) {
+            compiled.forEachEvent(day, id -> found.add(events.get(id)));
+        } else {
+            // Les événements modifiés sont vérifiés un par un, puis remis à leur place
+            int[] ids = new int[compiled.countEvents(day) + installedChanges.cardinality()];
+            int[] count = {0};
+            compiled.forEachEvent(day, id -> {
+                if (!installedChanges.get(id)) {
+                    ids[count[0]++] = id;
+                }
+            });
+            for (int id = installedChanges.nextSetBit(0); id >= 0 && id < compiled.eventCount(); id = installedChanges.nextSetBit(id + 1)) {
+                if (events.get(id).isInDay(date)) {
+                    ids[count[0]++] = id;
+                }
+            }
+            Arrays.sort(ids, 0, count[0]);
+            for (int i = 0; i < count[0]; i++) {
+                found.add(events.get(ids[i]));
+            }
+        }
+        // Les événements ajoutés depuis la capture viennent après, dans l'ordre d'insertion
+        for (int id = compiled.eventCount(); id < events.size(); id++) {
+            if (events.get(id).isInDay(date)) {
+                found.add(events.get(id));
+            }
+        }
+        refreshIfStale(compiled);
+        return found;
+    }
+
+    private void install() {
+        if (pending == null || !pending.isDone()) {
+            return;
+        }
+        if (!pending.isCompletedExceptionally()) {
+            installed = pending.join();
+            installedChanges = pendingChanges;
+        }
+        pending = null;
+        pendingChanges = null;
+    }
+
+    private void refreshIfStale(OccurrenceBitmaps compiled) {
+        int stale = installedChanges.cardinality() + events.size() - compiled.eventCount();
+        if (pending == null && stale > Math.max(MIN_STALE, compiled.eventCount() / STALE_RATIO)) {
+            compile(firstDay, horizonDays);
+        }
+    }
+
+    /**
+     * Captures the events, reusing the series of the previous capture that did not change
+     */
+    private List<OccurrenceBitmaps.Series> capture() {
+        List<OccurrenceBitmaps.Series> series = new ArrayList<>(events.size());
+        for (int id = 0; id < events.size(); id++) {
+            boolean reusable = id < latestSeries.size() && !latestChanges.get(id);
+            series.add(reusable ? latestSeries.get(id) : OccurrenceBitmaps.Series.of(events.get(id)));
+        }
+        latestSeries = series;
+        latestChanges = new BitSet();
+        return series;
+    }
+}
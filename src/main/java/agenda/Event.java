@@ -1,113 +1,213 @@
-
-package agenda;
-
-import java.time.*;
-import java.time.temporal.ChronoUnit;
-import java.util.Objects;
-
-public class Event {
-
-    private final String myTitle;
-    private final LocalDateTime myStart;
-    private final Duration myDuration;
-
-    private Repetition repetition = null; 
-
-    public Event(String title, LocalDateTime start, Duration duration) {
-        this.myTitle = Objects.requireNonNull(title);
-        this.myStart = Objects.requireNonNull(start);
-        this.myDuration = Objects.requireNonNull(duration);
-    }
-
-
-    public void setRepetition(ChronoUnit frequency) {
-        this.repetition = new Repetition(frequency);
-    }
-
-    public void addException(LocalDate date) {
-        if (repetition == null) {
-            return;
-        }
-        repetition.addException(date);
-    }
-
-    public void setTermination(LocalDate terminationInclusive) {
-        if (repetition == null) {
-            return;
-        }
-        repetition.setTermination(new Termination(myStart.toLocalDate(), repetition.getFrequency(), terminationInclusive));
-    }
-
-    public void setTermination(long numberOfOccurrences) {
-        if (repetition == null) {
-            return;
-        }
-        repetition.setTermination(new Termination(myStart.toLocalDate(), repetition.getFrequency(), numberOfOccurrences));
-    }
-
-
-    public int getNumberOfOccurrences() {
-        if (repetition == null || repetition.getTermination() == null) {
-            return 0; 
-        }
-        return repetition.getTermination().getNumberOfOccurrences();
-    }
-
-    public LocalDate getTerminationDate() {
-        if (repetition == null || repetition.getTermination() == null) {
-            return null;  
-        }
-        return repetition.getTermination().getTerminationDateInclusive();
-    }
-    
-
-    /**
-     * Tests if an event occurs on a given day
-     * (Logique basée sur la version fournie, en supposant que Repetition est à jour)
-     *
-     * @param aDay the day to test
-     * @return true if the event occurs on that day, false otherwise
-     */
-    public boolean isInDay(LocalDate aDay) {
-        LocalDate startDay = myStart.toLocalDate();
-        
-        if (repetition == null) {
-            LocalDate endDay = myStart.plus(myDuration).toLocalDate();
-            return !aDay.isBefore(startDay) && !aDay.isAfter(endDay);
-        }
-
-        if (aDay.isBefore(startDay)) return false;
-
-        Termination term = repetition.getTermination();
-        if (term != null) {
-            LocalDate end = term.getTerminationDateInclusive();
-            if (aDay.isAfter(end)) {
-                return false;
-            }
-        }
-
-        
-        if (repetition.getExceptions().contains(aDay)) return false;
-
-        ChronoUnit unit = repetition.getFrequency();
-        long diff = unit.between(startDay, aDay);
-        
-        if (diff < 0) return false; 
-        
-        LocalDate calculatedDate = startDay.plus(diff, unit);
-        
-        return calculatedDate.equals(aDay);
-    }
-    
-
-    public String getTitle() { return myTitle; }
-    public LocalDateTime getStart() { return myStart; }
-    public Duration getDuration() { return myDuration; }
-    
-    public Repetition getRepetition() { return repetition; }
-
-    @Override
-    public String toString() {
-        return "Event{title='%s', start=%s, duration=%s}".formatted(myTitle, myStart, myDuration);
-    }
-}
+
+package agenda;
+
+import java.time.*;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Spliterator;
+
+public class Event {
+
+    private final String myTitle;
+    private final LocalDateTime myStart;
+    private final Duration myDuration;
+
+    // Jour de début (epoch day), et nombre de jours sur lesquels déborde chaque occurrence
+    private final long myStartDay;
+    private final long mySpanDays;
+
+    private Repetition repetition = null; 
+
+    /**
+     * Receives the days whose events may have changed when an event is modified
+     */
+    interface ChangeListener {
+        /**
+         * @param e the modified event
+         * @param fromDay the first epoch day that may have changed
+         * @param toDay the last epoch day that may have changed, Long.MAX_VALUE if unbounded
+         */
+        void eventChanged(Event e, long fromDay, long toDay);
+    }
+
+    private static final ChangeListener[] NO_LISTENERS = new ChangeListener[0];
+
+    // Les agendas qui indexent cet événement, prévenus de ses modifications
+    private ChangeListener[] listeners = NO_LISTENERS;
+
+    // Figé par un agenda (cf. Agenda#setFreezeOnInsert) : plus aucune modification possible
+    private boolean frozen;
+
+    public Event(String title, LocalDateTime start, Duration duration) {
+        this.myTitle = Objects.requireNonNull(title);
+        this.myStart = Objects.requireNonNull(start);
+        this.myDuration = Objects.requireNonNull(duration);
+        this.myStartDay = start.toLocalDate().toEpochDay();
+        this.mySpanDays = start.plus(duration).toLocalDate().toEpochDay() - myStartDay;
+    }
+
+
+    public void setRepetition(ChronoUnit frequency) {
+        checkNotFrozen();
+        if (repetition != null) {
+            repetition.attach(null);
+        }
+        this.repetition = new Repetition(frequency);
+        repetition.attach(this);
+        notifyListeners(myStartDay, Long.MAX_VALUE);
+    }
+
+    public void addException(LocalDate date) {
+        checkNotFrozen();
+        if (repetition == null) {
+            return;
+        }
+        repetition.addException(date);
+    }
+
+    public void setTermination(LocalDate terminationInclusive) {
+        checkNotFrozen();
+        if (repetition == null) {
+            return;
+        }
+        repetition.setTermination(new Termination(myStart.toLocalDate(), repetition.getFrequency(), terminationInclusive));
+    }
+
+    public void setTermination(long numberOfOccurrences) {
+        checkNotFrozen();
+        if (repetition == null) {
+            return;
+        }
+        repetition.setTermination(new Termination(myStart.toLocalDate(), repetition.getFrequency(), numberOfOccurrences));
+    }
+
+
+    public int getNumberOfOccurrences() {
+        if (repetition == null || repetition.getTermination() == null) {
+            return 0; 
+        }
+        return repetition.getTermination().getNumberOfOccurrences();
+    }
+
+    public LocalDate getTerminationDate() {
+        if (repetition == null || repetition.getTermination() == null) {
+            return null;  
+        }
+        return repetition.getTermination().getTerminationDateInclusive();
+    }
+    
+
+    /**
+     * Tests if an event occurs on a given day. An occurrence that spans midnight also occurs
+     * on the following days, and an exception day never contains the event.
+     * Costs O(1) for daily, weekly and monthly repetitions.
+     *
+     * @param aDay the day to test
+     * @return true if the event occurs on that day, false otherwise
+     */
+    public boolean isInDay(LocalDate aDay) {
+        long day = aDay.toEpochDay();
+        if (repetition == null) {
+            return day >= myStartDay && day <= myStartDay + mySpanDays;
+        }
+
+        // Même règle que pour les séries des agendas colonnes et projetés, cf. Recurrences
+        return Recurrences.occursOn(myStartDay, repetition.getFrequency(), mySpanDays, lastDay(),
+                repetition::isException, day);
+    }
+
+    /**
+     * @return the epoch day of the last possible occurrence of this repeating event, the day
+     * before its start if it has none, Long.MAX_VALUE if it never ends
+     */
+    long lastDay() {
+        Termination term = repetition.getTermination();
+        if (term == null) {
+            return Long.MAX_VALUE;
+        }
+        return term.getNumberOfOccurrences() <= 0 ? myStartDay - 1 : term.getTerminationDateInclusive().toEpochDay();
+    }
+
+    /**
+     * Enumerates the occurrences of this event that overlap a time window. A non repeating
+     * event has at most one occurrence. The spliterator is ORDERED and exactly SIZED, and
+     * splits in halves so that long series can be processed by parallel streams.
+     *
+     * @param from the start of the window (inclusive)
+     * @param to the end of the window (exclusive)
+     * @return the occurrences that overlap [from, to[, in chronological order
+     */
+    public Spliterator<Occurrence> occurrences(LocalDateTime from, LocalDateTime to) {
+        return OccurrenceSpliterator.of(this, from, to);
+    }
+
+    /**
+     * @return true if this event can no longer be modified
+     * @see Agenda#setFreezeOnInsert(boolean)
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Makes this event and its repetition immutable : their setters throw an
+     * {@link IllegalStateException} from now on, and nothing needs to watch them any more
+     */
+    void freeze() {
+        frozen = true;
+        if (repetition != null) {
+            repetition.freeze();
+        }
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("The event is frozen : " + this);
+        }
+    }
+
+    void addListener(ChangeListener listener) {
+        listeners = Arrays.copyOf(listeners, listeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+    }
+
+    void removeListener(ChangeListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                ChangeListener[] remaining = Arrays.copyOf(listeners, listeners.length - 1);
+                System.arraycopy(listeners, i + 1, remaining, i, listeners.length - i - 1);
+                listeners = remaining;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Called by the repetition of this event when it changes
+     *
+     * @param fromDay the first epoch day whose occurrence changed
+     * @param toDay the last epoch day whose occurrence changed
+     */
+    void repetitionChanged(long fromDay, long toDay) {
+        // Une occurrence qui change touche aussi les jours sur lesquels elle déborde
+        notifyListeners(fromDay, toDay > Long.MAX_VALUE - mySpanDays ? Long.MAX_VALUE : toDay + mySpanDays);
+    }
+
+    private void notifyListeners(long fromDay, long toDay) {
+        for (ChangeListener listener : listeners) {
+            listener.eventChanged(this, fromDay, toDay);
+        }
+    }
+
+    public String getTitle() { return myTitle; }
+    public LocalDateTime getStart() { return myStart; }
+    public Duration getDuration() { return myDuration; }
+    
+    public Repetition getRepetition() { return repetition; }
+
+    @Override
+    public String toString() {
+        return "Event{title='%s', start=%s, duration=%s}".formatted(myTitle, myStart, myDuration);
+    }
+}
@@ -0,0 +1,136 @@
+package agenda;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Description : the binary form of an event, shared by the snapshots and the journal of
+ * {@link AgendaStore}.
+ * <p>
+ * An event is encoded as its title (length and UTF-8 bytes), its start and duration
+ * (seconds and nanoseconds), then, if it repeats, its frequency, its termination and its
+ * exception days. Numbers are big-endian. Records are framed by their length and a CRC-32C
+ * of their content, so that a torn or corrupted record is detected.
+ */
+final class EventCodec {
+
+    // Longueur et CRC de chaque enregistrement
+    static final int FRAME_HEADER = 8;
+
+    private static final byte NOT_REPEATING = 0;
+    private static final byte NO_TERMINATION = 0;
+    private static final byte BY_DATE = 1;
+    private static final byte BY_COUNT = 2;
+    private static final ChronoUnit[] UNITS = ChronoUnit.values();
+
+    private EventCodec() {
+    }
+
+    /**
+     * @return the encoded event, exactly as large as needed
+     */
+    static byte[] encode(Event e) {
+        byte[] title = e.getTitle().getBytes(StandardCharsets.UTF_8);
+        Repetition repetition = e.getRepetition();
+        List<LocalDate> exceptions = repetition == null ? List.of() : repetition.getExceptions();
+        int size = 4 + title.length + 8 + 4 + 8 + 4 + 1
+                + (repetition == null ? 0 : 1 + 8 + 4 + 8 * exceptions.size());
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(title.length).put(title);
+        out.putLong(e.getStart().toEpochSecond(ZoneOffset.UTC)).putInt(e.getStart().getNano());
+        out.putLong(e.getDuration().getSeconds()).putInt(e.getDuration().getNano());
+        if (repetition == null) {
+            out.put(NOT_REPEATING);
+            return out.array();
+        }
+        out.put((byte) (repetition.getFrequency().ordinal() + 1));
+        Termination termination = repetition.getTermination();
+        if (termination == null) {
+            out.put(NO_TERMINATION).putLong(0);
+        } else {
+            // Une série vide construite par un nombre d'occurrences s'arrête à son premier jour,
+            // qui la décrirait comme une série d'une occurrence : on garde alors le nombre
+            long startDay = e.getStart().toLocalDate().toEpochDay();
+            long terminationDay = termination.getTerminationDateInclusive().toEpochDay();
+            if (termination.getNumberOfOccurrences() <= 0 && terminationDay >= startDay) {
+                out.put(BY_COUNT).putLong(termination.getNumberOfOccurrences());
+            } else {
+                out.put(BY_DATE).putLong(terminationDay);
+            }
+        }
+        out.putInt(exceptions.size());
+        for (LocalDate day : exceptions) {
+            out.putLong(day.toEpochDay());
+        }
+        return out.array();
+    }
+
+    /**
+     * Decodes an event, the buffer is left after it
+     *
+     * @throws java.nio.BufferUnderflowException if the buffer ends before the event
+     * @throws IllegalArgumentException if the content is not an event
+     */
+    static Event decode(ByteBuffer in) {
+        int titleLength = in.getInt();
+        if (titleLength < 0 || titleLength > in.remaining()) {
+            throw new IllegalArgumentException("Invalid title length " + titleLength);
+        }
+        byte[] title = new byte[titleLength];
+        in.get(title);
+        LocalDateTime start = LocalDateTime.ofEpochSecond(in.getLong(), in.getInt(), ZoneOffset.UTC);
+        Duration duration = Duration.ofSeconds(in.getLong(), in.getInt());
+        Event e = new Event(new String(title, StandardCharsets.UTF_8), start, duration);
+        int frequency = in.get();
+        if (frequency == NOT_REPEATING) {
+            return e;
+        }
+        if (frequency < 0 || frequency > UNITS.length) {
+            throw new IllegalArgumentException("Invalid frequency " + frequency);
+        }
+        e.setRepetition(UNITS[frequency - 1]);
+        byte kind = in.get();
+        long termination = in.getLong();
+        int exceptionCount = in.getInt();
+        if (exceptionCount < 0 || exceptionCount > in.remaining() / 8) {
+            throw new IllegalArgumentException("Invalid exception count " + exceptionCount);
+        }
+        long[] days = new long[exceptionCount];
+        for (int i = 0; i < days.length; i++) {
+            days[i] = in.getLong();
+        }
+        switch (kind) {
+            case NO_TERMINATION -> {
+            }
+            case BY_DATE -> e.setTermination(LocalDate.ofEpochDay(termination));
+            case BY_COUNT -> e.setTermination(termination);
+            default -> throw new IllegalArgumentException("Invalid termination " + kind);
+        }
+        e.getRepetition().addExceptions(Arrays.stream(days).mapToObj(LocalDate::ofEpochDay).toList());
+        return e;
+    }
+
+    /**
+     * @return the CRC-32C of a record
+     */
+    static int checksum(byte[] bytes, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Appends a framed record : its length, its CRC, then its content
+     */
+    static void frame(ByteBuffer out, byte[] record) {
+        out.putInt(record.length).putInt(checksum(record, 0, record.length)).put(record);
+    }
+}
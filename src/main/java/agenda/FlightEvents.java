@@ -0,0 +1,157 @@
+package agenda;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Description : the JDK Flight Recorder events of the agendas.
+ * <p>
+ * They are disabled unless a recording enables them, e.g. with the settings shipped in
+ * {@code agenda.jfc} :
+ * <pre>
+ * java -XX:StartFlightRecording:settings=agenda.jfc,filename=agenda.jfr ...
+ * jfr print --categories Agenda agenda.jfr
+ * </pre>
+ * The agendas check {@link EventType#isEnabled()} first, so that a disabled event costs a
+ * flag read and no allocation.
+ */
+final class FlightEvents {
+
+    static final EventType EVENTS_IN_DAY = EventType.getEventType(EventsInDay.class);
+    static final EventType FIND_BY_TITLE = EventType.getEventType(FindByTitle.class);
+    static final EventType IS_FREE_FOR = EventType.getEventType(IsFreeFor.class);
+    static final EventType FREE_SLOTS = EventType.getEventType(FreeSlotSearch.class);
+    static final EventType BULK_LOAD = EventType.getEventType(BulkLoad.class);
+    static final EventType RECURRENCE_EXPANSION = EventType.getEventType(RecurrenceExpansion.class);
+    static final EventType TERMINATION = EventType.getEventType(TerminationComputed.class);
+
+    private FlightEvents() {
+    }
+
+    @Name("agenda.EventsInDay")
+    @Label("Events In Day")
+    @Category("Agenda")
+    @Description("A call of Agenda.eventsInDay")
+    static final class EventsInDay extends jdk.jfr.Event {
+        @Label("Agenda Size")
+        int agendaSize;
+
+        @Label("Day")
+        String day;
+
+        @Label("Results")
+        int results;
+
+        @Label("Events Evaluated")
+        @Description("Event.isInDay evaluations on the index path, events read from the bitmaps on the bitmaps path")
+        int evaluated;
+
+        @Label("Source")
+        @Description("cache, bitmaps or index")
+        String source;
+    }
+
+    @Name("agenda.FindByTitle")
+    @Label("Find By Title")
+    @Category("Agenda")
+    @Description("A call of Agenda.findByTitle")
+    static final class FindByTitle extends jdk.jfr.Event {
+        @Label("Agenda Size")
+        int agendaSize;
+
+        @Label("Title")
+        String title;
+
+        @Label("Results")
+        int results;
+    }
+
+    @Name("agenda.IsFreeFor")
+    @Label("Is Free For")
+    @Category("Agenda")
+    @Description("A call of Agenda.isFreeFor")
+    static final class IsFreeFor extends jdk.jfr.Event {
+        @Label("Agenda Size")
+        int agendaSize;
+
+        @Label("Event Start")
+        String start;
+
+        @Label("Repeating")
+        boolean repeating;
+
+        @Label("Free")
+        boolean free;
+    }
+
+    @Name("agenda.FreeSlotSearch")
+    @Label("Free Slot Search")
+    @Category("Agenda")
+    @Description("A call of Agenda.findFreeSlots or Agenda.findEarliestSlot")
+    static final class FreeSlotSearch extends jdk.jfr.Event {
+        @Label("Agenda Size")
+        int agendaSize;
+
+        @Label("From")
+        String from;
+
+        @Label("To")
+        String to;
+
+        @Label("Slots")
+        int slots;
+    }
+
+    @Name("agenda.BulkLoad")
+    @Label("Bulk Load")
+    @Category("Agenda")
+    @Description("A call of Agenda.addAll, e.g. by AgendaLoader")
+    @StackTrace(false)
+    static final class BulkLoad extends jdk.jfr.Event {
+        @Label("Events Added")
+        int added;
+
+        @Label("Agenda Size")
+        int agendaSize;
+    }
+
+    @Name("agenda.RecurrenceExpansion")
+    @Label("Recurrence Expansion")
+    @Category("Agenda")
+    @Description("The expansion of the occurrences of the events over the days of a horizon, into bitmaps")
+    @StackTrace(false)
+    static final class RecurrenceExpansion extends jdk.jfr.Event {
+        @Label("Events")
+        int events;
+
+        @Label("First Day")
+        String firstDay;
+
+        @Label("Days")
+        long days;
+
+        @Label("Days Reused")
+        @Description("Days copied from the previous compilation instead of being expanded")
+        long reusedDays;
+    }
+
+    @Name("agenda.Termination")
+    @Label("Termination")
+    @Category("Agenda")
+    @Description("The computation of the termination of a series, from its date or its number of occurrences")
+    @StackTrace(false)
+    static final class TerminationComputed extends jdk.jfr.Event {
+        @Label("Frequency")
+        String frequency;
+
+        @Label("Occurrences")
+        long occurrences;
+
+        @Label("Last Day")
+        String lastDay;
+    }
+}
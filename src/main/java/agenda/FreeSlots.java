@@ -0,0 +1,138 @@
+package agenda;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Description : the free slots of an agenda inside a time window, found by a single sweep
+ * over its busy intervals (e.g. its occurrences) in chronological order.
+ * <p>
+ * The sweep keeps the end of the time occupied so far : an interval that starts after it
+ * leaves a gap, which is cut by the working hours, if any, and kept if it is long enough.
+ * Like {@link Conflict#overlap}, an event that starts exactly when an occurrence ends does
+ * not overlap it : the slots end when the next interval starts, and start when the
+ * previous one ends. The slots are found lazily, so that looking for the first one stops
+ * the sweep as soon as it is found.
+ */
+final class FreeSlots extends Spliterators.AbstractSpliterator<TimeSlot> {
+
+    private final Iterator<TimeSlot> chronological;
+    private final LocalDateTime to;
+    private final Duration minDuration;
+    private final WorkingHours hours;
+
+    // Fin du temps occupé jusqu'ici ; null quand la fenêtre est épuisée
+    private LocalDateTime occupiedUntil;
+    // Écart en cours de découpage par les heures ouvrées
+    private LocalDateTime gapFrom;
+    private LocalDateTime gapTo;
+
+    /**
+     * @param chronological the busy intervals that overlap [from, to[, ordered by start ; an
+     * interval that starts before the end of the time occupied so far may come in any order
+     * @param from the start of the window (inclusive)
+     * @param to the end of the window (exclusive)
+     * @param minDuration the minimal length of a slot
+     * @param hours the hours when a slot can take place, null for any time
+     */
+    FreeSlots(Iterator<TimeSlot> chronological, LocalDateTime from, LocalDateTime to,
+              Duration minDuration, WorkingHours hours) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        if (minDuration.isNegative()) {
+            throw new IllegalArgumentException("The duration of a slot cannot be negative : " + minDuration);
+        }
+        this.chronological = chronological;
+        this.to = to;
+        this.minDuration = minDuration;
+        this.hours = hours;
+        this.occupiedUntil = from;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super TimeSlot> action) {
+        while (true) {
+            TimeSlot slot = nextInGap();
+            if (slot != null) {
+                action.accept(slot);
+                return true;
+            }
+            if (occupiedUntil == null) {
+                return false;
+            }
+            if (!chronological.hasNext()) {
+                // Dernier écart : jusqu'à la fin de la fenêtre
+                startGap(occupiedUntil, to);
+                occupiedUntil = null;
+                continue;
+            }
+            TimeSlot next = chronological.next();
+            if (next.start().isAfter(occupiedUntil)) {
+                startGap(occupiedUntil, next.start().isBefore(to) ? next.start() : to);
+            }
+            if (next.end().isAfter(occupiedUntil)) {
+                occupiedUntil = next.end();
+            }
+            if (!occupiedUntil.isBefore(to)) {
+                occupiedUntil = null;
+            }
+        }
+    }
+
+    /**
+     * @param occurrences occurrences in chronological order
+     * @return the time they occupy, in the same order
+     */
+    static Iterator<TimeSlot> busy(Iterator<Occurrence> occurrences) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return occurrences.hasNext();
+            }
+
+            @Override
+            public TimeSlot next() {
+                Occurrence o = occurrences.next();
+                // Une durée négative n'occupe que l'instant du début
+                return new TimeSlot(o.start(), o.end().isBefore(o.start()) ? o.start() : o.end());
+            }
+        };
+    }
+
+    private void startGap(LocalDateTime from, LocalDateTime until) {
+        gapFrom = from;
+        gapTo = until;
+    }
+
+    /**
+     * @return the next slot of the current gap that is long enough, null if there is none
+     */
+    private TimeSlot nextInGap() {
+        while (gapFrom != null && gapFrom.isBefore(gapTo)) {
+            LocalDateTime start = gapFrom;
+            LocalDateTime end = gapTo;
+            if (hours == null) {
+                gapFrom = null;
+            } else {
+                // Un jour ouvré à la fois
+                LocalDateTime opening = start.toLocalDate().atTime(hours.start());
+                LocalDateTime closing = start.toLocalDate().atTime(hours.end());
+                if (opening.isAfter(start)) {
+                    start = opening;
+                }
+                if (closing.isBefore(end)) {
+                    end = closing;
+                }
+                gapFrom = start.toLocalDate().plusDays(1).atStartOfDay();
+            }
+            if (start.isBefore(end) && Duration.between(start, end).compareTo(minDuration) >= 0) {
+                return new TimeSlot(start, end);
+            }
+        }
+        gapFrom = null;
+        return null;
+    }
+}
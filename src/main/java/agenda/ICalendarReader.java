@@ -0,0 +1,507 @@
+package agenda;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Description : reads the VEVENT components of an iCalendar (RFC 5545) stream.
+ * <p>
+ * The input is read through NIO buffers and parsed one logical line at a time (folded lines
+ * are unfolded), so memory use does not depend on the size of the input. A file is cut into
+ * chunks that start on a {@code BEGIN:VEVENT} line, and the chunks are parsed in parallel ;
+ * the events are returned in the order of the file.
+ * <p>
+ * Mapping :
+ * <ul>
+ * <li>SUMMARY is the title, DTSTART the start, DURATION or DTEND the duration. A start
+ * without end lasts one day for a date, nothing for a date-time. An event on dates ends one
+ * nanosecond before the midnight of its (exclusive) end date, so that it does not occur on
+ * that day.</li>
+ * <li>RRULE FREQ=DAILY, WEEKLY, MONTHLY or YEARLY is the repetition, COUNT and UNTIL its
+ * termination.</li>
+ * <li>EXDATE values are exceptions.</li>
+ * </ul>
+ * Events carry local date-times : times are kept as written, whatever their TZID, and UTC
+ * times stay in UTC. The events whose rule cannot be represented (INTERVAL other than 1,
+ * BYDAY...), that have no DTSTART or no END:VEVENT are skipped and counted, see
+ * {@link #skippedEvents()}.
+ */
+public class ICalendarReader {
+
+    // Taille des morceaux de fichier lus en parallèle
+    private static final int CHUNK_SIZE = 1 << 22;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte[] BEGIN_VEVENT = "BEGIN:VEVENT".getBytes(StandardCharsets.US_ASCII);
+
+    private final LongAdder skipped = new LongAdder();
+
+    /**
+     * @return the number of VEVENT components skipped so far by this reader
+     */
+    public long skippedEvents() {
+        return skipped.sum();
+    }
+
+    /**
+     * Reads the events of an iCalendar file, in parallel
+     *
+     * @param file the file to read
+     * @return the events, in the order of the file
+     * @throws IOException if the file cannot be read
+     */
+    public List<Event> read(Path file) throws IOException {
+        return read(file, CHUNK_SIZE);
+    }
+
+    List<Event> read(Path file, int chunkSize) throws IOException {
+        long[] bounds = chunks(file, chunkSize);
+        try {
+            List<List<Event>> parts = IntStream.range(0, bounds.length - 1).parallel()
+                    .mapToObj(i -> {
+                        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                            channel.position(bounds[i]);
+                            return read(channel, bounds[i + 1] - bounds[i]);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .toList();
+            List<Event> events = new ArrayList<>();
+            parts.forEach(events::addAll);
+            return events;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Reads the events of an iCalendar stream
+     *
+     * @param channel the stream, read until its end
+     * @return the events, in the order of the stream
+     * @throws IOException if the stream cannot be read
+     */
+    public List<Event> read(ReadableByteChannel channel) throws IOException {
+        return read(channel, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads an iCalendar file into an agenda, with a single bulk insertion
+     *
+     * @param file the file to read
+     * @param agenda the agenda that receives the events
+     * @throws IOException if the file cannot be read
+     * @see Agenda#addAll(java.util.Collection)
+     */
+    public void importInto(Path file, Agenda agenda) throws IOException {
+        agenda.addAll(read(file));
+    }
+
+    private List<Event> read(ReadableByteChannel channel, long limit) throws IOException {
+        List<Event> events = new ArrayList<>();
+        LineReader lines = new LineReader(channel, limit);
+        VEvent current = null;
+        int nested = 0;
+        for (String line = lines.next(); line != null; line = lines.next()) {
+            int colon = valueSeparator(line);
+            if (colon < 0) {
+                continue;
+            }
+            String name = line.substring(0, colon);
+            String value = line.substring(colon + 1);
+            String property = propertyName(name);
+            if (property.equals("BEGIN")) {
+                if (current == null && value.equalsIgnoreCase("VEVENT")) {
+                    current = new VEvent();
+                } else if (current != null) {
+                    nested++;
+                }
+            } else if (property.equals("END")) {
+                if (current != null && nested > 0) {
+                    nested--;
+                } else if (current != null && value.equalsIgnoreCase("VEVENT")) {
+                    Event e = current.toEvent();
+                    if (e == null) {
+                        skipped.increment();
+                    } else {
+                        events.add(e);
+                    }
+                    current = null;
+                }
+            } else if (current != null && nested == 0) {
+                current.set(property, name, value);
+            }
+        }
+        if (current != null) {
+            // BEGIN:VEVENT sans END:VEVENT à la fin du flux
+            skipped.increment();
+        }
+        return events;
+    }
+
+    /**
+     * Cuts a file into chunks that start on a BEGIN:VEVENT line
+     *
+     * @return the bounds of the chunks, from 0 to the size of the file
+     */
+    private static long[] chunks(Path file, int chunkSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<Long> bounds = new ArrayList<>();
+            bounds.add(0L);
+            for (long position = chunkSize; position < size; position += chunkSize) {
+                long bound = nextEventStart(channel, Math.max(position, bounds.get(bounds.size() - 1) + 1));
+                if (bound >= size) {
+                    break;
+                }
+                bounds.add(bound);
+                position = bound;
+            }
+            bounds.add(size);
+            return bounds.stream().mapToLong(Long::longValue).toArray();
+        }
+    }
+
+    /**
+     * @return the position of the first line at or after {@code from} that starts with
+     * BEGIN:VEVENT, or the size of the file
+     */
+    private static long nextEventStart(FileChannel channel, long from) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        // On relit l'octet précédent pour reconnaître un début de ligne
+        long position = from - 1;
+        while (position < channel.size()) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            byte[] bytes = buffer.array();
+            for (int i = 0; i + BEGIN_VEVENT.length < read; i++) {
+                if (bytes[i] == '\n' && startsWith(bytes, i + 1, read)) {
+                    return position + i + 1;
+                }
+            }
+            if (read <= BEGIN_VEVENT.length + 1) {
+                break;
+            }
+            position += read - BEGIN_VEVENT.length - 1;
+        }
+        return channel.size();
+    }
+
+    private static boolean startsWith(byte[] bytes, int offset, int length) {
+        if (offset + BEGIN_VEVENT.length > length) {
+            return false;
+        }
+        for (int i = 0; i < BEGIN_VEVENT.length; i++) {
+            if (Character.toUpperCase(bytes[offset + i]) != BEGIN_VEVENT[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the position of the colon that separates the name and parameters of a content
+     * line from its value, ignoring the colons of quoted parameter values
+     */
+    private static int valueSeparator(String line) {
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ':' && !quoted) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String propertyName(String name) {
+        int semicolon = name.indexOf(';');
+        return (semicolon < 0 ? name : name.substring(0, semicolon)).toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * The properties of the VEVENT being read
+     */
+    private static final class VEvent {
+        private String summary = "";
+        private String start;
+        private boolean startIsDate;
+        private String end;
+        private String duration;
+        private String rule;
+        private final List<String> exceptions = new ArrayList<>();
+
+        void set(String property, String name, String value) {
+            switch (property) {
+                case "SUMMARY" -> summary = unescape(value);
+                case "DTSTART" -> {
+                    start = value;
+                    // Une date seule (VALUE=DATE) s'écrit sur 8 caractères, sans heure
+                    startIsDate = value.length() == 8;
+                }
+                case "DTEND" -> end = value;
+                case "DURATION" -> duration = value;
+                case "RRULE" -> rule = value;
+                case "EXDATE" -> exceptions.addAll(Arrays.asList(value.split(",")));
+                default -> {
+                }
+            }
+        }
+
+        /**
+         * @return the event, or null if it cannot be represented
+         */
+        Event toEvent() {
+            if (start == null) {
+                return null;
+            }
+            try {
+                LocalDateTime startTime = dateTime(start);
+                Duration length;
+                if (duration != null) {
+                    length = duration(duration);
+                } else if (end != null) {
+                    length = Duration.between(startTime, dateTime(end));
+                } else {
+                    length = startIsDate ? Duration.ofDays(1) : Duration.ZERO;
+                }
+                if (startIsDate && length.compareTo(Duration.ZERO) > 0) {
+                    // La fin d'un événement à la journée est exclue (RFC 5545) alors que
+                    // Event#isInDay inclut le jour de fin : il s'arrête juste avant minuit
+                    length = length.minusNanos(1);
+                }
+                Event e = new Event(summary, startTime, length);
+                return rule == null || repeat(e) ? e : null;
+            } catch (DateTimeParseException | ArithmeticException | IllegalArgumentException invalid) {
+                return null;
+            }
+        }
+
+        private boolean repeat(Event e) {
+            ChronoUnit frequency = null;
+            String count = null;
+            String until = null;
+            for (String part : rule.split(";")) {
+                if (part.isEmpty()) {
+                    continue;
+                }
+                int equals = part.indexOf('=');
+                String key = part.substring(0, Math.max(equals, 0)).toUpperCase(Locale.ROOT);
+                String value = part.substring(equals + 1).toUpperCase(Locale.ROOT);
+                switch (key) {
+                    case "FREQ" -> frequency = switch (value) {
+                        case "DAILY" -> ChronoUnit.DAYS;
+                        case "WEEKLY" -> ChronoUnit.WEEKS;
+                        case "MONTHLY" -> ChronoUnit.MONTHS;
+                        case "YEARLY" -> ChronoUnit.YEARS;
+                        default -> null;
+                    };
+                    case "COUNT" -> count = value;
+                    case "UNTIL" -> until = value;
+                    case "INTERVAL" -> {
+                        if (!value.equals("1")) {
+                            return false;
+                        }
+                    }
+                    case "WKST" -> {
+                        // Sans effet sans BYDAY
+                    }
+                    default -> {
+                        return false;
+                    }
+                }
+            }
+            if (frequency == null) {
+                return false;
+            }
+            e.setRepetition(frequency);
+            if (count != null) {
+                e.setTermination(Long.parseLong(count));
+            } else if (until != null) {
+                e.setTermination(lastDay(until, e.getStart()));
+            }
+            if (!exceptions.isEmpty()) {
+                List<LocalDate> days = new ArrayList<>(exceptions.size());
+                for (String exception : exceptions) {
+                    days.add(date(exception));
+                }
+                e.getRepetition().addExceptions(days);
+            }
+            return true;
+        }
+
+        /**
+         * @return the day of the last occurrence allowed by an UNTIL value : an occurrence
+         * that starts after an UNTIL date-time is excluded, even on the same day
+         */
+        private static LocalDate lastDay(String until, LocalDateTime start) {
+            LocalDate day = date(until);
+            if (until.length() < 15 || until.charAt(8) != 'T') {
+                return day;
+            }
+            return start.toLocalTime().isAfter(dateTime(until).toLocalTime()) ? day.minusDays(1) : day;
+        }
+
+        private static LocalDate date(String value) {
+            return LocalDate.of(Integer.parseInt(value.substring(0, 4)),
+                    Integer.parseInt(value.substring(4, 6)),
+                    Integer.parseInt(value.substring(6, 8)));
+        }
+
+        private static LocalDateTime dateTime(String value) {
+            LocalDate day = date(value);
+            if (value.length() < 15 || value.charAt(8) != 'T') {
+                return day.atStartOfDay();
+            }
+            return day.atTime(Integer.parseInt(value.substring(9, 11)),
+                    Integer.parseInt(value.substring(11, 13)),
+                    Integer.parseInt(value.substring(13, 15)));
+        }
+
+        /**
+         * @return a duration such as P15DT5H0M20S, P7W, -PT15M
+         */
+        private static Duration duration(String value) {
+            String v = value.toUpperCase(Locale.ROOT);
+            boolean negative = v.startsWith("-");
+            if (negative || v.startsWith("+")) {
+                v = v.substring(1);
+            }
+            Duration d = v.endsWith("W")
+                    ? Duration.ofDays(7 * Long.parseLong(v.substring(1, v.length() - 1)))
+                    : Duration.parse(v);
+            return negative ? d.negated() : d;
+        }
+
+        private static String unescape(String text) {
+            if (text.indexOf('\\') < 0) {
+                return text;
+            }
+            StringBuilder sb = new StringBuilder(text.length());
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '\\' && i + 1 < text.length()) {
+                    char next = text.charAt(++i);
+                    sb.append(next == 'n' || next == 'N' ? '\n' : next);
+                } else {
+                    sb.append(c);
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Reads the logical lines of a stream : CRLF or LF line breaks, folded lines unfolded
+     * before they are decoded, so that a folded UTF-8 sequence is decoded whole
+     */
+    private static final class LineReader {
+        private final ReadableByteChannel channel;
+        private long remaining;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private byte[] line = new byte[256];
+        private int length;
+        private boolean eof;
+
+        LineReader(ReadableByteChannel channel, long limit) {
+            this.channel = channel;
+            this.remaining = limit;
+            buffer.flip();
+        }
+
+        /**
+         * @return the next logical line, or null at the end of the stream
+         */
+        String next() throws IOException {
+            length = 0;
+            while (true) {
+                int b = read();
+                if (b < 0) {
+                    return length == 0 ? null : decode();
+                }
+                if (b == '\n') {
+                    int following = peek();
+                    if (following == ' ' || following == '\t') {
+                        read(); // Ligne repliée : on continue la même ligne logique
+                        continue;
+                    }
+                    if (length == 0) {
+                        continue;
+                    }
+                    return decode();
+                }
+                if (b != '\r') {
+                    append((byte) b);
+                }
+            }
+        }
+
+        private String decode() {
+            return new String(line, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private void append(byte b) {
+            if (length == line.length) {
+                line = Arrays.copyOf(line, length * 2);
+            }
+            line[length++] = b;
+        }
+
+        private int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return buffer.get() & 0xFF;
+        }
+
+        private int peek() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return buffer.get(buffer.position()) & 0xFF;
+        }
+
+        private boolean fill() throws IOException {
+            if (buffer.hasRemaining()) {
+                return true;
+            }
+            if (eof || remaining <= 0) {
+                return false;
+            }
+            buffer.clear();
+            if (remaining < buffer.capacity()) {
+                buffer.limit((int) remaining);
+            }
+            int read = channel.read(buffer);
+            buffer.flip();
+            if (read <= 0) {
+                eof = true;
+                return false;
+            }
+            remaining -= read;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package agenda;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+
+/**
+ * Description : writes events as an iCalendar (RFC 5545) stream, the counterpart of
+ * {@link ICalendarReader}.
+ * <p>
+ * Each event becomes a VEVENT : the title is the SUMMARY, the start the DTSTART, the duration
+ * the DURATION, the repetition an RRULE (with UNTIL or COUNT when it terminates) and its
+ * exceptions an EXDATE. Times are written as floating local times, to the second.
+ * <p>
+ * The events are encoded one character at a time into a single buffer, which is written to
+ * the channel whenever it is full : memory use does not depend on the number of events, and
+ * no string is built per event. A writer reuses its buffer from one call to the next, so it
+ * must not be shared between threads.
+ */
+public class ICalendarWriter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    // Longueur maximale d'une ligne, en octets, sans le CRLF
+    private static final int LINE_LENGTH = 75;
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+    private final Clock clock;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private WritableByteChannel channel;
+    private int column;
+    private long skipped;
+
+    /**
+     * Constructs a writer of all the events
+     */
+    public ICalendarWriter() {
+        this(null, null, Clock.systemUTC());
+    }
+
+    /**
+     * Constructs a writer of the events that have an occurrence in a time window. Repeating
+     * events are written whole, with all their occurrences.
+     *
+     * @param from the start of the window (inclusive)
+     * @param to the end of the window (exclusive)
+     */
+    public ICalendarWriter(LocalDateTime from, LocalDateTime to) {
+        this(Objects.requireNonNull(from), Objects.requireNonNull(to), Clock.systemUTC());
+    }
+
+    ICalendarWriter(LocalDateTime from, LocalDateTime to, Clock clock) {
+        this.from = from;
+        this.to = to;
+        this.clock = clock;
+    }
+
+    /**
+     * @return the number of events skipped so far by this writer because their repetition
+     * cannot be written (a frequency other than days, weeks, months or years)
+     */
+    public long skippedEvents() {
+        return skipped;
+    }
+
+    /**
+     * Writes a calendar
+     *
+     * @param events the events, iterated once
+     * @param channel the channel, left open
+     * @return the number of events written
+     * @throws IOException if the channel cannot be written
+     */
+    public long write(Iterable<Event> events, WritableByteChannel channel) throws IOException {
+        this.channel = channel;
+        buffer.clear();
+        column = 0;
+        try {
+            long written = 0;
+            String stamp = stamp();
+            ascii("BEGIN:VCALENDAR");
+            endLine();
+            ascii("VERSION:2.0");
+            endLine();
+            ascii("PRODID:-//agenda//iCalendar//FR");
+            endLine();
+            for (Event e : events) {
+                if (!inWindow(e)) {
+                    continue;
+                }
+                if (e.getRepetition() != null && rule(e.getRepetition().getFrequency()) == null) {
+                    skipped++;
+                    continue;
+                }
+                event(e, stamp, ++written);
+            }
+            ascii("END:VCALENDAR");
+            endLine();
+            flush();
+            return written;
+        } finally {
+            this.channel = null;
+        }
+    }
+
+    /**
+     * Writes a calendar
+     *
+     * @param events the events, iterated once
+     * @param out the stream, flushed and left open
+     * @return the number of events written
+     * @throws IOException if the stream cannot be written
+     */
+    public long write(Iterable<Event> events, OutputStream out) throws IOException {
+        long written = write(events, Channels.newChannel(out));
+        out.flush();
+        return written;
+    }
+
+    /**
+     * Writes the events of an agenda to a file, replaced if it exists
+     *
+     * @param agenda the agenda
+     * @param file the file to write
+     * @return the number of events written
+     * @throws IOException if the file cannot be written
+     */
+    public long export(Agenda agenda, Path file) throws IOException {
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            return write(agenda.getAllEvents(), out);
+        }
+    }
+
+    private boolean inWindow(Event e) {
+        if (from == null) {
+            return true;
+        }
+        if (e.getRepetition() == null) {
+            LocalDateTime end = e.getStart().plus(e.getDuration());
+            return e.getStart().isBefore(to) && end.isAfter(from);
+        }
+        Spliterator<Occurrence> occurrences = e.occurrences(from, to);
+        return occurrences.tryAdvance(o -> { });
+    }
+
+    private String stamp() {
+        LocalDateTime now = LocalDateTime.now(clock.withZone(ZoneOffset.UTC));
+        return "%04d%02d%02dT%02d%02d%02dZ".formatted(now.getYear(), now.getMonthValue(), now.getDayOfMonth(),
+                now.getHour(), now.getMinute(), now.getSecond());
+    }
+
+    private void event(Event e, String stamp, long number) throws IOException {
+        ascii("BEGIN:VEVENT");
+        endLine();
+        ascii("UID:");
+        digits(number, 1);
+        ascii("-");
+        ascii(stamp);
+        ascii("@agenda");
+        endLine();
+        ascii("DTSTAMP:");
+        ascii(stamp);
+        endLine();
+        ascii("DTSTART:");
+        dateTime(e.getStart());
+        endLine();
+        ascii("DURATION:");
+        duration(e.getDuration());
+        endLine();
+        ascii("SUMMARY:");
+        text(e.getTitle());
+        endLine();
+        Repetition repetition = e.getRepetition();
+        if (repetition != null) {
+            ascii("RRULE:FREQ=");
+            ascii(rule(repetition.getFrequency()));
+            Termination termination = repetition.getTermination();
+            if (termination != null) {
+                if (termination.getNumberOfOccurrences() <= 0) {
+                    // Une série vide ne se décrit pas par une date
+                    ascii(";COUNT=");
+                    digits(Math.max(termination.getNumberOfOccurrences(), 0), 1);
+                } else {
+                    // UNTIL est une date-heure comme DTSTART : la journée entière est incluse
+                    ascii(";UNTIL=");
+                    date(termination.getTerminationDateInclusive());
+                    ascii("T235959");
+                }
+            }
+            endLine();
+            List<LocalDate> exceptions = repetition.getExceptions();
+            if (!exceptions.isEmpty()) {
+                ascii("EXDATE:");
+                for (int i = 0; i < exceptions.size(); i++) {
+                    if (i > 0) {
+                        ascii(",");
+                    }
+                    dateTime(exceptions.get(i).atTime(e.getStart().toLocalTime()));
+                }
+                endLine();
+            }
+        }
+        ascii("END:VEVENT");
+        endLine();
+    }
+
+    private static String rule(ChronoUnit frequency) {
+        return switch (frequency) {
+            case DAYS -> "DAILY";
+            case WEEKS -> "WEEKLY";
+            case MONTHS -> "MONTHLY";
+            case YEARS -> "YEARLY";
+            default -> null;
+        };
+    }
+
+    // --- Valeurs ---
+
+    private void date(LocalDate day) throws IOException {
+        digits(day.getYear(), 4);
+        digits(day.getMonthValue(), 2);
+        digits(day.getDayOfMonth(), 2);
+    }
+
+    private void dateTime(LocalDateTime t) throws IOException {
+        date(t.toLocalDate());
+        ascii("T");
+        digits(t.getHour(), 2);
+        digits(t.getMinute(), 2);
+        digits(t.getSecond(), 2);
+    }
+
+    /**
+     * Writes a duration such as P1DT2H0M0S, truncated to the second
+     */
+    private void duration(Duration d) throws IOException {
+        long seconds = d.getSeconds();
+        if (seconds < 0 && d.getNano() > 0) {
+            seconds++; // Troncature vers zéro
+        }
+        if (seconds < 0) {
+            ascii("-");
+            seconds = -seconds;
+        }
+        long days = seconds / SECONDS_PER_DAY;
+        long hours = seconds % SECONDS_PER_DAY / 3_600;
+        long minutes = seconds % 3_600 / 60;
+        seconds %= 60;
+        ascii("P");
+        if (days > 0) {
+            digits(days, 1);
+            ascii("D");
+            if (hours == 0 && minutes == 0 && seconds == 0) {
+                return;
+            }
+        }
+        // Les composantes de l'heure se suivent sans trou (RFC 5545, dur-time)
+        ascii("T");
+        if (hours > 0) {
+            digits(hours, 1);
+            ascii("H");
+        }
+        if (hours > 0 || minutes > 0) {
+            digits(minutes, 1);
+            ascii("M");
+        }
+        digits(seconds, 1);
+        ascii("S");
+    }
+
+    // --- Encodage : UTF-8, lignes repliées à 75 octets ---
+
+    private void text(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\', ';', ',' -> {
+                    fold(2);
+                    put('\\');
+                    put(c);
+                }
+                case '\n' -> {
+                    fold(2);
+                    put('\\');
+                    put('n');
+                }
+                case '\r' -> {
+                }
+                default -> {
+                    if (c < 0x80) {
+                        fold(1);
+                        put(c);
+                    } else if (c < 0x800) {
+                        fold(2);
+                        put(0xC0 | c >> 6);
+                        put(0x80 | c & 0x3F);
+                    } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                            && Character.isLowSurrogate(value.charAt(i + 1))) {
+                        int code = Character.toCodePoint(c, value.charAt(++i));
+                        fold(4);
+                        put(0xF0 | code >> 18);
+                        put(0x80 | code >> 12 & 0x3F);
+                        put(0x80 | code >> 6 & 0x3F);
+                        put(0x80 | code & 0x3F);
+                    } else {
+                        int code = Character.isSurrogate(c) ? '?' : c;
+                        fold(3);
+                        put(0xE0 | code >> 12);
+                        put(0x80 | code >> 6 & 0x3F);
+                        put(0x80 | code & 0x3F);
+                    }
+                }
+            }
+        }
+    }
+
+    private void ascii(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            fold(1);
+            put(value.charAt(i));
+        }
+    }
+
+    private void digits(long value, int width) throws IOException {
+        if (value < 0) {
+            ascii("-");
+            value = -value;
+        }
+        long power = 1;
+        int count = 1;
+        while (power <= value / 10) {
+            power *= 10;
+            count++;
+        }
+        for (; count < width; count++) {
+            fold(1);
+            put('0');
+        }
+        for (; power > 0; power /= 10) {
+            fold(1);
+            put((int) ('0' + value / power % 10));
+        }
+    }
+
+    /**
+     * Starts a continuation line if the next {@code bytes} bytes do not fit on the current one
+     */
+    private void fold(int bytes) throws IOException {
+        if (column + bytes > LINE_LENGTH) {
+            put('\r');
+            put('\n');
+            put(' ');
+            column = 1;
+        }
+        column += bytes;
+    }
+
+    private void endLine() throws IOException {
+        put('\r');
+        put('\n');
+        column = 0;
+    }
+
+    private void put(int b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put((byte) b);
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
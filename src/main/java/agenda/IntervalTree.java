@@ -0,0 +1,353 @@
+package agenda;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Description : an augmented interval tree (AVL balanced) over closed intervals
+ * [low, high] of {@code long} bounds.
+ * <p>
+ * Entries are ordered by (low, sequence), the sequence number making every key
+ * unique, and each node stores the greatest {@code high} of its sub-tree so that
+ * overlap queries only visit the branches that can match : an overlap query costs
+ * O(log n + k) for k results.
+ *
+ * @param <T> the type of the values attached to the intervals
+ */
+final class IntervalTree<T> {
+
+    private static final class Node<T> {
+        final long low;
+        final long high;
+        final long sequence;
+        final T value;
+        long max;
+        int height = 1;
+        Node<T> left;
+        Node<T> right;
+
+        Node(long low, long high, long sequence, T value) {
+            this.low = low;
+            this.high = high;
+            this.sequence = sequence;
+            this.value = value;
+            this.max = high;
+        }
+    }
+
+    private Node<T> root;
+    private int size;
+
+    /**
+     * @return the number of intervals stored in this tree
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the greatest upper bound stored in this tree, or Long.MIN_VALUE if it is empty
+     */
+    long maxHigh() {
+        return max(root);
+    }
+
+    /**
+     * Adds an interval to this tree
+     *
+     * @param low the lower bound (inclusive)
+     * @param high the upper bound (inclusive)
+     * @param sequence a number that identifies this entry among the entries with the same lower bound
+     * @param value the value attached to the interval
+     */
+    void insert(long low, long high, long sequence, T value) {
+        root = insert(root, new Node<>(low, high, sequence, value));
+        size++;
+    }
+
+    /**
+     * Removes an interval from this tree
+     *
+     * @param low the lower bound of the interval
+     * @param sequence the number given to the entry when it was inserted
+     * @return true if the entry was in this tree
+     */
+    boolean remove(long low, long sequence) {
+        int before = size;
+        root = remove(root, low, sequence);
+        return size < before;
+    }
+
+    /**
+     * Adds many intervals at once. The new entries are sorted together with the entries already
+     * in the tree (in parallel for large inputs), and a perfectly balanced tree is then linked
+     * in linear time : O(n log n) overall, instead of n rebalancing insertions.
+     *
+     * @param lows the lower bounds (inclusive)
+     * @param highs the upper bounds (inclusive)
+     * @param sequences the numbers that identify the entries among the entries with the same lower bound
+     * @param values the values attached to the intervals
+     */
+    @SuppressWarnings("unchecked")
+    void insertAll(long[] lows, long[] highs, long[] sequences, List<? extends T> values) {
+        Node<T>[] nodes = (Node<T>[]) new Node<?>[size + values.size()];
+        int count = collect(root, nodes, 0);
+        for (int i = 0; i < values.size(); i++) {
+            nodes[count++] = new Node<>(lows[i], highs[i], sequences[i], values.get(i));
+        }
+        Arrays.parallelSort(nodes, IntervalTree::compare);
+        Build<T> build = new Build<>(nodes, 0, nodes.length);
+        if (nodes.length >= Build.PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(build);
+        } else {
+            build.compute();
+        }
+        root = build.root;
+        size = nodes.length;
+    }
+
+    /**
+     * Finds the values whose interval overlaps [from, to]
+     *
+     * @param from the lower bound of the query (inclusive)
+     * @param to the upper bound of the query (inclusive)
+     * @return the matching values, ordered by lower bound
+     */
+    List<T> query(long from, long to) {
+        List<T> result = new ArrayList<>();
+        overlapping(from, to).forEachRemaining(result::add);
+        return result;
+    }
+
+    /**
+     * Lazily enumerates the values whose interval overlaps [from, to], ordered by lower bound.
+     * The iterator must not be used once the tree has been modified.
+     *
+     * @param from the lower bound of the query (inclusive)
+     * @param to the upper bound of the query (inclusive)
+     * @return an iterator over the matching values
+     */
+    Iterator<T> overlapping(long from, long to) {
+        return new OverlapIterator<>(root, from, to);
+    }
+
+    private static <T> int collect(Node<T> n, Node<T>[] nodes, int count) {
+        while (n != null) {
+            count = collect(n.left, nodes, count);
+            nodes[count++] = n;
+            n = n.right;
+        }
+        return count;
+    }
+
+    /**
+     * Links the sorted nodes [lo, hi[ into a balanced sub-tree, the two halves in parallel
+     */
+    private static final class Build<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        static final int PARALLEL_THRESHOLD = 1 << 16;
+
+        private final Node<T>[] nodes;
+        private final int lo;
+        private final int hi;
+        Node<T> root;
+
+        Build(Node<T>[] nodes, int lo, int hi) {
+            this.nodes = nodes;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (lo >= hi) {
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            Build<T> left = new Build<>(nodes, lo, mid);
+            Build<T> right = new Build<>(nodes, mid + 1, hi);
+            if (hi - lo >= PARALLEL_THRESHOLD) {
+                invokeAll(left, right);
+            } else {
+                left.compute();
+                right.compute();
+            }
+            root = nodes[mid];
+            root.left = left.root;
+            root.right = right.root;
+            update(root);
+        }
+    }
+
+    private static long max(Node<?> n) {
+        return n == null ? Long.MIN_VALUE : n.max;
+    }
+
+    private static int height(Node<?> n) {
+        return n == null ? 0 : n.height;
+    }
+
+    private static <T> void update(Node<T> n) {
+        n.height = 1 + Math.max(height(n.left), height(n.right));
+        n.max = Math.max(n.high, Math.max(max(n.left), max(n.right)));
+    }
+
+    private static int compare(Node<?> a, Node<?> b) {
+        return compare(a.low, a.sequence, b);
+    }
+
+    private static int compare(long low, long sequence, Node<?> b) {
+        int c = Long.compare(low, b.low);
+        return c != 0 ? c : Long.compare(sequence, b.sequence);
+    }
+
+    private static <T> Node<T> insert(Node<T> n, Node<T> added) {
+        if (n == null) {
+            return added;
+        }
+        if (compare(added, n) < 0) {
+            n.left = insert(n.left, added);
+        } else {
+            n.right = insert(n.right, added);
+        }
+        return balance(n);
+    }
+
+    private Node<T> remove(Node<T> n, long low, long sequence) {
+        if (n == null) {
+            return null;
+        }
+        int c = compare(low, sequence, n);
+        if (c < 0) {
+            n.left = remove(n.left, low, sequence);
+        } else if (c > 0) {
+            n.right = remove(n.right, low, sequence);
+        } else {
+            size--;
+            if (n.left == null) {
+                return n.right;
+            }
+            if (n.right == null) {
+                return n.left;
+            }
+            // Le successeur (plus petit noeud du sous-arbre droit) prend la place du noeud retiré
+            Node<T> successor = n.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = removeFirst(n.right);
+            successor.left = n.left;
+            n = successor;
+        }
+        return balance(n);
+    }
+
+    private static <T> Node<T> removeFirst(Node<T> n) {
+        if (n.left == null) {
+            return n.right;
+        }
+        n.left = removeFirst(n.left);
+        return balance(n);
+    }
+
+    private static <T> Node<T> balance(Node<T> n) {
+        update(n);
+        int factor = height(n.left) - height(n.right);
+        if (factor > 1) {
+            if (height(n.left.left) < height(n.left.right)) {
+                n.left = rotateLeft(n.left);
+            }
+            return rotateRight(n);
+        }
+        if (factor < -1) {
+            if (height(n.right.right) < height(n.right.left)) {
+                n.right = rotateRight(n.right);
+            }
+            return rotateLeft(n);
+        }
+        return n;
+    }
+
+    private static <T> Node<T> rotateRight(Node<T> n) {
+        Node<T> l = n.left;
+        n.left = l.right;
+        l.right = n;
+        update(n);
+        update(l);
+        return l;
+    }
+
+    private static <T> Node<T> rotateLeft(Node<T> n) {
+        Node<T> r = n.right;
+        n.right = r.left;
+        r.left = n;
+        update(n);
+        update(r);
+        return r;
+    }
+
+    /**
+     * In-order traversal that prunes the sub-trees which cannot overlap the query :
+     * left sub-trees whose max is before {@code from}, right sub-trees once the lower
+     * bound is past {@code to}.
+     */
+    private static final class OverlapIterator<T> implements Iterator<T> {
+        private final long from;
+        private final long to;
+        private final Deque<Node<T>> stack = new ArrayDeque<>();
+        private Node<T> next;
+
+        OverlapIterator(Node<T> root, long from, long to) {
+            this.from = from;
+            this.to = to;
+            pushLeft(root);
+            advance();
+        }
+
+        private void pushLeft(Node<T> n) {
+            while (n != null && n.max >= from) {
+                stack.push(n);
+                n = n.left;
+            }
+        }
+
+        private void advance() {
+            next = null;
+            while (!stack.isEmpty()) {
+                Node<T> n = stack.pop();
+                if (n.low > to) {
+                    // Tous les noeuds suivants commencent encore plus tard
+                    stack.clear();
+                    return;
+                }
+                pushLeft(n.right);
+                if (n.high >= from) {
+                    next = n;
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            T value = next.value;
+            advance();
+            return value;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package agenda;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Description : an append-only file of framed records, made durable by group commit.
+ * <p>
+ * {@link #append} only copies a record into a memory buffer. {@link #sync} makes the records
+ * durable : the first thread that needs it writes every pending record and forces the file
+ * to disk, while the threads that appended in the meantime wait for that single fsync
+ * instead of issuing their own. Two buffers are swapped so that appends can go on while a
+ * batch is being written.
+ */
+final class Journal implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final Object lock = new Object();
+    private ByteBuffer pending = ByteBuffer.allocate(BUFFER_SIZE);
+    private ByteBuffer spare = ByteBuffer.allocate(BUFFER_SIZE);
+    // Fin logique du journal (enregistrements en attente compris), et fin de la partie durable
+    private long appended;
+    private long durable;
+    private boolean syncing;
+    private IOException failure;
+    private long syncs;
+
+    private Journal(FileChannel channel, long size) {
+        this.channel = channel;
+        this.appended = size;
+        this.durable = size;
+    }
+
+    /**
+     * Opens a journal for appending, after its valid records
+     *
+     * @param file the journal, created if it does not exist
+     * @param validLength the length of its valid records, the rest is cut off
+     * @return the journal
+     * @throws IOException if the file cannot be opened
+     */
+    static Journal open(Path file, long validLength) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() > validLength) {
+                channel.truncate(validLength);
+                channel.force(false);
+            }
+            channel.position(validLength);
+            return new Journal(channel, validLength);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the records of a journal, until its end or its first torn or corrupted record
+     *
+     * @param file the journal
+     * @param record receives the content of every valid record, in order ; it may throw a
+     * runtime exception to reject a record, which then ends the valid part of the journal
+     * @return the length of the valid part of the journal
+     * @throws IOException if the file cannot be read
+     */
+    static long replay(Path file, Consumer<ByteBuffer> record) throws IOException {
+        long size = Files.size(file);
+        long valid = 0;
+        try (InputStream stream = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream, BUFFER_SIZE))) {
+            while (valid + EventCodec.FRAME_HEADER <= size) {
+                int length = in.readInt();
+                int crc = in.readInt();
+                if (length <= 0 || length > size - valid - EventCodec.FRAME_HEADER) {
+                    break;
+                }
+                byte[] content = new byte[length];
+                in.readFully(content);
+                if (EventCodec.checksum(content, 0, length) != crc) {
+                    break;
+                }
+                try {
+                    record.accept(ByteBuffer.wrap(content));
+                } catch (RuntimeException invalid) {
+                    break;
+                }
+                valid += EventCodec.FRAME_HEADER + length;
+            }
+        } catch (EOFException truncated) {
+            // Fin de fichier au milieu d'un enregistrement : seule la partie lue est valide
+        }
+        return valid;
+    }
+
+    /**
+     * Appends a record in memory
+     *
+     * @param record the content of the record
+     * @return the position of the end of the record, to pass to {@link #sync}
+     */
+    long append(byte[] record) {
+        synchronized (lock) {
+            int needed = EventCodec.FRAME_HEADER + record.length;
+            if (pending.remaining() < needed) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + needed));
+                pending.flip();
+                larger.put(pending);
+                pending = larger;
+            }
+            EventCodec.frame(pending, record);
+            appended += needed;
+            return appended;
+        }
+    }
+
+    /**
+     * Waits until the journal is durable up to a position, writing and forcing it to disk if
+     * no other thread is already doing so
+     *
+     * @param position a position returned by {@link #append}
+     * @throws IOException if the journal cannot be written ; it then accepts no more records
+     */
+    void sync(long position) throws IOException {
+        ByteBuffer batch;
+        long end;
+        synchronized (lock) {
+            while (true) {
+                if (failure != null) {
+                    throw new IOException("The journal could not be written", failure);
+                }
+                if (durable >= position) {
+                    return;
+                }
+                if (!syncing) {
+                    break;
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the journal");
+                }
+            }
+            // Ce fil écrit tout ce qui est en attente, y compris les enregistrements des autres fils
+            syncing = true;
+            batch = pending;
+            pending = spare;
+            spare = null;
+            end = appended;
+        }
+        IOException error = null;
+        try {
+            batch.flip();
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            error = e;
+        }
+        synchronized (lock) {
+            batch.clear();
+            spare = batch;
+            syncing = false;
+            syncs++;
+            if (error == null) {
+                durable = end;
+            } else {
+                failure = error;
+            }
+            lock.notifyAll();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Makes every record appended so far durable
+     */
+    void syncAll() throws IOException {
+        long position;
+        synchronized (lock) {
+            position = appended;
+        }
+        sync(position);
+    }
+
+    /**
+     * @return the size of the journal, pending records included
+     */
+    long size() {
+        synchronized (lock) {
+            return appended;
+        }
+    }
+
+    /**
+     * @return the number of fsync calls so far
+     */
+    long syncCount() {
+        synchronized (lock) {
+            return syncs;
+        }
+    }
+
+    /**
+     * Makes the pending records durable, then closes the file
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            syncAll();
+        } finally {
+            channel.close();
+        }
+    }
+}
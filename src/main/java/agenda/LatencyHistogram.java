@@ -0,0 +1,123 @@
+package agenda;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Description : a histogram of durations in nanoseconds, with buckets of logarithmic width
+ * in the manner of HdrHistogram.
+ * <p>
+ * Every power of two is split into 8 buckets, so that a value is known within 12.5 % ;
+ * values below 8 ns have a bucket each, values above 2^44 ns (about 5 hours) share the
+ * last one. Every bucket is a {@link LongAdder} : threads that record at the same time do
+ * not contend on a single counter, and a recording never allocates nor locks.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 44;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param nanos a duration, negative durations count as 0
+     */
+    void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets[bucket(value)].increment();
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * @return the counts of the buckets, the sum and the maximum of the values, read
+     * together but not atomically : recordings that happen meanwhile may be partly included
+     */
+    Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return new Snapshot(counts, total.sum(), max.get());
+    }
+
+    void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        total.reset();
+        max.reset();
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return the greatest value of a bucket
+     */
+    static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        if (bucket == BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * The state of a histogram at a given time
+     */
+    record Snapshot(long[] counts, long total, long max) {
+
+        long count() {
+            long count = 0;
+            for (long c : counts) {
+                count += c;
+            }
+            return count;
+        }
+
+        /**
+         * @param quantile a quantile in [0, 1], e.g. 0.99
+         * @return the greatest value of the bucket that contains the quantile, at most the
+         * maximum, 0 if there is no value
+         */
+        long valueAt(double quantile) {
+            long count = count();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValue(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,609 @@
+package agenda;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongPredicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Description : a read-only agenda answered straight from a memory-mapped file.
+ * <p>
+ * Opening an agenda only maps the file : nothing is read until a query touches the pages,
+ * and the operating system page cache keeps the pages that are used. {@link Event} objects
+ * are only built for the events that a query returns.
+ * <p>
+ * File layout (big-endian) :
+ * <pre>
+ * header      64 bytes   magic, version, counts, longest duration of the short events,
+ *                        latest end, title table offset, count of the long events
+ * records     56 bytes   non repeating events sorted by start, then the long ones sorted by
+ *                        start, then repeating events
+ *                        start s, start ns, duration s, duration ns, title id, sequence,
+ *                        frequency, flags, count of an empty series, termination day,
+ *                        exceptions offset
+ * exceptions             per repeating event : count, sorted epoch days
+ * title table 16 bytes   per title, sorted : string offset, postings offset
+ * strings                per title : length, UTF-8 bytes
+ * postings               per title : count, record numbers in insertion order
+ * </pre>
+ * Since the non repeating events are sorted by start and their longest duration is known,
+ * a day query is a binary search followed by a short scan. The few events that last much
+ * longer than the others are kept in a segment of their own, scanned by every query, so
+ * that a single outlier does not lengthen the scan of all the queries. The repeating events
+ * are tested with the recurrence arithmetic of {@link Recurrences}, on the record fields.
+ */
+public class MappedAgenda {
+
+    private static final int MAGIC = 0x41474E44; // "AGND"
+    private static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int H_ONE_OFF_COUNT = 8;
+    private static final int H_REPEATING_COUNT = 16;
+    private static final int H_LONGEST = 24;
+    private static final int H_LATEST_END = 32;
+    private static final int H_TITLE_COUNT = 40;
+    private static final int H_TITLES = 48;
+    private static final int H_LONG_COUNT = 56;
+
+    private static final int RECORD_SIZE = 56;
+    private static final int R_START = 0;
+    private static final int R_START_NANO = 8;
+    private static final int R_DURATION = 12;
+    private static final int R_DURATION_NANO = 20;
+    private static final int R_TITLE = 24;
+    private static final int R_SEQUENCE = 28;
+    private static final int R_FREQUENCY = 32;
+    private static final int R_FLAGS = 33;
+    private static final int R_EMPTY_COUNT = 36;
+    private static final int R_TERMINATION = 40;
+    private static final int R_EXCEPTIONS = 48;
+
+    private static final int TITLE_ENTRY_SIZE = 16;
+
+    // Indicateurs d'un enregistrement
+    private static final int NO_OCCURRENCE = 1;
+
+    private static final long SECONDS_PER_DAY = 86_400;
+    // Au plus un événement non répétitif sur LONG_FRACTION, et de plus d'un jour, est rangé à part
+    private static final int LONG_FRACTION = 64;
+    private static final long NO_TERMINATION = Long.MAX_VALUE;
+    private static final long NO_EXCEPTIONS = -1;
+    private static final ChronoUnit[] UNITS = ChronoUnit.values();
+
+    private final MappedFile file;
+    private final long oneOffCount;
+    // Les événements non répétitifs [shortCount, oneOffCount[ sont les longs
+    private final long shortCount;
+    private final long repeatingCount;
+    private final long longestDuration;
+    private final long latestEnd;
+    private final long titleCount;
+    private final long titles;
+
+    private final ConflictDetector conflictDetector;
+
+    private MappedAgenda(MappedFile file) throws IOException {
+        this.file = file;
+        if (file.size() < HEADER_SIZE || file.getInt(0) != MAGIC) {
+            throw new IOException("Not an agenda file");
+        }
+        if (file.getInt(4) != VERSION) {
+            throw new IOException("Unsupported agenda file version " + file.getInt(4));
+        }
+        this.oneOffCount = file.getLong(H_ONE_OFF_COUNT);
+        this.shortCount = oneOffCount - file.getLong(H_LONG_COUNT);
+        this.repeatingCount = file.getLong(H_REPEATING_COUNT);
+        this.longestDuration = file.getLong(H_LONGEST);
+        this.latestEnd = file.getLong(H_LATEST_END);
+        this.titleCount = file.getLong(H_TITLE_COUNT);
+        this.titles = file.getLong(H_TITLES);
+        this.conflictDetector = new ConflictDetector(this::occurrencesAround, this::oneOffsFacing, this::repeatingFacing);
+    }
+
+    /**
+     * Opens an agenda file written by {@link #write(Path, Collection)}
+     *
+     * @param file the file to open
+     * @return the agenda, backed by the file
+     * @throws IOException if the file cannot be read or is not an agenda file
+     */
+    public static MappedAgenda open(Path file) throws IOException {
+        return open(file, MappedFile.DEFAULT_CHUNK_BITS);
+    }
+
+    static MappedAgenda open(Path file, int chunkBits) throws IOException {
+        return new MappedAgenda(MappedFile.map(file, chunkBits));
+    }
+
+    /**
+     * @return the number of events in this agenda
+     */
+    public long size() {
+        return oneOffCount + repeatingCount;
+    }
+
+    /**
+     * @return the number of non repeating events stored with the long ones
+     */
+    long longEventCount() {
+        return oneOffCount - shortCount;
+    }
+
+    /**
+     * Computes the events that occur on a given day, with the same rules as
+     * {@link Event#isInDay(LocalDate)}
+     *
+     * @param day the day to test
+     * @return a list of events that occur on that day, in insertion order
+     */
+    public List<Event> eventsInDay(LocalDate day) {
+        long epochDay = day.toEpochDay();
+        long dayStart = epochDay * SECONDS_PER_DAY;
+        List<Long> found = new ArrayList<>();
+        scanOneOffs(dayStart, dayStart + SECONDS_PER_DAY, record -> {
+            long endDay = Math.floorDiv(endFloorSecond(record), SECONDS_PER_DAY);
+            return Math.floorDiv(file.getLong(record + R_START), SECONDS_PER_DAY) <= epochDay && epochDay <= endDay;
+        }, found);
+        for (long r = oneOffCount; r < size(); r++) {
+            long record = record(r);
+            if (repeatingOccursOn(record, epochDay)) {
+                found.add(record);
+            }
+        }
+        return inInsertionOrder(found);
+    }
+
+    /**
+     * Finds the events of this agenda with a given title
+     *
+     * @param title the title to search for
+     * @return the events with the same title, in insertion order
+     */
+    public List<Event> findByTitle(String title) {
+        List<Event> found = new ArrayList<>();
+        long lo = 0;
+        long hi = titleCount - 1;
+        while (lo <= hi) {
+            long mid = (lo + hi) >>> 1;
+            int c = title(mid).compareTo(title);
+            if (c < 0) {
+                lo = mid + 1;
+            } else if (c > 0) {
+                hi = mid - 1;
+            } else {
+                long postings = file.getLong(titles + mid * TITLE_ENTRY_SIZE + 8);
+                int count = file.getInt(postings);
+                for (int i = 0; i < count; i++) {
+                    found.add(event(record(file.getInt(postings + 4 + 4L * i))));
+                }
+                return found;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Tests if there is room in this agenda for an event. The events of this agenda are
+     * rebuilt from the file : an event that was written to the file conflicts with its copy.
+     *
+     * @param e the event to test, repeating or not
+     * @return true if no occurrence of this agenda overlaps an occurrence of {@code e}
+     * @see Agenda#isFreeFor(Event)
+     */
+    public boolean isFreeFor(Event e) {
+        return conflictsWith(e).findAny().isEmpty();
+    }
+
+    /**
+     * Finds the occurrences of this agenda that take place at the same time as an occurrence
+     * of a given event
+     *
+     * @param e the event to test, repeating or not
+     * @return the conflicts, the occurrence of {@code e} first
+     * @see Agenda#conflictsWith(Event)
+     */
+    public Stream<Conflict> conflictsWith(Event e) {
+        return conflictDetector.conflictsWith(e);
+    }
+
+    /**
+     * Writes events in the format read by {@link #open(Path)}. The events are sorted in
+     * memory, the file is written in one sequential pass.
+     *
+     * @param file the file to create or replace
+     * @param events the events to write, in insertion order
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path file, Collection<Event> events) throws IOException {
+        Event[] byInsertion = events.toArray(new Event[0]);
+        Integer[] order = new Integer[byInsertion.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        long[] spans = new long[byInsertion.length];
+        long[] oneOffSpans = new long[byInsertion.length];
+        int oneOffSpanCount = 0;
+        for (int i = 0; i < byInsertion.length; i++) {
+            Event e = byInsertion[i];
+            spans[i] = Agenda.ceilSecond(e.getStart().plus(e.getDuration())) - Agenda.floorSecond(e.getStart());
+            if (e.getRepetition() == null) {
+                oneOffSpans[oneOffSpanCount++] = spans[i];
+            }
+        }
+        long longThreshold = longThreshold(Arrays.copyOf(oneOffSpans, oneOffSpanCount));
+        // Les événements non répétitifs d'abord, courts puis longs, triés par début, puis les autres dans l'ordre d'insertion
+        Arrays.sort(order, Comparator.<Integer, Boolean>comparing(i -> byInsertion[i].getRepetition() != null)
+                .thenComparing(i -> byInsertion[i].getRepetition() == null && spans[i] > longThreshold)
+                .thenComparing(i -> byInsertion[i].getRepetition() == null ? byInsertion[i].getStart() : LocalDateTime.MIN)
+                .thenComparing(i -> i));
+
+        TreeMap<String, List<Integer>> postings = new TreeMap<>();
+        long oneOffs = 0;
+        long longOnes = 0;
+        long longest = 0;
+        long latestEnd = Long.MIN_VALUE;
+        long exceptionsSize = 0;
+        for (int r = 0; r < order.length; r++) {
+            Event e = byInsertion[order[r]];
+            postings.computeIfAbsent(e.getTitle(), t -> new ArrayList<>()).add(r);
+            if (e.getRepetition() == null) {
+                oneOffs++;
+                if (spans[order[r]] > longThreshold) {
+                    longOnes++;
+                } else {
+                    longest = Math.max(longest, spans[order[r]]);
+                }
+                latestEnd = Math.max(latestEnd, Agenda.ceilSecond(e.getStart().plus(e.getDuration())));
+            } else if (!e.getRepetition().getExceptions().isEmpty()) {
+                exceptionsSize += 4 + 8L * e.getRepetition().getExceptions().size();
+            }
+        }
+
+        long titleTable = HEADER_SIZE + (long) order.length * RECORD_SIZE + exceptionsSize;
+        long stringsStart = titleTable + (long) postings.size() * TITLE_ENTRY_SIZE;
+        List<byte[]> encoded = new ArrayList<>(postings.size());
+        Map<String, Integer> titleIds = new HashMap<>();
+        long stringsSize = 0;
+        for (String title : postings.keySet()) {
+            titleIds.put(title, encoded.size());
+            byte[] bytes = title.getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            stringsSize += 4 + bytes.length;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(oneOffs);
+            out.writeLong(order.length - oneOffs);
+            out.writeLong(longest);
+            out.writeLong(latestEnd);
+            out.writeLong(postings.size());
+            out.writeLong(titleTable);
+            out.writeLong(longOnes);
+
+            long exceptions = HEADER_SIZE + (long) order.length * RECORD_SIZE;
+            for (int r = 0; r < order.length; r++) {
+                Event e = byInsertion[order[r]];
+                out.writeLong(e.getStart().toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(e.getStart().getNano());
+                out.writeLong(e.getDuration().getSeconds());
+                out.writeInt(e.getDuration().getNano());
+                out.writeInt(titleIds.get(e.getTitle()));
+                out.writeInt(order[r]);
+                Repetition repetition = e.getRepetition();
+                long terminationDay = NO_TERMINATION;
+                int flags = 0;
+                int emptyCount = 0;
+                long exceptionsOffset = NO_EXCEPTIONS;
+                if (repetition != null) {
+                    Termination termination = repetition.getTermination();
+                    if (termination != null) {
+                        // Même convention que ColumnarAgenda : le jour de la dernière occurrence possible
+                        long startDay = e.getStart().toLocalDate().toEpochDay();
+                        terminationDay = termination.getTerminationDateInclusive().toEpochDay();
+                        if (termination.getNumberOfOccurrences() <= 0 && terminationDay >= startDay) {
+                            flags |= NO_OCCURRENCE;
+                            emptyCount = termination.getNumberOfOccurrences();
+                            terminationDay = startDay - 1;
+                        }
+                    }
+                    if (!repetition.getExceptions().isEmpty()) {
+                        exceptionsOffset = exceptions;
+                        exceptions += 4 + 8L * repetition.getExceptions().size();
+                    }
+                }
+                out.writeByte(repetition == null ? 0 : repetition.getFrequency().ordinal() + 1);
+                out.writeByte(flags);
+                out.writeShort(0);
+                out.writeInt(emptyCount);
+                out.writeLong(terminationDay);
+                out.writeLong(exceptionsOffset);
+            }
+            for (int r = (int) oneOffs; r < order.length; r++) {
+                Repetition repetition = byInsertion[order[r]].getRepetition();
+                if (!repetition.getExceptions().isEmpty()) {
+                    long[] days = repetition.exceptionDays();
+                    out.writeInt(days.length);
+                    for (long day : days) {
+                        out.writeLong(day);
+                    }
+                }
+            }
+            long strings = stringsStart;
+            long postingsOffset = stringsStart + stringsSize;
+            for (Map.Entry<String, List<Integer>> entry : postings.entrySet()) {
+                out.writeLong(strings);
+                out.writeLong(postingsOffset);
+                strings += 4 + encoded.get(titleIds.get(entry.getKey())).length;
+                postingsOffset += 4 + 4L * entry.getValue().size();
+            }
+            for (byte[] bytes : encoded) {
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            for (List<Integer> records : postings.values()) {
+                records.sort(Comparator.comparing(r -> order[r]));
+                out.writeInt(records.size());
+                for (int r : records) {
+                    out.writeInt(r);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param spans the lengths of the non repeating events, in seconds
+     * @return the length above which a non repeating event is stored with the long ones :
+     * at least one day, and such that at most one event in {@link #LONG_FRACTION} is long
+     */
+    private static long longThreshold(long[] spans) {
+        if (spans.length == 0) {
+            return SECONDS_PER_DAY;
+        }
+        Arrays.sort(spans);
+        return Math.max(SECONDS_PER_DAY, spans[spans.length - 1 - spans.length / LONG_FRACTION]);
+    }
+
+    // --- Lecture des enregistrements ---
+
+    private static long record(long r) {
+        return HEADER_SIZE + r * RECORD_SIZE;
+    }
+
+    private String title(long id) {
+        long string = file.getLong(titles + id * TITLE_ENTRY_SIZE);
+        return new String(file.getBytes(string + 4, file.getInt(string)), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the number of the first short non repeating record that starts at or after a second
+     */
+    private long firstStartingAtOrAfter(long second) {
+        long lo = 0;
+        long hi = shortCount;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (file.getLong(record(mid) + R_START) < second) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private long endFloorSecond(long record) {
+        long nano = (long) file.getInt(record + R_START_NANO) + file.getInt(record + R_DURATION_NANO);
+        return file.getLong(record + R_START) + file.getLong(record + R_DURATION) + nano / 1_000_000_000;
+    }
+
+    private long endSecond(long record) {
+        long nano = (long) file.getInt(record + R_START_NANO) + file.getInt(record + R_DURATION_NANO);
+        return file.getLong(record + R_START) + file.getLong(record + R_DURATION)
+                + nano / 1_000_000_000 + (nano % 1_000_000_000 == 0 ? 0 : 1);
+    }
+
+    private ChronoUnit frequency(long record) {
+        return UNITS[file.get(record + R_FREQUENCY) - 1];
+    }
+
+    private boolean isException(long record, long day) {
+        long exceptions = file.getLong(record + R_EXCEPTIONS);
+        if (exceptions == NO_EXCEPTIONS) {
+            return false;
+        }
+        long lo = 0;
+        long hi = file.getInt(exceptions) - 1L;
+        while (lo <= hi) {
+            long mid = (lo + hi) >>> 1;
+            long d = file.getLong(exceptions + 4 + 8 * mid);
+            if (d < day) {
+                lo = mid + 1;
+            } else if (d > day) {
+                hi = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean repeatingOccursOn(long record, long day) {
+        ChronoUnit frequency = frequency(record);
+        if (!frequency.isDateBased()) {
+            return event(record).isInDay(LocalDate.ofEpochDay(day));
+        }
+        long startDay = Math.floorDiv(file.getLong(record + R_START), SECONDS_PER_DAY);
+        long spanDays = Math.floorDiv(endFloorSecond(record), SECONDS_PER_DAY) - startDay;
+        return Recurrences.occursOn(startDay, frequency, spanDays, file.getLong(record + R_TERMINATION),
+                d -> isException(record, d), day);
+    }
+
+    /**
+     * Tests on the record fields if an occurrence may overlap [from, to[ : exact for whole
+     * seconds, conservative for fractions of seconds and time based series
+     */
+    private boolean repeatingMayOverlap(long record, long from, long to) {
+        ChronoUnit frequency = frequency(record);
+        if (!frequency.isDateBased()) {
+            return true;
+        }
+        long start = file.getLong(record + R_START);
+        return Recurrences.overlaps(start, endSecond(record) - start, frequency,
+                file.getLong(record + R_TERMINATION), d -> isException(record, d), from, to);
+    }
+
+    /**
+     * Rebuilds the event of a record
+     */
+    private Event event(long record) {
+        Event e = new Event(title(file.getInt(record + R_TITLE)),
+                LocalDateTime.ofEpochSecond(file.getLong(record + R_START), file.getInt(record + R_START_NANO), ZoneOffset.UTC),
+                Duration.ofSeconds(file.getLong(record + R_DURATION), file.getInt(record + R_DURATION_NANO)));
+        int frequency = file.get(record + R_FREQUENCY);
+        if (frequency == 0) {
+            return e;
+        }
+        e.setRepetition(UNITS[frequency - 1]);
+        long exceptions = file.getLong(record + R_EXCEPTIONS);
+        if (exceptions != NO_EXCEPTIONS) {
+            int count = file.getInt(exceptions);
+            List<LocalDate> days = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                days.add(LocalDate.ofEpochDay(file.getLong(exceptions + 4 + 8L * i)));
+            }
+            e.getRepetition().addExceptions(days);
+        }
+        long terminationDay = file.getLong(record + R_TERMINATION);
+        if ((file.get(record + R_FLAGS) & NO_OCCURRENCE) != 0) {
+            e.setTermination(file.getInt(record + R_EMPTY_COUNT));
+        } else if (terminationDay != NO_TERMINATION) {
+            e.setTermination(LocalDate.ofEpochDay(terminationDay));
+        }
+        return e;
+    }
+
+    private List<Event> inInsertionOrder(List<Long> records) {
+        records.sort(Comparator.comparingInt(record -> file.getInt(record + R_SEQUENCE)));
+        List<Event> events = new ArrayList<>(records.size());
+        records.forEach(record -> events.add(event(record)));
+        return events;
+    }
+
+    private Stream<Occurrence> occurrencesAround(LocalDateTime from, LocalDateTime to) {
+        long fromSecond = Agenda.floorSecond(from);
+        long toSecond = Agenda.ceilSecond(to);
+        List<Long> found = oneOffRecordsAround(fromSecond, toSecond);
+        for (long r = oneOffCount; r < size(); r++) {
+            long record = record(r);
+            if (repeatingMayOverlap(record, fromSecond, toSecond)) {
+                found.add(record);
+            }
+        }
+        return found.stream().map(this::event).flatMap(e -> StreamSupport.stream(e.occurrences(from, to), false));
+    }
+
+    /**
+     * Finds, on the record fields, the non repeating events that may overlap an occurrence of
+     * a repeating event : only those records are decoded, in chronological order
+     */
+    private Iterator<Occurrence> oneOffsFacing(Event candidate) {
+        long from = Agenda.floorSecond(candidate.getStart());
+        if (latestEnd <= from) {
+            return Collections.emptyIterator();
+        }
+        Recurrences.Series series = Recurrences.Series.of(candidate);
+        List<Long> found = new ArrayList<>();
+        if (series == null) {
+            scanOneOffs(from, Long.MAX_VALUE, record -> true, found);
+        } else {
+            scanOneOffs(from, series.end(), record -> series.overlaps(file.getLong(record + R_START), endSecond(record)), found);
+        }
+        found.sort(Comparator.comparingLong((Long record) -> file.getLong(record + R_START))
+                .thenComparingInt(record -> file.getInt(record + R_START_NANO)));
+        return found.stream()
+                .map(this::event)
+                .map(e -> new Occurrence(e, e.getStart(), e.getStart().plus(e.getDuration())))
+                .iterator();
+    }
+
+    /**
+     * @return the records of the non repeating events that overlap [from, to[, in seconds
+     */
+    private List<Long> oneOffRecordsAround(long fromSecond, long toSecond) {
+        List<Long> found = new ArrayList<>();
+        scanOneOffs(fromSecond, toSecond, record -> endSecond(record) > fromSecond, found);
+        return found;
+    }
+
+    /**
+     * Collects the non repeating records that start before {@code to} and may overlap
+     * [from, to[, and that pass a test : the short events are looked up from their longest
+     * duration, the long ones are all scanned
+     */
+    private void scanOneOffs(long from, long to, LongPredicate test, List<Long> found) {
+        scanOneOffs(firstStartingAtOrAfter(from - longestDuration - 1), shortCount, to, test, found);
+        scanOneOffs(shortCount, oneOffCount, to, test, found);
+    }
+
+    private void scanOneOffs(long first, long fence, long to, LongPredicate test, List<Long> found) {
+        for (long r = first; r < fence; r++) {
+            long record = record(r);
+            if (file.getLong(record + R_START) >= to) {
+                break;
+            }
+            if (test.test(record)) {
+                found.add(record);
+            }
+        }
+    }
+
+    /**
+     * Finds, on the record fields, the repeating events that may overlap an occurrence of a
+     * repeating event : only those records are decoded
+     */
+    private List<Event> repeatingFacing(Event candidate) {
+        Recurrences.Series series = Recurrences.Series.of(candidate);
+        List<Event> facing = new ArrayList<>();
+        for (long r = oneOffCount; r < size(); r++) {
+            long record = record(r);
+            if (series == null || !frequency(record).isDateBased() || Recurrences.overlaps(series, series(record))) {
+                facing.add(event(record));
+            }
+        }
+        return facing;
+    }
+
+    private Recurrences.Series series(long record) {
+        long start = file.getLong(record + R_START);
+        long exceptions = file.getLong(record + R_EXCEPTIONS);
+        long lastException = Long.MIN_VALUE;
+        if (exceptions != NO_EXCEPTIONS && file.getInt(exceptions) > 0) {
+            lastException = file.getLong(exceptions + 4 + 8L * (file.getInt(exceptions) - 1));
+        }
+        return new Recurrences.Series(start, endSecond(record) - start, frequency(record),
+                file.getLong(record + R_TERMINATION), d -> isException(record, d), lastException);
+    }
+}
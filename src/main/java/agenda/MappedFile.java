@@ -0,0 +1,109 @@
+package agenda;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Description : a read-only file mapped in memory, of any size.
+ * <p>
+ * A {@link MappedByteBuffer} cannot exceed 2 GB, so the file is mapped as consecutive
+ * chunks of 2<sup>chunkBits</sup> bytes. Values are read big-endian at absolute positions ;
+ * the rare values that straddle two chunks are assembled byte by byte. Reads never
+ * change the state of the buffers, so a mapped file can be shared between threads.
+ */
+final class MappedFile {
+
+    static final int DEFAULT_CHUNK_BITS = 30;
+
+    private final MappedByteBuffer[] chunks;
+    private final int chunkBits;
+    private final long chunkMask;
+    private final long size;
+
+    private MappedFile(MappedByteBuffer[] chunks, int chunkBits, long size) {
+        this.chunks = chunks;
+        this.chunkBits = chunkBits;
+        this.chunkMask = (1L << chunkBits) - 1;
+        this.size = size;
+    }
+
+    /**
+     * Maps a whole file. The mapping stays valid after the channel is closed, and is released
+     * when this object is garbage collected.
+     *
+     * @param file the file to map
+     * @param chunkBits the base 2 logarithm of the size of the chunks, at most 30
+     * @return the mapped file
+     * @throws IOException if the file cannot be read
+     */
+    static MappedFile map(Path file, int chunkBits) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long chunkSize = 1L << chunkBits;
+            MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((size + chunkSize - 1) >>> chunkBits)];
+            for (int i = 0; i < chunks.length; i++) {
+                long position = (long) i << chunkBits;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(chunkSize, size - position));
+            }
+            return new MappedFile(chunks, chunkBits, size);
+        }
+    }
+
+    /**
+     * @return the size of the file, in bytes
+     */
+    long size() {
+        return size;
+    }
+
+    byte get(long position) {
+        return chunks[(int) (position >>> chunkBits)].get((int) (position & chunkMask));
+    }
+
+    int getInt(long position) {
+        MappedByteBuffer chunk = chunks[(int) (position >>> chunkBits)];
+        int offset = (int) (position & chunkMask);
+        if (offset + Integer.BYTES <= chunk.limit()) {
+            return chunk.getInt(offset);
+        }
+        return (int) assemble(position, Integer.BYTES);
+    }
+
+    long getLong(long position) {
+        MappedByteBuffer chunk = chunks[(int) (position >>> chunkBits)];
+        int offset = (int) (position & chunkMask);
+        if (offset + Long.BYTES <= chunk.limit()) {
+            return chunk.getLong(offset);
+        }
+        return assemble(position, Long.BYTES);
+    }
+
+    /**
+     * @param position the position of the first byte
+     * @param length the number of bytes to copy
+     * @return a copy of the bytes
+     */
+    byte[] getBytes(long position, int length) {
+        byte[] bytes = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            MappedByteBuffer chunk = chunks[(int) ((position + copied) >>> chunkBits)];
+            int offset = (int) ((position + copied) & chunkMask);
+            int count = Math.min(length - copied, chunk.limit() - offset);
+            chunk.get(offset, bytes, copied, count);
+            copied += count;
+        }
+        return bytes;
+    }
+
+    private long assemble(long position, int length) {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value = (value << 8) | (get(position + i) & 0xFF);
+        }
+        return value;
+    }
+}
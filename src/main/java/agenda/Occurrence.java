@@ -0,0 +1,33 @@
+package agenda;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Description : a concrete occurrence of an event, i.e. one of the repetitions of a
+ * repeating event, or the event itself when it does not repeat
+ *
+ * @param event the event that occurs
+ * @param start the start time of this occurrence
+ * @param end the end time of this occurrence
+ */
+public record Occurrence(Event event, LocalDateTime start, LocalDateTime end) {
+
+    public Occurrence {
+        Objects.requireNonNull(event);
+        Objects.requireNonNull(start);
+        Objects.requireNonNull(end);
+    }
+
+    /**
+     * Tests if this occurrence overlaps a time window. An occurrence that starts inside the
+     * window always overlaps it, even if it lasts zero seconds.
+     *
+     * @param from the start of the window (inclusive)
+     * @param to the end of the window (exclusive)
+     * @return true if this occurrence overlaps [from, to[
+     */
+    public boolean overlaps(LocalDateTime from, LocalDateTime to) {
+        return start.isBefore(to) && (end.isAfter(from) || !start.isBefore(from));
+    }
+}
@@ -0,0 +1,367 @@
+package agenda;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Description : the days on which events occur, compiled as bitmaps over a horizon of days.
+ * <p>
+ * Every event is compiled into a bitmap of its days, whose bit d stands for the epoch day d :
+ * only the words between its first and its last day are kept, so a non repeating event costs
+ * one or two words whatever the horizon. The inverse is kept too : for every day of the
+ * horizon, the identifiers of the events of that day, as a sorted array, or as a bitmap of
+ * identifiers when the day is crowded enough for the bitmap to be smaller. Finding the events
+ * of a day is then a lookup followed by a scan of its identifiers.
+ * <p>
+ * A compilation is immutable : it can be built on one thread and read on another. When the
+ * events are unchanged, a compilation over a later horizon reuses the words and the days that
+ * the horizons share, and only compiles the new days.
+ */
+final class OccurrenceBitmaps {
+
+    private static final int[] NO_IDS = new int[0];
+    private static final long[] NO_WORDS = new long[0];
+
+    /**
+     * The recurrence of an event, captured so that it can be compiled on another thread
+     *
+     * @param startDay the epoch day of the first occurrence
+     * @param spanDays the number of days after its start day that each occurrence also occurs on
+     * @param frequency the frequency of the repetition, null if the event does not repeat
+     * @param lastDay the epoch day of the last possible occurrence, Long.MAX_VALUE if the series never ends
+     * @param exceptions the exception days, sorted
+     */
+    record Series(long startDay, long spanDays, ChronoUnit frequency, long lastDay, long[] exceptions) {
+
+        static Series of(Event e) {
+            long startDay = e.getStart().toLocalDate().toEpochDay();
+            long spanDays = e.getStart().plus(e.getDuration()).toLocalDate().toEpochDay() - startDay;
+            Repetition repetition = e.getRepetition();
+            if (repetition == null) {
+                return new Series(startDay, spanDays, null, startDay, NO_WORDS);
+            }
+            long lastDay = Long.MAX_VALUE;
+            if (repetition.getTermination() != null) {
+                // Une série vide s'arrête la veille de son premier jour
+                lastDay = e.getNumberOfOccurrences() <= 0 ? startDay - 1 : e.getTerminationDate().toEpochDay();
+            }
+            return new Series(startDay, spanDays, repetition.getFrequency(), lastDay, repetition.exceptionDays());
+        }
+
+        boolean isException(long day) {
+            return exceptions.length > 0 && Arrays.binarySearch(exceptions, day) >= 0;
+        }
+    }
+
+    private final long firstDay;
+    private final long endDay;
+    private final int eventCount;
+    // Bits des jours de chaque événement : le mot w couvre les jours [64w, 64w + 64[
+    private final long[] eventFirstWord;
+    private final long[][] eventWords;
+    // Événements de chaque jour de l'horizon : identifiants triés, ou bitmap si le jour est chargé
+    private final int[][] dayIds;
+    private final long[][] dayBits;
+
+    private OccurrenceBitmaps(long firstDay, long endDay, int eventCount) {
+        this.firstDay = firstDay;
+        this.endDay = endDay;
+        this.eventCount = eventCount;
+        this.eventFirstWord = new long[eventCount];
+        this.eventWords = new long[eventCount][];
+        int days = (int) (endDay - firstDay);
+        this.dayIds = new int[days][];
+        this.dayBits = new long[days][];
+    }
+
+    /**
+     * Compiles the days of some events
+     *
+     * @param series the events, whose identifiers are their positions in the list
+     * @param firstDay the first epoch day of the horizon
+     * @param endDay the epoch day after the horizon
+     * @param previous a compilation of the same series over another horizon, whose common
+     * days are reused, or null
+     * @return the compilation
+     */
+    static OccurrenceBitmaps compile(List<Series> series, long firstDay, long endDay, OccurrenceBitmaps previous) {
+        if (endDay <= firstDay || endDay - firstDay > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid horizon [" + firstDay + ", " + endDay + "[");
+        }
+        FlightEvents.RecurrenceExpansion flight = FlightEvents.RECURRENCE_EXPANSION.isEnabled()
+                ? new FlightEvents.RecurrenceExpansion() : null;
+        if (flight != null) {
+            flight.begin();
+        }
+        OccurrenceBitmaps compiled = new OccurrenceBitmaps(firstDay, endDay, series.size());
+        // Jours communs avec la compilation précédente, [sharedFrom, sharedTo[
+        long sharedFrom = firstDay;
+        long sharedTo = firstDay;
+        if (previous != null && previous.eventCount == series.size()) {
+            sharedFrom = Math.max(firstDay, previous.firstDay);
+            sharedTo = Math.min(endDay, previous.endDay);
+            if (sharedTo <= sharedFrom) {
+                sharedFrom = sharedTo = firstDay;
+            }
+        }
+        long firstWord = Math.floorDiv(firstDay, 64);
+        long[] words = new long[(int) (Math.floorDiv(endDay - 1, 64) - firstWord + 1)];
+        int[] counts = new int[compiled.dayIds.length];
+        for (int id = 0; id < series.size(); id++) {
+            Arrays.fill(words, 0);
+            Series s = series.get(id);
+            if (sharedFrom < sharedTo) {
+                previous.copyWords(id, words, firstWord);
+                fill(words, firstWord, s, firstDay, sharedFrom);
+                fill(words, firstWord, s, sharedTo, endDay);
+            } else {
+                fill(words, firstWord, s, firstDay, endDay);
+            }
+            clearOutside(words, firstDay, endDay);
+            compiled.keepWords(id, words, firstWord);
+            forEachDay(words, firstWord, firstDay, firstDay, sharedFrom, day -> counts[day]++);
+            forEachDay(words, firstWord, firstDay, sharedTo, endDay, day -> counts[day]++);
+        }
+
+        // Inverse : les identifiants de chaque jour, dans l'ordre croissant
+        for (int day = 0; day < counts.length; day++) {
+            long epochDay = firstDay + day;
+            if (epochDay >= sharedFrom && epochDay < sharedTo) {
+                int i = (int) (epochDay - previous.firstDay);
+                compiled.dayIds[day] = previous.dayIds[i];
+                compiled.dayBits[day] = previous.dayBits[i];
+            } else {
+                compiled.dayIds[day] = counts[day] == 0 ? NO_IDS : new int[counts[day]];
+            }
+        }
+        int[] filled = new int[counts.length];
+        for (int id = 0; id < series.size(); id++) {
+            int event = id;
+            long[] kept = compiled.eventWords[id];
+            long keptFirstWord = compiled.eventFirstWord[id];
+            IntConsumer add = day -> compiled.dayIds[day][filled[day]++] = event;
+            forEachDay(kept, keptFirstWord, firstDay, firstDay, sharedFrom, add);
+            forEachDay(kept, keptFirstWord, firstDay, sharedTo, endDay, add);
+        }
+        for (int day = 0; day < counts.length; day++) {
+            long epochDay = firstDay + day;
+            boolean shared = epochDay >= sharedFrom && epochDay < sharedTo;
+            // Un bitmap de n bits est plus petit qu'un tableau de plus de n / 32 entiers
+            if (!shared && counts[day] > compiled.eventCount / 32) {
+                long[] bits = new long[(compiled.eventCount + 63) >>> 6];
+                for (int id : compiled.dayIds[day]) {
+                    bits[id >>> 6] |= 1L << id;
+                }
+                compiled.dayBits[day] = bits;
+                compiled.dayIds[day] = null;
+            }
+        }
+        if (flight != null) {
+            commit(flight, series.size(), firstDay, endDay, sharedTo - sharedFrom);
+        }
+        return compiled;
+    }
+
+    private static void commit(FlightEvents.RecurrenceExpansion flight, int events, long firstDay, long endDay, long reusedDays) {
+        flight.end();
+        if (flight.shouldCommit()) {
+            flight.events = events;
+            flight.firstDay = LocalDate.ofEpochDay(firstDay).toString();
+            flight.days = endDay - firstDay;
+            flight.reusedDays = reusedDays;
+            flight.commit();
+        }
+    }
+
+    /**
+     * @return true if a day is inside the horizon of this compilation
+     */
+    boolean covers(long day) {
+        return day >= firstDay && day < endDay;
+    }
+
+    long firstDay() {
+        return firstDay;
+    }
+
+    long endDay() {
+        return endDay;
+    }
+
+    /**
+     * @return the number of events compiled, whose identifiers are 0 to eventCount - 1
+     */
+    int eventCount() {
+        return eventCount;
+    }
+
+    /**
+     * @param id the identifier of an event
+     * @param day an epoch day inside the horizon
+     * @return true if the event occurs on that day
+     */
+    boolean occursOn(int id, long day) {
+        long word = Math.floorDiv(day, 64) - eventFirstWord[id];
+        long[] words = eventWords[id];
+        return word >= 0 && word < words.length && (words[(int) word] & 1L << day) != 0;
+    }
+
+    /**
+     * Visits the events of a day, by increasing identifier
+     *
+     * @param day an epoch day inside the horizon
+     * @param action receives the identifier of each event
+     */
+    void forEachEvent(long day, IntConsumer action) {
+        int i = (int) (day - firstDay);
+        int[] ids = dayIds[i];
+        if (ids != null) {
+            for (int id : ids) {
+                action.accept(id);
+            }
+            return;
+        }
+        long[] bits = dayBits[i];
+        for (int w = 0; w < bits.length; w++) {
+            for (long word = bits[w]; word != 0; word &= word - 1) {
+                action.accept((w << 6) + Long.numberOfTrailingZeros(word));
+            }
+        }
+    }
+
+    /**
+     * @return the number of events of a day inside the horizon
+     */
+    int countEvents(long day) {
+        int i = (int) (day - firstDay);
+        if (dayIds[i] != null) {
+            return dayIds[i].length;
+        }
+        int count = 0;
+        for (long word : dayBits[i]) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    // --- Compilation d'un événement ---
+
+    /**
+     * Sets the bits of the days of [from, to[ on which a series occurs, with the same rules
+     * as {@link Event#isInDay} : an exception day masks that day and cancels the occurrence
+     * that starts on it
+     */
+    private static void fill(long[] words, long firstWord, Series s, long from, long to) {
+        if (from >= to) {
+            return;
+        }
+        if (s.frequency() == null) {
+            setRange(words, firstWord, Math.max(from, s.startDay()), Math.min(to, s.startDay() + s.spanDays() + 1));
+            return;
+        }
+        long last = Recurrences.lastOccurrenceOnOrBefore(s.startDay(), s.frequency(), Math.min(to - 1, s.lastDay()));
+        for (long n = last; n >= 0; n--) {
+            long day = Recurrences.occurrenceDay(s.startDay(), s.frequency(), n);
+            if (day + s.spanDays() < from) {
+                break;
+            }
+            if (!s.isException(day)) {
+                setRange(words, firstWord, Math.max(from, day), Math.min(to, day + s.spanDays() + 1));
+            }
+        }
+        long[] exceptions = s.exceptions();
+        for (int i = Math.max(0, insertionPoint(exceptions, from)); i < exceptions.length && exceptions[i] < to; i++) {
+            long word = Math.floorDiv(exceptions[i], 64) - firstWord;
+            words[(int) word] &= ~(1L << exceptions[i]);
+        }
+    }
+
+    private static int insertionPoint(long[] sorted, long value) {
+        int i = Arrays.binarySearch(sorted, value);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    /**
+     * Sets the bits of the days of [from, to[
+     */
+    private static void setRange(long[] words, long firstWord, long from, long to) {
+        if (from >= to) {
+            return;
+        }
+        int first = (int) (Math.floorDiv(from, 64) - firstWord);
+        int last = (int) (Math.floorDiv(to - 1, 64) - firstWord);
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> -to;
+        if (first == last) {
+            words[first] |= firstMask & lastMask;
+            return;
+        }
+        words[first] |= firstMask;
+        for (int w = first + 1; w < last; w++) {
+            words[w] = -1L;
+        }
+        words[last] |= lastMask;
+    }
+
+    /**
+     * Clears the bits before the first word's day {@code from} and after the last word's day
+     * {@code to - 1}, e.g. days copied from a previous horizon
+     */
+    private static void clearOutside(long[] words, long from, long to) {
+        words[0] &= -1L << from;
+        words[words.length - 1] &= -1L >>> -to;
+    }
+
+    /**
+     * Keeps the words of an event, without the empty words at both ends
+     */
+    private void keepWords(int id, long[] words, long firstWord) {
+        int first = 0;
+        int last = words.length - 1;
+        while (first <= last && words[first] == 0) {
+            first++;
+        }
+        while (last >= first && words[last] == 0) {
+            last--;
+        }
+        eventFirstWord[id] = firstWord + first;
+        eventWords[id] = first > last ? NO_WORDS : Arrays.copyOfRange(words, first, last + 1);
+    }
+
+    /**
+     * Copies the kept words of an event into words that start at another word
+     */
+    private void copyWords(int id, long[] words, long firstWord) {
+        long[] kept = eventWords[id];
+        long offset = eventFirstWord[id] - firstWord;
+        for (int w = 0; w < kept.length; w++) {
+            long target = offset + w;
+            if (target >= 0 && target < words.length) {
+                words[(int) target] = kept[w];
+            }
+        }
+    }
+
+    /**
+     * Visits the days of [from, to[ whose bits are set, as indexes from the start of the horizon
+     */
+    private static void forEachDay(long[] words, long firstWord, long horizonStart, long from, long to, IntConsumer action) {
+        if (from >= to || words.length == 0) {
+            return;
+        }
+        long fromWord = Math.max(Math.floorDiv(from, 64), firstWord);
+        long toWord = Math.min(Math.floorDiv(to - 1, 64), firstWord + words.length - 1);
+        for (long w = fromWord; w <= toWord; w++) {
+            long word = words[(int) (w - firstWord)];
+            for (; word != 0; word &= word - 1) {
+                long day = w * 64 + Long.numberOfTrailingZeros(word);
+                if (day >= from && day < to) {
+                    action.accept((int) (day - horizonStart));
+                }
+            }
+        }
+    }
+}
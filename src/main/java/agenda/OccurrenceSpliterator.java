@@ -0,0 +1,165 @@
+package agenda;
+
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Description : enumerates the occurrences of an event that overlap a time window.
+ * <p>
+ * The occurrence number n of a repeating event starts at {@code start.plus(n, frequency)}.
+ * The range of occurrence numbers that overlap the window is computed once, directly from
+ * the start of the event, so the spliterator never walks the occurrences that precede
+ * the window. The exceptions of the repetition are translated into occurrence numbers,
+ * which keeps the spliterator exactly SIZED and lets it split in halves.
+ */
+final class OccurrenceSpliterator implements Spliterator<Occurrence> {
+
+    private static final long[] NO_EXCEPTIONS = new long[0];
+
+    private final Event event;
+    private final ChronoUnit frequency;
+    // Numéros des occurrences annulées par une exception, triés
+    private final long[] exceptions;
+    private long index;
+    private final long fence;
+
+    private OccurrenceSpliterator(Event event, ChronoUnit frequency, long[] exceptions, long index, long fence) {
+        this.event = event;
+        this.frequency = frequency;
+        this.exceptions = exceptions;
+        this.index = index;
+        this.fence = fence;
+    }
+
+    /**
+     * Builds the spliterator of the occurrences of an event that overlap [from, to[
+     *
+     * @param event the event to expand
+     * @param from the start of the window (inclusive)
+     * @param to the end of the window (exclusive)
+     * @return a spliterator over the occurrences, in chronological order
+     * @see Occurrence#overlaps(LocalDateTime, LocalDateTime)
+     */
+    static OccurrenceSpliterator of(Event event, LocalDateTime from, LocalDateTime to) {
+        Repetition repetition = event.getRepetition();
+        if (repetition == null) {
+            Occurrence only = new Occurrence(event, event.getStart(), event.getStart().plus(event.getDuration()));
+            return new OccurrenceSpliterator(event, null, NO_EXCEPTIONS, 0, only.overlaps(from, to) ? 1 : 0);
+        }
+        ChronoUnit frequency = repetition.getFrequency();
+        LocalDateTime start = event.getStart();
+        Duration duration = event.getDuration();
+        Termination termination = repetition.getTermination();
+        long limit = termination == null ? Long.MAX_VALUE : Math.max(0, termination.getNumberOfOccurrences());
+
+        // Première occurrence qui peut atteindre la fenêtre
+        long first = from.isAfter(start) ? Math.max(0, frequency.between(start, from.minus(duration))) : 0;
+        while (first < limit && startsBefore(start, frequency, first, from)) {
+            Occurrence o = occurrence(event, frequency, first);
+            if (o.overlaps(from, to)) {
+                break;
+            }
+            first++;
+        }
+        // Première occurrence qui commence après la fenêtre
+        long fence = Math.max(first, frequency.between(start, to));
+        while (fence > first && !startsBefore(start, frequency, fence - 1, to)) {
+            fence--;
+        }
+        while (fence < limit && startsBefore(start, frequency, fence, to)) {
+            fence++;
+        }
+        fence = Math.min(fence, limit);
+
+        // Seules les exceptions entre la première et la dernière occurrence de la fenêtre comptent
+        long[] exceptions = NO_EXCEPTIONS;
+        if (fence > first) {
+            long startDay = start.toLocalDate().toEpochDay();
+            exceptions = Arrays.stream(repetition.exceptionDaysBetween(
+                            Recurrences.occurrenceDay(startDay, frequency, first),
+                            Recurrences.occurrenceDay(startDay, frequency, fence - 1)))
+                    .map(day -> Recurrences.occurrenceOn(startDay, frequency, day))
+                    .filter(n -> n >= 0)
+                    .toArray();
+        }
+        return new OccurrenceSpliterator(event, frequency, exceptions, first, fence);
+    }
+
+    private static boolean startsBefore(LocalDateTime start, ChronoUnit frequency, long n, LocalDateTime limit) {
+        try {
+            return start.plus(n, frequency).isBefore(limit);
+        } catch (DateTimeException | ArithmeticException tooFar) {
+            return false;
+        }
+    }
+
+    private static Occurrence occurrence(Event event, ChronoUnit frequency, long n) {
+        LocalDateTime start = n == 0 ? event.getStart() : event.getStart().plus(n, frequency);
+        return new Occurrence(event, start, start.plus(event.getDuration()));
+    }
+
+    private boolean isException(long n) {
+        return exceptions.length > 0 && Arrays.binarySearch(exceptions, n) >= 0;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Occurrence> action) {
+        while (index < fence) {
+            long n = index++;
+            if (!isException(n)) {
+                action.accept(occurrence(event, frequency, n));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Occurrence> action) {
+        long n = index;
+        index = fence;
+        for (; n < fence; n++) {
+            if (!isException(n)) {
+                action.accept(occurrence(event, frequency, n));
+            }
+        }
+    }
+
+    @Override
+    public Spliterator<Occurrence> trySplit() {
+        long mid = index + (fence - index) / 2;
+        if (mid <= index) {
+            return null;
+        }
+        OccurrenceSpliterator prefix = new OccurrenceSpliterator(event, frequency, exceptions, index, mid);
+        index = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - index - exceptionsBetween(index, fence);
+    }
+
+    private long exceptionsBetween(long lo, long hi) {
+        if (exceptions.length == 0 || lo >= hi) {
+            return 0;
+        }
+        return insertionPoint(hi) - insertionPoint(lo);
+    }
+
+    private int insertionPoint(long n) {
+        int i = Arrays.binarySearch(exceptions, n);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | DISTINCT | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+    }
+}
@@ -0,0 +1,20 @@
+package agenda;
+
+/**
+ * Description : the activity of one operation of an agenda since its metrics were enabled
+ * or reset. Latencies are in nanoseconds, and known within 12.5 %.
+ *
+ * @param invocations the number of calls
+ * @param scanned the number of events or occurrences examined by the calls
+ * @param matched the number of events or conflicts found by the calls
+ * @param meanNanos the mean latency
+ * @param p50Nanos the median latency
+ * @param p90Nanos the 90th percentile of the latency
+ * @param p99Nanos the 99th percentile of the latency
+ * @param p999Nanos the 99.9th percentile of the latency
+ * @param maxNanos the greatest latency
+ * @see AgendaMetrics
+ */
+public record OperationStatistics(long invocations, long scanned, long matched, long meanNanos,
+                                  long p50Nanos, long p90Nanos, long p99Nanos, long p999Nanos, long maxNanos) {
+}
@@ -0,0 +1,117 @@
+package agenda;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntPredicate;
+
+/**
+ * Description : the rows of a store that satisfy a predicate, found by several threads.
+ * <p>
+ * The rows [0, size[ are cut into chunks of consecutive rows, small enough for their data to
+ * stay in the cache of one core ; a fork/join task splits the chunks in halves until a task
+ * has a single chunk, which it scans. Every chunk writes its matches to its own slot, and the
+ * slots are concatenated in order at the end : the matches are returned in increasing order,
+ * as a sequential scan would. Below a threshold, the scan is sequential, the cost of the
+ * tasks exceeding the gain.
+ */
+final class ParallelScan {
+
+    /**
+     * Default number of rows below which a scan is sequential. It is an estimate, not a
+     * measured crossover : it depends on the cost of the predicate and on the number of
+     * cores, and should be tuned on the target machine with {@code ParallelScanBenchmark}.
+     */
+    static final int DEFAULT_THRESHOLD = 1 << 15;
+
+    // Lignes par morceau : quelques pages de chaque colonne
+    static final int CHUNK_SIZE = 1 << 12;
+
+    private static final int[] NONE = new int[0];
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    /**
+     * @param pool the threads of the parallel scans
+     * @param threshold the number of rows below which a scan is sequential
+     */
+    ParallelScan(ForkJoinPool pool, int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("The threshold cannot be negative : " + threshold);
+        }
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    /**
+     * @param size the number of rows
+     * @param predicate the test of a row, called by several threads at once
+     * @return the rows that satisfy the predicate, in increasing order
+     */
+    int[] matching(int size, IntPredicate predicate) {
+        if (size < threshold || size <= CHUNK_SIZE) {
+            return scan(0, size, predicate);
+        }
+        int[][] chunks = new int[(size + CHUNK_SIZE - 1) / CHUNK_SIZE][];
+        pool.invoke(new Scan(chunks, 0, chunks.length, size, predicate));
+        int total = 0;
+        for (int[] chunk : chunks) {
+            total += chunk.length;
+        }
+        int[] rows = new int[total];
+        int filled = 0;
+        for (int[] chunk : chunks) {
+            System.arraycopy(chunk, 0, rows, filled, chunk.length);
+            filled += chunk.length;
+        }
+        return rows;
+    }
+
+    private static int[] scan(int from, int to, IntPredicate predicate) {
+        int[] rows = NONE;
+        int count = 0;
+        for (int row = from; row < to; row++) {
+            if (predicate.test(row)) {
+                if (count == rows.length) {
+                    rows = Arrays.copyOf(rows, Math.max(8, count * 2));
+                }
+                rows[count++] = row;
+            }
+        }
+        return count == rows.length ? rows : Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * Scans the chunks [first, last[
+     */
+    private static final class Scan extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[][] chunks;
+        private final int first;
+        private final int last;
+        private final int size;
+        private final IntPredicate predicate;
+
+        Scan(int[][] chunks, int first, int last, int size, IntPredicate predicate) {
+            this.chunks = chunks;
+            this.first = first;
+            this.last = last;
+            this.size = size;
+            this.predicate = predicate;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first == 1) {
+                int from = first * CHUNK_SIZE;
+                chunks[first] = scan(from, Math.min(size, from + CHUNK_SIZE), predicate);
+                return;
+            }
+            int middle = (first + last) >>> 1;
+            invokeAll(new Scan(chunks, first, middle, size, predicate),
+                    new Scan(chunks, middle, last, size, predicate));
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package agenda;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.function.LongPredicate;
+
+/**
+ * Description : closed-form recurrence arithmetic on epoch days.
+ * <p>
+ * The occurrence number n of a series starts on {@code start.plus(n, frequency)} : daily and
+ * weekly series are computed on epoch days, monthly series on epoch months, clamping the day
+ * of month to the length of the target month (a series that starts on January 31 occurs on
+ * February 28, then on March 31). Every computation costs O(1) for DAYS, WEEKS and MONTHS
+ * and does not allocate ; other units fall back to {@link LocalDate} arithmetic.
+ */
+final class Recurrences {
+
+    private Recurrences() {
+    }
+
+    /**
+     * Computes the day of an occurrence
+     *
+     * @param startDay the epoch day of the first occurrence
+     * @param frequency the frequency of the series
+     * @param n the occurrence number, 0 for the first occurrence
+     * @return the epoch day of the occurrence number n
+     */
+    static long occurrenceDay(long startDay, ChronoUnit frequency, long n) {
+        switch (frequency) {
+            case DAYS:
+                return startDay + n;
+            case WEEKS:
+                return startDay + 7 * n;
+            case MONTHS:
+                return plusMonths(startDay, n);
+            default:
+                return LocalDate.ofEpochDay(startDay).plus(n, frequency).toEpochDay();
+        }
+    }
+
+    /**
+     * Finds the last occurrence that starts on or before a given day
+     *
+     * @param startDay the epoch day of the first occurrence
+     * @param frequency the frequency of the series
+     * @param day an epoch day
+     * @return the greatest occurrence number whose day is not after {@code day}, or -1 if
+     * the series starts after {@code day}
+     */
+    static long lastOccurrenceOnOrBefore(long startDay, ChronoUnit frequency, long day) {
+        if (day < startDay) {
+            return -1;
+        }
+        switch (frequency) {
+            case DAYS:
+                return day - startDay;
+            case WEEKS:
+                return (day - startDay) / 7;
+            case MONTHS: {
+                long n = epochMonth(day) - epochMonth(startDay);
+                return plusMonths(startDay, n) > day ? n - 1 : n;
+            }
+            default: {
+                LocalDate start = LocalDate.ofEpochDay(startDay);
+                LocalDate limit = LocalDate.ofEpochDay(day);
+                long n = frequency.between(start, limit);
+                while (n > 0 && start.plus(n, frequency).isAfter(limit)) {
+                    n--;
+                }
+                while (!start.plus(n + 1, frequency).isAfter(limit)) {
+                    n++;
+                }
+                return n;
+            }
+        }
+    }
+
+    /**
+     * Finds the occurrence that starts on a given day
+     *
+     * @param startDay the epoch day of the first occurrence
+     * @param frequency the frequency of the series
+     * @param day an epoch day
+     * @return the number of the occurrence that starts on {@code day}, or -1 if none does
+     */
+    static long occurrenceOn(long startDay, ChronoUnit frequency, long day) {
+        long n = lastOccurrenceOnOrBefore(startDay, frequency, day);
+        return n >= 0 && occurrenceDay(startDay, frequency, n) == day ? n : -1;
+    }
+
+    // --- Séries décrites par des valeurs primitives (cf. ColumnarAgenda, MappedAgenda) ---
+
+    private static final long SECONDS_PER_DAY = 86_400;
+    private static final long WEEKLY_CYCLE = 7 * SECONDS_PER_DAY;
+    // 400 ans du calendrier grégorien
+    private static final long GREGORIAN_CYCLE = 146_097 * SECONDS_PER_DAY;
+
+    /**
+     * Tests if a series occurs on a given day : the last occurrence that starts on or before
+     * that day is the only candidate, unless an exception cancels it, in which case the
+     * previous one is. This is the rule of {@link Event#isInDay}.
+     *
+     * @param startDay the epoch day of the first occurrence
+     * @param frequency a date based frequency
+     * @param spanDays the number of days after its start day that each occurrence also occurs on
+     * @param lastDay the epoch day of the last possible occurrence, Long.MAX_VALUE if the series never ends
+     * @param isException tells if an epoch day is an exception
+     * @param day the epoch day to test
+     * @return true if an occurrence that is not cancelled occurs on that day
+     */
+    static boolean occursOn(long startDay, ChronoUnit frequency, long spanDays, long lastDay,
+                            LongPredicate isException, long day) {
+        if (isException.test(day)) {
+            return false;
+        }
+        for (long n = lastOccurrenceOnOrBefore(startDay, frequency, Math.min(day, lastDay)); n >= 0; n--) {
+            long occurrenceDay = occurrenceDay(startDay, frequency, n);
+            if (occurrenceDay < day - spanDays) {
+                return false;
+            }
+            if (!isException.test(occurrenceDay)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tests if an occurrence of a series overlaps a time window, in epoch seconds
+     *
+     * @param startSecond the start of the first occurrence
+     * @param length the length of every occurrence, in seconds
+     * @param frequency a date based frequency
+     * @param lastDay the epoch day of the last possible occurrence, Long.MAX_VALUE if the series never ends
+     * @param isException tells if an epoch day is an exception
+     * @param from the start of the window (inclusive)
+     * @param to the end of the window (exclusive)
+     * @return true if an occurrence that is not cancelled starts before {@code to} and ends after {@code from}
+     */
+    static boolean overlaps(long startSecond, long length, ChronoUnit frequency, long lastDay,
+                            LongPredicate isException, long from, long to) {
+        long startDay = Math.floorDiv(startSecond, SECONDS_PER_DAY);
+        long secondOfDay = startSecond - startDay * SECONDS_PER_DAY;
+        // Dernière occurrence qui commence avant la fin de la fenêtre
+        long before = Math.floorDiv(to - 1 - secondOfDay, SECONDS_PER_DAY);
+        for (long n = lastOccurrenceOnOrBefore(startDay, frequency, Math.min(before, lastDay)); n >= 0; n--) {
+            long occurrenceDay = occurrenceDay(startDay, frequency, n);
+            if (occurrenceDay * SECONDS_PER_DAY + secondOfDay + length <= from) {
+                return false;
+            }
+            if (!isException.test(occurrenceDay)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Computes the cycle of a pair of series : after both series have started, and after
+     * their last exception, the conflicts between them repeat with this period. A daily
+     * series repeats with respect to any date based series every two periods of the other
+     * series, daily and weekly series repeat every week, and any two series repeat every 400
+     * years (a full cycle of the Gregorian calendar, which is also a whole number of weeks).
+     *
+     * @param a the frequency of a series
+     * @param b the frequency of the other series
+     * @return the cycle, in seconds
+     */
+    static long cycle(ChronoUnit a, ChronoUnit b) {
+        if (isWeekly(a) && isWeekly(b)) {
+            return WEEKLY_CYCLE;
+        }
+        // Une série quotidienne a lieu chaque jour, donc à chaque occurrence de l'autre : deux
+        // périodes contiennent toujours une occurrence de l'autre série
+        if (a == ChronoUnit.DAYS && b.isDateBased()) {
+            return 2 * b.getDuration().getSeconds();
+        }
+        if (b == ChronoUnit.DAYS && a.isDateBased()) {
+            return 2 * a.getDuration().getSeconds();
+        }
+        return GREGORIAN_CYCLE;
+    }
+
+    private static boolean isWeekly(ChronoUnit frequency) {
+        return frequency == ChronoUnit.DAYS || frequency == ChronoUnit.WEEKS;
+    }
+
+    /**
+     * Tests if an occurrence of a series overlaps an occurrence of another series. The
+     * sparser series is expanded, and each of its occurrences is tested against the other
+     * series in O(1), up to the horizon of the pair (see {@link ConflictDetector}) : the end
+     * of the first series to terminate or, when neither ends, one cycle after both series have
+     * started and after their last exception.
+     *
+     * @param a a series
+     * @param b another series
+     * @return true if an occurrence of {@code a} that is not cancelled overlaps an occurrence
+     * of {@code b} that is not cancelled
+     */
+    static boolean overlaps(Series a, Series b) {
+        long longest = Math.max(a.length(), b.length());
+        long from = Math.max(a.startSecond(), b.startSecond()) - longest;
+        long to;
+        if (a.lastDay() != Long.MAX_VALUE || b.lastDay() != Long.MAX_VALUE) {
+            to = Math.min(a.end(), b.end());
+        } else {
+            long periodic = Math.max(a.periodicFrom(), b.periodicFrom());
+            to = periodic + cycle(a.frequency(), b.frequency()) + longest + SECONDS_PER_DAY;
+        }
+        boolean aIsSparser = a.frequency().getDuration().compareTo(b.frequency().getDuration()) >= 0;
+        Series sparse = aIsSparser ? a : b;
+        Series dense = aIsSparser ? b : a;
+        long startDay = Math.floorDiv(sparse.startSecond(), SECONDS_PER_DAY);
+        long secondOfDay = sparse.startSecond() - startDay * SECONDS_PER_DAY;
+        long n = Math.max(0, lastOccurrenceOnOrBefore(startDay, sparse.frequency(),
+                Math.floorDiv(from - secondOfDay, SECONDS_PER_DAY)));
+        for (; ; n++) {
+            long occurrenceDay = occurrenceDay(startDay, sparse.frequency(), n);
+            long start = occurrenceDay * SECONDS_PER_DAY + secondOfDay;
+            if (occurrenceDay > sparse.lastDay() || start >= to) {
+                return false;
+            }
+            if (!sparse.isException().test(occurrenceDay) && dense.overlaps(start, start + sparse.length())) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * A series described by primitive values, such as a row of {@link ColumnarAgenda} or a
+     * record of {@link MappedAgenda}
+     *
+     * @param startSecond the start of the first occurrence, in epoch seconds
+     * @param length the length of every occurrence, in seconds
+     * @param frequency a date based frequency
+     * @param lastDay the epoch day of the last possible occurrence, Long.MAX_VALUE if the series never ends
+     * @param isException tells if an epoch day is an exception
+     * @param lastException the epoch day of the last exception, Long.MIN_VALUE if there is none
+     */
+    record Series(long startSecond, long length, ChronoUnit frequency, long lastDay,
+                  LongPredicate isException, long lastException) {
+
+        /**
+         * Describes a repeating event, widened to whole seconds
+         *
+         * @param e a repeating event
+         * @return its series, or null if its frequency is not date based
+         */
+        static Series of(Event e) {
+            Repetition repetition = e.getRepetition();
+            if (!repetition.getFrequency().isDateBased()) {
+                return null;
+            }
+            long start = Agenda.floorSecond(e.getStart());
+            LocalDate lastException = repetition.lastException();
+            return new Series(start, Agenda.ceilSecond(e.getStart().plus(e.getDuration())) - start,
+                    repetition.getFrequency(), e.lastDay(), repetition::isException,
+                    lastException == null ? Long.MIN_VALUE : lastException.toEpochDay());
+        }
+
+        /**
+         * @return true if an occurrence that is not cancelled overlaps [from, to[, in epoch seconds
+         */
+        boolean overlaps(long from, long to) {
+            return Recurrences.overlaps(startSecond, length, frequency, lastDay, isException, from, to);
+        }
+
+        /**
+         * @return an epoch second after the end of the last occurrence, Long.MAX_VALUE if the
+         * series never ends
+         */
+        long end() {
+            if (lastDay == Long.MAX_VALUE) {
+                return Long.MAX_VALUE;
+            }
+            return (lastDay + 1) * SECONDS_PER_DAY + length;
+        }
+
+        /**
+         * @return the epoch second after which the series has started and has no more exceptions
+         */
+        private long periodicFrom() {
+            return lastException == Long.MIN_VALUE ? startSecond
+                    : Math.max(startSecond, (lastException + 1) * SECONDS_PER_DAY);
+        }
+    }
+
+    // --- Calendrier grégorien proleptique (algorithmes de H. Hinnant), sans allocation ---
+
+    private static long plusMonths(long epochDay, long months) {
+        long civil = civil(epochDay);
+        long month = epochMonthOfCivil(civil) + months;
+        long year = Math.floorDiv(month, 12);
+        int monthOfYear = Math.floorMod(month, 12) + 1;
+        int dayOfMonth = Math.min(dayOfMonth(civil), lengthOfMonth(year, monthOfYear));
+        return epochDay(year, monthOfYear, dayOfMonth);
+    }
+
+    private static long epochMonth(long epochDay) {
+        return epochMonthOfCivil(civil(epochDay));
+    }
+
+    private static long epochMonthOfCivil(long civil) {
+        return Math.floorDiv(civil, 512) * 12 + (Math.floorMod(civil, 512) >> 5) - 1;
+    }
+
+    private static int dayOfMonth(long civil) {
+        return Math.floorMod(civil, 512) & 31;
+    }
+
+    /**
+     * @return the year, month and day of an epoch day, packed as year * 512 + month * 32 + day
+     */
+    private static long civil(long epochDay) {
+        long z = epochDay + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long dayOfEra = z - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1_460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 512 + month * 32 + day;
+    }
+
+    private static long epochDay(long year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - 719_468;
+    }
+
+    private static int lengthOfMonth(long year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = Math.floorMod(year, 4) == 0 && (Math.floorMod(year, 100) != 0 || Math.floorMod(year, 400) == 0);
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+}
@@ -3,11 +3,16 @@ package agenda;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.RandomAccess;
 
 public class Repetition {
 
+    private static final long[] NO_EXCEPTIONS = new long[0];
+
     public ChronoUnit getFrequency() {
         return myFrequency;
     }
@@ -22,10 +27,20 @@ public class Repetition {
      */
     private final ChronoUnit myFrequency;
 
-    private List<LocalDate> myExceptions = new ArrayList<>();
+    // Jours d'exception (epoch days), triés et sans doublon dans [0, exceptionCount[
+    private long[] myExceptions = NO_EXCEPTIONS;
+    private int exceptionCount;
+
+    private final List<LocalDate> exceptionsView = new ExceptionsView();
 
     private Termination myTermination;
 
+    // L'événement à prévenir des modifications, s'il y en a un
+    private Event owner;
+
+    // Figée avec son événement
+    private boolean frozen;
+
     public Repetition(ChronoUnit myFrequency) {
         this.myFrequency = myFrequency;
     }
@@ -35,7 +50,104 @@ public class Repetition {
      * @param date un date à laquelle l'événement ne doit pas se répéter
      */
     public void addException(LocalDate date) {
-        myExceptions.add(date);
+        checkNotFrozen();
+        long day = date.toEpochDay();
+        int i = indexOf(day);
+        if (i >= 0) {
+            return;
+        }
+        i = -i - 1;
+        ensureCapacity(exceptionCount + 1);
+        System.arraycopy(myExceptions, i, myExceptions, i + 1, exceptionCount - i);
+        myExceptions[i] = day;
+        exceptionCount++;
+        changed(day, day);
+    }
+
+    /**
+     * Ajoute plusieurs exceptions à la fois : un seul tri, quel que soit leur nombre
+     * @param dates des dates auxquelles l'événement ne doit pas se répéter
+     */
+    public void addExceptions(Collection<LocalDate> dates) {
+        checkNotFrozen();
+        if (dates.isEmpty()) {
+            return;
+        }
+        ensureCapacity(exceptionCount + dates.size());
+        int count = exceptionCount;
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        for (LocalDate date : dates) {
+            long day = date.toEpochDay();
+            myExceptions[count++] = day;
+            first = Math.min(first, day);
+            last = Math.max(last, day);
+        }
+        Arrays.sort(myExceptions, 0, count);
+        // Suppression des doublons
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || myExceptions[i] != myExceptions[distinct - 1]) {
+                myExceptions[distinct++] = myExceptions[i];
+            }
+        }
+        exceptionCount = distinct;
+        changed(first, last);
+    }
+
+    /**
+     * Retire une exception
+     * @param date la date à laquelle l'événement doit à nouveau se répéter
+     * @return vrai si cette date était une exception
+     */
+    public boolean removeException(LocalDate date) {
+        checkNotFrozen();
+        int i = indexOf(date.toEpochDay());
+        if (i < 0) {
+            return false;
+        }
+        System.arraycopy(myExceptions, i + 1, myExceptions, i, exceptionCount - i - 1);
+        exceptionCount--;
+        changed(date.toEpochDay(), date.toEpochDay());
+        return true;
+    }
+
+    /**
+     * @param date une date
+     * @return vrai si l'événement ne se répète pas à cette date (recherche dichotomique)
+     */
+    public boolean isException(LocalDate date) {
+        return isException(date.toEpochDay());
+    }
+
+    boolean isException(long epochDay) {
+        return exceptionCount > 0 && indexOf(epochDay) >= 0;
+    }
+
+    /**
+     * @param fromDay the first epoch day (inclusive)
+     * @param toDay the last epoch day (inclusive)
+     * @return the exception days in [fromDay, toDay], sorted
+     */
+    long[] exceptionDaysBetween(long fromDay, long toDay) {
+        if (exceptionCount == 0 || fromDay > toDay) {
+            return NO_EXCEPTIONS;
+        }
+        return Arrays.copyOfRange(myExceptions, insertionPoint(fromDay), insertionPoint(toDay + 1));
+    }
+
+    /**
+     * @return a copy of the exception days, sorted
+     */
+    long[] exceptionDays() {
+        return Arrays.copyOf(myExceptions, exceptionCount);
+    }
+
+    /**
+     * @return the last exception day, or null if there is no exception
+     */
+    LocalDate lastException() {
+        return exceptionCount == 0 ? null : LocalDate.ofEpochDay(myExceptions[exceptionCount - 1]);
     }
 
     /**
@@ -43,17 +155,108 @@ public class Repetition {
      * @param termination la terminaison de la répétition
      */
     public void setTermination(Termination termination) {
+        checkNotFrozen();
+        Termination previous = myTermination;
         myTermination = termination;
+        // Seules les occurrences entre l'ancienne et la nouvelle fin apparaissent ou disparaissent
+        long before = previous == null ? Long.MAX_VALUE : previous.getTerminationDateInclusive().toEpochDay();
+        long after = termination == null ? Long.MAX_VALUE : termination.getTerminationDateInclusive().toEpochDay();
+        if (before != after || previous != null && termination != null
+                && previous.getNumberOfOccurrences() != termination.getNumberOfOccurrences()) {
+            changed(Math.min(before, after), Math.max(before, after));
+        }
+    }
+
+    /**
+     * @param event the event that owns this repetition, notified of its changes
+     */
+    void attach(Event event) {
+        this.owner = event;
+    }
 
+    /**
+     * Makes this repetition immutable, see {@link Event#isFrozen()}
+     */
+    void freeze() {
+        frozen = true;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("The repetition of a frozen event cannot be modified");
+        }
+    }
+
+    private void changed(long fromDay, long toDay) {
+        if (owner != null) {
+            owner.repetitionChanged(fromDay, toDay);
+        }
     }
 
     public Termination getTermination() {
         return myTermination;
     }
 
+    /**
+     * @return une vue non modifiable des exceptions, triées par date
+     */
     public List<LocalDate> getExceptions(){
-        return myExceptions;
+        return exceptionsView;
+    }
+
+    private int indexOf(long day) {
+        return Arrays.binarySearch(myExceptions, 0, exceptionCount, day);
+    }
+
+    private int insertionPoint(long day) {
+        int i = indexOf(day);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > myExceptions.length) {
+            myExceptions = Arrays.copyOf(myExceptions, Math.max(capacity, myExceptions.length * 2));
+        }
+    }
+
+    /**
+     * Vue en lecture seule du tableau des exceptions, qui suit ses modifications
+     */
+    private final class ExceptionsView extends AbstractList<LocalDate> implements RandomAccess {
+
+        @Override
+        public LocalDate get(int index) {
+            if (index < 0 || index >= exceptionCount) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return LocalDate.ofEpochDay(myExceptions[index]);
+        }
+
+        @Override
+        public int size() {
+            return exceptionCount;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof LocalDate date && isException(date);
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            if (!(o instanceof LocalDate date)) {
+                return -1;
+            }
+            int i = Repetition.this.indexOf(date.toEpochDay());
+            return i >= 0 ? i : -1;
+        }
+
+        @Override
+        public int lastIndexOf(Object o) {
+            return indexOf(o);
+        }
     }
 }
 
 
+
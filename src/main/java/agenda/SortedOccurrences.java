@@ -0,0 +1,105 @@
+package agenda;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Description : merges several chronological sequences of occurrences into a single one.
+ * <p>
+ * A binary heap holds the next occurrence of each sequence, so the merge keeps only one
+ * occurrence per sequence in memory and costs O(log k) per occurrence for k sequences.
+ */
+final class SortedOccurrences implements Iterator<Occurrence> {
+
+    /**
+     * Orders occurrences by start, then by end
+     */
+    static final Comparator<Occurrence> CHRONOLOGICAL =
+            Comparator.comparing(Occurrence::start).thenComparing(Occurrence::end);
+
+    private static final class Head {
+        Occurrence occurrence;
+        final Iterator<Occurrence> rest;
+
+        Head(Occurrence occurrence, Iterator<Occurrence> rest) {
+            this.occurrence = occurrence;
+            this.rest = rest;
+        }
+    }
+
+    private final PriorityQueue<Head> heads =
+            new PriorityQueue<>((a, b) -> CHRONOLOGICAL.compare(a.occurrence, b.occurrence));
+
+    /**
+     * @param sequences sequences of occurrences, each in chronological order
+     */
+    SortedOccurrences(List<Iterator<Occurrence>> sequences) {
+        for (Iterator<Occurrence> sequence : sequences) {
+            if (sequence.hasNext()) {
+                heads.add(new Head(sequence.next(), sequence));
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heads.isEmpty();
+    }
+
+    @Override
+    public Occurrence next() {
+        Head head = heads.poll();
+        if (head == null) {
+            throw new NoSuchElementException();
+        }
+        Occurrence next = head.occurrence;
+        if (head.rest.hasNext()) {
+            head.occurrence = head.rest.next();
+            heads.add(head);
+        }
+        return next;
+    }
+
+    /**
+     * Restores the chronological order of a sequence that is only ordered by the second of
+     * its start, as the interval index returns it
+     *
+     * @param bySecond occurrences ordered by the second of their start
+     * @return the same occurrences, in chronological order
+     */
+    static Iterator<Occurrence> sortWithinSeconds(Iterator<Occurrence> bySecond) {
+        return new Iterator<>() {
+            private final Deque<Occurrence> sameSecond = new ArrayDeque<>();
+            private Occurrence pending = bySecond.hasNext() ? bySecond.next() : null;
+
+            @Override
+            public boolean hasNext() {
+                return !sameSecond.isEmpty() || pending != null;
+            }
+
+            @Override
+            public Occurrence next() {
+                if (sameSecond.isEmpty()) {
+                    if (pending == null) {
+                        throw new NoSuchElementException();
+                    }
+                    List<Occurrence> group = new ArrayList<>();
+                    long second = Agenda.floorSecond(pending.start());
+                    while (pending != null && Agenda.floorSecond(pending.start()) == second) {
+                        group.add(pending);
+                        pending = bySecond.hasNext() ? bySecond.next() : null;
+                    }
+                    group.sort(CHRONOLOGICAL);
+                    sameSecond.addAll(group);
+                }
+                return sameSecond.poll();
+            }
+        };
+    }
+}
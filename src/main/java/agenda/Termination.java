@@ -32,7 +32,14 @@ public class Termination {
         this.start = start;
         this.frequency = frequency;
         this.terminationInclusive = terminationInclusive;
+        if (!FlightEvents.TERMINATION.isEnabled()) {
+            determineNumberOfOccurrences();
+            return;
+        }
+        FlightEvents.TerminationComputed flight = new FlightEvents.TerminationComputed();
+        flight.begin();
         determineNumberOfOccurrences();
+        commit(flight);
     }
 
     /**
@@ -51,17 +58,31 @@ public class Termination {
         this.start = start;
         this.frequency = frequency;
         this.numberOfOccurrences = numberOfOccurrences;
+        if (!FlightEvents.TERMINATION.isEnabled()) {
+            determineTerminationDate();
+            return;
+        }
+        FlightEvents.TerminationComputed flight = new FlightEvents.TerminationComputed();
+        flight.begin();
         determineTerminationDate();
+        commit(flight);
     }
 
-    private void determineNumberOfOccurrences() {
-        long count = 0;
-        LocalDate current = start;
-        while (!current.isAfter(terminationInclusive)) {
-            count++;
-            current = current.plus(1, frequency);
+    private void commit(FlightEvents.TerminationComputed flight) {
+        flight.end();
+        if (flight.shouldCommit()) {
+            flight.frequency = frequency.toString();
+            flight.occurrences = numberOfOccurrences;
+            flight.lastDay = terminationInclusive.toString();
+            flight.commit();
         }
-        this.numberOfOccurrences = count;
+    }
+
+    // Calculs en temps constant, cf. Recurrences
+
+    private void determineNumberOfOccurrences() {
+        this.numberOfOccurrences = Recurrences.lastOccurrenceOnOrBefore(
+                start.toEpochDay(), frequency, terminationInclusive.toEpochDay()) + 1;
     }
 
     private void determineTerminationDate() {
@@ -69,7 +90,8 @@ public class Termination {
             this.terminationInclusive = start; 
             return;
         }
-        this.terminationInclusive = start.plus(numberOfOccurrences - 1, frequency);
+        this.terminationInclusive = LocalDate.ofEpochDay(
+                Recurrences.occurrenceDay(start.toEpochDay(), frequency, numberOfOccurrences - 1));
     }
 
-}
+}
\ No newline at end of file
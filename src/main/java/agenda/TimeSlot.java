@@ -0,0 +1,29 @@
+package agenda;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Description : an interval of time, e.g. a free slot of an agenda
+ *
+ * @param start the start of the slot (inclusive)
+ * @param end the end of the slot (exclusive)
+ */
+public record TimeSlot(LocalDateTime start, LocalDateTime end) {
+
+    public TimeSlot {
+        Objects.requireNonNull(start);
+        Objects.requireNonNull(end);
+        if (end.isBefore(start)) {
+            throw new IllegalArgumentException("A slot cannot end before it starts : " + start + " - " + end);
+        }
+    }
+
+    /**
+     * @return the length of this slot
+     */
+    public Duration duration() {
+        return Duration.between(start, end);
+    }
+}
@@ -0,0 +1,185 @@
+package agenda;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * Description : an index of events by title.
+ * <p>
+ * Exact lookups go through a hash map, prefix lookups through a sorted map that shares the
+ * same lists of events : the titles that start with a prefix form a contiguous range of
+ * keys, so a prefix lookup costs O(log n + k). Both maps exist twice, the second pair being
+ * keyed by the lower case title for case-insensitive lookups.
+ */
+final class TitleIndex {
+
+    private final Map<String, List<Event>> byTitle = new HashMap<>();
+    private final NavigableMap<String, List<Event>> sortedTitles = new TreeMap<>();
+    private final Map<String, List<Event>> byFoldedTitle = new HashMap<>();
+    private final NavigableMap<String, List<Event>> sortedFoldedTitles = new TreeMap<>();
+
+    /**
+     * Adds an event to this index
+     *
+     * @param e the event to add
+     */
+    void add(Event e) {
+        add(byTitle, sortedTitles, e.getTitle(), e);
+        add(byFoldedTitle, sortedFoldedTitles, fold(e.getTitle()), e);
+    }
+
+    /**
+     * Adds an event to this index at its place in insertion order, e.g. an event that
+     * replaces another one
+     *
+     * @param e the event to add
+     * @param order the position of the events in insertion order
+     */
+    void insert(Event e, ToLongFunction<Event> order) {
+        insert(byTitle, sortedTitles, e.getTitle(), e, order);
+        insert(byFoldedTitle, sortedFoldedTitles, fold(e.getTitle()), e, order);
+    }
+
+    /**
+     * Removes an event from this index
+     *
+     * @param e the event to remove
+     */
+    void remove(Event e) {
+        remove(byTitle, sortedTitles, e.getTitle(), e);
+        remove(byFoldedTitle, sortedFoldedTitles, fold(e.getTitle()), e);
+    }
+
+    /**
+     * Adds many events to this index : the events are grouped by title first, and the sorted
+     * maps only receive the titles they did not know yet
+     *
+     * @param events the events to add
+     */
+    void addAll(Collection<Event> events) {
+        Map<String, List<Event>> newTitles = new HashMap<>();
+        Map<String, List<Event>> newFoldedTitles = new HashMap<>();
+        for (Event e : events) {
+            group(byTitle, newTitles, e.getTitle(), e);
+            group(byFoldedTitle, newFoldedTitles, fold(e.getTitle()), e);
+        }
+        sortedTitles.putAll(newTitles);
+        sortedFoldedTitles.putAll(newFoldedTitles);
+    }
+
+    /**
+     * @param title the title to search for
+     * @return the events with exactly this title, in insertion order
+     */
+    List<Event> find(String title) {
+        return copy(byTitle.get(title));
+    }
+
+    /**
+     * @param title the title to search for
+     * @return the events with this title, ignoring case, in insertion order
+     */
+    List<Event> findIgnoreCase(String title) {
+        return copy(byFoldedTitle.get(fold(title)));
+    }
+
+    /**
+     * @param prefix the start of the titles to search for
+     * @return the events whose title starts with this prefix, grouped by title
+     */
+    List<Event> findByPrefix(String prefix) {
+        return collect(sortedTitles, prefix);
+    }
+
+    /**
+     * @param prefix the start of the titles to search for
+     * @return the events whose title starts with this prefix ignoring case, grouped by title
+     */
+    List<Event> findByPrefixIgnoreCase(String prefix) {
+        return collect(sortedFoldedTitles, fold(prefix));
+    }
+
+    static String fold(String title) {
+        return title.toLowerCase(Locale.ROOT);
+    }
+
+    private static void add(Map<String, List<Event>> map, NavigableMap<String, List<Event>> sorted, String key, Event e) {
+        List<Event> events = map.get(key);
+        if (events == null) {
+            events = new ArrayList<>(1);
+            map.put(key, events);
+            sorted.put(key, events);
+        }
+        events.add(e);
+    }
+
+    private static void insert(Map<String, List<Event>> map, NavigableMap<String, List<Event>> sorted, String key, Event e,
+                               ToLongFunction<Event> order) {
+        List<Event> events = map.get(key);
+        if (events == null) {
+            add(map, sorted, key, e);
+            return;
+        }
+        long position = order.applyAsLong(e);
+        int low = 0;
+        int high = events.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (order.applyAsLong(events.get(middle)) < position) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        events.add(low, e);
+    }
+
+    private static void remove(Map<String, List<Event>> map, NavigableMap<String, List<Event>> sorted, String key, Event e) {
+        List<Event> events = map.get(key);
+        if (events == null) {
+            return;
+        }
+        for (int i = 0; i < events.size(); i++) {
+            if (events.get(i) == e) {
+                events.remove(i);
+                break;
+            }
+        }
+        if (events.isEmpty()) {
+            map.remove(key);
+            sorted.remove(key);
+        }
+    }
+
+    private static void group(Map<String, List<Event>> map, Map<String, List<Event>> newKeys, String key, Event e) {
+        List<Event> events = map.get(key);
+        if (events == null) {
+            events = new ArrayList<>();
+            map.put(key, events);
+            newKeys.put(key, events);
+        }
+        events.add(e);
+    }
+
+    private static List<Event> collect(NavigableMap<String, List<Event>> sorted, String prefix) {
+        List<Event> result = new ArrayList<>();
+        for (Map.Entry<String, List<Event>> entry : sorted.tailMap(prefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            result.addAll(entry.getValue());
+        }
+        return result;
+    }
+
+    private static List<Event> copy(List<Event> events) {
+        return events == null ? new ArrayList<>() : new ArrayList<>(events);
+    }
+}
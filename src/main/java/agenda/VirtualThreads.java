@@ -0,0 +1,57 @@
+package agenda;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Description : the threads of {@link AsyncAgenda}, a virtual thread per task when the JDK
+ * has them.
+ * <p>
+ * This version compiles for Java 17 : the executor of virtual threads is looked up at run
+ * time, and a JDK without them gets a pool of platform threads bounded by the number of
+ * processors. The {@code java21} profile packages another version of this class, in the
+ * Java 21 part of a multi-release jar, that creates the virtual threads directly.
+ */
+final class VirtualThreads {
+
+    private static final Method VIRTUAL_THREAD_PER_TASK = findVirtualThreadPerTask();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return true if {@link #newExecutor()} starts a virtual thread per task
+     */
+    static boolean available() {
+        return VIRTUAL_THREAD_PER_TASK != null;
+    }
+
+    /**
+     * @return an executor that starts a virtual thread per task, or a bounded pool of daemon
+     * platform threads before Java 21
+     */
+    static ExecutorService newExecutor() {
+        if (VIRTUAL_THREAD_PER_TASK != null) {
+            try {
+                return (ExecutorService) VIRTUAL_THREAD_PER_TASK.invoke(null);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // Repli sur des threads de plateforme
+            }
+        }
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread t = new Thread(r, "async-agenda");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private static Method findVirtualThreadPerTask() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            // Avant Java 21
+            return null;
+        }
+    }
+}
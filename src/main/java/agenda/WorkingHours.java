@@ -0,0 +1,21 @@
+package agenda;
+
+import java.time.LocalTime;
+import java.util.Objects;
+
+/**
+ * Description : the hours of the day when a meeting can take place, the same every day
+ *
+ * @param start the start of the working day (inclusive)
+ * @param end the end of the working day (exclusive), after its start
+ */
+public record WorkingHours(LocalTime start, LocalTime end) {
+
+    public WorkingHours {
+        Objects.requireNonNull(start);
+        Objects.requireNonNull(end);
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException("Working hours must end after they start : " + start + " - " + end);
+        }
+    }
+}
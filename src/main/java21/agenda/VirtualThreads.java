@@ -0,0 +1,30 @@
+package agenda;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Description : the threads of {@link AsyncAgenda}, a virtual thread per task.
+ * <p>
+ * This version is compiled by the {@code java21} profile into the Java 21 part of a
+ * multi-release jar, in place of the Java 17 version that looks virtual threads up at run time.
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return true : {@link #newExecutor()} starts a virtual thread per task
+     */
+    static boolean available() {
+        return true;
+    }
+
+    /**
+     * @return an executor that starts a virtual thread per task
+     */
+    static ExecutorService newExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+}
@@ -0,0 +1,152 @@
+package agenda;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Teste la mise à jour des index de l'agenda quand ses événements changent, sont retirés ou remplacés
+ */
+public class AgendaChangesTest {
+
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+    Duration min_120 = Duration.ofMinutes(120);
+
+    Agenda agenda;
+    Event first;
+    Event second;
+    Event daily;
+
+    @BeforeEach
+    public void setUp() {
+        agenda = new Agenda();
+        first = new Event("Meeting", nov_1_2020_22_30, min_120);
+        second = new Event("Lunch", nov_1_2020.atTime(12, 0), min_120);
+        daily = new Event("Meeting", nov_1_2020.atTime(8, 0), min_120);
+        daily.setRepetition(ChronoUnit.DAYS);
+        agenda.addEvent(first);
+        agenda.addEvent(second);
+        agenda.addEvent(daily);
+    }
+
+    @Test
+    public void anEventThatStartsToRepeatIsReindexed() {
+        first.setRepetition(ChronoUnit.WEEKS);
+        assertEquals(List.of(first, daily), agenda.eventsInDay(nov_1_2020.plusWeeks(1)),
+                "L'événement devenu répétitif est trouvé, à sa place dans l'ordre d'insertion");
+        assertFalse(agenda.isFreeFor(new Event("Late", nov_1_2020_22_30.plusWeeks(3), min_120)));
+        first.setTermination(nov_1_2020.plusWeeks(2));
+        assertEquals(List.of(daily), agenda.eventsInDay(nov_1_2020.plusWeeks(4)));
+    }
+
+    @Test
+    public void removedEventsAreForgotten() {
+        assertTrue(agenda.removeEvent(first));
+        assertFalse(agenda.removeEvent(first), "Un événement n'est retiré qu'une fois");
+        assertEquals(List.of(second, daily), agenda.getAllEvents());
+        assertEquals(List.of(second, daily), agenda.eventsInDay(nov_1_2020));
+        assertEquals(List.of(daily), agenda.findByTitle("Meeting"));
+        assertTrue(agenda.isFreeFor(new Event("Late", nov_1_2020_22_30, min_120)));
+        assertTrue(agenda.removeEvent(daily));
+        assertTrue(agenda.findByTitle("Meeting").isEmpty());
+        assertTrue(agenda.findByTitlePrefix("Mee").isEmpty());
+        assertEquals(List.of(second), agenda.eventsInDay(nov_1_2020));
+        // Un événement retiré n'est plus suivi par l'agenda
+        daily.addException(nov_1_2020.plusDays(1));
+        first.setRepetition(ChronoUnit.DAYS);
+        assertEquals(List.of(), agenda.eventsInDay(nov_1_2020.plusDays(1)));
+    }
+
+    @Test
+    public void anEventIsAddedOnlyOnce() {
+        assertThrows(IllegalArgumentException.class, () -> agenda.addEvent(first));
+        assertThrows(IllegalArgumentException.class, () -> agenda.addAll(List.of(new Event("New", nov_1_2020_22_30, min_120), second)));
+        Event added = new Event("Added", nov_1_2020_22_30, min_120);
+        assertThrows(IllegalArgumentException.class, () -> agenda.addAll(List.of(added, added)));
+        assertEquals(List.of(first, second, daily), agenda.getAllEvents(), "L'agenda n'est pas modifié");
+        assertTrue(agenda.removeEvent(second));
+        assertEquals(List.of(first, daily), agenda.getAllEvents());
+        assertEquals(List.of(first, daily), agenda.findByTitle("Meeting"));
+    }
+
+    @Test
+    public void replacementTakesThePlaceOfTheEvent() {
+        Event weekly = new Event("Weekly", nov_1_2020.atTime(7, 0), min_120);
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        assertTrue(agenda.replaceEvent(first, weekly));
+        assertEquals(List.of(weekly, second, daily), agenda.getAllEvents());
+        assertEquals(List.of(weekly, second, daily), agenda.eventsInDay(nov_1_2020));
+        assertEquals(List.of(weekly, daily), agenda.eventsInDay(nov_1_2020.plusWeeks(1)));
+        assertEquals(List.of(daily), agenda.findByTitle("Meeting"));
+        Event meeting = new Event("Meeting", nov_1_2020.atTime(18, 0), min_120);
+        assertTrue(agenda.replaceEvent(second, meeting));
+        assertEquals(List.of(meeting, daily), agenda.findByTitle("Meeting"), "Le titre est indexé à la place de l'événement remplacé");
+        assertFalse(agenda.replaceEvent(first, new Event("Other", nov_1_2020_22_30, min_120)));
+        assertThrows(IllegalArgumentException.class, () -> agenda.replaceEvent(meeting, daily));
+    }
+
+    @Test
+    public void frozenEventsCannotChange() {
+        agenda.setFreezeOnInsert(true);
+        Event frozen = new Event("Frozen", nov_1_2020_22_30, min_120);
+        frozen.setRepetition(ChronoUnit.DAYS);
+        agenda.addEvent(frozen);
+        assertTrue(frozen.isFrozen());
+        assertFalse(first.isFrozen(), "Les événements ajoutés avant ne sont pas figés");
+        assertThrows(IllegalStateException.class, () -> frozen.setRepetition(ChronoUnit.WEEKS));
+        assertThrows(IllegalStateException.class, () -> frozen.addException(nov_1_2020));
+        assertThrows(IllegalStateException.class, () -> frozen.setTermination(3));
+        assertThrows(IllegalStateException.class, () -> frozen.getRepetition().removeException(nov_1_2020));
+        assertThrows(IllegalStateException.class, () -> frozen.getRepetition().addExceptions(List.of(nov_1_2020)));
+        assertEquals(List.of(daily, frozen), agenda.eventsInDay(nov_1_2020.plusDays(3)));
+        assertTrue(agenda.removeEvent(frozen));
+    }
+
+    @Test
+    public void cacheAndBitmapsFollowTheChanges() {
+        Agenda plain = new Agenda();
+        agenda.setDayCacheSize(8);
+        agenda.materializeDays(nov_1_2020, 60).join();
+        Random random = new Random(3);
+        List<Event> added = new ArrayList<>(List.of(first, second, daily));
+        added.forEach(plain::addEvent);
+        for (int step = 0; step < 300; step++) {
+            int action = random.nextInt(4);
+            if (action == 0 || added.isEmpty()) {
+                Event e = new Event("Event " + step, nov_1_2020.plusDays(random.nextInt(40)).atTime(random.nextInt(24), 0), min_120);
+                added.add(e);
+                agenda.addEvent(e);
+                plain.addEvent(e);
+            } else if (action == 1) {
+                Event removed = added.remove(random.nextInt(added.size()));
+                assertTrue(agenda.removeEvent(removed));
+                assertTrue(plain.removeEvent(removed));
+            } else if (action == 2) {
+                Event e = added.get(random.nextInt(added.size()));
+                if (e.getRepetition() == null) {
+                    e.setRepetition(random.nextBoolean() ? ChronoUnit.DAYS : ChronoUnit.WEEKS);
+                } else {
+                    e.addException(nov_1_2020.plusDays(random.nextInt(40)));
+                }
+            } else {
+                int i = random.nextInt(added.size());
+                Event replacement = new Event("Replacement " + step, nov_1_2020.plusDays(random.nextInt(40)).atTime(9, 0), min_120);
+                assertTrue(agenda.replaceEvent(added.get(i), replacement));
+                assertTrue(plain.replaceEvent(added.get(i), replacement));
+                added.set(i, replacement);
+            }
+            LocalDate day = nov_1_2020.plusDays(random.nextInt(50));
+            assertEquals(plain.eventsInDay(day), agenda.eventsInDay(day), "Étape " + step + ", le " + day);
+            assertEquals(added, agenda.getAllEvents());
+        }
+    }
+}
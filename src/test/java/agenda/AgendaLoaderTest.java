@@ -0,0 +1,56 @@
+package agenda;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Teste le chargement en masse d'un agenda
+ */
+public class AgendaLoaderTest {
+
+    LocalDateTime start = LocalDateTime.of(2021, 1, 4, 9, 0);
+
+    @Test
+    public void emptyLoaderGivesEmptyAgenda() {
+        Agenda agenda = new AgendaLoader().load();
+        assertTrue(agenda.getAllEvents().isEmpty());
+        assertTrue(agenda.eventsInDay(start.toLocalDate()).isEmpty());
+    }
+
+    @Test
+    public void loadedAgendaIsIndexed() {
+        List<Event> restored = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            restored.add(new Event("Event " + i, start.plusMinutes(13L * i), Duration.ofMinutes(10)));
+        }
+        Event daily = new Event("Daily", start.plusHours(3), Duration.ofMinutes(30));
+        daily.setRepetition(ChronoUnit.DAYS);
+
+        Agenda agenda = new AgendaLoader(restored.size() + 1)
+                .addAll(restored)
+                .add(daily)
+                .load();
+
+        assertEquals(100_001, agenda.getAllEvents().size());
+        assertEquals(restored.get(0), agenda.getAllEvents().get(0), "L'ordre de chargement doit être conservé");
+        LocalDate day = start.toLocalDate().plusDays(10);
+        List<Event> expected = new ArrayList<>();
+        for (Event e : restored) {
+            if (e.isInDay(day)) {
+                expected.add(e);
+            }
+        }
+        expected.add(daily);
+        assertEquals(expected, agenda.eventsInDay(day));
+        assertEquals(List.of(restored.get(4_242)), agenda.findByTitle("Event 4242"));
+        assertFalse(agenda.isFreeFor(new Event("Busy", start.plusMinutes(13L * 500 + 5), Duration.ofMinutes(1))));
+        assertTrue(agenda.isFreeFor(new Event("Free", start.plusMinutes(13L * 500 + 11), Duration.ofMinutes(1))));
+    }
+}
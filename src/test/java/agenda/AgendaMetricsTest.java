@@ -0,0 +1,134 @@
+package agenda;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Teste les compteurs et histogrammes des opérations de l'agenda
+ */
+public class AgendaMetricsTest {
+
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+    Duration min_120 = Duration.ofMinutes(120);
+
+    Agenda agenda;
+    AgendaMetrics metrics;
+
+    @BeforeEach
+    public void setUp() {
+        agenda = new Agenda();
+        metrics = agenda.enableMetrics();
+        Event neverEnding = new Event("Never Ending", nov_1_2020_22_30, min_120);
+        neverEnding.setRepetition(ChronoUnit.DAYS);
+        agenda.addEvent(new Event("Simple event", nov_1_2020_22_30, min_120));
+        agenda.addEvent(neverEnding);
+    }
+
+    @Test
+    public void operationsAreCounted() {
+        agenda.eventsInDay(nov_1_2020.plusDays(1));
+        agenda.eventsInDay(nov_1_2020.plusDays(5));
+        agenda.findByTitle("Simple event");
+        agenda.findByTitle("Unknown");
+        assertFalse(agenda.isFreeFor(new Event("Late", nov_1_2020_22_30.plusDays(3), min_120)));
+
+        OperationStatistics add = metrics.statistics(AgendaMetrics.Operation.ADD_EVENT);
+        assertEquals(2, add.invocations());
+        OperationStatistics days = metrics.statistics(AgendaMetrics.Operation.EVENTS_IN_DAY);
+        assertEquals(2, days.invocations());
+        assertEquals(3, days.matched(), "Deux événements le 2, un seul le 6");
+        assertEquals(3, days.scanned(), "Un candidat de l'index le 2, et l'événement répétitif chaque jour");
+        OperationStatistics titles = metrics.statistics(AgendaMetrics.Operation.FIND_BY_TITLE);
+        assertEquals(2, titles.invocations());
+        assertEquals(1, titles.matched());
+        OperationStatistics free = metrics.statistics(AgendaMetrics.Operation.IS_FREE_FOR);
+        assertEquals(1, free.invocations());
+        assertEquals(1, free.matched());
+        assertTrue(free.scanned() >= 1);
+        assertTrue(days.maxNanos() > 0 && days.p50Nanos() <= days.maxNanos() && days.meanNanos() <= days.maxNanos());
+        assertEquals(4, metrics.snapshot().size());
+
+        metrics.reset();
+        assertEquals(0, metrics.statistics(AgendaMetrics.Operation.EVENTS_IN_DAY).invocations());
+    }
+
+    @Test
+    public void disabledMetricsRecordNothing() {
+        agenda.disableMetrics();
+        agenda.eventsInDay(nov_1_2020);
+        assertEquals(0, metrics.statistics(AgendaMetrics.Operation.EVENTS_IN_DAY).invocations());
+        AgendaMetrics again = agenda.enableMetrics();
+        assertNotSame(metrics, again, "Les métriques repartent de zéro");
+        assertSame(again, agenda.enableMetrics());
+    }
+
+    @Test
+    public void histogramIsPreciseWithinAnEighth() {
+        Random random = new Random(1);
+        for (int i = 0; i < 10_000; i++) {
+            long value = random.nextLong(1L << 40);
+            int bucket = LatencyHistogram.bucket(value);
+            long highest = LatencyHistogram.highestValue(bucket);
+            assertTrue(value <= highest, value + " dans le seau " + bucket);
+            assertTrue(bucket == 0 || LatencyHistogram.highestValue(bucket - 1) < value);
+            assertTrue(highest - value <= value / 8, "Précision de 12,5 % pour " + value);
+        }
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 1000; v++) {
+            histogram.record(v * 1000);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.count());
+        assertEquals(1_000_000, snapshot.max());
+        long median = snapshot.valueAt(0.5);
+        assertTrue(median >= 500_000 && median <= 500_000 * 9 / 8, "Médiane : " + median);
+        assertEquals(1_000_000, snapshot.valueAt(1));
+    }
+
+    @Test
+    public void concurrentRecordingsAreAllCounted() throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            threads.execute(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    metrics.record(AgendaMetrics.Operation.FIND_BY_TITLE, System.nanoTime(), 1);
+                }
+            });
+        }
+        threads.shutdown();
+        assertTrue(threads.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(40_000, metrics.statistics(AgendaMetrics.Operation.FIND_BY_TITLE).invocations());
+        assertEquals(40_000, metrics.statistics(AgendaMetrics.Operation.FIND_BY_TITLE).matched());
+    }
+
+    @Test
+    public void metricsAreExposedOverJmx() throws Exception {
+        agenda.eventsInDay(nov_1_2020);
+        ObjectName name = metrics.registerMBean("test");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            TabularData invocations = (TabularData) server.getAttribute(name, "Invocations");
+            assertEquals(4, invocations.size());
+            assertEquals(1L, invocations.get(new Object[]{"EVENTS_IN_DAY"}).get("value"));
+            server.invoke(name, "reset", null, null);
+            assertEquals(0, metrics.statistics(AgendaMetrics.Operation.EVENTS_IN_DAY).invocations());
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package agenda;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static agenda.ColumnarAgendaTest.describe;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Teste la persistance d'un agenda : instantané, journal, reprise après un arrêt brutal
+ */
+public class AgendaStoreTest {
+
+    static final LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+    static final LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+    static final ChronoUnit[] UNITS = {ChronoUnit.DAYS, ChronoUnit.WEEKS, ChronoUnit.MONTHS};
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Une modification, appliquée soit au magasin, soit à une liste de référence
+     */
+    record Change(int kind, int seed, int event, long value) {
+
+        static Event event(int seed) {
+            Random random = new Random(seed);
+            Event e = new Event("Événement " + seed % 17, nov_1_2020_22_30.plusMinutes(random.nextInt(60 * 24 * 90)),
+                    Duration.ofMinutes(random.nextInt(600)).plusNanos(seed));
+            if (random.nextBoolean()) {
+                e.setRepetition(UNITS[random.nextInt(3)]);
+                e.addException(nov_1_2020.plusDays(random.nextInt(60)));
+                if (random.nextInt(3) == 0) {
+                    e.setTermination(random.nextInt(12) - 1);
+                }
+            }
+            return e;
+        }
+
+        void applyTo(AgendaStore store) throws IOException {
+            switch (kind) {
+                case 0 -> store.addEvent(event(seed));
+                case 1 -> store.addException(event, LocalDate.ofEpochDay(value));
+                case 2 -> store.setTermination(event, LocalDate.ofEpochDay(value));
+                default -> store.setTermination(event, value);
+            }
+        }
+
+        void applyTo(List<Event> reference) {
+            switch (kind) {
+                case 0 -> reference.add(event(seed));
+                case 1 -> reference.get(event).addException(LocalDate.ofEpochDay(value));
+                case 2 -> reference.get(event).setTermination(LocalDate.ofEpochDay(value));
+                default -> reference.get(event).setTermination(value);
+            }
+        }
+    }
+
+    static List<Change> changes(int count, long seed) {
+        Random random = new Random(seed);
+        List<Change> changes = new ArrayList<>();
+        int events = 0;
+        for (int i = 0; i < count; i++) {
+            int kind = events == 0 ? 0 : random.nextInt(2) == 0 ? 0 : 1 + random.nextInt(3);
+            int event = events == 0 ? 0 : random.nextInt(events);
+            long value = kind == 3 ? random.nextInt(20) : nov_1_2020.plusDays(random.nextInt(200)).toEpochDay();
+            changes.add(new Change(kind, i, event, value));
+            if (kind == 0) {
+                events++;
+            }
+        }
+        return changes;
+    }
+
+    static List<String> expected(List<Change> changes) {
+        List<Event> reference = new ArrayList<>();
+        changes.forEach(c -> c.applyTo(reference));
+        return describe(reference);
+    }
+
+    static List<String> stored(AgendaStore store) {
+        return store.read(a -> describe(a.getAllEvents()));
+    }
+
+    @Test
+    public void changesSurviveARestart() throws IOException {
+        List<Change> changes = changes(300, 1);
+        try (AgendaStore store = AgendaStore.open(directory)) {
+            for (Change c : changes) {
+                c.applyTo(store);
+            }
+            assertEquals(expected(changes), stored(store));
+        }
+        try (AgendaStore store = AgendaStore.open(directory)) {
+            assertEquals(expected(changes), stored(store));
+            assertFalse(store.read(a -> a.eventsInDay(nov_1_2020.plusDays(10))).isEmpty(), "Les index sont reconstruits");
+        }
+    }
+
+    @Test
+    public void theStoreKeepsACopyOfTheEvent() throws IOException {
+        try (AgendaStore store = AgendaStore.open(directory)) {
+            Event daily = new Event("Daily", nov_1_2020_22_30, Duration.ofHours(1));
+            daily.setRepetition(ChronoUnit.DAYS);
+            int index = store.addEvent(daily);
+            daily.addException(nov_1_2020.plusDays(2));
+            assertTrue(store.read(a -> a.getAllEvents().get(index).getRepetition().getExceptions()).isEmpty(),
+                    "Seules les modifications faites par le magasin sont enregistrées");
+            store.addException(index, nov_1_2020.plusDays(3));
+            assertEquals(1, store.read(a -> a.eventsInDay(nov_1_2020.plusDays(2))).size());
+            assertTrue(store.read(a -> a.eventsInDay(nov_1_2020.plusDays(3))).isEmpty());
+            assertThrows(IndexOutOfBoundsException.class, () -> store.addException(5, nov_1_2020));
+        }
+    }
+
+    @Test
+    public void recoversFromATornJournal() throws IOException {
+        List<Change> changes = changes(200, 2);
+        long[] ends = new long[changes.size()];
+        Path original = directory.resolve("original");
+        try (AgendaStore store = AgendaStore.open(original)) {
+            for (int i = 0; i < changes.size(); i++) {
+                changes.get(i).applyTo(store);
+                ends[i] = store.journalSize();
+            }
+        }
+        Path journal;
+        try (Stream<Path> files = Files.list(original)) {
+            journal = files.filter(f -> f.getFileName().toString().startsWith("journal-")).findFirst().orElseThrow();
+        }
+        byte[] bytes = Files.readAllBytes(journal);
+        Random random = new Random(2);
+        for (int attempt = 0; attempt < 40; attempt++) {
+            int cut = random.nextInt(bytes.length + 1);
+            Path crashed = directory.resolve("crash-" + attempt);
+            Files.createDirectories(crashed);
+            Files.write(crashed.resolve(journal.getFileName()), Arrays.copyOf(bytes, cut));
+            int kept = 0;
+            while (kept < ends.length && ends[kept] <= cut) {
+                kept++;
+            }
+            try (AgendaStore store = AgendaStore.open(crashed)) {
+                assertEquals(expected(changes.subList(0, kept)), stored(store), "Coupure à l'octet " + cut);
+                // Le journal repart après le dernier enregistrement valide
+                store.addEvent(Change.event(-1));
+            }
+            try (AgendaStore store = AgendaStore.open(crashed)) {
+                long added = changes.subList(0, kept).stream().filter(c -> c.kind() == 0).count();
+                assertEquals(added + 1, (long) store.read(a -> a.getAllEvents().size()));
+            }
+        }
+    }
+
+    @Test
+    public void stopsAtACorruptedRecord() throws IOException {
+        List<Change> changes = changes(50, 3);
+        long[] ends = new long[changes.size()];
+        try (AgendaStore store = AgendaStore.open(directory)) {
+            for (int i = 0; i < changes.size(); i++) {
+                changes.get(i).applyTo(store);
+                ends[i] = store.journalSize();
+            }
+        }
+        Path journal = directory.resolve("journal-0000000000000000000.log");
+        byte[] bytes = Files.readAllBytes(journal);
+        bytes[(int) ends[29] + 12] ^= 0x40;
+        Files.write(journal, bytes);
+        try (AgendaStore store = AgendaStore.open(directory)) {
+            assertEquals(expected(changes.subList(0, 30)), stored(store));
+        }
+        assertEquals(ends[29], Files.size(journal), "La fin corrompue est coupée");
+    }
+
+    @Test
+    public void compactionFoldsTheJournalIntoASnapshot() throws IOException {
+        List<Change> changes = changes(400, 4);
+        try (AgendaStore store = AgendaStore.open(directory)) {
+            for (Change c : changes.subList(0, 200)) {
+                c.applyTo(store);
+            }
+            store.compact();
+            assertEquals(0, store.journalSize());
+            for (Change c : changes.subList(200, 400)) {
+                c.applyTo(store);
+            }
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(List.of("journal-0000000000000000001.log", "snapshot-0000000000000000001.bin"),
+                    files.map(f -> f.getFileName().toString()).sorted().toList());
+        }
+        try (AgendaStore store = AgendaStore.open(directory)) {
+            assertEquals(expected(changes), stored(store));
+        }
+    }
+
+    @Test
+    public void compactsInTheBackground() throws IOException {
+        List<Change> changes = changes(2_000, 5);
+        try (AgendaStore store = AgendaStore.open(directory, 8 << 10)) {
+            for (Change c : changes) {
+                c.applyTo(store);
+            }
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            List<String> names = files.map(f -> f.getFileName().toString()).sorted().toList();
+            assertEquals(2, names.size(), "Un instantané et son journal : " + names);
+            assertNotEquals("journal-0000000000000000000.log", names.get(0));
+        }
+        try (AgendaStore store = AgendaStore.open(directory)) {
+            assertEquals(expected(changes), stored(store));
+        }
+    }
+
+    @Test
+    public void recoversFromAnInterruptedCompaction() throws IOException {
+        List<Change> changes = changes(100, 6);
+        try (AgendaStore store = AgendaStore.open(directory)) {
+            for (Change c : changes.subList(0, 50)) {
+                c.applyTo(store);
+            }
+            store.compact();
+            for (Change c : changes.subList(50, 100)) {
+                c.applyTo(store);
+            }
+        }
+        // Arrêt pendant la compaction suivante : journal 2 ouvert, instantané 2 inachevé
+        Files.write(directory.resolve("snapshot-0000000000000000002.bin.tmp"), new byte[]{1, 2, 3});
+        Files.createFile(directory.resolve("journal-0000000000000000002.log"));
+        try (AgendaStore store = AgendaStore.open(directory)) {
+            assertEquals(expected(changes), stored(store));
+            store.addEvent(Change.event(-2));
+        }
+        try (AgendaStore store = AgendaStore.open(directory)) {
+            long added = changes.stream().filter(c -> c.kind() == 0).count();
+            assertEquals(added + 1, (long) store.read(a -> a.getAllEvents().size()));
+        }
+        assertFalse(Files.exists(directory.resolve("snapshot-0000000000000000002.bin.tmp")));
+    }
+
+    @Test
+    public void concurrentChangesAreAllDurable() throws Exception {
+        int threads = 8;
+        int perThread = 100;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (AgendaStore store = AgendaStore.open(directory)) {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int first = t * perThread;
+                done.add(pool.submit(() -> {
+                    for (int i = first; i < first + perThread; i++) {
+                        store.addEvent(Change.event(i));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : done) {
+                f.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        try (AgendaStore store = AgendaStore.open(directory)) {
+            List<String> titles = store.read(a -> a.getAllEvents().stream().map(Event::getTitle).toList());
+            assertEquals(threads * perThread, titles.size());
+        }
+    }
+
+    @Test
+    public void concurrentChangesShareTheirFsync() throws Exception {
+        int threads = 8;
+        Path file = directory.resolve("journal.log");
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (Journal journal = Journal.open(file, 0)) {
+            // Tous les fils ajoutent leur enregistrement avant que le premier ne demande un fsync
+            CyclicBarrier appended = new CyclicBarrier(threads);
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                byte[] record = {(byte) t};
+                done.add(pool.submit(() -> {
+                    long position = journal.append(record);
+                    appended.await();
+                    journal.sync(position);
+                    return null;
+                }));
+            }
+            for (Future<?> f : done) {
+                f.get();
+            }
+            assertEquals(1, journal.syncCount(), "Un seul fsync rend durables les enregistrements de tous les fils");
+        } finally {
+            pool.shutdown();
+        }
+        List<Byte> records = new ArrayList<>();
+        Journal.replay(file, record -> records.add(record.get()));
+        assertEquals(threads, records.size(), "Chaque enregistrement est sur le disque");
+    }
+}
@@ -4,6 +4,7 @@ import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -64,6 +65,53 @@ public class AgendaTest {
         assertTrue(agenda.getAllEvents().contains(newEvent), "Le nouvel événement doit être ajouté.");
     }
     
+    @Test
+    public void testGetAllEvents_IsReadOnly() {
+        assertThrows(UnsupportedOperationException.class, () -> agenda.getAllEvents().add(simple),
+                "La liste rendue ne doit pas permettre de contourner addEvent");
+    }
+    
+    @Test
+    public void testAddAll_SameAsAddEvent() {
+        Agenda oneByOne = new Agenda();
+        Agenda bulk = new Agenda();
+        // Les deux agendas ont déjà quelques événements
+        List<Event> first = List.of(simple, fixedTermination);
+        first.forEach(oneByOne::addEvent);
+        bulk.addAll(first);
+
+        List<Event> more = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Event e = new Event("Event " + i % 7, nov_1_2020_22_30.plusHours(5L * i), Duration.ofMinutes(30 + i % 5 * 60));
+            if (i % 50 == 0) {
+                e.setRepetition(ChronoUnit.WEEKS);
+            }
+            more.add(e);
+        }
+        more.forEach(oneByOne::addEvent);
+        bulk.addAll(more);
+
+        assertEquals(oneByOne.getAllEvents(), bulk.getAllEvents(), "L'ordre d'insertion doit être conservé");
+        for (int d = -1; d < 70; d++) {
+            LocalDate day = nov_1_2020.plusDays(d);
+            assertEquals(oneByOne.eventsInDay(day), bulk.eventsInDay(day), "Différence le " + day);
+        }
+        assertEquals(oneByOne.findByTitle("Event 3"), bulk.findByTitle("Event 3"));
+        assertEquals(oneByOne.findByTitlePrefix("Event"), bulk.findByTitlePrefix("Event"));
+        Event candidate = new Event("Candidate", nov_1_2020_22_30.plusDays(20), min_120);
+        assertEquals(oneByOne.conflictsWith(candidate).toList(), bulk.conflictsWith(candidate).toList());
+    }
+
+    @Test
+    public void testAddAll_ThenAddEvent() {
+        Agenda bulk = new Agenda();
+        bulk.addAll(List.of(simple, neverEnding));
+        Event later = new Event("Later", nov_1_2020_22_30.plusMinutes(30), min_120);
+        bulk.addEvent(later);
+        assertEquals(List.of(simple, neverEnding, later), bulk.eventsInDay(nov_1_2020));
+        assertEquals(List.of(simple, neverEnding, later), bulk.getAllEvents());
+    }
+
     // --- Tests de Limites et de Logique pour eventsInDay ---
 
     @Test
@@ -73,13 +121,14 @@ public class AgendaTest {
     }
 
     @Test
-    public void testEventsInDay_DayWithNoEvents() {
-        // Le 2 novembre n'a que le NeverEnding (quotidien)
-        // Les événements fixedTermination et fixedRepetitions sont hebdomadaires
-        assertEquals(1, agenda.eventsInDay(nov_2_2020).size(),
-                "Seul l'événement quotidien doit avoir lieu le 2 novembre.");
-        assertTrue(agenda.eventsInDay(nov_2_2020).contains(neverEnding));
-        assertFalse(agenda.eventsInDay(nov_2_2020).contains(simple));
+    public void testEventsInDay_OccurrencesOverflowingPastMidnight() {
+        // Aucun événement ne commence le 2 novembre, sauf le NeverEnding (quotidien).
+        // Mais tous les événements du 1er novembre (22:30 - 00:30) débordent sur le 2 novembre
+        assertEquals(List.of(simple, fixedTermination, fixedRepetitions, neverEnding), agenda.eventsInDay(nov_2_2020),
+                "Les occurrences qui débordent après minuit ont lieu le 2 novembre.");
+        // Le 3 novembre, seul l'événement quotidien a lieu
+        assertEquals(List.of(neverEnding), agenda.eventsInDay(nov_2_2020.plusDays(1)),
+                "Seul l'événement quotidien doit avoir lieu le 3 novembre.");
     }
 
     @Test
@@ -107,6 +156,114 @@ public class AgendaTest {
         assertTrue(events.contains(neverEnding));
     }
 
+    @Test
+    public void testEventsInDay_LongSimpleEventSpansManyDays() {
+        // Un événement simple de 3 jours (du 11/11 22:30 au 14/11 22:30)
+        Event longEvent = new Event("Long event", nov_1_2020_22_30.plusDays(10), Duration.ofDays(3));
+        Event later = new Event("Later event", nov_1_2020_22_30.plusDays(11), min_120);
+        agenda.addEvent(longEvent);
+        agenda.addEvent(later);
+
+        assertFalse(agenda.eventsInDay(nov_1_2020.plusDays(9)).contains(longEvent));
+        assertTrue(agenda.eventsInDay(nov_1_2020.plusDays(13)).contains(longEvent),
+                "L'événement déborde jusqu'au 14 novembre");
+        assertFalse(agenda.eventsInDay(nov_1_2020.plusDays(14)).contains(later));
+        assertFalse(agenda.eventsInDay(nov_1_2020.plusDays(15)).contains(longEvent));
+        assertEquals(List.of(neverEnding, longEvent, later), agenda.eventsInDay(nov_1_2020.plusDays(11)),
+                "Les événements sont rendus dans l'ordre d'insertion");
+    }
+
+    // --- Tests pour eventsBetween ---
+
+    @Test
+    public void testEventsBetween_FirstWeek() {
+        // simple (1), les deux hebdomadaires (1 chacun), neverEnding du 1er au 7 (7)
+        List<Occurrence> occurrences = agenda.eventsBetween(nov_1_2020, nov_8_2020.minusDays(1)).toList();
+        assertEquals(10, occurrences.size());
+        assertEquals(7, occurrences.stream().filter(o -> o.event() == neverEnding).count());
+        assertTrue(occurrences.contains(new Occurrence(simple, nov_1_2020_22_30, nov_1_2020_22_30.plus(min_120))));
+    }
+
+    @Test
+    public void testEventsBetween_HonoursExceptionsAndTermination() {
+        neverEnding.addException(nov_2_2020);
+        LocalDate feb_1_2021 = LocalDate.of(2021, 2, 1);
+        assertEquals(6, agenda.eventsBetween(nov_1_2020, nov_8_2020.minusDays(1))
+                .filter(o -> o.event() == neverEnding).count(), "Le 2 novembre est une exception");
+        assertEquals(List.of(neverEnding), agenda.eventsBetween(feb_1_2021, feb_1_2021)
+                .map(Occurrence::event).distinct().toList(), "Les événements hebdomadaires sont terminés");
+        assertEquals(10, agenda.eventsBetween(nov_1_2020, feb_1_2021)
+                .filter(o -> o.event() == fixedTermination).count());
+    }
+
+    @Test
+    public void testEventsBetween_IncludesOccurrenceStartedBefore() {
+        // Fenêtre de 10 minutes après minuit : les occurrences de la veille débordent encore
+        LocalDateTime midnight = nov_8_2020.atStartOfDay();
+        List<Occurrence> occurrences = agenda.eventsBetween(midnight, midnight.plusMinutes(10)).toList();
+        assertEquals(List.of(new Occurrence(neverEnding, midnight.minusMinutes(90), midnight.plusMinutes(30))),
+                occurrences, "Seul neverEnding a eu lieu le samedi 7 novembre au soir");
+        // Une fenêtre qui commence exactement à la fin d'une occurrence ne la contient pas
+        assertTrue(agenda.eventsBetween(midnight.plusMinutes(30), midnight.plusMinutes(40)).toList().isEmpty());
+    }
+
+    @Test
+    public void testEventsBetween_IsLazy() {
+        assertEquals(1000, agenda.eventsBetween(nov_1_2020_22_30, LocalDateTime.MAX)
+                .filter(o -> o.event() == neverEnding)
+                .limit(1000)
+                .count(), "Une fenêtre sans fin doit être parcourue paresseusement");
+    }
+
+    // --- Tests pour findAllConflicts ---
+
+    @Test
+    public void testFindAllConflicts_FirstWeek() {
+        LocalDateTime from = nov_1_2020.atStartOfDay();
+        List<Conflict> conflicts = agenda.findAllConflicts(from, from.plusDays(7)).toList();
+        // Le 1er novembre, les 4 événements ont lieu en même temps : 6 paires
+        assertEquals(6, conflicts.size());
+        assertTrue(conflicts.stream().allMatch(c -> Conflict.overlap(c.first(), c.second())));
+        assertTrue(conflicts.stream().allMatch(c -> !c.first().start().isAfter(c.second().start())));
+    }
+
+    @Test
+    public void testFindAllConflicts_MatchesBruteForce() {
+        Agenda busy = new Agenda();
+        LocalDateTime monday = LocalDateTime.of(2021, 3, 1, 8, 0);
+        for (int i = 0; i < 40; i++) {
+            busy.addEvent(new Event("Meeting " + i, monday.plusMinutes(37L * i), Duration.ofMinutes(45 + i % 4 * 30)));
+        }
+        Event standup = new Event("Standup", monday.plusHours(1), Duration.ofMinutes(15));
+        standup.setRepetition(ChronoUnit.DAYS);
+        standup.addException(monday.toLocalDate().plusDays(1));
+        busy.addEvent(standup);
+
+        LocalDateTime from = monday.minusDays(1);
+        LocalDateTime to = monday.plusDays(4);
+        List<Occurrence> all = busy.eventsBetween(from, to).toList();
+        long expected = 0;
+        for (int i = 0; i < all.size(); i++) {
+            for (int j = i + 1; j < all.size(); j++) {
+                if (Conflict.overlap(all.get(i), all.get(j))) {
+                    expected++;
+                }
+            }
+        }
+        assertTrue(expected > 0);
+        assertEquals(expected, busy.findAllConflicts(from, to).count());
+    }
+
+    @Test
+    public void testFindAllConflicts_IsLazy() {
+        // neverEnding et un autre événement quotidien en même temps, pour toujours
+        Event other = new Event("Other", nov_1_2020_22_30.plusMinutes(10), min_120);
+        other.setRepetition(ChronoUnit.DAYS);
+        agenda.addEvent(other);
+        assertEquals(10_000, agenda.findAllConflicts(nov_1_2020.plusDays(10).atStartOfDay(), LocalDateTime.MAX)
+                .limit(10_000).count());
+    }
+
     // --- Tests pour findByTitle ---
 
     @Test
@@ -135,6 +292,30 @@ public class AgendaTest {
         assertTrue(agenda.findByTitle("Inexistant").isEmpty(), "Ne doit rien trouver pour un titre inexistant.");
     }
     
+    @Test
+    public void testFindByTitle_IgnoreCase() {
+        assertEquals(List.of(neverEnding), agenda.findByTitleIgnoreCase("NEVER ending"));
+        assertTrue(agenda.findByTitle("NEVER ending").isEmpty(), "La recherche exacte respecte la casse");
+    }
+
+    @Test
+    public void testFindByTitlePrefix() {
+        Event fixe = new Event("Fixe", LocalDateTime.now(), min_120);
+        agenda.addEvent(fixe);
+        assertEquals(List.of(fixedTermination, fixedRepetitions), agenda.findByTitlePrefix("Fixed"));
+        assertEquals(List.of(fixedTermination, fixedRepetitions, fixe), agenda.findByTitlePrefix("Fix"),
+                "Les résultats sont dans l'ordre d'insertion");
+        assertEquals(5, agenda.findByTitlePrefix("").size(), "Le préfixe vide trouve tous les événements");
+        assertTrue(agenda.findByTitlePrefix("fix").isEmpty());
+        assertEquals(List.of(fixedTermination, fixedRepetitions, fixe), agenda.findByTitlePrefixIgnoreCase("FIX"));
+    }
+
+    @Test
+    public void testFindByTitle_ResultIsACopy() {
+        agenda.findByTitle("Never Ending").clear();
+        assertEquals(List.of(neverEnding), agenda.findByTitle("Never Ending"));
+    }
+    
     // --- Tests pour isFreeFor (Limites de Chevauchement) ---
     
     @Test
@@ -176,4 +357,96 @@ public class AgendaTest {
         Event e = new Event("Free Slot", freeSlot, min_120);
         assertTrue(agenda.isFreeFor(e), "Doit réussir s'il n'y a pas de chevauchement.");
     }
+
+    @Test
+    public void testIsFreeFor_LaterOccurrenceOfRepeatingEvent() {
+        // Le 3 novembre à 23:00 : seule la 3e occurrence de neverEnding a lieu
+        Event e = new Event("Late", nov_1_2020_22_30.plusDays(2).plusMinutes(30), Duration.ofMinutes(10));
+        assertFalse(agenda.isFreeFor(e), "Les occurrences suivantes d'un événement répétitif sont en conflit");
+        List<Conflict> conflicts = agenda.conflictsWith(e).toList();
+        assertEquals(1, conflicts.size());
+        assertEquals(neverEnding, conflicts.get(0).second().event());
+        assertEquals(nov_1_2020_22_30.plusDays(2), conflicts.get(0).second().start());
+    }
+
+    @Test
+    public void testIsFreeFor_RepeatingCandidate() {
+        // Tous les jours de 10:00 à 11:00, pour toujours : jamais en même temps que les événements du soir
+        Event morning = new Event("Morning", nov_1_2020.atTime(10, 0), Duration.ofHours(1));
+        morning.setRepetition(ChronoUnit.DAYS);
+        assertTrue(agenda.isFreeFor(morning));
+
+        // Tous les mois à 23:00 : en conflit avec neverEnding dès la première occurrence
+        Event monthly = new Event("Monthly", nov_1_2020.atTime(23, 0), Duration.ofMinutes(10));
+        monthly.setRepetition(ChronoUnit.MONTHS);
+        assertFalse(agenda.isFreeFor(monthly));
+
+        // Tous les lundis à 23:00 à partir de 2021 : plus aucun événement hebdomadaire, mais neverEnding
+        Event weekly = new Event("Weekly", LocalDate.of(2021, 2, 1).atTime(23, 0), Duration.ofMinutes(10));
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        weekly.setTermination(3);
+        assertEquals(3, agenda.conflictsWith(weekly).count(), "Une seule occurrence de neverEnding par lundi");
+    }
+
+    @Test
+    public void testIsFreeFor_NeverEndingSeriesArePairedWithoutTheGlobalHorizon() {
+        Agenda monthlies = new Agenda();
+        for (int i = 0; i < 50; i++) {
+            Event monthly = new Event("Monthly " + i, nov_1_2020.plusDays(i % 28).atTime(8 + i % 10, 0), Duration.ofMinutes(30));
+            monthly.setRepetition(ChronoUnit.MONTHS);
+            monthlies.addEvent(monthly);
+        }
+        Event daily = new Event("Daily", nov_1_2020.atTime(19, 0), Duration.ofMinutes(30));
+        daily.setRepetition(ChronoUnit.DAYS);
+        Event busy = new Event("Busy", nov_1_2020.atTime(9, 15), Duration.ofMinutes(30));
+        busy.setRepetition(ChronoUnit.DAYS);
+        assertTimeoutPreemptively(Duration.ofSeconds(2), () -> {
+            for (int i = 0; i < 1_000; i++) {
+                assertTrue(monthlies.isFreeFor(daily));
+                assertFalse(monthlies.isFreeFor(busy));
+            }
+        }, "Des milliers de vérifications par seconde");
+    }
+
+    @Test
+    public void testConflictsWith_RepeatingPairsFollowTheCandidate() {
+        // Tous les 31 du mois à 10:00, et un lundi sur deux... jamais : seul un lundi 31 les réunit
+        Event monthly = new Event("Monthly", LocalDate.of(2021, 1, 31).atTime(10, 0), Duration.ofHours(1));
+        monthly.setRepetition(ChronoUnit.MONTHS);
+        Agenda other = new Agenda();
+        other.addEvent(monthly);
+        Event monday = new Event("Monday", LocalDate.of(2021, 2, 1).atTime(10, 30), Duration.ofHours(1));
+        monday.setRepetition(ChronoUnit.WEEKS);
+        monday.setTermination(LocalDate.of(2021, 5, 30));
+        assertTrue(other.isFreeFor(monday), "Aucun lundi 31 avant juin 2021");
+        Event mondays = new Event("Mondays", monday.getStart(), Duration.ofHours(1));
+        mondays.setRepetition(ChronoUnit.WEEKS);
+        Conflict first = other.conflictsWith(mondays).findFirst().orElseThrow();
+        assertEquals(LocalDate.of(2021, 5, 31).atTime(10, 30), first.first().start(), "Le premier lundi 31");
+
+        // Le candidat quotidien est plus dense : les conflits suivent pourtant ses occurrences
+        Event daily = new Event("Daily", nov_1_2020.atTime(9, 0), Duration.ofHours(3));
+        daily.setRepetition(ChronoUnit.DAYS);
+        daily.setTermination(LocalDate.of(2021, 6, 30));
+        Event weekly = new Event("Weekly", nov_1_2020.atTime(11, 0), Duration.ofDays(2));
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        other.addEvent(weekly);
+        List<Conflict> conflicts = other.conflictsWith(daily).toList();
+        for (int i = 1; i < conflicts.size(); i++) {
+            assertFalse(conflicts.get(i).first().start().isBefore(conflicts.get(i - 1).first().start()),
+                    "Ordre du candidat : " + conflicts.get(i));
+        }
+        assertEquals(LocalDate.of(2021, 1, 31).atTime(9, 0), conflicts.stream()
+                .filter(c -> c.second().event() == monthly).findFirst().orElseThrow().first().start());
+    }
+
+    @Test
+    public void testIsFreeFor_EventDoesNotConflictWithItself() {
+        Agenda other = new Agenda();
+        other.addEvent(neverEnding);
+        assertTrue(other.isFreeFor(neverEnding));
+        neverEnding.addException(nov_2_2020);
+        Event second = new Event("Second", nov_2_2020.atTime(23, 0), min_120);
+        assertTrue(other.isFreeFor(second), "Le 2 novembre est une exception de neverEnding");
+    }
 }
@@ -0,0 +1,157 @@
+package agenda;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Teste la façade asynchrone de l'agenda
+ */
+public class AsyncAgendaTest {
+
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+    Duration min_120 = Duration.ofMinutes(120);
+
+    Agenda agenda;
+    Event simple;
+    Event neverEnding;
+
+    /**
+     * Exécuteur qui garde les tâches jusqu'à ce que le test les lance
+     */
+    static final class HeldExecutor implements Executor {
+        final Deque<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.poll().run();
+            }
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        agenda = new Agenda();
+        simple = new Event("Simple event", nov_1_2020_22_30, min_120);
+        neverEnding = new Event("Never Ending", nov_1_2020_22_30, min_120);
+        neverEnding.setRepetition(ChronoUnit.DAYS);
+        agenda.addEvent(simple);
+        agenda.addEvent(neverEnding);
+    }
+
+    @Test
+    public void queriesAnswerLikeTheAgenda() throws Exception {
+        try (AsyncAgenda async = new AsyncAgenda(agenda)) {
+            assertEquals(List.of(simple, neverEnding), async.eventsInDay(nov_1_2020.plusDays(1)).get(5, TimeUnit.SECONDS));
+            assertEquals(List.of(simple), async.findByTitle("Simple event").get(5, TimeUnit.SECONDS));
+            assertFalse(async.isFreeFor(new Event("Late", nov_1_2020_22_30.plusDays(3), min_120)).get(5, TimeUnit.SECONDS));
+            assertEquals(3, async.eventsBetween(nov_1_2020.atStartOfDay(), nov_1_2020.plusDays(2).atStartOfDay())
+                    .get(5, TimeUnit.SECONDS).size());
+            Event morning = new Event("Morning", nov_1_2020.plusDays(1).atTime(9, 0), min_120);
+            async.addEvent(morning).get(5, TimeUnit.SECONDS);
+            assertEquals(List.of(simple, neverEnding, morning), async.eventsInDay(nov_1_2020.plusDays(1)).get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void identicalDayQueriesAreMerged() {
+        HeldExecutor executor = new HeldExecutor();
+        AsyncAgenda async = new AsyncAgenda(agenda, executor);
+        CompletableFuture<List<Event>> first = async.eventsInDay(nov_1_2020.plusDays(1));
+        CompletableFuture<List<Event>> second = async.eventsInDay(nov_1_2020.plusDays(1));
+        CompletableFuture<List<Event>> other = async.eventsInDay(nov_1_2020.plusDays(5));
+        assertEquals(2, async.dayEvaluations(), "Les requêtes du même jour partagent une évaluation");
+        assertEquals(2, executor.tasks.size());
+        executor.runAll();
+        assertEquals(List.of(simple, neverEnding), first.join());
+        assertEquals(first.join(), second.join());
+        assertNotSame(first.join(), second.join(), "Chaque requête reçoit sa propre liste");
+        assertEquals(List.of(neverEnding), other.join());
+
+        async.eventsInDay(nov_1_2020.plusDays(1));
+        assertEquals(3, async.dayEvaluations(), "Une évaluation terminée n'est plus partagée");
+        executor.runAll();
+    }
+
+    @Test
+    public void modificationsEndTheMerging() {
+        HeldExecutor executor = new HeldExecutor();
+        AsyncAgenda async = new AsyncAgenda(agenda, executor);
+        CompletableFuture<List<Event>> before = async.eventsInDay(nov_1_2020.plusDays(1));
+        Event morning = new Event("Morning", nov_1_2020.plusDays(1).atTime(9, 0), min_120);
+        CompletableFuture<Void> added = async.addEvent(morning);
+        // L'ajout passe avant l'évaluation en attente
+        executor.tasks.pollLast().run();
+        assertTrue(added.isDone());
+        CompletableFuture<List<Event>> after = async.eventsInDay(nov_1_2020.plusDays(1));
+        assertEquals(2, async.dayEvaluations(), "Une requête après une modification ne rejoint pas l'évaluation précédente");
+        executor.runAll();
+        assertEquals(List.of(simple, neverEnding, morning), after.join());
+        assertEquals(List.of(simple, neverEnding, morning), before.join());
+    }
+
+    @Test
+    public void writesKeepTheOrderOfTheCalls() throws Exception {
+        HeldExecutor executor = new HeldExecutor();
+        AsyncAgenda held = new AsyncAgenda(agenda, executor);
+        Event first = new Event("First", nov_1_2020.atTime(8, 0), min_120);
+        Event second = new Event("Second", nov_1_2020.atTime(9, 0), min_120);
+        CompletableFuture<Void> firstAdded = held.addEvent(first);
+        CompletableFuture<Void> secondAdded = held.addEvent(second);
+        assertEquals(1, executor.tasks.size(), "Une modification attend la précédente");
+        executor.tasks.pollLast().run();
+        assertTrue(firstAdded.isDone());
+        assertFalse(secondAdded.isDone());
+        executor.runAll();
+        assertEquals(List.of(simple, neverEnding, first, second), agenda.getAllEvents());
+
+        List<Event> added = new ArrayList<>();
+        CompletableFuture<Void> last = null;
+        try (AsyncAgenda async = new AsyncAgenda(agenda)) {
+            for (int i = 0; i < 200; i++) {
+                Event e = new Event("Event " + i, nov_1_2020.plusDays(i).atTime(10, 0), min_120);
+                added.add(e);
+                last = async.addEvent(e);
+            }
+            last.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(added, agenda.getAllEvents().subList(4, agenda.getAllEvents().size()), "L'ordre des appels est conservé");
+    }
+
+    @Test
+    public void agendasWithACacheAreQueriedOneAtATime() throws Exception {
+        agenda.setDayCacheSize(16);
+        List<CompletableFuture<List<Event>>> results = new ArrayList<>();
+        try (AsyncAgenda async = new AsyncAgenda(agenda)) {
+            for (int i = 0; i < 200; i++) {
+                results.add(async.eventsInDay(nov_1_2020.plusDays(i % 20)));
+            }
+            for (CompletableFuture<List<Event>> result : results) {
+                result.get(5, TimeUnit.SECONDS);
+            }
+        }
+        // Les requêtes sont terminées : l'agenda peut être interrogé directement
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(agenda.eventsInDay(nov_1_2020.plusDays(i % 20)), results.get(i).join());
+        }
+        assertEquals(Runtime.version().feature() >= 21, AsyncAgenda.virtualThreadsAvailable());
+    }
+}
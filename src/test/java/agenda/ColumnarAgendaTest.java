@@ -0,0 +1,224 @@
+package agenda;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Teste l'agenda stocké en colonnes, par comparaison avec l'agenda d'objets
+ */
+public class ColumnarAgendaTest {
+
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+    Duration min_120 = Duration.ofMinutes(120);
+
+    ColumnarAgenda agenda;
+    Event simple;
+    Event neverEnding;
+
+    @BeforeEach
+    public void setUp() {
+        agenda = new ColumnarAgenda();
+        simple = new Event("Simple event", nov_1_2020_22_30, min_120);
+        neverEnding = new Event("Never Ending", nov_1_2020_22_30, min_120);
+        neverEnding.setRepetition(ChronoUnit.DAYS);
+        agenda.addEvent(simple);
+        agenda.addEvent(neverEnding);
+    }
+
+    /**
+     * Les événements reconstruits sont des copies : on compare leur description complète
+     */
+    static String describe(Event e) {
+        Repetition r = e.getRepetition();
+        return e + (r == null ? "" : " " + r.getFrequency() + " " + r.getExceptions()
+                + " " + e.getNumberOfOccurrences() + " " + e.getTerminationDate());
+    }
+
+    static List<String> describe(List<Event> events) {
+        return events.stream().map(ColumnarAgendaTest::describe).toList();
+    }
+
+    /**
+     * Les conflits, décrits par les horaires des occurrences : les occurrences de l'événement
+     * testé dans l'ordre du flux, et pour chacune les occurrences qu'elle rencontre, triées
+     * (leur ordre n'est pas imposé)
+     */
+    static List<String> describe(Stream<Conflict> conflicts) {
+        Map<String, List<String>> byFirst = conflicts.collect(Collectors.groupingBy(
+                c -> c.first().start() + "/" + c.first().end(), LinkedHashMap::new,
+                Collectors.mapping(c -> c.second().start() + "/" + c.second().end(), Collectors.toList())));
+        return byFirst.entrySet().stream()
+                .map(e -> e.getKey() + " " + e.getValue().stream().sorted().toList())
+                .toList();
+    }
+
+    @Test
+    public void behavesLikeAnAgenda() {
+        assertEquals(describe(List.of(simple, neverEnding)), describe(agenda.eventsInDay(nov_1_2020.plusDays(1))));
+        assertEquals(describe(List.of(neverEnding)), describe(agenda.eventsInDay(nov_1_2020.plusDays(5))));
+        assertTrue(agenda.eventsInDay(nov_1_2020.minusDays(1)).isEmpty());
+        assertEquals(describe(List.of(simple)), describe(agenda.findByTitle("Simple event")));
+        assertTrue(agenda.findByTitle("Unknown").isEmpty());
+        assertFalse(agenda.isFreeFor(new Event("Late", nov_1_2020_22_30.plusDays(3), min_120)));
+        assertTrue(agenda.isFreeFor(new Event("Morning", nov_1_2020.plusDays(3).atTime(9, 0), min_120)));
+        assertEquals(2, agenda.size());
+    }
+
+    @Test
+    public void eventsAreRebuiltIdentically() {
+        Event byDate = new Event("By date", nov_1_2020_22_30, min_120);
+        byDate.setRepetition(ChronoUnit.MONTHS);
+        byDate.setTermination(LocalDate.of(2021, 3, 15));
+        byDate.addException(LocalDate.of(2020, 12, 1));
+        Event byCount = new Event("By count", nov_1_2020_22_30, min_120);
+        byCount.setRepetition(ChronoUnit.WEEKS);
+        byCount.setTermination(5);
+        Event none = new Event("No occurrence", nov_1_2020_22_30, min_120);
+        none.setRepetition(ChronoUnit.DAYS);
+        none.setTermination(0);
+        Event precise = new Event("Precise", nov_1_2020_22_30.plusNanos(123_456_789), Duration.ofMillis(1_500));
+        agenda.addAll(List.of(byDate, byCount, none, precise));
+
+        assertEquals(describe(List.of(simple, neverEnding, byDate, byCount, none, precise)), describe(agenda.getAllEvents()));
+        assertNotSame(simple, agenda.getEvent(0), "Les événements sont reconstruits à partir des colonnes");
+        assertSame(simple.getTitle(), agenda.getEvent(0).getTitle(), "Le titre vient du dictionnaire");
+        assertThrows(IndexOutOfBoundsException.class, () -> agenda.getEvent(6));
+        assertThrows(UnsupportedOperationException.class, () -> agenda.getAllEvents().add(simple));
+    }
+
+    @Test
+    public void laterChangesToTheEventAreIgnored() {
+        Event e = new Event("Daily", nov_1_2020_22_30, min_120);
+        e.setRepetition(ChronoUnit.DAYS);
+        agenda.addEvent(e);
+        e.addException(nov_1_2020.plusDays(3));
+        assertTrue(agenda.findByTitle("Daily").get(0).getRepetition().getExceptions().isEmpty(),
+                "L'exception ajoutée après coup n'est pas dans l'agenda");
+        assertEquals(1, agenda.eventsInDay(nov_1_2020.plusDays(3)).stream().filter(d -> d.getTitle().equals("Daily")).count());
+    }
+
+    @Test
+    public void matchesAgendaOnRandomEvents() {
+        Random random = new Random(3);
+        Agenda reference = new Agenda();
+        reference.addEvent(simple);
+        reference.addEvent(neverEnding);
+        ChronoUnit[] units = {ChronoUnit.DAYS, ChronoUnit.WEEKS, ChronoUnit.MONTHS};
+        for (int i = 0; i < 400; i++) {
+            LocalDateTime start = nov_1_2020_22_30.plusMinutes(random.nextInt(60 * 24 * 120));
+            Duration duration = random.nextInt(10) == 0 ? Duration.ofHours(30 + random.nextInt(100))
+                    : Duration.ofMinutes(random.nextInt(300));
+            Event e = new Event("Event " + i % 13, start, duration);
+            switch (random.nextInt(5)) {
+                case 0 -> {
+                    e.setRepetition(units[random.nextInt(3)]);
+                    e.setTermination(start.toLocalDate().plusDays(random.nextInt(200)));
+                }
+                case 1 -> {
+                    e.setRepetition(units[random.nextInt(3)]);
+                    e.setTermination(random.nextInt(20) - 2);
+                    e.addException(start.toLocalDate().plusWeeks(random.nextInt(4)));
+                }
+                case 2 -> {
+                    e.setRepetition(ChronoUnit.WEEKS);
+                    e.addException(start.toLocalDate().plusWeeks(1));
+                }
+                default -> {
+                }
+            }
+            reference.addEvent(e);
+            agenda.addEvent(e);
+        }
+        for (int d = -2; d < 400; d += 3) {
+            LocalDate day = nov_1_2020.plusDays(d);
+            assertEquals(describe(reference.eventsInDay(day)), describe(agenda.eventsInDay(day)), "Différence le " + day);
+        }
+        // Les candidats ne sont pas dans les agendas, les deux implémentations doivent s'accorder
+        for (int i = 0; i < 300; i++) {
+            LocalDateTime start = nov_1_2020_22_30.plusMinutes(random.nextInt(60 * 24 * 150) - 60 * 24 * 10);
+            Event candidate = new Event("Candidate", start, Duration.ofMinutes(1 + random.nextInt(90)));
+            switch (i % 10) {
+                case 0 -> {
+                    candidate.setRepetition(ChronoUnit.WEEKS);
+                    candidate.setTermination(4);
+                }
+                case 1 -> {
+                    candidate.setRepetition(units[random.nextInt(3)]);
+                    candidate.addException(start.toLocalDate().plusDays(random.nextInt(30)));
+                }
+                case 2 -> {
+                    candidate.setRepetition(ChronoUnit.MONTHS);
+                    candidate.setTermination(start.toLocalDate().plusMonths(6));
+                }
+                default -> {
+                }
+            }
+            assertEquals(reference.isFreeFor(candidate), agenda.isFreeFor(candidate), "Différence pour " + candidate);
+            assertEquals(describe(reference.conflictsWith(candidate)), describe(agenda.conflictsWith(candidate)));
+        }
+    }
+
+    @Test
+    public void repeatingCandidateThatNeverEnds() {
+        Event weekly = new Event("Weekly", nov_1_2020_22_30.plusDays(2).plusHours(1), min_120);
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        assertFalse(agenda.isFreeFor(weekly), "Rencontre la répétition quotidienne");
+        ColumnarAgenda quiet = new ColumnarAgenda();
+        quiet.addEvent(simple);
+        assertTrue(quiet.isFreeFor(weekly));
+    }
+
+    @Test
+    public void repeatingCandidatesAreCheckedOnTheColumns() {
+        ColumnarAgenda busy = new ColumnarAgenda();
+        for (int i = 0; i < 10_000; i++) {
+            busy.addEvent(new Event("Matin " + i % 7, nov_1_2020.plusDays(i).atTime(7, 0), Duration.ofMinutes(30)));
+        }
+        for (int i = 0; i < 50; i++) {
+            Event monthly = new Event("Monthly " + i, nov_1_2020.plusDays(i % 28).atTime(8 + i % 10, 0), Duration.ofMinutes(30));
+            monthly.setRepetition(ChronoUnit.MONTHS);
+            busy.addEvent(monthly);
+        }
+        Event evening = new Event("Soir", nov_1_2020.atTime(19, 0), Duration.ofMinutes(30));
+        evening.setRepetition(ChronoUnit.DAYS);
+        Event morning = new Event("Matin", nov_1_2020.plusDays(5000).atTime(7, 15), Duration.ofMinutes(30));
+        morning.setRepetition(ChronoUnit.DAYS);
+        // Sans les colonnes, chaque occurrence du candidat jusqu'au dernier événement ponctuel
+        // parcourrait et reconstruirait tout l'agenda
+        assertTimeoutPreemptively(Duration.ofSeconds(2), () -> {
+            for (int i = 0; i < 50; i++) {
+                assertTrue(busy.isFreeFor(evening));
+                assertFalse(busy.isFreeFor(morning));
+            }
+        }, "Des dizaines de vérifications par seconde");
+        assertEquals(5000, busy.conflictsWith(morning).count(), "Chaque matin du jour 5000 au jour 9999");
+    }
+
+    @Test
+    public void holdsManyEvents() {
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            events.add(new Event("Event " + i % 100, nov_1_2020_22_30.plusMinutes(7L * i), Duration.ofMinutes(5)));
+        }
+        agenda.addAll(events);
+        assertEquals(100_002, agenda.size());
+        assertEquals(1_000, agenda.findByTitle("Event 42").size());
+        LocalDate day = nov_1_2020.plusDays(30);
+        long expected = 1 + events.stream().filter(e -> e.isInDay(day)).count(); // plus neverEnding
+        assertEquals(expected, agenda.eventsInDay(day).size());
+    }
+}
@@ -0,0 +1,104 @@
+package agenda;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Teste la recherche des créneaux libres communs à plusieurs agendas
+ */
+public class CommonAvailabilityTest {
+
+    LocalDate nov_2_2020 = LocalDate.of(2020, 11, 2); // Un lundi
+    WorkingHours nineToFive = new WorkingHours(LocalTime.of(9, 0), LocalTime.of(17, 0));
+
+    TimeSlot slot(int day, int fromHour, int toHour) {
+        return new TimeSlot(nov_2_2020.plusDays(day).atTime(fromHour, 0), nov_2_2020.plusDays(day).atTime(toHour, 0));
+    }
+
+    Event event(String title, int day, int hour, int hours) {
+        return new Event(title, nov_2_2020.plusDays(day).atTime(hour, 0), Duration.ofHours(hours));
+    }
+
+    @Test
+    public void slotsFreeForEveryone() {
+        Agenda alice = new Agenda();
+        Event standup = event("Standup", 0, 9, 1);
+        standup.setRepetition(ChronoUnit.DAYS);
+        alice.addEvent(standup);
+        Agenda bob = new Agenda();
+        bob.addEvent(event("Review", 0, 11, 2));
+        Event gym = event("Gym", 0, 15, 2);
+        gym.setRepetition(ChronoUnit.WEEKS);
+        bob.addEvent(gym);
+        CommonAvailability team = new CommonAvailability(List.of(alice, bob));
+
+        List<TimeSlot> slots = team.findFreeSlots(nov_2_2020.atStartOfDay(), nov_2_2020.plusDays(2).atStartOfDay(),
+                Duration.ofHours(1), nineToFive);
+        assertEquals(List.of(slot(0, 10, 11), slot(0, 13, 15), slot(1, 10, 17)), slots);
+        assertEquals(List.of(slot(1, 10, 17)), team.findFreeSlots(nov_2_2020.atStartOfDay(), nov_2_2020.plusDays(2).atStartOfDay(),
+                Duration.ofHours(3), nineToFive));
+        assertEquals(List.of(new TimeSlot(nov_2_2020.atStartOfDay(), nov_2_2020.atTime(9, 0))),
+                team.findFreeSlots(nov_2_2020.atStartOfDay(), nov_2_2020.atTime(10, 0), Duration.ZERO));
+    }
+
+    @Test
+    public void sameAsASingleAgenda() {
+        Random random = new Random(5);
+        List<Agenda> agendas = new ArrayList<>();
+        Agenda everyone = new Agenda();
+        for (int a = 0; a < 40; a++) {
+            Agenda agenda = new Agenda();
+            for (int i = 0; i < 10; i++) {
+                Event e = event("Event " + i, random.nextInt(30), random.nextInt(24), 1 + random.nextInt(3));
+                if (random.nextInt(3) == 0) {
+                    e.setRepetition(random.nextBoolean() ? ChronoUnit.WEEKS : ChronoUnit.MONTHS);
+                }
+                agenda.addEvent(e);
+                everyone.addEvent(e);
+            }
+            agendas.add(agenda);
+        }
+        CommonAvailability team = new CommonAvailability(agendas);
+        LocalDateTime from = nov_2_2020.atStartOfDay();
+        LocalDateTime to = nov_2_2020.plusDays(90).atStartOfDay();
+        List<TimeSlot> expected = everyone.findFreeSlots(from, to, Duration.ofMinutes(90), nineToFive);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, team.findFreeSlots(from, to, Duration.ofMinutes(90), nineToFive),
+                "Fusionner les agendas revient à chercher dans l'agenda de tous leurs événements");
+        assertEquals(expected.subList(0, 5), team.findFirstSlots(from, to, Duration.ofMinutes(90), nineToFive, 5),
+                "La recherche par blocs donne les mêmes premiers créneaux");
+    }
+
+    @Test
+    public void firstSlotsStopEarly() {
+        Agenda busy = new Agenda();
+        Event forever = event("Forever", 0, 0, 20);
+        forever.setRepetition(ChronoUnit.DAYS);
+        busy.addEvent(forever);
+        CommonAvailability team = new CommonAvailability(List.of(busy, new Agenda()));
+        // Fenêtre de mille ans : seuls les premiers blocs sont développés
+        List<TimeSlot> first = team.findFirstSlots(nov_2_2020.atStartOfDay(), nov_2_2020.plusYears(1000).atStartOfDay(),
+                Duration.ofHours(2), null, 3);
+        assertEquals(List.of(new TimeSlot(nov_2_2020.atTime(20, 0), nov_2_2020.plusDays(1).atStartOfDay()),
+                new TimeSlot(nov_2_2020.plusDays(1).atTime(20, 0), nov_2_2020.plusDays(2).atStartOfDay()),
+                new TimeSlot(nov_2_2020.plusDays(2).atTime(20, 0), nov_2_2020.plusDays(3).atStartOfDay())), first);
+        assertTrue(team.findFirstSlots(nov_2_2020.atStartOfDay(), nov_2_2020.plusDays(5).atStartOfDay(), Duration.ofHours(5), null, 3).isEmpty());
+        assertThrows(IllegalArgumentException.class,
+                () -> team.findFirstSlots(nov_2_2020.atStartOfDay(), nov_2_2020.plusDays(1).atStartOfDay(), Duration.ofHours(1), null, -1));
+    }
+
+    @Test
+    public void noAgendaIsAlwaysFree() {
+        CommonAvailability nobody = new CommonAvailability(List.of());
+        assertEquals(List.of(slot(0, 9, 17)), nobody.findFreeSlots(nov_2_2020.atTime(9, 0), nov_2_2020.atTime(17, 0), Duration.ofHours(1)));
+    }
+}
@@ -0,0 +1,166 @@
+package agenda;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Teste l'agenda partagé entre threads
+ */
+public class ConcurrentAgendaTest {
+
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+    Duration min_120 = Duration.ofMinutes(120);
+
+    ConcurrentAgenda agenda;
+    Event simple;
+    Event neverEnding;
+
+    @BeforeEach
+    public void setUp() {
+        agenda = new ConcurrentAgenda();
+        simple = new Event("Simple event", nov_1_2020_22_30, min_120);
+        neverEnding = new Event("Never Ending", nov_1_2020_22_30, min_120);
+        neverEnding.setRepetition(ChronoUnit.DAYS);
+        agenda.addEvent(simple);
+        agenda.addEvent(neverEnding);
+    }
+
+    @Test
+    public void behavesLikeAnAgenda() {
+        Event nextMonth = new Event("Next month", nov_1_2020_22_30.plusMonths(1), Duration.ofDays(40));
+        agenda.addEvent(nextMonth);
+        assertEquals(List.of(simple, neverEnding), agenda.eventsInDay(nov_1_2020.plusDays(1)));
+        assertEquals(List.of(neverEnding, nextMonth), agenda.eventsInDay(LocalDate.of(2021, 1, 5)),
+                "Un événement long est trouvé dans les mois suivants");
+        assertEquals(List.of(simple), agenda.findByTitle("Simple event"));
+        assertEquals(List.of(nextMonth), agenda.findByTitlePrefix("Next"));
+        assertFalse(agenda.isFreeFor(new Event("Late", nov_1_2020_22_30.plusDays(3), min_120)));
+        assertTrue(agenda.isFreeFor(new Event("Morning", nov_1_2020.plusDays(3).atTime(9, 0), min_120)));
+        assertEquals(8, agenda.eventsBetween(nov_1_2020.atStartOfDay(), nov_1_2020.plusDays(7).atStartOfDay()).count());
+        assertEquals(3, agenda.size());
+    }
+
+    @Test
+    public void allEventsIsAReadOnlySnapshot() {
+        List<Event> all = agenda.getAllEvents();
+        assertEquals(List.of(simple, neverEnding), all);
+        assertThrows(UnsupportedOperationException.class, () -> all.add(simple));
+        agenda.addEvent(new Event("Later", nov_1_2020_22_30, min_120));
+        assertEquals(2, all.size(), "L'instantané ne change pas");
+    }
+
+    @Test
+    public void concurrentWritersAndReaders() throws Exception {
+        int writers = 4;
+        int eventsPerWriter = 5_000;
+        ExecutorService pool = Executors.newFixedThreadPool(writers + 2);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<?>> tasks = new ArrayList<>();
+        try {
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                tasks.add(pool.submit(() -> {
+                    start.await();
+                    Random random = new Random(writer);
+                    for (int i = 0; i < eventsPerWriter; i++) {
+                        LocalDateTime when = nov_1_2020_22_30.plusDays(random.nextInt(365)).plusMinutes(random.nextInt(600));
+                        agenda.addEvent(new Event("W" + writer + "-" + i, when, Duration.ofMinutes(30 + random.nextInt(3_000))));
+                    }
+                    return null;
+                }));
+            }
+            for (int r = 0; r < 2; r++) {
+                tasks.add(pool.submit(() -> {
+                    start.await();
+                    Random random = new Random();
+                    while (writing.get()) {
+                        LocalDate day = nov_1_2020.plusDays(random.nextInt(365));
+                        List<Event> found = agenda.eventsInDay(day);
+                        assertTrue(found.contains(neverEnding));
+                        assertTrue(found.stream().allMatch(e -> e.isInDay(day)));
+                        agenda.findByTitlePrefix("W1-1");
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> task : tasks.subList(0, writers)) {
+                task.get(1, TimeUnit.MINUTES);
+            }
+            writing.set(false);
+            for (Future<?> task : tasks) {
+                task.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(2 + writers * eventsPerWriter, agenda.size(), "Aucun ajout ne doit être perdu");
+        assertEquals(2 + writers * eventsPerWriter, agenda.getAllEvents().size());
+        for (int w = 0; w < writers; w++) {
+            Event last = agenda.findByTitle("W" + w + "-" + (eventsPerWriter - 1)).get(0);
+            assertTrue(agenda.eventsInDay(last.getStart().toLocalDate()).contains(last));
+        }
+    }
+
+    @Test
+    public void titlesFollowInsertionOrderUnderConcurrentWriters() throws Exception {
+        int writers = 4;
+        ExecutorService pool = Executors.newFixedThreadPool(writers + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<?>> tasks = new ArrayList<>();
+        try {
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                tasks.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 2_000; i++) {
+                        agenda.addEvent(new Event("Shared", nov_1_2020_22_30.plusDays(i % 365).plusMinutes(writer), min_120));
+                    }
+                    return null;
+                }));
+            }
+            tasks.add(pool.submit(() -> {
+                start.await();
+                while (writing.get()) {
+                    for (Event e : agenda.findByTitle("Shared")) {
+                        assertTrue(agenda.eventsInDay(e.getStart().toLocalDate()).contains(e),
+                                "Un événement trouvé par son titre est dans sa bande");
+                    }
+                }
+                return null;
+            }));
+            start.countDown();
+            for (Future<?> task : tasks.subList(0, writers)) {
+                task.get(1, TimeUnit.MINUTES);
+            }
+            writing.set(false);
+            for (Future<?> task : tasks) {
+                task.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        List<Event> shared = agenda.getAllEvents().stream().filter(e -> e.getTitle().equals("Shared")).toList();
+        assertEquals(shared, agenda.findByTitle("Shared"), "Ordre d'insertion");
+        assertEquals(shared, agenda.findByTitlePrefix("Sha"));
+    }
+}
@@ -0,0 +1,160 @@
+package agenda;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Teste le cache des journées de l'agenda et son invalidation
+ */
+public class DayCacheTest {
+
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+    Duration min_120 = Duration.ofMinutes(120);
+
+    Agenda agenda;
+    Event simple;
+    Event daily;
+
+    @BeforeEach
+    public void setUp() {
+        agenda = new Agenda();
+        simple = new Event("Simple event", nov_1_2020_22_30, min_120);
+        daily = new Event("Daily", nov_1_2020_22_30, min_120);
+        daily.setRepetition(ChronoUnit.DAYS);
+        agenda.addEvent(simple);
+        agenda.addEvent(daily);
+        agenda.setDayCacheSize(10);
+    }
+
+    private void ask(int... days) {
+        for (int d : days) {
+            agenda.eventsInDay(nov_1_2020.plusDays(d));
+        }
+    }
+
+    private long misses() {
+        return agenda.getDayCacheStatistics().misses();
+    }
+
+    @Test
+    public void repeatedDaysAreAnsweredByTheCache() {
+        List<Event> first = agenda.eventsInDay(nov_1_2020.plusDays(1));
+        first.clear();
+        List<Event> second = agenda.eventsInDay(nov_1_2020.plusDays(1));
+        assertEquals(List.of(simple, daily), second, "Modifier le résultat ne modifie pas le cache");
+        CacheStatistics statistics = agenda.getDayCacheStatistics();
+        assertEquals(1, statistics.hits());
+        assertEquals(1, statistics.misses());
+        assertEquals(0.5, statistics.hitRate());
+        assertEquals(1, statistics.size());
+    }
+
+    @Test
+    public void leastRecentlyUsedDaysAreEvicted() {
+        agenda.setDayCacheSize(2);
+        ask(0, 1, 0, 2);
+        assertEquals(1, agenda.getDayCacheStatistics().evictions());
+        ask(0);
+        assertEquals(3, misses(), "Le jour 0, utilisé récemment, est resté");
+        ask(1);
+        assertEquals(4, misses(), "Le jour 1 a été évincé");
+    }
+
+    @Test
+    public void addingAnEventInvalidatesItsDaysOnly() {
+        ask(0, 1, 5, 10);
+        Event late = new Event("Late", nov_1_2020_22_30.plusDays(5), min_120);
+        agenda.addEvent(late);
+        ask(0, 1, 10);
+        assertEquals(4, misses());
+        assertEquals(List.of(daily, late), agenda.eventsInDay(nov_1_2020.plusDays(5)));
+        assertEquals(List.of(daily, late), agenda.eventsInDay(nov_1_2020.plusDays(6)), "Le débordement après minuit compte");
+        assertEquals(6, misses());
+    }
+
+    @Test
+    public void changingARepetitionInvalidatesTheAffectedDays() {
+        ask(0, 1, 3, 4, 8, 9);
+        daily.addException(nov_1_2020.plusDays(3));
+        assertEquals(2, agenda.getDayCacheStatistics().invalidations(), "Le jour 3 et le lendemain, où déborde l'occurrence");
+        assertEquals(List.of(), agenda.eventsInDay(nov_1_2020.plusDays(3)));
+        assertEquals(List.of(daily), agenda.eventsInDay(nov_1_2020.plusDays(4)));
+
+        daily.setTermination(nov_1_2020.plusDays(7));
+        ask(0, 1);
+        assertEquals(8, misses(), "Les jours avant la terminaison restent dans le cache");
+        assertEquals(List.of(daily), agenda.eventsInDay(nov_1_2020.plusDays(8)), "Débordement de la dernière occurrence");
+        assertEquals(List.of(), agenda.eventsInDay(nov_1_2020.plusDays(9)));
+
+        assertTrue(daily.getRepetition().removeException(nov_1_2020.plusDays(3)));
+        assertEquals(List.of(daily), agenda.eventsInDay(nov_1_2020.plusDays(3)));
+        daily.getRepetition().addExceptions(List.of(nov_1_2020.plusDays(1)));
+        assertEquals(List.of(simple), agenda.eventsInDay(nov_1_2020.plusDays(1)));
+    }
+
+    @Test
+    public void replacingARepetitionInvalidatesTheFollowingDays() {
+        Event weekly = new Event("Weekly", nov_1_2020_22_30.plusDays(1), min_120);
+        weekly.setRepetition(ChronoUnit.DAYS);
+        agenda.addEvent(weekly);
+        ask(0, 3, 8);
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        assertEquals(List.of(daily), agenda.eventsInDay(nov_1_2020.plusDays(3)));
+        assertEquals(List.of(daily, weekly), agenda.eventsInDay(nov_1_2020.plusDays(8)));
+        assertEquals(5, misses());
+        ask(0);
+        assertEquals(5, misses(), "Le jour précédant la répétition reste dans le cache");
+    }
+
+    @Test
+    public void disablingTheCache() {
+        ask(0, 0);
+        agenda.setDayCacheSize(0);
+        ask(0, 0);
+        assertEquals(new CacheStatistics(0, 0, 0, 0, 0), agenda.getDayCacheStatistics());
+        assertThrows(IllegalArgumentException.class, () -> agenda.setDayCacheSize(-1));
+    }
+
+    @Test
+    public void alwaysAgreesWithAnAgendaWithoutCache() {
+        Random random = new Random(7);
+        Agenda reference = new Agenda();
+        reference.addEvent(simple);
+        reference.addEvent(daily);
+        agenda.setDayCacheSize(20);
+        ChronoUnit[] units = {ChronoUnit.DAYS, ChronoUnit.WEEKS, ChronoUnit.MONTHS};
+        List<Event> events = new ArrayList<>(List.of(simple, daily));
+        for (int step = 0; step < 2_000; step++) {
+            switch (random.nextInt(6)) {
+                case 0 -> {
+                    Event e = new Event("E" + step, nov_1_2020_22_30.plusHours(random.nextInt(24 * 40)),
+                            Duration.ofHours(random.nextInt(50)));
+                    if (random.nextBoolean()) {
+                        e.setRepetition(units[random.nextInt(3)]);
+                    }
+                    events.add(e);
+                    reference.addEvent(e);
+                    agenda.addEvent(e);
+                }
+                case 1 -> events.get(random.nextInt(events.size())).addException(nov_1_2020.plusDays(random.nextInt(40)));
+                case 2 -> events.get(random.nextInt(events.size())).setTermination(nov_1_2020.plusDays(random.nextInt(40)));
+                case 3 -> events.get(random.nextInt(events.size())).setTermination(random.nextInt(6));
+                default -> {
+                    LocalDate day = nov_1_2020.plusDays(random.nextInt(40));
+                    assertEquals(reference.eventsInDay(day), agenda.eventsInDay(day), "Différence le " + day);
+                }
+            }
+        }
+        assertTrue(agenda.getDayCacheStatistics().hits() > 0);
+    }
+}
@@ -7,6 +7,10 @@ import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -135,7 +139,7 @@ class EventTest {
     @Test
     void testMultiDayEvent_StartsJustBeforeMidnight() {
         // Déborde de 1 minute sur le jour suivant
-        LocalDateTime start = nov_1_2020_22_30.plusMinutes(60 + 59); // 23:59
+        LocalDateTime start = nov_1_2020_22_30.plusMinutes(60 + 29); // 23:59
         Duration duration = Duration.ofMinutes(2); 
         Event veryShortOverlap = new Event("Court chevauchement", start, duration);
         
@@ -162,7 +166,9 @@ class EventTest {
         repetitiveEvent.setTermination(nov_1_2020); 
         
         assertTrue(repetitiveEvent.isInDay(nov_1_2020));
-        assertFalse(repetitiveEvent.isInDay(nov_1_2020.plusDays(1)), "Doit exclure le jour suivant.");
+        // L'unique occurrence (22:30 - 00:30) déborde sur le lendemain, mais pas au-delà
+        assertTrue(repetitiveEvent.isInDay(nov_1_2020.plusDays(1)), "L'occurrence déborde après minuit.");
+        assertFalse(repetitiveEvent.isInDay(nov_1_2020.plusDays(2)), "Doit exclure le surlendemain.");
     }
 
     @Test
@@ -172,7 +178,9 @@ class EventTest {
         repetitiveEvent.setTermination(terminationDate);
 
         assertTrue(repetitiveEvent.isInDay(terminationDate), "Le jour de terminaison doit être inclus.");
-        assertFalse(repetitiveEvent.isInDay(terminationDate.plusDays(1)), "Le jour après la terminaison doit être exclus.");
+        // La dernière occurrence (22:30 - 00:30) déborde sur le lendemain de la terminaison
+        assertTrue(repetitiveEvent.isInDay(terminationDate.plusDays(1)), "La dernière occurrence déborde après minuit.");
+        assertFalse(repetitiveEvent.isInDay(terminationDate.plusDays(2)), "Le surlendemain de la terminaison doit être exclus.");
     }
 
     @Test
@@ -182,7 +190,8 @@ class EventTest {
         
         // Vérifie la robustesse du calcul de la date d'occurrence `startDay.plus(diff, unit)`
         assertTrue(repetitiveEvent.isInDay(testDate));
-        assertFalse(repetitiveEvent.isInDay(testDate.plusDays(1)));
+        assertFalse(repetitiveEvent.isInDay(testDate.plusDays(2)), "L'occurrence ne déborde que d'un jour");
+        assertFalse(repetitiveEvent.isInDay(testDate.minusDays(1)));
     }
     
     @Test
@@ -203,6 +212,37 @@ class EventTest {
         assertFalse(e.isInDay(LocalDate.of(2025, 3, 1))); 
     }
     
+    @Test
+    void testRepetition_OccurrenceSpansMidnight() {
+        // Chaque occurrence (22:30, 2h) déborde sur le lendemain
+        repetitiveEvent.setRepetition(ChronoUnit.WEEKS);
+        repetitiveEvent.setTermination(3);
+        assertTrue(repetitiveEvent.isInDay(nov_1_2020.plusDays(1)));
+        assertFalse(repetitiveEvent.isInDay(nov_1_2020.plusDays(2)));
+        assertTrue(repetitiveEvent.isInDay(nov_1_2020.plusWeeks(2).plusDays(1)), "La dernière occurrence déborde aussi");
+        assertFalse(repetitiveEvent.isInDay(nov_1_2020.plusWeeks(3).plusDays(1)), "Après la terminaison");
+    }
+
+    @Test
+    void testRepetition_ExceptionCancelsOverflow() {
+        repetitiveEvent.setRepetition(ChronoUnit.WEEKS);
+        repetitiveEvent.addException(nov_1_2020.plusWeeks(1));
+        assertFalse(repetitiveEvent.isInDay(nov_1_2020.plusWeeks(1).plusDays(1)),
+                "Une occurrence annulée ne déborde pas sur le lendemain");
+        assertTrue(repetitiveEvent.isInDay(nov_1_2020.plusWeeks(2).plusDays(1)));
+    }
+
+    @Test
+    void testMonthlyRepetition_MultiDayAndLeapYear() {
+        // Le 31 de chaque mois, pour 3 jours
+        Event e = new Event("Mensuel long", LocalDateTime.of(2024, 1, 31, 10, 0), Duration.ofDays(3));
+        e.setRepetition(ChronoUnit.MONTHS);
+        assertTrue(e.isInDay(LocalDate.of(2024, 2, 29)), "2024 est bissextile");
+        assertTrue(e.isInDay(LocalDate.of(2024, 3, 3)), "L'occurrence du 29/02 dure jusqu'au 3 mars");
+        assertFalse(e.isInDay(LocalDate.of(2024, 3, 4)));
+        assertTrue(e.isInDay(LocalDate.of(2024, 4, 2)), "L'occurrence du 31/03 dure jusqu'au 3 avril");
+    }
+
     @Test
     void testExceptionHasPriority() {
         repetitiveEvent.setRepetition(ChronoUnit.DAYS);
@@ -225,4 +265,75 @@ class EventTest {
         assertEquals(nov_1_2020.plusWeeks(largeCount - 1), repetitiveEvent.getTerminationDate(), 
                      "La date de terminaison doit être correctement calculée pour un grand nombre.");
     }
-}
\ No newline at end of file
+
+    // =======================================================================
+    // IV. Énumération des occurrences
+    // =======================================================================
+
+    private static List<Occurrence> toList(Spliterator<Occurrence> occurrences) {
+        return StreamSupport.stream(occurrences, false).collect(Collectors.toList());
+    }
+
+    @Test
+    void testOccurrences_SimpleEvent() {
+        assertEquals(List.of(new Occurrence(simpleEvent, nov_1_2020_22_30, nov_1_2020_22_30.plus(min_120))),
+                toList(simpleEvent.occurrences(nov_1_2020.atStartOfDay(), nov_1_2020.plusDays(1).atStartOfDay())));
+        assertEquals(0, simpleEvent.occurrences(nov_1_2020_22_30.plusDays(1), nov_1_2020_22_30.plusDays(2)).estimateSize());
+    }
+
+    @Test
+    void testOccurrences_JumpsToWindow() {
+        repetitiveEvent.setRepetition(ChronoUnit.DAYS);
+        // Du 11/11 à minuit au 14/11 à minuit : l'occurrence du 10/11 au soir déborde dans la fenêtre
+        LocalDateTime from = nov_1_2020.plusDays(10).atStartOfDay();
+        Spliterator<Occurrence> occurrences = repetitiveEvent.occurrences(from, from.plusDays(3));
+        assertEquals(4, occurrences.estimateSize());
+        List<Occurrence> found = toList(occurrences);
+        assertEquals(4, found.size());
+        assertEquals(nov_1_2020_22_30.plusDays(9), found.get(0).start());
+        assertEquals(nov_1_2020_22_30.plusDays(12), found.get(3).start());
+    }
+
+    @Test
+    void testOccurrences_SkipsExceptionsAndHonoursTermination() {
+        repetitiveEvent.setRepetition(ChronoUnit.WEEKS);
+        repetitiveEvent.setTermination(5);
+        repetitiveEvent.addException(nov_1_2020.plusWeeks(1));
+        repetitiveEvent.addException(nov_1_2020.plusWeeks(3).plusDays(1)); // pas une occurrence
+        Spliterator<Occurrence> occurrences = repetitiveEvent.occurrences(LocalDateTime.MIN, LocalDateTime.MAX);
+        assertTrue(occurrences.hasCharacteristics(Spliterator.SIZED | Spliterator.ORDERED));
+        assertEquals(4, occurrences.getExactSizeIfKnown(), "5 occurrences dont une exception");
+        assertEquals(List.of(0L, 2L, 3L, 4L), toList(occurrences).stream()
+                .map(o -> ChronoUnit.WEEKS.between(nov_1_2020_22_30, o.start())).toList());
+    }
+
+    @Test
+    void testOccurrences_MonthEnd() {
+        Event e = new Event("Mensuel", LocalDateTime.of(2025, 1, 31, 10, 0), Duration.ofHours(1));
+        e.setRepetition(ChronoUnit.MONTHS);
+        List<Occurrence> found = toList(e.occurrences(LocalDate.of(2025, 2, 1).atStartOfDay(),
+                LocalDate.of(2025, 5, 1).atStartOfDay()));
+        assertEquals(List.of(LocalDate.of(2025, 2, 28), LocalDate.of(2025, 3, 31), LocalDate.of(2025, 4, 30)),
+                found.stream().map(o -> o.start().toLocalDate()).toList());
+    }
+
+    @Test
+    void testOccurrences_SplitsForParallelStreams() {
+        repetitiveEvent.setRepetition(ChronoUnit.DAYS);
+        for (int i = 0; i < 100; i++) {
+            repetitiveEvent.addException(nov_1_2020.plusDays(3L * i));
+        }
+        LocalDateTime from = nov_1_2020.atStartOfDay();
+        LocalDateTime to = from.plusYears(50);
+        List<Occurrence> sequential = toList(repetitiveEvent.occurrences(from, to));
+        List<Occurrence> parallel = StreamSupport.stream(repetitiveEvent.occurrences(from, to), true).toList();
+        assertEquals(sequential, parallel, "Le découpage doit préserver l'ordre");
+        assertEquals(sequential.size(), repetitiveEvent.occurrences(from, to).estimateSize());
+
+        Spliterator<Occurrence> suffix = repetitiveEvent.occurrences(from, to);
+        long total = suffix.estimateSize();
+        Spliterator<Occurrence> prefix = suffix.trySplit();
+        assertNotNull(prefix);
+        assertEquals(total, prefix.estimateSize() + suffix.estimateSize(), "Les tailles restent exactes");
+    }
+}
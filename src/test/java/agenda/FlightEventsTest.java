@@ -0,0 +1,91 @@
+package agenda;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Teste les événements JFR de l'agenda
+ */
+public class FlightEventsTest {
+
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+    Duration min_120 = Duration.ofMinutes(120);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void queriesAreRecorded() throws Exception {
+        List<RecordedEvent> recorded;
+        try (Recording recording = new Recording()) {
+            for (String name : List.of("agenda.EventsInDay", "agenda.FindByTitle", "agenda.IsFreeFor", "agenda.FreeSlotSearch",
+                    "agenda.BulkLoad", "agenda.RecurrenceExpansion", "agenda.Termination")) {
+                recording.enable(name).withoutThreshold();
+            }
+            recording.start();
+            Event neverEnding = new Event("Never Ending", nov_1_2020_22_30, min_120);
+            neverEnding.setRepetition(ChronoUnit.DAYS);
+            neverEnding.setTermination(10);
+            Agenda agenda = new Agenda();
+            agenda.addAll(List.of(new Event("Simple event", nov_1_2020_22_30, min_120), neverEnding));
+            agenda.eventsInDay(nov_1_2020.plusDays(1));
+            agenda.findByTitle("Simple event");
+            agenda.isFreeFor(new Event("Late", nov_1_2020_22_30.plusDays(3), min_120));
+            agenda.findFreeSlots(nov_1_2020.atStartOfDay(), nov_1_2020.plusDays(2).atStartOfDay(), Duration.ofHours(1));
+            agenda.materializeDays(nov_1_2020, 30).join();
+            recording.stop();
+            Path file = directory.resolve("agenda.jfr");
+            recording.dump(file);
+            recorded = RecordingFile.readAllEvents(file);
+        }
+        Map<String, RecordedEvent> byName = recorded.stream()
+                .collect(Collectors.toMap(e -> e.getEventType().getName(), e -> e, (first, second) -> first));
+
+        RecordedEvent day = byName.get("agenda.EventsInDay");
+        assertEquals(2, day.getInt("agendaSize"));
+        assertEquals("2020-11-02", day.getString("day"));
+        assertEquals(2, day.getInt("results"));
+        assertEquals(2, day.getInt("evaluated"), "Un candidat de l'index et un événement répétitif");
+        assertEquals("index", day.getString("source"));
+        assertEquals(1, byName.get("agenda.FindByTitle").getInt("results"));
+        assertFalse(byName.get("agenda.IsFreeFor").getBoolean("free"));
+        assertEquals(2, byName.get("agenda.FreeSlotSearch").getInt("slots"));
+        assertEquals(2, byName.get("agenda.BulkLoad").getInt("added"));
+        assertEquals(30, byName.get("agenda.RecurrenceExpansion").getLong("days"));
+        assertEquals(10, byName.get("agenda.Termination").getLong("occurrences"));
+    }
+
+    @Test
+    public void settingsEnableEveryEvent() throws Exception {
+        Configuration configuration;
+        try (Reader settings = new InputStreamReader(getClass().getResourceAsStream("/agenda.jfc"), StandardCharsets.UTF_8)) {
+            configuration = Configuration.create(settings);
+        }
+        assertEquals("Agenda", configuration.getLabel());
+        Map<String, String> settings = configuration.getSettings();
+        for (String name : List.of("EventsInDay", "FindByTitle", "IsFreeFor", "FreeSlotSearch", "BulkLoad",
+                "RecurrenceExpansion", "Termination")) {
+            assertEquals("true", settings.get("agenda." + name + "#enabled"), name);
+            assertNotNull(settings.get("agenda." + name + "#threshold"), name);
+        }
+    }
+}
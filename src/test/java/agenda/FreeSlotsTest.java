@@ -0,0 +1,112 @@
+package agenda;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Teste la recherche des créneaux libres
+ */
+public class FreeSlotsTest {
+
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+    WorkingHours nineToFive = new WorkingHours(LocalTime.of(9, 0), LocalTime.of(17, 0));
+
+    Agenda agenda;
+    Event lunch;
+
+    @BeforeEach
+    public void setUp() {
+        agenda = new Agenda();
+        lunch = new Event("Lunch", nov_1_2020.atTime(12, 0), Duration.ofHours(1));
+        lunch.setRepetition(ChronoUnit.DAYS);
+        agenda.addEvent(lunch);
+    }
+
+    TimeSlot slot(int day, int fromHour, int fromMinute, int toHour, int toMinute) {
+        return new TimeSlot(nov_1_2020.plusDays(day).atTime(fromHour, fromMinute),
+                nov_1_2020.plusDays(day).atTime(toHour, toMinute));
+    }
+
+    @Test
+    public void gapsBetweenOccurrences() {
+        agenda.addEvent(new Event("Meeting", nov_1_2020.atTime(10, 0), Duration.ofMinutes(90)));
+        agenda.addEvent(new Event("Overlapping", nov_1_2020.atTime(11, 0), Duration.ofMinutes(45)));
+        agenda.addEvent(new Event("Adjacent", nov_1_2020.atTime(13, 0), Duration.ofMinutes(30)));
+        List<TimeSlot> slots = agenda.findFreeSlots(nov_1_2020.atTime(8, 0), nov_1_2020.atTime(18, 0), Duration.ofMinutes(30));
+        assertEquals(List.of(slot(0, 8, 0, 10, 0), slot(0, 13, 30, 18, 0)), slots,
+                "Les occurrences qui se chevauchent ou se touchent occupent un seul intervalle, les 30 minutes de 11h30 à 12h sont un créneau valide");
+    }
+
+    @Test
+    public void shortGapsAreSkipped() {
+        agenda.addEvent(new Event("Meeting", nov_1_2020.atTime(10, 0), Duration.ofMinutes(110)));
+        List<TimeSlot> slots = agenda.findFreeSlots(nov_1_2020.atTime(9, 0), nov_1_2020.atTime(14, 0), Duration.ofMinutes(30));
+        assertEquals(List.of(slot(0, 9, 0, 10, 0), slot(0, 13, 0, 14, 0)), slots, "Les 10 minutes avant le déjeuner sont trop courtes");
+        assertEquals(Duration.ofHours(1), slots.get(0).duration());
+    }
+
+    @Test
+    public void workingHoursCutLongGaps() {
+        List<TimeSlot> slots = agenda.findFreeSlots(nov_1_2020.atStartOfDay(), nov_1_2020.plusDays(2).atStartOfDay(),
+                Duration.ofHours(1), nineToFive);
+        assertEquals(List.of(slot(0, 9, 0, 12, 0), slot(0, 13, 0, 17, 0), slot(1, 9, 0, 12, 0), slot(1, 13, 0, 17, 0)), slots);
+    }
+
+    @Test
+    public void exceptionsFreeTheirDay() {
+        lunch.addException(nov_1_2020.plusDays(1));
+        List<TimeSlot> slots = agenda.findFreeSlots(nov_1_2020.plusDays(1).atStartOfDay(), nov_1_2020.plusDays(2).atStartOfDay(),
+                Duration.ofHours(1), nineToFive);
+        assertEquals(List.of(slot(1, 9, 0, 17, 0)), slots);
+    }
+
+    @Test
+    public void earliestSlotStopsTheSweep() {
+        Event busy = new Event("Busy mornings", nov_1_2020.atTime(9, 0), Duration.ofHours(3));
+        busy.setRepetition(ChronoUnit.DAYS);
+        busy.setTermination(nov_1_2020.plusDays(9));
+        agenda.addEvent(busy);
+        // Fenêtre de mille ans : seules les occurrences jusqu'au créneau trouvé sont parcourues
+        Optional<TimeSlot> earliest = agenda.findEarliestSlot(nov_1_2020.atTime(9, 0), nov_1_2020.plusYears(1000).atStartOfDay(),
+                Duration.ofHours(2), new WorkingHours(LocalTime.of(9, 0), LocalTime.of(12, 0)));
+        assertEquals(Optional.of(slot(10, 9, 0, 12, 0)), earliest);
+        assertEquals(Optional.of(slot(0, 13, 0, 17, 0)),
+                agenda.findEarliestSlot(nov_1_2020.atTime(9, 0), nov_1_2020.plusDays(30).atStartOfDay(), Duration.ofHours(4), nineToFive));
+        assertTrue(agenda.findEarliestSlot(nov_1_2020.atTime(9, 0), nov_1_2020.atTime(12, 0), Duration.ofMinutes(1)).isEmpty());
+    }
+
+    @Test
+    public void slotsAreFree() {
+        agenda.addEvent(new Event("Meeting", nov_1_2020.atTime(15, 20), Duration.ofMinutes(50)));
+        Event weekly = new Event("Weekly", nov_1_2020.atTime(16, 0), Duration.ofHours(3));
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        agenda.addEvent(weekly);
+        Duration length = Duration.ofMinutes(45);
+        LocalDateTime end = nov_1_2020.plusDays(21).atStartOfDay();
+        for (TimeSlot s : agenda.findFreeSlots(nov_1_2020.atStartOfDay(), end, length)) {
+            assertTrue(agenda.isFreeFor(new Event("Start", s.start(), length)), "Créneau libre au début : " + s);
+            assertTrue(agenda.isFreeFor(new Event("End", s.end().minus(length), length)), "Créneau libre à la fin : " + s);
+            if (s.end().isBefore(end)) {
+                assertFalse(agenda.isFreeFor(new Event("Longer", s.start(), s.duration().plusMinutes(1))), "Le créneau est maximal : " + s);
+            }
+        }
+    }
+
+    @Test
+    public void invalidArguments() {
+        assertThrows(IllegalArgumentException.class,
+                () -> agenda.findFreeSlots(nov_1_2020.atStartOfDay(), nov_1_2020.plusDays(1).atStartOfDay(), Duration.ofMinutes(-1)));
+        assertThrows(IllegalArgumentException.class, () -> new WorkingHours(LocalTime.of(17, 0), LocalTime.of(9, 0)));
+        assertThrows(IllegalArgumentException.class, () -> new TimeSlot(nov_1_2020.atTime(10, 0), nov_1_2020.atTime(9, 0)));
+        assertTrue(agenda.findFreeSlots(nov_1_2020.atTime(10, 0), nov_1_2020.atTime(10, 0), Duration.ZERO).isEmpty());
+    }
+}
@@ -0,0 +1,149 @@
+package agenda;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static agenda.ColumnarAgendaTest.describe;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Teste la lecture de fichiers iCalendar
+ */
+public class ICalendarReaderTest {
+
+    @TempDir
+    Path directory;
+
+    static String calendar(String... events) {
+        return "BEGIN:VCALENDAR\r\nVERSION:2.0\r\nPRODID:-//test//FR\r\n"
+                + String.join("", events)
+                + "END:VCALENDAR\r\n";
+    }
+
+    private List<Event> read(ICalendarReader reader, String text) throws IOException {
+        return reader.read(Channels.newChannel(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    public void simpleEvents() throws IOException {
+        List<Event> events = read(new ICalendarReader(), calendar(
+                "BEGIN:VEVENT\r\nUID:1\r\nSUMMARY:Réunion\r\nDTSTART:20201101T223000\r\nDURATION:PT2H\r\nEND:VEVENT\r\n",
+                "BEGIN:VEVENT\r\nSUMMARY:Avec fin\r\nDTSTART;TZID=Europe/Paris:20201102T090000\r\nDTEND;TZID=Europe/Paris:20201102T103000\r\nEND:VEVENT\r\n",
+                "BEGIN:VEVENT\r\nSUMMARY:Journée\r\nDTSTART;VALUE=DATE:20201103\r\nEND:VEVENT\r\n",
+                "BEGIN:VEVENT\r\nSUMMARY:Semaine\r\nDTSTART:20201104T000000Z\r\nDURATION:P1W\r\nEND:VEVENT\r\n"));
+        assertEquals(4, events.size());
+        assertEquals(new Event("Réunion", LocalDateTime.of(2020, 11, 1, 22, 30), Duration.ofHours(2)).toString(), events.get(0).toString());
+        assertEquals(Duration.ofMinutes(90), events.get(1).getDuration(), "DTEND - DTSTART");
+        assertEquals(LocalDate.of(2020, 11, 3).atStartOfDay(), events.get(2).getStart());
+        assertEquals(Duration.ofDays(1).minusNanos(1), events.get(2).getDuration(), "Une date seule dure une journée");
+        assertEquals(Duration.ofDays(7), events.get(3).getDuration());
+        assertNull(events.get(0).getRepetition());
+    }
+
+    @Test
+    public void allDayEventsEndBeforeTheNextMidnight() throws IOException {
+        List<Event> events = read(new ICalendarReader(), calendar(
+                "BEGIN:VEVENT\r\nSUMMARY:Avec fin\r\nDTSTART;VALUE=DATE:20201103\r\nDTEND;VALUE=DATE:20201104\r\nEND:VEVENT\r\n",
+                "BEGIN:VEVENT\r\nSUMMARY:Sans fin\r\nDTSTART;VALUE=DATE:20201103\r\nEND:VEVENT\r\n",
+                "BEGIN:VEVENT\r\nSUMMARY:Deux jours\r\nDTSTART;VALUE=DATE:20201103\r\nDTEND;VALUE=DATE:20201105\r\nEND:VEVENT\r\n",
+                "BEGIN:VEVENT\r\nSUMMARY:Quotidien\r\nDTSTART;VALUE=DATE:20201103\r\nRRULE:FREQ=DAILY;COUNT=2\r\nEND:VEVENT\r\n"));
+        Agenda agenda = new Agenda();
+        events.forEach(agenda::addEvent);
+        LocalDate nov_3 = LocalDate.of(2020, 11, 3);
+        assertEquals(events, agenda.eventsInDay(nov_3));
+        assertEquals(List.of(events.get(2), events.get(3)), agenda.eventsInDay(nov_3.plusDays(1)),
+                "La date de fin d'un événement à la journée est exclue");
+        assertEquals(List.of(), agenda.eventsInDay(nov_3.plusDays(2)));
+    }
+
+    @Test
+    public void foldedLinesAndEscapedText() throws IOException {
+        List<Event> events = read(new ICalendarReader(), calendar(
+                "BEGIN:VEVENT\nSUMMARY:Un titre\\, très \n long\\; sur\r\n\tplusieurs lignes\nDTSTART:20201101T2230\n 00\nEND:VEVENT\n"));
+        assertEquals("Un titre, très long; surplusieurs lignes", events.get(0).getTitle());
+        assertEquals(LocalDateTime.of(2020, 11, 1, 22, 30), events.get(0).getStart());
+    }
+
+    @Test
+    public void repetitions() throws IOException {
+        List<Event> events = read(new ICalendarReader(), calendar(
+                "BEGIN:VEVENT\r\nSUMMARY:Quotidien\r\nDTSTART:20201101T090000\r\nDURATION:PT1H\r\nRRULE:FREQ=DAILY\r\n"
+                        + "EXDATE:20201102T090000,20201104T090000\r\nEXDATE;VALUE=DATE:20201106\r\nEND:VEVENT\r\n",
+                "BEGIN:VEVENT\r\nSUMMARY:Compté\r\nDTSTART:20201101T090000\r\nDURATION:PT1H\r\nRRULE:FREQ=WEEKLY;COUNT=10\r\nEND:VEVENT\r\n",
+                "BEGIN:VEVENT\r\nSUMMARY:Jusqu'au\r\nDTSTART:20201101T090000\r\nDURATION:PT1H\r\nRRULE:FREQ=MONTHLY;UNTIL=20210105T000000Z;INTERVAL=1\r\nEND:VEVENT\r\n",
+                "BEGIN:VEVENT\r\nSUMMARY:Jusqu'à minuit\r\nDTSTART:20201101T090000\r\nDURATION:PT1H\r\nRRULE:FREQ=DAILY;UNTIL=20201103T000000Z\r\nEND:VEVENT\r\n",
+                "BEGIN:VEVENT\r\nSUMMARY:Jusqu'au jour\r\nDTSTART:20201101T090000\r\nDURATION:PT1H\r\nRRULE:FREQ=DAILY;UNTIL=20201103\r\nEND:VEVENT\r\n"));
+        Event daily = events.get(0);
+        assertEquals(ChronoUnit.DAYS, daily.getRepetition().getFrequency());
+        assertEquals(List.of(LocalDate.of(2020, 11, 2), LocalDate.of(2020, 11, 4), LocalDate.of(2020, 11, 6)),
+                daily.getRepetition().getExceptions());
+        assertFalse(daily.isInDay(LocalDate.of(2020, 11, 4)));
+        assertEquals(10, events.get(1).getNumberOfOccurrences());
+        assertEquals(ChronoUnit.WEEKS, events.get(1).getRepetition().getFrequency());
+        // L'occurrence du 5 janvier commencerait à 9:00, après UNTIL
+        assertEquals(LocalDate.of(2021, 1, 4), events.get(2).getTerminationDate());
+        assertEquals(3, events.get(2).getNumberOfOccurrences());
+        assertEquals(2, events.get(3).getNumberOfOccurrences(), "Le 3 novembre à 9:00 est après UNTIL");
+        assertFalse(events.get(3).isInDay(LocalDate.of(2020, 11, 3)));
+        assertEquals(3, events.get(4).getNumberOfOccurrences(), "Une date UNTIL inclut son jour");
+    }
+
+    @Test
+    public void unsupportedEventsAreSkipped() throws IOException {
+        ICalendarReader reader = new ICalendarReader();
+        List<Event> events = read(reader, calendar(
+                "BEGIN:VEVENT\r\nSUMMARY:Un jour sur deux\r\nDTSTART:20201101T090000\r\nRRULE:FREQ=DAILY;INTERVAL=2\r\nEND:VEVENT\r\n",
+                "BEGIN:VEVENT\r\nSUMMARY:Lundis\r\nDTSTART:20201101T090000\r\nRRULE:FREQ=WEEKLY;BYDAY=MO\r\nEND:VEVENT\r\n",
+                "BEGIN:VEVENT\r\nSUMMARY:Sans début\r\nEND:VEVENT\r\n",
+                "BEGIN:VEVENT\r\nSUMMARY:Date invalide\r\nDTSTART:2020XX01T090000\r\nEND:VEVENT\r\n",
+                "BEGIN:VEVENT\r\nSUMMARY:Valide\r\nDTSTART:20201101T090000\r\n"
+                        + "BEGIN:VALARM\r\nACTION:DISPLAY\r\nSUMMARY:Alarme\r\nTRIGGER:-PT15M\r\nEND:VALARM\r\nEND:VEVENT\r\n"));
+        assertEquals(1, events.size());
+        assertEquals("Valide", events.get(0).getTitle(), "Le résumé de l'alarme ne remplace pas celui de l'événement");
+        assertEquals(4, reader.skippedEvents());
+        List<Event> truncated = read(reader, "BEGIN:VCALENDAR\r\nBEGIN:VEVENT\r\nSUMMARY:Tronqué\r\nDTSTART:20201101T090000\r\n");
+        assertTrue(truncated.isEmpty());
+        assertEquals(5, reader.skippedEvents(), "Un VEVENT sans fin est compté");
+    }
+
+    @Test
+    public void parallelReadKeepsTheOrderOfTheFile() throws IOException {
+        StringBuilder text = new StringBuilder("BEGIN:VCALENDAR\r\n");
+        for (int i = 0; i < 5_000; i++) {
+            text.append("BEGIN:VEVENT\r\nSUMMARY:Événement ").append(i)
+                    .append("\r\nDESCRIPTION:une description assez longue pour que les événements\r\n  soient repliés\r\n")
+                    .append("DTSTART:2021").append(String.format("%02d%02d", 1 + i % 12, 1 + i % 28)).append("T080000\r\n")
+                    .append(i % 3 == 0 ? "RRULE:FREQ=WEEKLY;COUNT=" + (1 + i % 9) + "\r\n" : "")
+                    .append("DURATION:PT").append(1 + i % 5).append("H\r\nEND:VEVENT\r\n");
+        }
+        text.append("END:VCALENDAR\r\n");
+        Path file = directory.resolve("agenda.ics");
+        Files.writeString(file, text);
+
+        ICalendarReader reader = new ICalendarReader();
+        List<Event> sequential = read(reader, text.toString());
+        // Des morceaux de 4 Ko : plusieurs centaines de tâches
+        List<Event> parallel = reader.read(file, 4_096);
+        assertEquals(5_000, parallel.size());
+        assertEquals(describe(sequential), describe(parallel));
+        for (int i = 0; i < 5_000; i += 499) {
+            assertEquals("Événement " + i, parallel.get(i).getTitle());
+        }
+
+        Agenda agenda = new Agenda();
+        reader.importInto(file, agenda);
+        assertEquals(5_000, agenda.getAllEvents().size());
+        assertEquals(0, reader.skippedEvents());
+    }
+}
@@ -0,0 +1,148 @@
+package agenda;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static agenda.ColumnarAgendaTest.describe;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Teste l'écriture de fichiers iCalendar, relus par ICalendarReader
+ */
+public class ICalendarWriterTest {
+
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+    Duration min_120 = Duration.ofMinutes(120);
+    Clock clock = Clock.fixed(Instant.parse("2026-01-02T03:04:05Z"), ZoneOffset.UTC);
+
+    @TempDir
+    Path directory;
+
+    private String write(ICalendarWriter writer, List<Event> events) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(events, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private List<Event> read(String text) throws IOException {
+        return new ICalendarReader().read(Channels.newChannel(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    public void writesAVEvent() throws IOException {
+        Event weekly = new Event("Cours; TP, TD", nov_1_2020_22_30, Duration.ofHours(26).plusSeconds(5));
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        weekly.setTermination(3);
+        weekly.addException(nov_1_2020.plusWeeks(1));
+        String text = write(new ICalendarWriter(null, null, clock), List.of(weekly));
+        assertEquals("BEGIN:VCALENDAR\r\nVERSION:2.0\r\nPRODID:-//agenda//iCalendar//FR\r\n"
+                + "BEGIN:VEVENT\r\nUID:1-20260102T030405Z@agenda\r\nDTSTAMP:20260102T030405Z\r\n"
+                + "DTSTART:20201101T223000\r\nDURATION:P1DT2H0M5S\r\nSUMMARY:Cours\\; TP\\, TD\r\n"
+                + "RRULE:FREQ=WEEKLY;UNTIL=20201115T235959\r\nEXDATE:20201108T223000\r\n"
+                + "END:VEVENT\r\nEND:VCALENDAR\r\n", text);
+    }
+
+    @Test
+    public void longLinesAreFolded() throws IOException {
+        String title = "Réunion très importante 🎉 ".repeat(20);
+        Event e = new Event(title, nov_1_2020_22_30, min_120);
+        e.setRepetition(ChronoUnit.DAYS);
+        for (int i = 1; i < 40; i++) {
+            e.addException(nov_1_2020.plusDays(2 * i));
+        }
+        String text = write(new ICalendarWriter(), List.of(e));
+        for (String line : text.split("\r\n")) {
+            assertTrue(line.getBytes(StandardCharsets.UTF_8).length <= 75, "Ligne trop longue : " + line);
+        }
+        Event read = read(text).get(0);
+        assertEquals(title, read.getTitle(), "Aucun caractère n'est coupé par le repli");
+        assertEquals(e.getRepetition().getExceptions(), read.getRepetition().getExceptions());
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        Random random = new Random(5);
+        ChronoUnit[] units = {ChronoUnit.DAYS, ChronoUnit.WEEKS, ChronoUnit.MONTHS, ChronoUnit.YEARS};
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            LocalDateTime start = nov_1_2020_22_30.plusMinutes(random.nextInt(60 * 24 * 400));
+            Event e = new Event("Event\n" + i, start, Duration.ofSeconds(random.nextInt(200_000)));
+            switch (random.nextInt(4)) {
+                case 0 -> {
+                    e.setRepetition(units[random.nextInt(4)]);
+                    e.setTermination(random.nextInt(20));
+                    e.addException(start.toLocalDate().plusDays(random.nextInt(30)));
+                }
+                case 1 -> {
+                    e.setRepetition(units[random.nextInt(4)]);
+                    e.addException(start.toLocalDate().plusWeeks(1));
+                }
+                default -> {
+                }
+            }
+            events.add(e);
+        }
+        assertEquals(describe(events), describe(read(write(new ICalendarWriter(), events))));
+    }
+
+    @Test
+    public void filtersByWindow() throws IOException {
+        Event before = new Event("Before", nov_1_2020_22_30.minusDays(3), min_120);
+        Event inside = new Event("Inside", nov_1_2020_22_30, min_120);
+        Event daily = new Event("Daily", nov_1_2020_22_30.minusDays(10), min_120);
+        daily.setRepetition(ChronoUnit.DAYS);
+        Event cancelled = new Event("Cancelled", nov_1_2020_22_30.minusWeeks(2), min_120);
+        cancelled.setRepetition(ChronoUnit.WEEKS);
+        cancelled.addException(nov_1_2020);
+        Event ended = new Event("Ended", nov_1_2020_22_30.minusDays(10), min_120);
+        ended.setRepetition(ChronoUnit.DAYS);
+        ended.setTermination(5);
+        ICalendarWriter writer = new ICalendarWriter(nov_1_2020.atStartOfDay(), nov_1_2020.plusDays(1).atStartOfDay());
+        List<Event> written = read(write(writer, List.of(before, inside, daily, cancelled, ended)));
+        assertEquals(List.of("Inside", "Daily"), written.stream().map(Event::getTitle).toList());
+    }
+
+    @Test
+    public void unsupportedFrequenciesAreSkipped() throws IOException {
+        Event hourly = new Event("Hourly", nov_1_2020_22_30, min_120);
+        hourly.setRepetition(ChronoUnit.HOURS);
+        ICalendarWriter writer = new ICalendarWriter();
+        assertEquals(List.of("Simple"), read(write(writer, List.of(hourly, new Event("Simple", nov_1_2020_22_30, min_120))))
+                .stream().map(Event::getTitle).toList());
+        assertEquals(1, writer.skippedEvents());
+    }
+
+    @Test
+    public void exportsAnAgendaLargerThanTheBuffer() throws IOException {
+        Agenda agenda = new Agenda();
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            events.add(new Event("Event " + i, nov_1_2020_22_30.plusMinutes(7L * i), Duration.ofMinutes(5)));
+        }
+        agenda.addAll(events);
+        Path file = directory.resolve("agenda.ics");
+        ICalendarWriter writer = new ICalendarWriter();
+        assertEquals(20_000, writer.export(agenda, file));
+        assertEquals(20_000, writer.export(agenda, file), "Le fichier est remplacé, le tampon réutilisé");
+        assertEquals(describe(events), describe(new ICalendarReader().read(file)));
+        assertTrue(Files.readString(file).endsWith("END:VCALENDAR\r\n"));
+    }
+}
@@ -0,0 +1,153 @@
+package agenda;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Teste l'arbre d'intervalles utilisé comme index par l'agenda
+ */
+public class IntervalTreeTest {
+
+    @Test
+    public void emptyTreeFindsNothing() {
+        IntervalTree<String> tree = new IntervalTree<>();
+        assertEquals(0, tree.size());
+        assertTrue(tree.query(Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    public void boundsAreInclusive() {
+        IntervalTree<String> tree = new IntervalTree<>();
+        tree.insert(10, 20, 0, "a");
+        assertEquals(List.of("a"), tree.query(20, 30), "La borne haute est incluse");
+        assertEquals(List.of("a"), tree.query(0, 10), "La borne basse est incluse");
+        assertTrue(tree.query(21, 30).isEmpty());
+        assertTrue(tree.query(0, 9).isEmpty());
+    }
+
+    @Test
+    public void resultsAreOrderedByLowerBound() {
+        IntervalTree<String> tree = new IntervalTree<>();
+        tree.insert(30, 40, 0, "c");
+        tree.insert(10, 50, 1, "a");
+        tree.insert(20, 35, 2, "b");
+        tree.insert(20, 33, 3, "b2");
+        tree.insert(20, 25, 4, "x");
+        assertEquals(List.of("a", "b", "b2", "c"), tree.query(32, 33));
+    }
+
+    @Test
+    public void iteratorIsExhausted() {
+        IntervalTree<String> tree = new IntervalTree<>();
+        tree.insert(1, 2, 0, "a");
+        Iterator<String> it = tree.overlapping(0, 5);
+        assertEquals("a", it.next());
+        assertFalse(it.hasNext());
+        assertThrows(NoSuchElementException.class, it::next);
+    }
+
+    @Test
+    public void matchesBruteForceOnRandomIntervals() {
+        Random random = new Random(42);
+        IntervalTree<Integer> tree = new IntervalTree<>();
+        List<long[]> intervals = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            long low = random.nextInt(100_000);
+            long high = low + random.nextInt(random.nextBoolean() ? 50 : 5_000);
+            intervals.add(new long[]{low, high});
+            tree.insert(low, high, i, i);
+        }
+        assertEquals(2_000, tree.size());
+        for (int q = 0; q < 500; q++) {
+            long from = random.nextInt(110_000) - 5_000;
+            long to = from + random.nextInt(1_000);
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < intervals.size(); i++) {
+                if (intervals.get(i)[0] <= to && intervals.get(i)[1] >= from) {
+                    expected.add(i);
+                }
+            }
+            List<Integer> found = new ArrayList<>(tree.query(from, to));
+            found.sort(null);
+            assertEquals(expected, found);
+        }
+    }
+
+    @Test
+    public void insertAllMatchesIncrementalInsertions() {
+        Random random = new Random(7);
+        IntervalTree<Integer> incremental = new IntervalTree<>();
+        IntervalTree<Integer> bulk = new IntervalTree<>();
+        // Une partie des entrées est déjà dans l'arbre avant l'ajout en masse
+        for (int i = 0; i < 500; i++) {
+            long low = random.nextInt(100_000);
+            long high = low + random.nextInt(2_000);
+            incremental.insert(low, high, i, i);
+            bulk.insert(low, high, i, i);
+        }
+        int count = 5_000;
+        long[] lows = new long[count];
+        long[] highs = new long[count];
+        long[] sequences = new long[count];
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            lows[i] = random.nextInt(100_000);
+            highs[i] = lows[i] + random.nextInt(random.nextBoolean() ? 50 : 5_000);
+            sequences[i] = 500 + i;
+            values.add(500 + i);
+            incremental.insert(lows[i], highs[i], sequences[i], 500 + i);
+        }
+        bulk.insertAll(lows, highs, sequences, values);
+        assertEquals(incremental.size(), bulk.size());
+        assertEquals(incremental.maxHigh(), bulk.maxHigh());
+        for (int q = 0; q < 500; q++) {
+            long from = random.nextInt(110_000) - 5_000;
+            long to = from + random.nextInt(1_000);
+            assertEquals(incremental.query(from, to), bulk.query(from, to),
+                    "L'arbre construit en masse doit rendre les mêmes résultats, dans le même ordre");
+        }
+        // L'arbre reste utilisable après la construction en masse
+        bulk.insert(-10, -5, 100_000, -1);
+        assertEquals(List.of(-1), bulk.query(-7, -7));
+    }
+
+    @Test
+    public void removalsMatchBruteForce() {
+        Random random = new Random(11);
+        IntervalTree<Integer> tree = new IntervalTree<>();
+        List<long[]> intervals = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            long low = random.nextInt(1_000); // Beaucoup de bornes basses égales
+            long high = low + random.nextInt(500);
+            intervals.add(new long[]{low, high, i});
+            tree.insert(low, high, i, i);
+        }
+        for (int i = 0; i < 1_500; i++) {
+            long[] removed = intervals.remove(random.nextInt(intervals.size()));
+            assertTrue(tree.remove(removed[0], removed[2]));
+            assertFalse(tree.remove(removed[0], removed[2]), "Une entrée n'est retirée qu'une fois");
+        }
+        assertFalse(tree.remove(-1, 0));
+        assertEquals(intervals.size(), tree.size());
+        assertEquals(intervals.stream().mapToLong(interval -> interval[1]).max().getAsLong(), tree.maxHigh());
+        for (int q = 0; q < 200; q++) {
+            long from = random.nextInt(1_600) - 50;
+            long to = from + random.nextInt(100);
+            List<Integer> expected = new ArrayList<>();
+            for (long[] interval : intervals) {
+                if (interval[0] <= to && interval[1] >= from) {
+                    expected.add((int) interval[2]);
+                }
+            }
+            List<Integer> found = new ArrayList<>(tree.query(from, to));
+            found.sort(null);
+            assertEquals(expected, found);
+        }
+    }
+}
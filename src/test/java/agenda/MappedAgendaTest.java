@@ -0,0 +1,178 @@
+package agenda;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static agenda.ColumnarAgendaTest.describe;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Teste l'agenda lu dans un fichier projeté en mémoire, par comparaison avec l'agenda d'objets
+ */
+public class MappedAgendaTest {
+
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+    Duration min_120 = Duration.ofMinutes(120);
+
+    @TempDir
+    Path directory;
+
+    List<Event> events;
+    Agenda reference;
+
+    @BeforeEach
+    public void setUp() {
+        Random random = new Random(5);
+        events = new ArrayList<>();
+        ChronoUnit[] units = {ChronoUnit.DAYS, ChronoUnit.WEEKS, ChronoUnit.MONTHS};
+        for (int i = 0; i < 500; i++) {
+            LocalDateTime start = nov_1_2020_22_30.plusMinutes(random.nextInt(60 * 24 * 120)).plusNanos(i % 7 == 0 ? 500_000_000 : 0);
+            Duration duration = random.nextInt(10) == 0 ? Duration.ofHours(30 + random.nextInt(100))
+                    : Duration.ofMinutes(random.nextInt(300));
+            Event e = new Event("Événement " + i % 17, start, duration);
+            switch (random.nextInt(5)) {
+                case 0 -> {
+                    e.setRepetition(units[random.nextInt(3)]);
+                    e.setTermination(start.toLocalDate().plusDays(random.nextInt(200)));
+                }
+                case 1 -> {
+                    e.setRepetition(units[random.nextInt(3)]);
+                    e.setTermination(random.nextInt(20) - 2);
+                    e.addException(start.toLocalDate().plusWeeks(random.nextInt(4)));
+                }
+                case 2 -> {
+                    e.setRepetition(ChronoUnit.WEEKS);
+                    e.addException(start.toLocalDate().plusWeeks(1));
+                    e.addException(start.toLocalDate().plusWeeks(3));
+                }
+                default -> {
+                }
+            }
+            events.add(e);
+        }
+        reference = new AgendaLoader().addAll(events).load();
+    }
+
+    private MappedAgenda written(int chunkBits) throws IOException {
+        Path file = directory.resolve("agenda.bin");
+        MappedAgenda.write(file, events);
+        return MappedAgenda.open(file, chunkBits);
+    }
+
+    @Test
+    public void matchesAgenda() throws IOException {
+        MappedAgenda agenda = written(MappedFile.DEFAULT_CHUNK_BITS);
+        assertEquals(events.size(), agenda.size());
+        for (int d = -2; d < 400; d += 3) {
+            LocalDate day = nov_1_2020.plusDays(d);
+            assertEquals(describe(reference.eventsInDay(day)), describe(agenda.eventsInDay(day)), "Différence le " + day);
+        }
+        assertEquals(describe(reference.findByTitle("Événement 3")), describe(agenda.findByTitle("Événement 3")));
+        assertTrue(agenda.findByTitle("Inconnu").isEmpty());
+        Random random = new Random(6);
+        for (int i = 0; i < 200; i++) {
+            LocalDateTime start = nov_1_2020_22_30.plusMinutes(random.nextInt(60 * 24 * 150) - 60 * 24 * 10);
+            Event candidate = new Event("Candidate", start, Duration.ofMinutes(1 + random.nextInt(90)));
+            switch (i % 10) {
+                case 0 -> {
+                    candidate.setRepetition(ChronoUnit.DAYS);
+                    candidate.setTermination(3);
+                }
+                case 1 -> {
+                    candidate.setRepetition(ChronoUnit.WEEKS);
+                    candidate.addException(start.toLocalDate().plusWeeks(random.nextInt(4)));
+                }
+                case 2 -> {
+                    candidate.setRepetition(ChronoUnit.MONTHS);
+                    candidate.setTermination(start.toLocalDate().plusMonths(6));
+                }
+                default -> {
+                }
+            }
+            assertEquals(reference.isFreeFor(candidate), agenda.isFreeFor(candidate), "Différence pour " + candidate);
+            assertEquals(describe(reference.conflictsWith(candidate)), describe(agenda.conflictsWith(candidate)));
+        }
+    }
+
+    @Test
+    public void repeatingCandidatesAreProbedInPlace() throws IOException {
+        List<Event> weeklies = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            Event weekly = new Event("Hebdo " + i % 50, nov_1_2020.plusDays(i % 7).atTime(8 + i % 10, 0), Duration.ofMinutes(30));
+            weekly.setRepetition(ChronoUnit.WEEKS);
+            weeklies.add(weekly);
+        }
+        Path file = directory.resolve("weeklies.bin");
+        MappedAgenda.write(file, weeklies);
+        MappedAgenda agenda = MappedAgenda.open(file);
+        Event evening = new Event("Soir", nov_1_2020.atTime(19, 0), Duration.ofMinutes(30));
+        evening.setRepetition(ChronoUnit.DAYS);
+        Event morning = new Event("Matin", nov_1_2020.atTime(8, 15), Duration.ofMinutes(30));
+        morning.setRepetition(ChronoUnit.DAYS);
+        // Sans les champs des enregistrements, chaque vérification décoderait tout le fichier
+        assertTimeoutPreemptively(Duration.ofSeconds(2), () -> {
+            for (int i = 0; i < 20; i++) {
+                assertTrue(agenda.isFreeFor(evening));
+                assertFalse(agenda.isFreeFor(morning));
+            }
+        }, "Des dizaines de vérifications par seconde");
+    }
+
+    @Test
+    public void valuesMayStraddleChunks() throws IOException {
+        // Des blocs de 1 Ko : beaucoup de valeurs et de titres sont à cheval sur deux blocs
+        MappedAgenda agenda = written(10);
+        for (int d = 0; d < 120; d += 7) {
+            LocalDate day = nov_1_2020.plusDays(d);
+            assertEquals(describe(reference.eventsInDay(day)), describe(agenda.eventsInDay(day)), "Différence le " + day);
+        }
+        for (int t = 0; t < 17; t++) {
+            assertEquals(describe(reference.findByTitle("Événement " + t)), describe(agenda.findByTitle("Événement " + t)));
+        }
+    }
+
+    @Test
+    public void longEventsAreKeptApart() throws IOException {
+        Event year = new Event("Année", nov_1_2020.atStartOfDay(), Duration.ofDays(365));
+        events.add(year);
+        reference.addEvent(year);
+        MappedAgenda agenda = written(MappedFile.DEFAULT_CHUNK_BITS);
+        assertTrue(agenda.longEventCount() >= 1);
+        assertTrue(agenda.longEventCount() <= events.size() / 64, "Seules quelques exceptions sont rangées à part");
+        for (int d = -2; d < 400; d += 5) {
+            LocalDate day = nov_1_2020.plusDays(d);
+            assertEquals(describe(reference.eventsInDay(day)), describe(agenda.eventsInDay(day)), "Différence le " + day);
+        }
+        assertFalse(agenda.isFreeFor(new Event("Any", nov_1_2020.plusDays(200).atTime(3, 0), min_120)));
+    }
+
+    @Test
+    public void emptyAgenda() throws IOException {
+        events.clear();
+        MappedAgenda agenda = written(MappedFile.DEFAULT_CHUNK_BITS);
+        assertEquals(0, agenda.size());
+        assertTrue(agenda.eventsInDay(nov_1_2020).isEmpty());
+        assertTrue(agenda.isFreeFor(new Event("Any", nov_1_2020_22_30, min_120)));
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+        Path file = directory.resolve("other.bin");
+        Files.write(file, new byte[100]);
+        assertThrows(IOException.class, () -> MappedAgenda.open(file));
+        Files.write(file, new byte[3]);
+        assertThrows(IOException.class, () -> MappedAgenda.open(file));
+    }
+}
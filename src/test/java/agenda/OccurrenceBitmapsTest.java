@@ -0,0 +1,150 @@
+package agenda;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Teste la compilation des journées en bitmaps, par comparaison avec Event.isInDay
+ */
+public class OccurrenceBitmapsTest {
+
+    static final ChronoUnit[] UNITS = {ChronoUnit.DAYS, ChronoUnit.WEEKS, ChronoUnit.MONTHS, ChronoUnit.YEARS};
+
+    static List<Event> randomEvents(Random random, LocalDateTime origin, int count) {
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            LocalDateTime start = origin.plusMinutes(random.nextInt(60 * 24 * 400));
+            Duration duration = random.nextInt(8) == 0 ? Duration.ofHours(24 + random.nextInt(200))
+                    : Duration.ofMinutes(random.nextInt(600));
+            Event e = new Event("Event " + i, start, duration);
+            if (random.nextInt(3) > 0) {
+                e.setRepetition(UNITS[random.nextInt(UNITS.length)]);
+                for (int x = random.nextInt(4); x > 0; x--) {
+                    e.addException(start.toLocalDate().plusDays(random.nextInt(100)));
+                }
+                switch (random.nextInt(3)) {
+                    case 0 -> e.setTermination(start.toLocalDate().plusDays(random.nextInt(300)));
+                    case 1 -> e.setTermination(random.nextInt(30) - 1);
+                    default -> {
+                    }
+                }
+            }
+            events.add(e);
+        }
+        return events;
+    }
+
+    static List<OccurrenceBitmaps.Series> series(List<Event> events) {
+        return events.stream().map(OccurrenceBitmaps.Series::of).toList();
+    }
+
+    static void assertMatches(List<Event> events, OccurrenceBitmaps compiled) {
+        for (long day = compiled.firstDay(); day < compiled.endDay(); day++) {
+            LocalDate date = LocalDate.ofEpochDay(day);
+            List<Integer> expected = new ArrayList<>();
+            for (int id = 0; id < events.size(); id++) {
+                boolean occurs = events.get(id).isInDay(date);
+                assertEquals(occurs, compiled.occursOn(id, day), "Événement " + id + " le " + date);
+                if (occurs) {
+                    expected.add(id);
+                }
+            }
+            List<Integer> actual = new ArrayList<>();
+            compiled.forEachEvent(day, actual::add);
+            assertEquals(expected, actual, "Le " + date);
+            assertEquals(expected.size(), compiled.countEvents(day));
+        }
+    }
+
+    @Test
+    public void matchesIsInDay() {
+        Random random = new Random(11);
+        // Autour de l'epoch : des jours négatifs et des mots à cheval sur zéro
+        LocalDateTime origin = LocalDateTime.of(1969, 10, 1, 22, 30);
+        List<Event> events = randomEvents(random, origin, 300);
+        long first = origin.toLocalDate().toEpochDay() + 3;
+        assertMatches(events, OccurrenceBitmaps.compile(series(events), first, first + 500, null));
+        assertMatches(events, OccurrenceBitmaps.compile(series(events), first + 1, first + 2, null));
+    }
+
+    @Test
+    public void laterHorizonsReuseTheCommonDays() {
+        Random random = new Random(12);
+        LocalDateTime origin = LocalDateTime.of(2020, 11, 1, 22, 30);
+        List<Event> events = randomEvents(random, origin, 200);
+        List<OccurrenceBitmaps.Series> series = series(events);
+        long first = origin.toLocalDate().toEpochDay();
+        OccurrenceBitmaps compiled = OccurrenceBitmaps.compile(series, first, first + 200, null);
+        for (long shift : new long[]{1, 63, 64, 150, 500, -70}) {
+            OccurrenceBitmaps moved = OccurrenceBitmaps.compile(series, first + shift, first + shift + 200, compiled);
+            assertMatches(events, moved);
+        }
+    }
+
+    @Test
+    public void crowdedDaysAreBitmaps() {
+        LocalDateTime origin = LocalDateTime.of(2020, 11, 1, 9, 0);
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            Event e = new Event("Daily " + i, origin.plusSeconds(i), Duration.ofMinutes(30));
+            if (i % 10 != 0) {
+                e.setRepetition(ChronoUnit.DAYS);
+            }
+            events.add(e);
+        }
+        long first = origin.toLocalDate().toEpochDay();
+        OccurrenceBitmaps compiled = OccurrenceBitmaps.compile(series(events), first, first + 30, null);
+        assertEquals(1_000, compiled.countEvents(first));
+        assertEquals(900, compiled.countEvents(first + 1));
+        assertMatches(events, compiled);
+    }
+
+    @Test
+    public void agendaAnswersFromTheBitmaps() {
+        Random random = new Random(13);
+        LocalDateTime origin = LocalDateTime.of(2020, 11, 1, 22, 30);
+        List<Event> events = randomEvents(random, origin, 300);
+        Agenda agenda = new Agenda();
+        Agenda reference = new Agenda();
+        agenda.addAll(events);
+        reference.addAll(events);
+        LocalDate first = origin.toLocalDate().plusDays(30);
+        agenda.materializeDays(first, 200).join();
+        for (int d = -5; d < 210; d++) {
+            LocalDate day = first.plusDays(d);
+            assertEquals(reference.eventsInDay(day), agenda.eventsInDay(day), "Le " + day);
+        }
+
+        // Modifications et ajouts après la compilation
+        for (int i = 0; i < 40; i++) {
+            Event e = events.get(random.nextInt(events.size()));
+            e.addException(first.plusDays(random.nextInt(200)));
+            e.setTermination(first.plusDays(random.nextInt(200)));
+        }
+        for (Event e : randomEvents(random, origin, 30)) {
+            agenda.addEvent(e);
+            reference.addEvent(e);
+        }
+        for (int d = 0; d < 200; d++) {
+            LocalDate day = first.plusDays(d);
+            assertEquals(reference.eventsInDay(day), agenda.eventsInDay(day), "Après modification, le " + day);
+        }
+
+        agenda.advanceMaterializedDays(first.plusDays(100)).join();
+        for (int d = 90; d < 310; d++) {
+            LocalDate day = first.plusDays(d);
+            assertEquals(reference.eventsInDay(day), agenda.eventsInDay(day), "Après avancée, le " + day);
+        }
+        agenda.materializeDays(first, 0).join();
+        assertEquals(reference.eventsInDay(first), agenda.eventsInDay(first));
+        assertThrows(IllegalStateException.class, () -> agenda.advanceMaterializedDays(first));
+    }
+}
@@ -0,0 +1,121 @@
+package agenda;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Teste le parcours parallèle, par comparaison avec le parcours séquentiel
+ */
+public class ParallelScanTest {
+
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+
+    ForkJoinPool pool;
+
+    @BeforeEach
+    public void setUp() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void matchesInIncreasingOrder() {
+        ParallelScan scan = new ParallelScan(pool, 0);
+        int size = 10 * ParallelScan.CHUNK_SIZE + 17;
+        int[] expected = IntStream.range(0, size).filter(row -> row % 7 == 3 || row == size - 1).toArray();
+        assertArrayEquals(expected, scan.matching(size, row -> row % 7 == 3 || row == size - 1));
+        assertArrayEquals(new int[0], scan.matching(size, row -> false));
+        assertArrayEquals(IntStream.range(0, size).toArray(), scan.matching(size, row -> true));
+    }
+
+    @Test
+    public void smallScansStaySequential() {
+        Thread caller = Thread.currentThread();
+        AtomicInteger elsewhere = new AtomicInteger();
+        ParallelScan scan = new ParallelScan(pool, 1 << 20);
+        scan.matching(100_000, row -> {
+            if (Thread.currentThread() != caller) {
+                elsewhere.incrementAndGet();
+            }
+            return true;
+        });
+        assertEquals(0, elsewhere.get(), "Sous le seuil, le parcours reste sur le fil appelant");
+        assertThrows(IllegalArgumentException.class, () -> new ParallelScan(pool, -1));
+    }
+
+    @Test
+    public void columnarQueriesAreUnchanged() {
+        List<Event> events = randomEvents(3 * ParallelScan.CHUNK_SIZE + 5);
+        ColumnarAgenda sequential = new ColumnarAgenda();
+        sequential.addAll(events);
+        ColumnarAgenda parallel = new ColumnarAgenda();
+        parallel.addAll(events);
+        parallel.setParallelQueries(pool, 0);
+        for (int d = 0; d < 60; d += 3) {
+            LocalDate day = nov_1_2020.plusDays(d);
+            assertEquals(ColumnarAgendaTest.describe(sequential.eventsInDay(day)),
+                    ColumnarAgendaTest.describe(parallel.eventsInDay(day)), "Mêmes événements, même ordre, le " + day);
+        }
+        for (int t = 0; t < 10; t++) {
+            assertEquals(ColumnarAgendaTest.describe(sequential.findByTitle("Event " + t)),
+                    ColumnarAgendaTest.describe(parallel.findByTitle("Event " + t)));
+        }
+        parallel.setParallelQueries(null);
+        assertEquals(ColumnarAgendaTest.describe(sequential.eventsInDay(nov_1_2020)),
+                ColumnarAgendaTest.describe(parallel.eventsInDay(nov_1_2020)));
+    }
+
+    @Test
+    public void agendaQueriesAreUnchanged() {
+        List<Event> events = randomEvents(3 * ParallelScan.CHUNK_SIZE + 5);
+        Agenda sequential = new Agenda();
+        Agenda parallel = new Agenda();
+        for (Event e : events) {
+            sequential.addEvent(e);
+            parallel.addEvent(e);
+        }
+        parallel.setParallelQueries(pool, 0);
+        for (int d = 0; d < 60; d += 3) {
+            LocalDate day = nov_1_2020.plusDays(d);
+            assertEquals(sequential.eventsInDay(day), parallel.eventsInDay(day), "Mêmes événements, même ordre, le " + day);
+        }
+    }
+
+    private List<Event> randomEvents(int count) {
+        Random random = new Random(19);
+        ChronoUnit[] frequencies = {ChronoUnit.DAYS, ChronoUnit.WEEKS, ChronoUnit.MONTHS};
+        List<Event> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LocalDateTime start = nov_1_2020.plusDays(random.nextInt(30)).atTime(random.nextInt(24), random.nextInt(60));
+            Event e = new Event("Event " + random.nextInt(10), start, Duration.ofMinutes(30 + random.nextInt(600)));
+            if (random.nextBoolean()) {
+                e.setRepetition(frequencies[random.nextInt(frequencies.length)]);
+                if (random.nextBoolean()) {
+                    e.setTermination(1 + random.nextInt(10));
+                }
+                if (random.nextInt(4) == 0) {
+                    e.addException(start.toLocalDate().plusDays(7));
+                }
+            }
+            events.add(e);
+        }
+        return events;
+    }
+}
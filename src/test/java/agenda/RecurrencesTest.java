@@ -0,0 +1,58 @@
+package agenda;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compare l'arithmétique des récurrences avec celle de java.time
+ */
+public class RecurrencesTest {
+
+    private final Random random = new Random(2020);
+
+    private LocalDate randomDay() {
+        return LocalDate.of(1600 + random.nextInt(800), 1, 1).plusDays(random.nextInt(366));
+    }
+
+    @Test
+    void occurrenceDayMatchesLocalDatePlus() {
+        for (ChronoUnit unit : new ChronoUnit[]{ChronoUnit.DAYS, ChronoUnit.WEEKS, ChronoUnit.MONTHS, ChronoUnit.YEARS}) {
+            for (int i = 0; i < 5_000; i++) {
+                LocalDate start = randomDay();
+                long n = random.nextInt(2_000);
+                assertEquals(start.plus(n, unit).toEpochDay(), Recurrences.occurrenceDay(start.toEpochDay(), unit, n),
+                        () -> start + " + " + n + " " + unit);
+            }
+        }
+    }
+
+    @Test
+    void lastOccurrenceOnOrBeforeIsTheGreatestOne() {
+        for (ChronoUnit unit : new ChronoUnit[]{ChronoUnit.DAYS, ChronoUnit.WEEKS, ChronoUnit.MONTHS, ChronoUnit.YEARS}) {
+            for (int i = 0; i < 5_000; i++) {
+                LocalDate start = randomDay();
+                LocalDate day = start.plusDays(random.nextInt(20_000) - 100);
+                long n = Recurrences.lastOccurrenceOnOrBefore(start.toEpochDay(), unit, day.toEpochDay());
+                if (day.isBefore(start)) {
+                    assertEquals(-1, n);
+                } else {
+                    assertFalse(start.plus(n, unit).isAfter(day), () -> start + " " + unit + " " + day);
+                    assertTrue(start.plus(n + 1, unit).isAfter(day), () -> start + " " + unit + " " + day);
+                }
+            }
+        }
+    }
+
+    @Test
+    void monthEndIsClamped() {
+        long jan31 = LocalDate.of(2025, 1, 31).toEpochDay();
+        assertEquals(LocalDate.of(2025, 2, 28).toEpochDay(), Recurrences.occurrenceDay(jan31, ChronoUnit.MONTHS, 1));
+        assertEquals(LocalDate.of(2025, 3, 31).toEpochDay(), Recurrences.occurrenceDay(jan31, ChronoUnit.MONTHS, 2));
+        assertEquals(1, Recurrences.occurrenceOn(jan31, ChronoUnit.MONTHS, LocalDate.of(2025, 2, 28).toEpochDay()));
+        assertEquals(-1, Recurrences.occurrenceOn(jan31, ChronoUnit.MONTHS, LocalDate.of(2025, 3, 1).toEpochDay()));
+    }
+}
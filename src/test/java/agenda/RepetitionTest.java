@@ -0,0 +1,89 @@
+package agenda;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Teste le stockage des exceptions d'une répétition
+ */
+public class RepetitionTest {
+
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+
+    Repetition repetition;
+
+    @BeforeEach
+    public void setUp() {
+        repetition = new Repetition(ChronoUnit.DAYS);
+    }
+
+    @Test
+    public void exceptionsAreSortedWithoutDuplicates() {
+        repetition.addException(nov_1_2020.plusDays(3));
+        repetition.addException(nov_1_2020);
+        repetition.addException(nov_1_2020.plusDays(3));
+        repetition.addException(nov_1_2020.plusDays(1));
+        assertEquals(List.of(nov_1_2020, nov_1_2020.plusDays(1), nov_1_2020.plusDays(3)), repetition.getExceptions());
+    }
+
+    @Test
+    public void isException() {
+        repetition.addException(nov_1_2020);
+        assertTrue(repetition.isException(nov_1_2020));
+        assertFalse(repetition.isException(nov_1_2020.plusDays(1)));
+        assertTrue(repetition.getExceptions().contains(nov_1_2020));
+        assertFalse(repetition.getExceptions().contains("2020-11-01"));
+    }
+
+    @Test
+    public void addExceptionsMergesWithExistingOnes() {
+        repetition.addException(nov_1_2020.plusDays(10));
+        repetition.addExceptions(List.of(nov_1_2020.plusDays(20), nov_1_2020, nov_1_2020.plusDays(10), nov_1_2020));
+        assertEquals(List.of(nov_1_2020, nov_1_2020.plusDays(10), nov_1_2020.plusDays(20)), repetition.getExceptions());
+    }
+
+    @Test
+    public void addManyExceptions() {
+        for (int i = 999; i >= 0; i--) {
+            repetition.addException(nov_1_2020.plusDays(2L * i));
+        }
+        assertEquals(1_000, repetition.getExceptions().size());
+        assertTrue(repetition.isException(nov_1_2020.plusDays(1_998)));
+        assertFalse(repetition.isException(nov_1_2020.plusDays(1_997)));
+        assertEquals(500, repetition.getExceptions().indexOf(nov_1_2020.plusDays(1_000)));
+    }
+
+    @Test
+    public void removeException() {
+        repetition.addExceptions(List.of(nov_1_2020, nov_1_2020.plusDays(1), nov_1_2020.plusDays(2)));
+        assertTrue(repetition.removeException(nov_1_2020.plusDays(1)));
+        assertFalse(repetition.removeException(nov_1_2020.plusDays(1)), "Déjà retirée");
+        assertEquals(List.of(nov_1_2020, nov_1_2020.plusDays(2)), repetition.getExceptions());
+    }
+
+    @Test
+    public void exceptionsViewIsReadOnlyAndLive() {
+        List<LocalDate> view = repetition.getExceptions();
+        assertThrows(UnsupportedOperationException.class, () -> view.add(nov_1_2020),
+                "Les exceptions ne se modifient que par addException / removeException");
+        repetition.addException(nov_1_2020);
+        assertEquals(List.of(nov_1_2020), view, "La vue suit les modifications");
+        assertThrows(IndexOutOfBoundsException.class, () -> view.get(1));
+    }
+
+    @Test
+    public void removedExceptionOccursAgain() {
+        Event e = new Event("Quotidien", nov_1_2020.atTime(9, 0), Duration.ofHours(1));
+        e.setRepetition(ChronoUnit.DAYS);
+        e.addException(nov_1_2020.plusDays(1));
+        assertFalse(e.isInDay(nov_1_2020.plusDays(1)));
+        e.getRepetition().removeException(nov_1_2020.plusDays(1));
+        assertTrue(e.isInDay(nov_1_2020.plusDays(1)));
+    }
+}
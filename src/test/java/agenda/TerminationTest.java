@@ -123,4 +123,21 @@ public class TerminationTest {
                      "Le nombre d'occurrences devrait être 0 si la date de fin est strictement avant la date de début.");
         // Note: Si le test d'itération est correct, le count sera 0.
     }
-}
\ No newline at end of file
+
+    @Test
+    void testDateConstructor_MonthEnd() {
+        // Début le 31/01 : 31/01, 28/02, 31/03, 30/04 (jamais de dérive vers le 28)
+        LocalDate jan31 = LocalDate.of(2025, 1, 31);
+        Termination termination = new Termination(jan31, ChronoUnit.MONTHS, LocalDate.of(2025, 4, 30));
+        assertEquals(4, termination.getNumberOfOccurrences());
+        assertEquals(LocalDate.of(2025, 3, 31), new Termination(jan31, ChronoUnit.MONTHS, 3).getTerminationDateInclusive());
+    }
+
+    @Test
+    void testDateConstructor_FarAway() {
+        // Quotidien sur un siècle : calcul direct
+        LocalDate end = startDaily.plusYears(100);
+        Termination termination = new Termination(startDaily, ChronoUnit.DAYS, end);
+        assertEquals(ChronoUnit.DAYS.between(startDaily, end) + 1, termination.getNumberOfOccurrences());
+    }
+}